@@ -21,6 +21,7 @@ package be.fedict.eid.dss.admin.portal.control;
 import javax.ejb.Local;
 
 import be.fedict.eid.applet.service.signer.DigestAlgo;
+import be.fedict.eid.dss.model.DocumentStoreType;
 import be.fedict.eid.dss.model.TSPDigestAlgo;
 
 @Local
@@ -81,6 +82,63 @@ public interface Config {
 
 	void setSignatureDigestAlgo(DigestAlgo signatureDigestAlgo);
 
+	Integer getVerifyBatchParallelism();
+
+	void setVerifyBatchParallelism(Integer verifyBatchParallelism);
+
+	Integer getVerifyBatchMaxSize();
+
+	void setVerifyBatchMaxSize(Integer verifyBatchMaxSize);
+
+	Integer getVerificationCacheSize();
+
+	void setVerificationCacheSize(Integer verificationCacheSize);
+
+	Integer getVerificationCacheTtl();
+
+	void setVerificationCacheTtl(Integer verificationCacheTtl);
+
+	String getVerificationCacheStatistics();
+
+	String getXkms2ClientPoolStatistics();
+
+	Integer getCircuitBreakerFailureThreshold();
+
+	void setCircuitBreakerFailureThreshold(
+			Integer circuitBreakerFailureThreshold);
+
+	Integer getCircuitBreakerOpenDuration();
+
+	void setCircuitBreakerOpenDuration(Integer circuitBreakerOpenDuration);
+
+	Integer getServiceCallDeadline();
+
+	void setServiceCallDeadline(Integer serviceCallDeadline);
+
+	Integer getTrustCacheSize();
+
+	void setTrustCacheSize(Integer trustCacheSize);
+
+	Integer getTrustCacheTtl();
+
+	void setTrustCacheTtl(Integer trustCacheTtl);
+
+	Integer getTrustCacheNegativeTtl();
+
+	void setTrustCacheNegativeTtl(Integer trustCacheNegativeTtl);
+
+	String getTrustValidationCacheStatistics();
+
+	Integer getTrustValidationTimeout();
+
+	void setTrustValidationTimeout(Integer trustValidationTimeout);
+
+	String getTrustAnchorsPath();
+
+	void setTrustAnchorsPath(String trustAnchorsPath);
+
+	String getLocalTrustValidationStatistics();
+
 	Integer getDocumentStorageExpiration();
 
 	void setDocumentStorageExpiration(Integer documentStorageExpiration);
@@ -90,6 +148,26 @@ public interface Config {
 	void setDocumentCleanupTaskCronSchedule(
 			String documentCleanupTaskCronSchedule);
 
+	Integer getDocumentCleanupBatchSize();
+
+	void setDocumentCleanupBatchSize(Integer documentCleanupBatchSize);
+
+	Long getDocumentCleanupBatchDelay();
+
+	void setDocumentCleanupBatchDelay(Long documentCleanupBatchDelay);
+
+	DocumentStoreType[] getDocumentStoreTypeArray();
+
+	DocumentStoreType getDocumentStoreType();
+
+	void setDocumentStoreType(DocumentStoreType documentStoreType);
+
+	String getDocumentStorePath();
+
+	void setDocumentStorePath(String documentStorePath);
+
+	String getDocumentCacheStatistics();
+
 	Long getTimestampMaxOffset();
 
 	void setTimestampMaxOffset(Long timestampMaxOffset);
@@ -38,7 +38,10 @@ import be.fedict.eid.dss.admin.portal.control.Config;
 import be.fedict.eid.dss.model.ConfigProperty;
 import be.fedict.eid.dss.model.Configuration;
 import be.fedict.eid.dss.model.DocumentService;
+import be.fedict.eid.dss.model.DocumentStoreType;
 import be.fedict.eid.dss.model.TSPDigestAlgo;
+import be.fedict.eid.dss.model.TrustValidationService;
+import be.fedict.eid.dss.model.VerificationCacheManager;
 import be.fedict.eid.dss.model.exception.InvalidCronExpressionException;
 
 @Stateful
@@ -58,6 +61,12 @@ public class ConfigBean implements Config {
 	@EJB
 	private DocumentService documentService;
 
+	@EJB
+	private VerificationCacheManager verificationCacheManager;
+
+	@EJB
+	private TrustValidationService trustValidationService;
+
 	private String xkmsUrl;
 
 	private String tspUrl;
@@ -80,12 +89,44 @@ public class ConfigBean implements Config {
 
 	private String tsaTrustDomain;
 
+	private Integer circuitBreakerFailureThreshold;
+
+	private Integer circuitBreakerOpenDuration;
+
+	private Integer serviceCallDeadline;
+
+	private Integer trustCacheSize;
+
+	private Integer trustCacheTtl;
+
+	private Integer trustCacheNegativeTtl;
+
+	private Integer trustValidationTimeout;
+
+	private String trustAnchorsPath;
+
 	private DigestAlgo signatureDigestAlgo;
 
+	private Integer verifyBatchParallelism;
+
+	private Integer verifyBatchMaxSize;
+
+	private Integer verificationCacheSize;
+
+	private Integer verificationCacheTtl;
+
 	private Integer documentStorageExpiration;
 
 	private String documentCleanupTaskCronSchedule;
 
+	private Integer documentCleanupBatchSize;
+
+	private Long documentCleanupBatchDelay;
+
+	private DocumentStoreType documentStoreType;
+
+	private String documentStorePath;
+
 	private Long timestampMaxOffset;
 
 	private Long maxGracePeriod;
@@ -133,14 +174,47 @@ public class ConfigBean implements Config {
 				ConfigProperty.IDENTITY_TRUST_DOMAIN, String.class);
 		this.tsaTrustDomain = this.configuration.getValue(
 				ConfigProperty.TSA_TRUST_DOMAIN, String.class);
+		this.circuitBreakerFailureThreshold = this.configuration.getValue(
+				ConfigProperty.CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+				Integer.class);
+		this.circuitBreakerOpenDuration = this.configuration.getValue(
+				ConfigProperty.CIRCUIT_BREAKER_OPEN_DURATION, Integer.class);
+		this.serviceCallDeadline = this.configuration.getValue(
+				ConfigProperty.SERVICE_CALL_DEADLINE, Integer.class);
+		this.trustCacheSize = this.configuration.getValue(
+				ConfigProperty.TRUST_CACHE_SIZE, Integer.class);
+		this.trustCacheTtl = this.configuration.getValue(
+				ConfigProperty.TRUST_CACHE_TTL, Integer.class);
+		this.trustCacheNegativeTtl = this.configuration.getValue(
+				ConfigProperty.TRUST_CACHE_NEGATIVE_TTL, Integer.class);
+		this.trustValidationTimeout = this.configuration.getValue(
+				ConfigProperty.TRUST_VALIDATION_TIMEOUT, Integer.class);
+		this.trustAnchorsPath = this.configuration.getValue(
+				ConfigProperty.TRUST_ANCHORS_PATH, String.class);
 
 		this.signatureDigestAlgo = this.configuration.getValue(
 				ConfigProperty.SIGNATURE_DIGEST_ALGO, DigestAlgo.class);
+		this.verifyBatchParallelism = this.configuration.getValue(
+				ConfigProperty.VERIFY_BATCH_PARALLELISM, Integer.class);
+		this.verifyBatchMaxSize = this.configuration.getValue(
+				ConfigProperty.VERIFY_BATCH_MAX_SIZE, Integer.class);
+		this.verificationCacheSize = this.configuration.getValue(
+				ConfigProperty.VERIFICATION_CACHE_SIZE, Integer.class);
+		this.verificationCacheTtl = this.configuration.getValue(
+				ConfigProperty.VERIFICATION_CACHE_TTL, Integer.class);
 
 		this.documentStorageExpiration = this.configuration.getValue(
 				ConfigProperty.DOCUMENT_STORAGE_EXPIRATION, Integer.class);
 		this.documentCleanupTaskCronSchedule = this.configuration.getValue(
 				ConfigProperty.DOCUMENT_CLEANUP_TASK_SCHEDULE, String.class);
+		this.documentCleanupBatchSize = this.configuration.getValue(
+				ConfigProperty.DOCUMENT_CLEANUP_BATCH_SIZE, Integer.class);
+		this.documentCleanupBatchDelay = this.configuration.getValue(
+				ConfigProperty.DOCUMENT_CLEANUP_BATCH_DELAY, Long.class);
+		this.documentStoreType = this.configuration.getValue(
+				ConfigProperty.DOCUMENT_STORE_TYPE, DocumentStoreType.class);
+		this.documentStorePath = this.configuration.getValue(
+				ConfigProperty.DOCUMENT_STORE_PATH, String.class);
 		this.dssWSUrl = this.configuration.getValue(ConfigProperty.DSS_WS_URL,
 				String.class);
 
@@ -198,12 +272,47 @@ public class ConfigBean implements Config {
 				this.identityTrustDomain);
 		this.configuration.setValue(ConfigProperty.TSA_TRUST_DOMAIN,
 				this.tsaTrustDomain);
+		this.configuration.setValue(
+				ConfigProperty.CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+				this.circuitBreakerFailureThreshold);
+		this.configuration.setValue(
+				ConfigProperty.CIRCUIT_BREAKER_OPEN_DURATION,
+				this.circuitBreakerOpenDuration);
+		this.configuration.setValue(ConfigProperty.SERVICE_CALL_DEADLINE,
+				this.serviceCallDeadline);
+		this.configuration.setValue(ConfigProperty.TRUST_CACHE_SIZE,
+				this.trustCacheSize);
+		this.configuration.setValue(ConfigProperty.TRUST_CACHE_TTL,
+				this.trustCacheTtl);
+		this.configuration.setValue(ConfigProperty.TRUST_CACHE_NEGATIVE_TTL,
+				this.trustCacheNegativeTtl);
+		this.configuration.setValue(ConfigProperty.TRUST_VALIDATION_TIMEOUT,
+				this.trustValidationTimeout);
+		this.configuration.setValue(ConfigProperty.TRUST_ANCHORS_PATH,
+				this.trustAnchorsPath);
 
 		this.configuration.setValue(ConfigProperty.SIGNATURE_DIGEST_ALGO,
 				this.signatureDigestAlgo);
+		this.configuration.setValue(ConfigProperty.VERIFY_BATCH_PARALLELISM,
+				this.verifyBatchParallelism);
+		this.configuration.setValue(ConfigProperty.VERIFY_BATCH_MAX_SIZE,
+				this.verifyBatchMaxSize);
+		this.configuration.setValue(ConfigProperty.VERIFICATION_CACHE_SIZE,
+				this.verificationCacheSize);
+		this.configuration.setValue(ConfigProperty.VERIFICATION_CACHE_TTL,
+				this.verificationCacheTtl);
 
 		this.configuration.setValue(ConfigProperty.DOCUMENT_STORAGE_EXPIRATION,
 				this.documentStorageExpiration);
+		this.configuration.setValue(ConfigProperty.DOCUMENT_CLEANUP_BATCH_SIZE,
+				this.documentCleanupBatchSize);
+		this.configuration.setValue(
+				ConfigProperty.DOCUMENT_CLEANUP_BATCH_DELAY,
+				this.documentCleanupBatchDelay);
+		this.configuration.setValue(ConfigProperty.DOCUMENT_STORE_TYPE,
+				this.documentStoreType);
+		this.configuration.setValue(ConfigProperty.DOCUMENT_STORE_PATH,
+				this.documentStorePath);
 		this.configuration.setValue(ConfigProperty.DSS_WS_URL, this.dssWSUrl);
 
 		this.configuration.setValue(ConfigProperty.TIMESTAMP_MAX_OFFSET,
@@ -236,6 +345,12 @@ public class ConfigBean implements Config {
 				this.removeCard);
 		this.configuration.setValue(ConfigProperty.SECURITY_HSTS, this.hsts);
 
+		// cached verification results might depend on the old configuration
+		this.verificationCacheManager.reset();
+		this.trustValidationService.resetXkms2ClientPool();
+		this.trustValidationService.resetTrustValidationCache();
+		this.trustValidationService.reloadTrustAnchors();
+
 		return null;
 	}
 
@@ -369,6 +484,152 @@ public class ConfigBean implements Config {
 		this.signatureDigestAlgo = signatureDigestAlgo;
 	}
 
+	@Override
+	public Integer getVerifyBatchParallelism() {
+		return this.verifyBatchParallelism;
+	}
+
+	@Override
+	public void setVerifyBatchParallelism(Integer verifyBatchParallelism) {
+		this.verifyBatchParallelism = verifyBatchParallelism;
+	}
+
+	@Override
+	public Integer getVerifyBatchMaxSize() {
+		return this.verifyBatchMaxSize;
+	}
+
+	@Override
+	public void setVerifyBatchMaxSize(Integer verifyBatchMaxSize) {
+		this.verifyBatchMaxSize = verifyBatchMaxSize;
+	}
+
+	@Override
+	public Integer getVerificationCacheSize() {
+		return this.verificationCacheSize;
+	}
+
+	@Override
+	public void setVerificationCacheSize(Integer verificationCacheSize) {
+		this.verificationCacheSize = verificationCacheSize;
+	}
+
+	@Override
+	public Integer getVerificationCacheTtl() {
+		return this.verificationCacheTtl;
+	}
+
+	@Override
+	public void setVerificationCacheTtl(Integer verificationCacheTtl) {
+		this.verificationCacheTtl = verificationCacheTtl;
+	}
+
+	@Override
+	public Integer getCircuitBreakerFailureThreshold() {
+		return this.circuitBreakerFailureThreshold;
+	}
+
+	@Override
+	public void setCircuitBreakerFailureThreshold(
+			Integer circuitBreakerFailureThreshold) {
+		this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+	}
+
+	@Override
+	public Integer getCircuitBreakerOpenDuration() {
+		return this.circuitBreakerOpenDuration;
+	}
+
+	@Override
+	public void setCircuitBreakerOpenDuration(Integer circuitBreakerOpenDuration) {
+		this.circuitBreakerOpenDuration = circuitBreakerOpenDuration;
+	}
+
+	@Override
+	public Integer getServiceCallDeadline() {
+		return this.serviceCallDeadline;
+	}
+
+	@Override
+	public void setServiceCallDeadline(Integer serviceCallDeadline) {
+		this.serviceCallDeadline = serviceCallDeadline;
+	}
+
+	@Override
+	public Integer getTrustCacheSize() {
+		return this.trustCacheSize;
+	}
+
+	@Override
+	public void setTrustCacheSize(Integer trustCacheSize) {
+		this.trustCacheSize = trustCacheSize;
+	}
+
+	@Override
+	public Integer getTrustCacheTtl() {
+		return this.trustCacheTtl;
+	}
+
+	@Override
+	public void setTrustCacheTtl(Integer trustCacheTtl) {
+		this.trustCacheTtl = trustCacheTtl;
+	}
+
+	@Override
+	public Integer getTrustCacheNegativeTtl() {
+		return this.trustCacheNegativeTtl;
+	}
+
+	@Override
+	public void setTrustCacheNegativeTtl(Integer trustCacheNegativeTtl) {
+		this.trustCacheNegativeTtl = trustCacheNegativeTtl;
+	}
+
+	@Override
+	public Integer getTrustValidationTimeout() {
+		return this.trustValidationTimeout;
+	}
+
+	@Override
+	public void setTrustValidationTimeout(Integer trustValidationTimeout) {
+		this.trustValidationTimeout = trustValidationTimeout;
+	}
+
+	@Override
+	public String getTrustAnchorsPath() {
+		return this.trustAnchorsPath;
+	}
+
+	@Override
+	public void setTrustAnchorsPath(String trustAnchorsPath) {
+		this.trustAnchorsPath = trustAnchorsPath;
+	}
+
+	@Override
+	public String getLocalTrustValidationStatistics() {
+		return this.trustValidationService.getLocalTrustValidationStatistics();
+	}
+
+	@Override
+	public String getTrustValidationCacheStatistics() {
+		return this.trustValidationService.getTrustValidationCacheStatistics();
+	}
+
+	@Override
+	public String getXkms2ClientPoolStatistics() {
+		return this.trustValidationService.getXkms2ClientPoolStatistics();
+	}
+
+	@Override
+	public String getVerificationCacheStatistics() {
+		return this.verificationCacheManager.getStatistics();
+	}
+
+	@Override
+	public String getDocumentCacheStatistics() {
+		return this.documentService.getDocumentCacheStatistics();
+	}
+
 	@Override
 	public Integer getDocumentStorageExpiration() {
 		return this.documentStorageExpiration;
@@ -390,6 +651,51 @@ public class ConfigBean implements Config {
 		this.documentCleanupTaskCronSchedule = documentCleanupTaskCronSchedule;
 	}
 
+	@Override
+	public Integer getDocumentCleanupBatchSize() {
+		return this.documentCleanupBatchSize;
+	}
+
+	@Override
+	public void setDocumentCleanupBatchSize(Integer documentCleanupBatchSize) {
+		this.documentCleanupBatchSize = documentCleanupBatchSize;
+	}
+
+	@Override
+	public Long getDocumentCleanupBatchDelay() {
+		return this.documentCleanupBatchDelay;
+	}
+
+	@Override
+	public void setDocumentCleanupBatchDelay(Long documentCleanupBatchDelay) {
+		this.documentCleanupBatchDelay = documentCleanupBatchDelay;
+	}
+
+	@Override
+	public DocumentStoreType[] getDocumentStoreTypeArray() {
+		return DocumentStoreType.values();
+	}
+
+	@Override
+	public DocumentStoreType getDocumentStoreType() {
+		return this.documentStoreType;
+	}
+
+	@Override
+	public void setDocumentStoreType(DocumentStoreType documentStoreType) {
+		this.documentStoreType = documentStoreType;
+	}
+
+	@Override
+	public String getDocumentStorePath() {
+		return this.documentStorePath;
+	}
+
+	@Override
+	public void setDocumentStorePath(String documentStorePath) {
+		this.documentStorePath = documentStorePath;
+	}
+
 	@Override
 	public Long getTimestampMaxOffset() {
 		return this.timestampMaxOffset;
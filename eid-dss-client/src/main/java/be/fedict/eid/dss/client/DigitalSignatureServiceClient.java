@@ -19,6 +19,9 @@
 package be.fedict.eid.dss.client;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.ProxySelector;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
@@ -29,6 +32,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
 
+import javax.activation.DataHandler;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
@@ -41,12 +45,14 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.ws.Binding;
 import javax.xml.ws.BindingProvider;
 import javax.xml.ws.handler.Handler;
+import javax.xml.ws.soap.MTOMFeature;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import be.fedict.eid.dss.ws.ByteArrayDataSource;
 import be.fedict.eid.dss.ws.DSSConstants;
 import be.fedict.eid.dss.ws.DigitalSignatureService;
 import be.fedict.eid.dss.ws.DigitalSignatureServiceFactory;
@@ -185,7 +191,7 @@ public class DigitalSignatureServiceClient {
 		DigitalSignatureService digitalSignatureService = DigitalSignatureServiceFactory
 				.getInstance();
 		DigitalSignatureServicePortType digitalSignatureServicePort = digitalSignatureService
-				.getDigitalSignatureServicePort();
+				.getDigitalSignatureServicePort(new MTOMFeature());
 
 		BindingProvider bindingProvider = (BindingProvider) digitalSignatureServicePort;
 		bindingProvider.getRequestContext()
@@ -354,12 +360,77 @@ public class DigitalSignatureServiceClient {
 		validateResult(responseBase);
 
 		// parse VerificationReport
-		List<SignatureInfo> signers = new LinkedList<SignatureInfo>();
 		VerificationReportType verificationReport = findVerificationReport(responseBase);
 		if (null == verificationReport) {
-			return signers;
+			return new LinkedList<SignatureInfo>();
 		}
+		return getSigners(verificationReport);
+	}
 
+	/**
+	 * Verifies multiple documents in one go. The DSS verifies the documents
+	 * concurrently.
+	 * 
+	 * @param signedDocuments
+	 *            signed documents to verify.
+	 * @param mimeTypes
+	 *            the mime-types of the documents, in the same order. A
+	 *            <code>null</code> entry defaults to "text/xml".
+	 * @return per document, in the same order as the given documents, the
+	 *         signing parties. A document that could not be parsed or of
+	 *         which the signatures are invalid yields <code>null</code>.
+	 */
+	public List<List<SignatureInfo>> verifyBatch(List<byte[]> signedDocuments,
+			List<String> mimeTypes) {
+
+		if (signedDocuments.size() != mimeTypes.size()) {
+			throw new IllegalArgumentException(
+					"documents and mime-types size mismatch");
+		}
+
+		ResponseBaseType responseBase;
+		try {
+			responseBase = doVerification(getInputDocuments(signedDocuments,
+					mimeTypes), false, true, null, null);
+			validateResult(responseBase);
+		} catch (NotParseableXMLDocumentException e) {
+			throw new RuntimeException("unexpected batch result: "
+					+ e.getMessage(), e);
+		}
+
+		List<VerificationReportType> verificationReports = findVerificationReports(responseBase);
+		if (verificationReports.size() != signedDocuments.size()) {
+			throw new RuntimeException("expected "
+					+ signedDocuments.size() + " verification reports, got "
+					+ verificationReports.size());
+		}
+		List<List<SignatureInfo>> results = new LinkedList<List<SignatureInfo>>();
+		for (VerificationReportType verificationReport : verificationReports) {
+			if (isErrorReport(verificationReport)) {
+				results.add(null);
+			} else {
+				results.add(getSigners(verificationReport));
+			}
+		}
+		return results;
+	}
+
+	private boolean isErrorReport(VerificationReportType verificationReport) {
+
+		for (IndividualReportType individualReport : verificationReport
+				.getIndividualReport()) {
+			if (DSSConstants.RESULT_MAJOR_REQUESTER_ERROR
+					.equals(individualReport.getResult().getResultMajor())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private List<SignatureInfo> getSigners(
+			VerificationReportType verificationReport) {
+
+		List<SignatureInfo> signers = new LinkedList<SignatureInfo>();
 		List<IndividualReportType> individualReports = verificationReport
 				.getIndividualReport();
 		for (IndividualReportType individualReport : individualReports) {
@@ -437,6 +508,17 @@ public class DigitalSignatureServiceClient {
 			boolean returnVerificationReport, byte[] originalDocumentData)
 			throws NotParseableXMLDocumentException {
 
+		return doVerification(getInputDocuments(documentData, mimeType),
+				returnSignerIdentity, returnVerificationReport,
+				originalDocumentData, mimeType);
+	}
+
+	private ResponseBaseType doVerification(
+			be.fedict.eid.dss.ws.jaxb.dss.InputDocuments inputDocuments,
+			boolean returnSignerIdentity, boolean returnVerificationReport,
+			byte[] originalDocumentData, String mimeType)
+			throws NotParseableXMLDocumentException {
+
 		LOG.debug("verify");
 
 		String requestId = "dss-verify-request-" + UUID.randomUUID().toString();
@@ -512,8 +594,7 @@ public class DigitalSignatureServiceClient {
 			verifyRequest.setOptionalInputs(optionalInputs);
 		}
 
-		verifyRequest.setInputDocuments(getInputDocuments(documentData,
-				mimeType));
+		verifyRequest.setInputDocuments(inputDocuments);
 
 		// operate
 		ResponseBaseType response = port.verify(verifyRequest);
@@ -601,6 +682,26 @@ public class DigitalSignatureServiceClient {
 	 */
 	public byte[] retrieve(String documentId) throws DocumentNotFoundException {
 
+		ByteArrayOutputStream documentOutputStream = new ByteArrayOutputStream();
+		retrieve(documentId, documentOutputStream);
+		return documentOutputStream.toByteArray();
+	}
+
+	/**
+	 * Retrieve the document specified by the given ID from the eID DSS service,
+	 * streaming the document attachment to the given output stream.
+	 * 
+	 * @param documentId
+	 *            the ID of the document to fetch.
+	 * @param outputStream
+	 *            the output stream to which the decoded document data is
+	 *            written.
+	 * @throws DocumentNotFoundException
+	 *             no document was returned
+	 */
+	public void retrieve(String documentId, OutputStream outputStream)
+			throws DocumentNotFoundException {
+
 		// create request
 		String requestId = "dss-sign-request-" + UUID.randomUUID().toString();
 		SignRequest signRequest = this.dssObjectFactory.createSignRequest();
@@ -642,7 +743,7 @@ public class DigitalSignatureServiceClient {
 		}
 		Base64Data base64Data = documentWithSignature.getDocument()
 				.getBase64Data();
-		byte[] documentData;
+		DataHandler documentData;
 		if (null != base64Data) {
 			documentData = base64Data.getValue();
 		} else {
@@ -652,7 +753,12 @@ public class DigitalSignatureServiceClient {
 		if (null == documentData) {
 			throw new DocumentNotFoundException();
 		}
-		return documentData;
+		try {
+			documentData.writeTo(outputStream);
+		} catch (IOException e) {
+			throw new RuntimeException("error reading document attachment: "
+					+ e.getMessage(), e);
+		}
 	}
 
 	public Element getReturnStoredDocumentElement(
@@ -673,20 +779,37 @@ public class DigitalSignatureServiceClient {
 	private be.fedict.eid.dss.ws.jaxb.dss.InputDocuments getInputDocuments(
 			byte[] documentData, String mimeType) {
 
+		List<byte[]> documentDatas = new LinkedList<byte[]>();
+		documentDatas.add(documentData);
+		List<String> mimeTypes = new LinkedList<String>();
+		mimeTypes.add(mimeType);
+		return getInputDocuments(documentDatas, mimeTypes);
+	}
+
+	private be.fedict.eid.dss.ws.jaxb.dss.InputDocuments getInputDocuments(
+			List<byte[]> documentDatas, List<String> mimeTypes) {
+
 		be.fedict.eid.dss.ws.jaxb.dss.InputDocuments inputDocuments = this.dssObjectFactory
 				.createInputDocuments();
 		List<Object> documents = inputDocuments
 				.getDocumentOrTransformedDataOrDocumentHash();
-		DocumentType document = this.dssObjectFactory.createDocumentType();
-		if (null == mimeType || "text/xml".equals(mimeType)) {
-			document.setBase64XML(documentData);
-		} else {
-			Base64Data base64Data = this.dssObjectFactory.createBase64Data();
-			base64Data.setValue(documentData);
-			base64Data.setMimeType(mimeType);
-			document.setBase64Data(base64Data);
+		Iterator<String> mimeTypeIterator = mimeTypes.iterator();
+		for (byte[] documentData : documentDatas) {
+			String mimeType = mimeTypeIterator.next();
+			DocumentType document = this.dssObjectFactory.createDocumentType();
+			DataHandler dataHandler = new DataHandler(new ByteArrayDataSource(
+					documentData, mimeType));
+			if (null == mimeType || "text/xml".equals(mimeType)) {
+				document.setBase64XML(dataHandler);
+			} else {
+				Base64Data base64Data = this.dssObjectFactory
+						.createBase64Data();
+				base64Data.setValue(dataHandler);
+				base64Data.setMimeType(mimeType);
+				document.setBase64Data(base64Data);
+			}
+			documents.add(document);
 		}
-		documents.add(document);
 		return inputDocuments;
 	}
 
@@ -724,13 +847,24 @@ public class DigitalSignatureServiceClient {
 
 	}
 
-	@SuppressWarnings("unchecked")
 	private VerificationReportType findVerificationReport(
 			ResponseBaseType responseBase) {
 
+		List<VerificationReportType> verificationReports = findVerificationReports(responseBase);
+		if (verificationReports.isEmpty()) {
+			return null;
+		}
+		return verificationReports.get(0);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<VerificationReportType> findVerificationReports(
+			ResponseBaseType responseBase) {
+
+		List<VerificationReportType> verificationReports = new LinkedList<VerificationReportType>();
 		AnyType optionalOutputs = responseBase.getOptionalOutputs();
 		if (null == optionalOutputs) {
-			return null;
+			return verificationReports;
 		}
 		List<Object> optionalOutputContent = optionalOutputs.getAny();
 		for (Object optionalOutput : optionalOutputContent) {
@@ -750,11 +884,12 @@ public class DigitalSignatureServiceClient {
 								"JAXB error parsing verification report: "
 										+ e.getMessage(), e);
 					}
-					return verificationReportElement.getValue();
+					verificationReports.add(verificationReportElement
+							.getValue());
 				}
 			}
 		}
-		return null;
+		return verificationReports;
 	}
 
 	@SuppressWarnings("unchecked")
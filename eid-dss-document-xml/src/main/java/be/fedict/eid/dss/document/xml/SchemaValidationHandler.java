@@ -0,0 +1,164 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.document.xml;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * SAX handler that validates a document while it is being parsed. The XML
+ * schema is selected on the namespace of the document element, after which
+ * all events are forwarded to a validator handler. This way parsing, namespace
+ * detection and validation happen in a single pass, without building a DOM.
+ */
+abstract class SchemaValidationHandler extends DefaultHandler {
+
+	private static final Log LOG = LogFactory
+			.getLog(SchemaValidationHandler.class);
+
+	private Locator locator;
+
+	private final List<String[]> prefixMappings = new LinkedList<String[]>();
+
+	private boolean documentElementSeen;
+
+	private ValidatorHandler validatorHandler;
+
+	/**
+	 * @return the XML schema for the given namespace, or <code>null</code>
+	 *         if the document should not be validated.
+	 */
+	protected abstract Schema getSchema(String namespace) throws SAXException;
+
+	@Override
+	public void setDocumentLocator(Locator locator) {
+		this.locator = locator;
+	}
+
+	@Override
+	public void startPrefixMapping(String prefix, String uri)
+			throws SAXException {
+		if (false == this.documentElementSeen) {
+			// replayed once the validator handler is known
+			this.prefixMappings.add(new String[] { prefix, uri });
+			return;
+		}
+		if (null != this.validatorHandler) {
+			this.validatorHandler.startPrefixMapping(prefix, uri);
+		}
+	}
+
+	@Override
+	public void endPrefixMapping(String prefix) throws SAXException {
+		if (null != this.validatorHandler) {
+			this.validatorHandler.endPrefixMapping(prefix);
+		}
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName,
+			Attributes attributes) throws SAXException {
+		if (false == this.documentElementSeen) {
+			this.documentElementSeen = true;
+			startValidation(uri);
+		}
+		if (null != this.validatorHandler) {
+			this.validatorHandler.startElement(uri, localName, qName,
+					attributes);
+		}
+	}
+
+	private void startValidation(String namespace) throws SAXException {
+		if (null == namespace || namespace.isEmpty()) {
+			LOG.debug("no namespace defined");
+			return;
+		}
+		Schema schema = getSchema(namespace);
+		if (null == schema) {
+			LOG.debug("no XML schema available for namespace: " + namespace);
+			return;
+		}
+		LOG.debug("validating against XML schema: " + namespace);
+		this.validatorHandler = schema.newValidatorHandler();
+		if (null != this.locator) {
+			this.validatorHandler.setDocumentLocator(this.locator);
+		}
+		this.validatorHandler.startDocument();
+		for (String[] prefixMapping : this.prefixMappings) {
+			this.validatorHandler.startPrefixMapping(prefixMapping[0],
+					prefixMapping[1]);
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName)
+			throws SAXException {
+		if (null != this.validatorHandler) {
+			this.validatorHandler.endElement(uri, localName, qName);
+		}
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length)
+			throws SAXException {
+		if (null != this.validatorHandler) {
+			this.validatorHandler.characters(ch, start, length);
+		}
+	}
+
+	@Override
+	public void ignorableWhitespace(char[] ch, int start, int length)
+			throws SAXException {
+		if (null != this.validatorHandler) {
+			this.validatorHandler.ignorableWhitespace(ch, start, length);
+		}
+	}
+
+	@Override
+	public void processingInstruction(String target, String data)
+			throws SAXException {
+		if (null != this.validatorHandler) {
+			this.validatorHandler.processingInstruction(target, data);
+		}
+	}
+
+	@Override
+	public void skippedEntity(String name) throws SAXException {
+		if (null != this.validatorHandler) {
+			this.validatorHandler.skippedEntity(name);
+		}
+	}
+
+	@Override
+	public void endDocument() throws SAXException {
+		if (null != this.validatorHandler) {
+			this.validatorHandler.endDocument();
+		}
+	}
+}
@@ -46,6 +46,7 @@ import org.apache.xml.security.utils.Constants;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
 
 import javax.xml.crypto.MarshalException;
 import javax.xml.crypto.dsig.Reference;
@@ -55,14 +56,21 @@ import javax.xml.crypto.dsig.XMLSignatureFactory;
 import javax.xml.crypto.dsig.dom.DOMValidateContext;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -76,19 +84,23 @@ import java.util.List;
  *
  * @author Frank Cornelis
  */
-public class XMLDSSDocumentService implements DSSDocumentService {
+public class XMLDSSDocumentService implements DSSStreamingDocumentService {
 
 	private static final long serialVersionUID = 1L;
 
 	private static final Log LOG = LogFactory
 			.getLog(XMLDSSDocumentService.class);
 
-	private DocumentBuilder documentBuilder;
+	private DocumentBuilderFactory documentBuilderFactory;
 
 	private DSSDocumentContext context;
 
 	private TransformerFactory transformerFactory;
 
+	private XMLInputFactory xmlInputFactory;
+
+	private SAXParserFactory saxParserFactory;
+
 	static {
 		/*
 		 * Initialize the Apache XML Security library, else we get an NPE on
@@ -100,23 +112,35 @@ public class XMLDSSDocumentService implements DSSDocumentService {
 	public void checkIncomingDocument(byte[] document) throws Exception {
 
 		LOG.debug("checking incoming document");
-		ByteArrayInputStream documentInputStream = new ByteArrayInputStream(
-				document);
-		Document dom = this.documentBuilder.parse(documentInputStream);
-
-		String namespace = dom.getDocumentElement().getNamespaceURI();
-		if (null == namespace) {
-			LOG.debug("no namespace defined");
-			return;
+		SAXParser saxParser;
+		synchronized (this.saxParserFactory) {
+			saxParser = this.saxParserFactory.newSAXParser();
 		}
+		/*
+		 * A single SAX pass checks well-formedness, selects the XML schema
+		 * and validates, so large documents never end up in a DOM.
+		 */
+		saxParser.parse(new ByteArrayInputStream(document),
+				new SchemaValidationHandler() {
+
+					@Override
+					protected Schema getSchema(String namespace)
+							throws SAXException {
+						return getXmlSchema(namespace);
+					}
+				});
+	}
+
+	private Schema getXmlSchema(String namespace) throws SAXException {
 
+		if (this.context instanceof DSSXmlSchemaDocumentContext) {
+			return ((DSSXmlSchemaDocumentContext) this.context)
+					.getCompiledXmlSchema(namespace);
+		}
 		byte[] xsd = this.context.getXmlSchema(namespace);
 		if (null == xsd) {
-			LOG.debug("no XML schema available for namespace: " + namespace);
-			return;
+			return null;
 		}
-
-		LOG.debug("validating against XML schema: " + namespace);
 		SchemaFactory schemaFactory = SchemaFactory
 				.newInstance("http://www.w3.org/2001/XMLSchema");
 		schemaFactory
@@ -124,21 +148,31 @@ public class XMLDSSDocumentService implements DSSDocumentService {
 						this.context));
 		StreamSource schemaSource = new StreamSource(new ByteArrayInputStream(
 				xsd));
-		Schema schema = schemaFactory.newSchema(schemaSource);
-		Validator validator = schema.newValidator();
-		DOMSource domSource = new DOMSource(dom);
-		validator.validate(domSource);
+		return schemaFactory.newSchema(schemaSource);
 	}
 
 	public void init(DSSDocumentContext context, String contentType)
 			throws Exception {
 
-		DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory
-				.newInstance();
-		documentBuilderFactory.setNamespaceAware(true);
-		this.documentBuilder = documentBuilderFactory.newDocumentBuilder();
+		this.documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		this.documentBuilderFactory.setNamespaceAware(true);
 		this.context = context;
 		this.transformerFactory = TransformerFactory.newInstance();
+		this.xmlInputFactory = XMLInputFactory.newInstance();
+		this.saxParserFactory = SAXParserFactory.newInstance();
+		this.saxParserFactory.setNamespaceAware(true);
+	}
+
+	/**
+	 * Document builders are not thread-safe, and neither are the JAXP
+	 * factories. The factories are created once in {@link #init}, every call
+	 * gets its own document builder.
+	 */
+	private DocumentBuilder getDocumentBuilder()
+			throws ParserConfigurationException {
+		synchronized (this.documentBuilderFactory) {
+			return this.documentBuilderFactory.newDocumentBuilder();
+		}
 	}
 
 	public SignatureServiceEx getSignatureService(
@@ -165,41 +199,106 @@ public class XMLDSSDocumentService implements DSSDocumentService {
 			String language, List<MimeType> mimeTypes,
             String documentViewerServlet) throws Exception {
 
-		// per default we do nothing
-		byte[] browserData = document;
-		String browserContentType = "text/xml";
+		BufferedDocumentVisualizationOutput output = new BufferedDocumentVisualizationOutput();
+		writeDocumentVisualization(document, language, mimeTypes,
+				documentViewerServlet, output);
+		return new DocumentVisualization(output.browserContentType,
+				output.outputStream.toByteArray());
+	}
 
-		ByteArrayInputStream documentInputStream = new ByteArrayInputStream(
-				document);
-		Document dom = this.documentBuilder.parse(documentInputStream);
-		String namespace = dom.getDocumentElement().getNamespaceURI();
+	public void writeDocumentVisualization(byte[] document, String language,
+			List<MimeType> mimeTypes, String documentViewerServlet,
+			DocumentVisualizationOutput output) throws Exception {
+
+		Templates templates = null;
+		String namespace = getDocumentNamespace(document);
 		if (null != namespace) {
 			LOG.debug("document namespace: " + namespace);
-			byte[] xsl = this.context.getXmlStyleSheet(namespace);
-			if (null != xsl) {
-				LOG.debug("XML style sheet present");
-				browserContentType = "text/html";
-				Transformer transformer = this.transformerFactory
-						.newTransformer(new StreamSource(
-								new ByteArrayInputStream(xsl)));
-				if (null != language) {
-					transformer.setParameter("language", language);
+			templates = getXmlStyleSheet(namespace);
+		}
+		if (null == templates) {
+			// per default we do nothing
+			output.getOutputStream("text/xml").write(document);
+			return;
+		}
+
+		LOG.debug("XML style sheet present");
+		Transformer transformer = templates.newTransformer();
+		if (null != language) {
+			transformer.setParameter("language", language);
+		}
+		/*
+		 * No DOM here, the transformer builds its own optimized tree from the
+		 * stream and writes the result straight to the output.
+		 */
+		transformer.transform(new StreamSource(new ByteArrayInputStream(
+				document)), new StreamResult(output
+				.getOutputStream("text/html")));
+	}
+
+	/**
+	 * Only reads up to the document element, which is all it takes to
+	 * determine the namespace.
+	 */
+	private String getDocumentNamespace(byte[] document)
+			throws XMLStreamException {
+
+		XMLStreamReader xmlStreamReader;
+		synchronized (this.xmlInputFactory) {
+			xmlStreamReader = this.xmlInputFactory
+					.createXMLStreamReader(new ByteArrayInputStream(document));
+		}
+		try {
+			while (xmlStreamReader.hasNext()) {
+				if (XMLStreamConstants.START_ELEMENT == xmlStreamReader.next()) {
+					String namespace = xmlStreamReader.getNamespaceURI();
+					if (null == namespace || namespace.isEmpty()) {
+						return null;
+					}
+					return namespace;
 				}
-				ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-				transformer.transform(new DOMSource(dom), new StreamResult(
-						outputStream));
-				browserData = outputStream.toByteArray();
 			}
+			return null;
+		} finally {
+			xmlStreamReader.close();
+		}
+	}
+
+	private Templates getXmlStyleSheet(String namespace)
+			throws TransformerConfigurationException {
+
+		if (this.context instanceof DSSXmlStyleSheetDocumentContext) {
+			return ((DSSXmlStyleSheetDocumentContext) this.context)
+					.getCompiledXmlStyleSheet(namespace);
+		}
+		byte[] xsl = this.context.getXmlStyleSheet(namespace);
+		if (null == xsl) {
+			return null;
 		}
+		synchronized (this.transformerFactory) {
+			return this.transformerFactory.newTemplates(new StreamSource(
+					new ByteArrayInputStream(xsl)));
+		}
+	}
 
-		return new DocumentVisualization(browserContentType, browserData);
+	private static class BufferedDocumentVisualizationOutput implements
+			DocumentVisualizationOutput {
+
+		private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+		private String browserContentType;
+
+		public OutputStream getOutputStream(String browserContentType) {
+			this.browserContentType = browserContentType;
+			return this.outputStream;
+		}
 	}
 
 	@Override
 	public List<SignatureInfo> verifySignatures(byte[] documentData,
 			byte[] originalDocument) throws Exception {
-		Document document = this.documentBuilder
-				.parse(new ByteArrayInputStream(documentData));
+		Document document = getDocumentBuilder().parse(
+				new ByteArrayInputStream(documentData));
 
 		List<SignatureInfo> signatureInfos = new LinkedList<SignatureInfo>();
 		NodeList signatureNodeList = document.getElementsByTagNameNS(
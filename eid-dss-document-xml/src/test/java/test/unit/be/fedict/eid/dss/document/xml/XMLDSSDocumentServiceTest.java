@@ -19,17 +19,32 @@
 package test.unit.be.fedict.eid.dss.document.xml;
 
 import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.Security;
 import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.util.Date;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
@@ -42,9 +57,14 @@ import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.xml.sax.SAXException;
 
 import be.fedict.eid.dss.document.xml.XMLDSSDocumentService;
 import be.fedict.eid.dss.spi.DSSDocumentContext;
+import be.fedict.eid.dss.spi.DSSXmlSchemaDocumentContext;
+import be.fedict.eid.dss.spi.DSSXmlStyleSheetDocumentContext;
+import be.fedict.eid.dss.spi.DocumentVisualization;
+import be.fedict.eid.dss.spi.DocumentVisualizationOutput;
 import be.fedict.eid.dss.spi.SignatureInfo;
 
 public class XMLDSSDocumentServiceTest {
@@ -151,6 +171,209 @@ public class XMLDSSDocumentServiceTest {
 		EasyMock.verify(mockContext);
 	}
 
+	@Test
+	public void testCheckIncomingDocumentInvalid() throws Exception {
+		// setup
+		XMLDSSDocumentService testedInstance = new XMLDSSDocumentService();
+		byte[] document = "<test xmlns=\"urn:test\"><foo/></test>"
+				.getBytes();
+		DSSDocumentContext mockContext = EasyMock
+				.createMock(DSSDocumentContext.class);
+
+		byte[] xsd = IOUtils.toByteArray(XMLDSSDocumentServiceTest.class
+				.getResourceAsStream("/test.xsd"));
+
+		// expectations
+		EasyMock.expect(mockContext.getXmlSchema("urn:test")).andReturn(xsd);
+
+		// prepare
+		EasyMock.replay(mockContext);
+
+		// operate
+		testedInstance.init(mockContext, null);
+		try {
+			testedInstance.checkIncomingDocument(document);
+			fail();
+		} catch (SAXException e) {
+			// expected
+			LOG.debug("expected error: " + e.getMessage());
+		}
+
+		// verify
+		EasyMock.verify(mockContext);
+	}
+
+	@Test
+	public void testCheckIncomingDocumentNotWellFormed() throws Exception {
+		// setup
+		XMLDSSDocumentService testedInstance = new XMLDSSDocumentService();
+		byte[] document = "<test>hello world</tset>".getBytes();
+
+		// operate
+		testedInstance.init(null, null);
+		try {
+			testedInstance.checkIncomingDocument(document);
+			fail();
+		} catch (SAXException e) {
+			// expected
+			LOG.debug("expected error: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void testCheckIncomingDocumentWithCompiledXmlSchema()
+			throws Exception {
+		// setup
+		XMLDSSDocumentService testedInstance = new XMLDSSDocumentService();
+		byte[] document = "<test xmlns=\"urn:test\">hello world</test>"
+				.getBytes();
+		DSSXmlSchemaDocumentContext mockContext = EasyMock
+				.createMock(DSSXmlSchemaDocumentContext.class);
+
+		byte[] xsd = IOUtils.toByteArray(XMLDSSDocumentServiceTest.class
+				.getResourceAsStream("/test.xsd"));
+		Schema schema = SchemaFactory.newInstance(
+				"http://www.w3.org/2001/XMLSchema").newSchema(
+				new StreamSource(new ByteArrayInputStream(xsd)));
+
+		// expectations
+		EasyMock.expect(mockContext.getCompiledXmlSchema("urn:test"))
+				.andStubReturn(schema);
+
+		// prepare
+		EasyMock.replay(mockContext);
+
+		// operate
+		testedInstance.init(mockContext, null);
+		testedInstance.checkIncomingDocument(document);
+		testedInstance.checkIncomingDocument(document);
+
+		// verify
+		EasyMock.verify(mockContext);
+	}
+
+	@Test
+	public void testCheckIncomingDocumentSharedInstanceConcurrently()
+			throws Exception {
+		// setup
+		final XMLDSSDocumentService testedInstance = new XMLDSSDocumentService();
+		final byte[] validDocument = "<test xmlns=\"urn:test\">hello world</test>"
+				.getBytes();
+		final byte[] invalidDocument = "<test xmlns=\"urn:test\"><foo/></test>"
+				.getBytes();
+		DSSXmlSchemaDocumentContext mockContext = EasyMock
+				.createMock(DSSXmlSchemaDocumentContext.class);
+
+		byte[] xsd = IOUtils.toByteArray(XMLDSSDocumentServiceTest.class
+				.getResourceAsStream("/test.xsd"));
+		Schema schema = SchemaFactory.newInstance(
+				"http://www.w3.org/2001/XMLSchema").newSchema(
+				new StreamSource(new ByteArrayInputStream(xsd)));
+
+		// expectations
+		EasyMock.expect(mockContext.getCompiledXmlSchema("urn:test"))
+				.andStubReturn(schema);
+
+		// prepare
+		EasyMock.replay(mockContext);
+		testedInstance.init(mockContext, null);
+		ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+		// operate
+		List<Future<Integer>> futures = new LinkedList<Future<Integer>>();
+		for (int threadIdx = 0; threadIdx < 8; threadIdx++) {
+			futures.add(executorService.submit(new Callable<Integer>() {
+
+				public Integer call() throws Exception {
+					int rejected = 0;
+					for (int idx = 0; idx < 100; idx++) {
+						testedInstance.checkIncomingDocument(validDocument);
+						try {
+							testedInstance
+									.checkIncomingDocument(invalidDocument);
+						} catch (SAXException e) {
+							rejected++;
+						}
+					}
+					return rejected;
+				}
+			}));
+		}
+
+		// verify
+		try {
+			for (Future<Integer> future : futures) {
+				assertEquals(100, (int) future.get());
+			}
+		} finally {
+			executorService.shutdown();
+		}
+		EasyMock.verify(mockContext);
+	}
+
+	@Test
+	public void testWriteDocumentVisualization() throws Exception {
+		// setup
+		XMLDSSDocumentService testedInstance = new XMLDSSDocumentService();
+		byte[] document = "<test xmlns=\"urn:test\">hello world</test>"
+				.getBytes();
+		String xsl = "<xsl:stylesheet version=\"1.0\" "
+				+ "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" "
+				+ "xmlns:test=\"urn:test\">"
+				+ "<xsl:output method=\"html\"/>"
+				+ "<xsl:template match=\"/test:test\">"
+				+ "<html><body><xsl:value-of select=\".\"/></body></html>"
+				+ "</xsl:template></xsl:stylesheet>";
+		Templates templates = TransformerFactory.newInstance().newTemplates(
+				new StreamSource(new ByteArrayInputStream(xsl.getBytes())));
+		DSSXmlStyleSheetDocumentContext mockContext = EasyMock
+				.createMock(DSSXmlStyleSheetDocumentContext.class);
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		final StringBuilder contentType = new StringBuilder();
+
+		// expectations
+		EasyMock.expect(mockContext.getCompiledXmlStyleSheet("urn:test"))
+				.andReturn(templates);
+
+		// prepare
+		EasyMock.replay(mockContext);
+
+		// operate
+		testedInstance.init(mockContext, null);
+		testedInstance.writeDocumentVisualization(document, "en", null, null,
+				new DocumentVisualizationOutput() {
+
+					public OutputStream getOutputStream(
+							String browserContentType) {
+						contentType.append(browserContentType);
+						return outputStream;
+					}
+				});
+
+		// verify
+		EasyMock.verify(mockContext);
+		assertEquals("text/html", contentType.toString());
+		String html = new String(outputStream.toByteArray());
+		LOG.debug("HTML: " + html);
+		assertTrue(html.contains("<body>hello world</body>"));
+	}
+
+	@Test
+	public void testVisualizeDocumentWithoutNamespace() throws Exception {
+		// setup
+		XMLDSSDocumentService testedInstance = new XMLDSSDocumentService();
+		byte[] document = "<test>hello world</test>".getBytes();
+
+		// operate
+		testedInstance.init(null, null);
+		DocumentVisualization documentVisualization = testedInstance
+				.visualizeDocument(document, null, null, null);
+
+		// verify
+		assertEquals("text/xml", documentVisualization.getBrowserContentType());
+		assertArrayEquals(document, documentVisualization.getBrowserData());
+	}
+
 	@Test
 	public void testVerifySignedDocument() throws Exception {
 		// setup
@@ -18,50 +18,73 @@
 
 package be.fedict.eid.dss.entity;
 
+import java.io.InputStream;
 import java.io.Serializable;
+import java.sql.Blob;
 import java.util.Date;
 import java.util.List;
 
+import javax.persistence.Basic;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EntityManager;
+import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.Lob;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.Query;
 import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.annotations.Index;
 
 @Entity
 @Table(name = Constants.DATABASE_TABLE_PREFIX + "documents")
 @NamedQueries({
 		@NamedQuery(name = DocumentEntity.ALL, query = "FROM DocumentEntity"),
-		@NamedQuery(name = DocumentEntity.REMOVE_EXPIRED, query = "DELETE "
-				+ "FROM DocumentEntity AS d WHERE :now > d.expiration") })
+		@NamedQuery(name = DocumentEntity.DATA_DIGESTS, query = "SELECT DISTINCT d.dataDigest "
+				+ "FROM DocumentEntity AS d WHERE d.dataDigest LIKE :prefix"),
+		@NamedQuery(name = DocumentEntity.EXPIRED, query = "SELECT d.id, d.dataSize "
+				+ "FROM DocumentEntity AS d WHERE :now > d.expiration"),
+		@NamedQuery(name = DocumentEntity.REMOVE, query = "DELETE "
+				+ "FROM DocumentEntity AS d WHERE d.id IN (:ids)") })
 public class DocumentEntity implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
 	public static final String ALL = "dss.doc.all";
-	public static final String REMOVE_EXPIRED = "dss.doc.rem.expired";
+	public static final String EXPIRED = "dss.doc.expired";
+	public static final String REMOVE = "dss.doc.rem";
+	public static final String DATA_DIGESTS = "dss.doc.digests";
 
 	private String id;
 
 	private String contentType;
 
-	private byte[] data;
+	private Blob data;
+
+	private long dataSize;
+
+	private String dataDigest;
 
 	private Date expiration;
 
+	private int version;
+
 	public DocumentEntity() {
 		super();
 	}
 
-	public DocumentEntity(String id, String contentType, byte[] data,
-			Date expiration) {
+	public DocumentEntity(String id, String contentType, Blob data,
+			long dataSize, Date expiration) {
 
 		this.id = id;
 		this.contentType = contentType;
 		this.data = data;
+		this.dataSize = dataSize;
 		this.expiration = expiration;
 	}
 
@@ -82,15 +105,47 @@ public class DocumentEntity implements Serializable {
 		this.contentType = contentType;
 	}
 
-	@Column(length = 100 * 1024, nullable = false)
-	public byte[] getData() {
+	/**
+	 * The document data is mapped as a lazy loaded BLOB, so it never ends up
+	 * on the heap unless explicitly streamed via {@link Blob#getBinaryStream()}
+	 * within the active transaction. Documents kept outside of the database
+	 * have no data here, but a {@link #getDataDigest()} instead.
+	 * <p/>
+	 * On PostgreSQL the BLOB is a large object that outlives the document row,
+	 * see eid-dss-ddl-postgresql-lo.sql for the trigger that removes it.
+	 */
+	@Lob
+	@Basic(fetch = FetchType.LAZY)
+	public Blob getData() {
 		return data;
 	}
 
-	public void setData(byte[] data) {
+	public void setData(Blob data) {
 		this.data = data;
 	}
 
+	public long getDataSize() {
+		return dataSize;
+	}
+
+	public void setDataSize(long dataSize) {
+		this.dataSize = dataSize;
+	}
+
+	/**
+	 * Hex encoded SHA-256 digest of the document data when the data is kept
+	 * in an external content-addressed store.
+	 */
+	@Column(length = 64)
+	public String getDataDigest() {
+		return dataDigest;
+	}
+
+	public void setDataDigest(String dataDigest) {
+		this.dataDigest = dataDigest;
+	}
+
+	@Index(name = Constants.DATABASE_TABLE_PREFIX + "doc_expiration_idx")
 	public Date getExpiration() {
 		return expiration;
 	}
@@ -99,16 +154,61 @@ public class DocumentEntity implements Serializable {
 		this.expiration = expiration;
 	}
 
+	/**
+	 * Incremented on each update of the document data. Allows for validating
+	 * node-local cached copies of the document data.
+	 */
+	@Version
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
 	@SuppressWarnings("unchecked")
 	public static List<DocumentEntity> getAll(EntityManager entityManager) {
 		Query query = entityManager.createNamedQuery(ALL);
 		return query.getResultList();
 	}
 
-	public static int removeExpired(EntityManager entityManager) {
-		Date now = new Date();
-		Query query = entityManager.createNamedQuery(REMOVE_EXPIRED)
-				.setParameter("now", now);
+	/**
+	 * Creates a BLOB that streams its content from the given input stream
+	 * when the owning entity gets flushed.
+	 */
+	public static Blob createBlob(EntityManager entityManager,
+			InputStream inputStream, long length) {
+		Session session = (Session) entityManager.getDelegate();
+		return Hibernate.getLobCreator(session).createBlob(inputStream, length);
+	}
+
+	/**
+	 * @return the distinct data digests, starting with the given prefix, that
+	 *         documents refer to.
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<String> getDataDigests(EntityManager entityManager,
+			String prefix) {
+		Query query = entityManager.createNamedQuery(DATA_DIGESTS)
+				.setParameter("prefix", prefix + "%");
+		return query.getResultList();
+	}
+
+	/**
+	 * Gives back the id and data size of at most maxResults expired documents.
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<Object[]> getExpired(EntityManager entityManager,
+			Date now, int maxResults) {
+		Query query = entityManager.createNamedQuery(EXPIRED)
+				.setParameter("now", now).setMaxResults(maxResults);
+		return query.getResultList();
+	}
+
+	public static int remove(EntityManager entityManager, List<String> ids) {
+		Query query = entityManager.createNamedQuery(REMOVE).setParameter(
+				"ids", ids);
 		return query.executeUpdate();
 	}
 }
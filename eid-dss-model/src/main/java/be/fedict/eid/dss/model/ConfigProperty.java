@@ -36,9 +36,23 @@ public enum ConfigProperty {
 			"http-proxy-host", String.class), HTTP_PROXY_PORT(
 			"http-proxy-port", Integer.class),
 
+	/**
+	 * Several XKMS2 locations can be given, separated by white space or
+	 * commas. Same for the TSP URL.
+	 */
 	XKMS_URL("xkms-url", String.class,
 			"https://www.e-contract.be/eid-trust-service-ws/xkms2"),
 
+	/**
+	 * An eID Trust Service or TSP endpoint is skipped for the open duration
+	 * (in seconds) after the given number of consecutive failures. Calls
+	 * taking longer than the deadline (in seconds) count as failures.
+	 */
+	CIRCUIT_BREAKER_FAILURE_THRESHOLD("circuit-breaker-failure-threshold",
+			Integer.class, 5), CIRCUIT_BREAKER_OPEN_DURATION(
+			"circuit-breaker-open-duration", Integer.class, 30), SERVICE_CALL_DEADLINE(
+			"service-call-deadline", Integer.class, 10),
+
 	ACTIVE_IDENTITY("active-identity", String.class), KEY_STORE_TYPE(
 			"key-store-type", KeyStoreType.class), KEY_STORE_PATH(
 			"key-store-path", String.class), KEY_STORE_SECRET(
@@ -51,11 +65,59 @@ public enum ConfigProperty {
 			"identity-trust-domain", String.class, "BE-NAT-REG"), TSA_TRUST_DOMAIN(
 			"tsa-trust-domain", String.class, "BE-TSA"),
 
+	/**
+	 * Cached trust validations expire after the time to live (in minutes).
+	 * Failed validations are cached for the (shorter) negative time to live.
+	 */
+	TRUST_CACHE_SIZE("trust-cache-size", Integer.class, 1000), TRUST_CACHE_TTL(
+			"trust-cache-ttl", Integer.class, 5), TRUST_CACHE_NEGATIVE_TTL(
+			"trust-cache-negative-ttl", Integer.class, 1),
+
+	/**
+	 * Deadline (in seconds) for all trust validations of one signature.
+	 */
+	TRUST_VALIDATION_TIMEOUT("trust-validation-timeout", Integer.class, 60),
+
+	/**
+	 * Directory with one sub-directory of trust anchor certificates per trust
+	 * domain. Enables local validation using the revocation data embedded in
+	 * the signatures.
+	 */
+	TRUST_ANCHORS_PATH("trust-anchors-path", String.class),
+
 	SIGNATURE_DIGEST_ALGO("signature-digest-algo", DigestAlgo.class,
-			DigestAlgo.SHA512),
+			DigestAlgo.SHA512), VERIFY_BATCH_PARALLELISM(
+			"verify-batch-parallelism", Integer.class, 4),
+
+	/**
+	 * Maximum number of documents within a single verification request.
+	 */
+	VERIFY_BATCH_MAX_SIZE("verify-batch-max-size", Integer.class, 20),
+
+	/**
+	 * The time to live (in minutes) of cached verification results should
+	 * stay well below the revocation data freshness of the trust service, as
+	 * a revoked signer will only be noticed once the cached result expires.
+	 */
+	VERIFICATION_CACHE_SIZE("verification-cache-size", Integer.class, 1000), VERIFICATION_CACHE_TTL(
+			"verification-cache-ttl", Integer.class, 5),
+
+	/**
+	 * Revocation data without next update is reused for at most the maximum
+	 * age (in seconds). Keep it below the OCSP freshness interval of the
+	 * trust service, else the created signatures no longer validate.
+	 */
+	REVOCATION_CACHE_SIZE("revocation-cache-size", Integer.class, 1000), REVOCATION_CACHE_MAX_AGE(
+			"revocation-cache-max-age", Integer.class, 120),
 
 	DOCUMENT_STORAGE_EXPIRATION("document-storage-expiration", Integer.class, 5), DOCUMENT_CLEANUP_TASK_SCHEDULE(
-			"document-cleanup-task-schedule", String.class, "0 0/15 * * * *"),
+			"document-cleanup-task-schedule", String.class, "0 0/15 * * * *"), DOCUMENT_CLEANUP_BATCH_SIZE(
+			"document-cleanup-batch-size", Integer.class, 100), DOCUMENT_CLEANUP_BATCH_DELAY(
+			"document-cleanup-batch-delay", Long.class, 100L), DOCUMENT_STORE_TYPE(
+			"document-store-type", DocumentStoreType.class,
+			DocumentStoreType.DATABASE), DOCUMENT_STORE_PATH(
+			"document-store-path", String.class), DOCUMENT_CACHE_SIZE(
+			"document-cache-size", Integer.class, 64),
 
 	/**
 	 * We take a default value of 5 minutes. This required because of delay
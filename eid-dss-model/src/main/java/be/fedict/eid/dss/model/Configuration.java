@@ -38,4 +38,19 @@ public interface Configuration {
 	void removeValue(ConfigProperty configProperty);
 
 	List<String> getIndexes(ConfigProperty configProperty);
+
+	/**
+	 * @return the configuration version. It increases on every configuration
+	 *         change, so it can be used to invalidate data derived from the
+	 *         configuration.
+	 */
+	long getVersion();
+
+	/**
+	 * Announces a change of configuration data kept outside of the
+	 * configuration properties, like the XML schemas and XSLT style sheets, to
+	 * the other cluster nodes. Within a transaction the announcement only goes
+	 * out on commit.
+	 */
+	void announceChange();
 }
@@ -0,0 +1,84 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model;
+
+import java.io.Serializable;
+
+/**
+ * Report of a document cleanup run.
+ */
+public class DocumentCleanupResult implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private int removals;
+
+	private long freedBytes;
+
+	private long duration;
+
+	public DocumentCleanupResult() {
+		super();
+	}
+
+	public DocumentCleanupResult(int removals, long freedBytes) {
+		this.removals = removals;
+		this.freedBytes = freedBytes;
+	}
+
+	/**
+	 * Adds the removals and freed bytes of the given (batch) result to this
+	 * result.
+	 */
+	public void add(DocumentCleanupResult result) {
+		this.removals += result.getRemovals();
+		this.freedBytes += result.getFreedBytes();
+	}
+
+	/**
+	 * @return the number of removed documents.
+	 */
+	public int getRemovals() {
+		return this.removals;
+	}
+
+	/**
+	 * @return the total data size of the removed documents.
+	 */
+	public long getFreedBytes() {
+		return this.freedBytes;
+	}
+
+	/**
+	 * @return the duration of the cleanup run in milliseconds.
+	 */
+	public long getDuration() {
+		return this.duration;
+	}
+
+	public void setDuration(long duration) {
+		this.duration = duration;
+	}
+
+	@Override
+	public String toString() {
+		return "removals=" + this.removals + ", freed bytes="
+				+ this.freedBytes + ", duration=" + this.duration + " ms";
+	}
+}
@@ -18,7 +18,11 @@
 
 package be.fedict.eid.dss.model;
 
+import java.io.File;
+import java.io.IOException;
 import java.security.cert.X509Certificate;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.servlet.http.HttpSession;
 
@@ -28,7 +32,11 @@ import org.apache.commons.logging.LogFactory;
 import be.fedict.eid.dss.spi.SignatureStatus;
 
 /**
- * A document repository based on HTTP session storage.
+ * A document repository based on HTTP session storage. The HTTP session only
+ * holds {@link SessionDocument} handles to the document data, larger documents
+ * are spilled to temporary files. These temporary files are local to the node
+ * that created them, so replicated HTTP sessions require sticky sessions for
+ * documents above {@link SessionDocument#MEMORY_THRESHOLD}.
  * 
  * @author Frank Cornelis
  */
@@ -66,6 +74,8 @@ public class DocumentRepository {
 	public static final String EMAIL_SESSION_ATTRIBUTE = DocumentRepository.class
 			.getName() + ".email";
 
+	public static final String TMP_FILE_SET_SESSION_ATTRIBUTE = "eid-dss-temp-file-set";
+
 	public final HttpSession httpSession;
 
 	public DocumentRepository(HttpSession httpSession) {
@@ -73,6 +83,8 @@ public class DocumentRepository {
 	}
 
 	public void reset() {
+		removeSessionDocument(DOCUMENT_SESSION_ATTRIBUTE);
+		removeSessionDocument(SIGNED_DOCUMENT_SESSION_ATTRIBUTE);
 		this.httpSession.removeAttribute(DOCUMENT_SESSION_ATTRIBUTE);
 		this.httpSession
 				.removeAttribute(DOCUMENT_CONTENT_TYPE_SESSION_ATTRIBUTE);
@@ -87,11 +99,15 @@ public class DocumentRepository {
 	}
 
 	public void setDocument(byte[] document) {
-		this.httpSession.setAttribute(DOCUMENT_SESSION_ATTRIBUTE, document);
+		setSessionDocument(DOCUMENT_SESSION_ATTRIBUTE, document);
 	}
 
 	public byte[] getDocument() {
-		return (byte[]) this.httpSession
+		return getData(getSessionDocument());
+	}
+
+	public SessionDocument getSessionDocument() {
+		return (SessionDocument) this.httpSession
 				.getAttribute(DOCUMENT_SESSION_ATTRIBUTE);
 	}
 
@@ -117,12 +133,19 @@ public class DocumentRepository {
 	}
 
 	public void setSignedDocument(byte[] signedDocument) {
-		this.httpSession.setAttribute(SIGNED_DOCUMENT_SESSION_ATTRIBUTE,
-				signedDocument);
+		setSessionDocument(SIGNED_DOCUMENT_SESSION_ATTRIBUTE, signedDocument);
+	}
+
+	public void setSignedDocument(SessionDocument signedDocument) {
+		setSessionDocument(SIGNED_DOCUMENT_SESSION_ATTRIBUTE, signedDocument);
 	}
 
 	public byte[] getSignedDocument() {
-		return (byte[]) this.httpSession
+		return getData(getSignedSessionDocument());
+	}
+
+	public SessionDocument getSignedSessionDocument() {
+		return (SessionDocument) this.httpSession
 				.getAttribute(SIGNED_DOCUMENT_SESSION_ATTRIBUTE);
 	}
 
@@ -179,4 +202,70 @@ public class DocumentRepository {
 	public String getEmail() {
 		return (String) this.httpSession.getAttribute(EMAIL_SESSION_ATTRIBUTE);
 	}
+
+	/**
+	 * Registers the given temporary file for removal when the HTTP session
+	 * gets destroyed.
+	 */
+	@SuppressWarnings("unchecked")
+	public void deleteWhenSessionDestroyed(File tmpFile) {
+		Set<String> tmpFileSet = (Set<String>) this.httpSession
+				.getAttribute(TMP_FILE_SET_SESSION_ATTRIBUTE);
+		if (null == tmpFileSet) {
+			tmpFileSet = new HashSet<String>();
+			this.httpSession.setAttribute(TMP_FILE_SET_SESSION_ATTRIBUTE,
+					tmpFileSet);
+		}
+		tmpFileSet.add(tmpFile.getAbsolutePath());
+	}
+
+	private void setSessionDocument(String attributeName, byte[] data) {
+		if (null == data) {
+			setSessionDocument(attributeName, (SessionDocument) null);
+			return;
+		}
+		SessionDocument sessionDocument;
+		try {
+			sessionDocument = SessionDocument.create(data);
+		} catch (IOException e) {
+			throw new RuntimeException("could not store session document: "
+					+ e.getMessage(), e);
+		}
+		setSessionDocument(attributeName, sessionDocument);
+	}
+
+	private void setSessionDocument(String attributeName,
+			SessionDocument sessionDocument) {
+		removeSessionDocument(attributeName);
+		if (null == sessionDocument) {
+			this.httpSession.removeAttribute(attributeName);
+			return;
+		}
+		File file = sessionDocument.getFile();
+		if (null != file) {
+			LOG.debug("session document spilled to: " + file);
+			deleteWhenSessionDestroyed(file);
+		}
+		this.httpSession.setAttribute(attributeName, sessionDocument);
+	}
+
+	private void removeSessionDocument(String attributeName) {
+		SessionDocument sessionDocument = (SessionDocument) this.httpSession
+				.getAttribute(attributeName);
+		if (null != sessionDocument) {
+			sessionDocument.delete();
+		}
+	}
+
+	private byte[] getData(SessionDocument sessionDocument) {
+		if (null == sessionDocument) {
+			return null;
+		}
+		try {
+			return sessionDocument.getData();
+		} catch (IOException e) {
+			throw new RuntimeException("could not read session document: "
+					+ e.getMessage(), e);
+		}
+	}
 }
@@ -18,6 +18,11 @@
 
 package be.fedict.eid.dss.model;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+
+import javax.activation.DataSource;
 import javax.ejb.Local;
 import javax.ejb.Timer;
 
@@ -50,6 +55,27 @@ public interface DocumentService {
 	DateTime store(String documentId, byte[] data, String contentType);
 
 	/**
+	 * Store specified document, streaming its data into storage.
+	 * 
+	 * @param documentId
+	 *            id of the stored document entry
+	 * @param documentInputStream
+	 *            document data
+	 * @param size
+	 *            the size in bytes of the document data, or <code>-1</code>
+	 *            if not known upfront
+	 * @param contentType
+	 *            content type of the document
+	 * @return the expiration date of the stored document
+	 */
+	DateTime store(String documentId, InputStream documentInputStream,
+			long size, String contentType);
+
+	/**
+	 * The data of the returned document is lazily loaded and not accessible
+	 * anymore outside of the transaction. Use
+	 * {@link #find(String, OutputStream)} to get hold of the document data.
+	 * 
 	 * @param documentId
 	 *            id of the document to find.
 	 * @return the document with specified document ID. If not existing or
@@ -58,14 +84,43 @@ public interface DocumentService {
 	DocumentEntity find(String documentId);
 
 	/**
-	 * Finds and removes the document from storae if found.
+	 * Finds the document and streams its data to the given output stream.
 	 * 
 	 * @param documentId
 	 *            id of the document to find.
+	 * @param outputStream
+	 *            the output stream to which the document data is written.
 	 * @return the document with specified document ID. If not existing or
 	 *         expired returns <code>null</code>
 	 */
-	DocumentEntity retrieve(String documentId);
+	DocumentEntity find(String documentId, OutputStream outputStream);
+
+	/**
+	 * Finds and removes the document from storage if found. The document data
+	 * is streamed to the given output stream before removal.
+	 * 
+	 * @param documentId
+	 *            id of the document to find.
+	 * @param outputStream
+	 *            the output stream to which the document data is written.
+	 * @return the document with specified document ID. If not existing or
+	 *         expired returns <code>null</code>
+	 */
+	DocumentEntity retrieve(String documentId, OutputStream outputStream);
+
+	/**
+	 * Finds and removes the document from storage if found. Unlike
+	 * {@link #retrieve(String, OutputStream)}, the document data remains
+	 * readable via the returned data source after the transaction, so it can
+	 * be streamed out afterwards. Only documents kept in the database are
+	 * loaded into memory.
+	 * 
+	 * @param documentId
+	 *            id of the document to find.
+	 * @return the data source of the document, having the content type of the
+	 *         document. If not existing or expired returns <code>null</code>
+	 */
+	DataSource retrieve(String documentId);
 
 	/**
 	 * Update document entity with specified ID its data
@@ -81,6 +136,23 @@ public interface DocumentService {
 	DocumentEntity update(String documentId, byte[] data)
 			throws DocumentNotFoundException;
 
+	/**
+	 * Update document entity with specified ID its data, streaming the new
+	 * data into storage.
+	 * 
+	 * @param documentId
+	 *            if of document to update
+	 * @param documentInputStream
+	 *            data of document
+	 * @param size
+	 *            the size in bytes of the document data
+	 * @return the updated document entity
+	 * @throws DocumentNotFoundException
+	 *             the document was not found.
+	 */
+	DocumentEntity update(String documentId, InputStream documentInputStream,
+			long size) throws DocumentNotFoundException;
+
 	/**
 	 * Remove specified document if present.
 	 * 
@@ -116,10 +188,28 @@ public interface DocumentService {
 	void startTimer(String cronSchedule) throws InvalidCronExpressionException;
 
 	/**
-	 * Cleanup all expired temporary documents.
+	 * Cleanup all expired temporary documents. The documents are removed in
+	 * batches, each within its own short transaction.
+	 * 
+	 * @return the cleanup report.
+	 */
+	DocumentCleanupResult cleanup();
+
+	/**
+	 * Removes one batch of expired temporary documents within a new
+	 * transaction.
 	 * 
-	 * @return the # of removals.
+	 * @param now
+	 *            documents expired before this date are removed.
+	 * @param batchSize
+	 *            the maximum number of documents to remove.
+	 * @return the cleanup report of this batch.
+	 */
+	DocumentCleanupResult cleanupBatch(Date now, int batchSize);
+
+	/**
+	 * @return a human readable summary of the document cache statistics.
 	 */
-	int cleanup();
+	String getDocumentCacheStatistics();
 
 }
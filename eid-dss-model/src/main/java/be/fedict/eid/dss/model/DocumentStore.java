@@ -0,0 +1,64 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import be.fedict.eid.dss.entity.DocumentEntity;
+
+/**
+ * Storage backend for the data of the temporarily stored DSS documents. The
+ * document meta-data (content type, expiration) always lives in the
+ * {@link DocumentEntity}, the document store only manages the document data.
+ */
+public interface DocumentStore {
+
+	/**
+	 * Stores the given document data for the given document, replacing
+	 * existing data if any.
+	 * 
+	 * @param document
+	 *            the document entity.
+	 * @param dataInputStream
+	 *            the document data.
+	 * @param size
+	 *            the size in bytes of the document data, or <code>-1</code>
+	 *            if not known upfront and supported by the document store.
+	 */
+	void store(DocumentEntity document, InputStream dataInputStream, long size);
+
+	/**
+	 * Streams the data of the given document to the given output stream.
+	 * 
+	 * @param document
+	 *            the document entity.
+	 * @param outputStream
+	 *            the output stream to which the document data is written.
+	 */
+	void write(DocumentEntity document, OutputStream outputStream);
+
+	/**
+	 * Removes the data of the given document.
+	 * 
+	 * @param document
+	 *            the document entity.
+	 */
+	void remove(DocumentEntity document);
+}
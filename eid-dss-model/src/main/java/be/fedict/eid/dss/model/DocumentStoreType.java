@@ -0,0 +1,42 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model;
+
+/**
+ * Enumeration of the available document data stores.
+ */
+public enum DocumentStoreType {
+
+	DATABASE("Database"), FILESYSTEM("File system");
+
+	private final String description;
+
+	/**
+	 * @param description
+	 *            human readable description of the document store type.
+	 */
+	private DocumentStoreType(String description) {
+		this.description = description;
+	}
+
+	@Override
+	public String toString() {
+		return this.description;
+	}
+}
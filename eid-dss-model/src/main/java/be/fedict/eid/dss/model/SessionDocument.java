@@ -0,0 +1,231 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Small HTTP session handle to document data. Documents below
+ * {@link #MEMORY_THRESHOLD} bytes are kept in memory, larger documents are
+ * spilled to a temporary file so they don't end up in the HTTP session
+ * itself.
+ * <p/>
+ * A spill file only exists on the node that created it. After a failover of
+ * a replicated HTTP session, the handle of a spilled document can no longer
+ * be read.
+ */
+public class SessionDocument implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int MEMORY_THRESHOLD = 64 * 1024;
+
+	private final byte[] data;
+
+	private final String filename;
+
+	private final long size;
+
+	private final String digest;
+
+	private SessionDocument(byte[] data, String filename, long size,
+			String digest) {
+		this.data = data;
+		this.filename = filename;
+		this.size = size;
+		this.digest = digest;
+	}
+
+	/**
+	 * Creates a session document for the given data.
+	 */
+	public static SessionDocument create(byte[] data) throws IOException {
+		if (data.length < MEMORY_THRESHOLD) {
+			return new SessionDocument(data, null, data.length, null);
+		}
+		File tmpFile = createTempFile();
+		FileUtils.writeByteArrayToFile(tmpFile, data);
+		return new SessionDocument(null, tmpFile.getAbsolutePath(),
+				data.length, null);
+	}
+
+	/**
+	 * Creates a session document out of the given input stream. The input
+	 * stream is only buffered in memory up to {@link #MEMORY_THRESHOLD} bytes.
+	 */
+	public static SessionDocument create(InputStream inputStream)
+			throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		long count = IOUtils.copyLarge(new BoundedInputStream(inputStream,
+				MEMORY_THRESHOLD), buffer);
+		if (count < MEMORY_THRESHOLD) {
+			return new SessionDocument(buffer.toByteArray(), null, count, null);
+		}
+		File tmpFile = createTempFile();
+		OutputStream fileOutputStream = new FileOutputStream(tmpFile);
+		try {
+			buffer.writeTo(fileOutputStream);
+			count += IOUtils.copyLarge(inputStream, fileOutputStream);
+		} finally {
+			fileOutputStream.close();
+		}
+		return new SessionDocument(null, tmpFile.getAbsolutePath(), count,
+				null);
+	}
+
+	/**
+	 * Creates a session document referring to an existing temporary file. The
+	 * file becomes owned by the session document.
+	 */
+	public static SessionDocument create(File tmpFile) {
+		return create(tmpFile, null);
+	}
+
+	/**
+	 * Creates a session document referring to an existing temporary file of
+	 * which the content digest is already known.
+	 */
+	public static SessionDocument create(File tmpFile, String digest) {
+		return new SessionDocument(null, tmpFile.getAbsolutePath(),
+				tmpFile.length(), digest);
+	}
+
+	/**
+	 * Creates an in-memory session document of which the content digest is
+	 * already known.
+	 */
+	public static SessionDocument create(byte[] data, String digest) {
+		return new SessionDocument(data, null, data.length, digest);
+	}
+
+	public static File createTempFile() throws IOException {
+		return File.createTempFile("eid-dss-session-", ".tmp");
+	}
+
+	/**
+	 * @return the spill file, or <code>null</code> if the document is kept in
+	 *         memory.
+	 */
+	public File getFile() {
+		if (null == this.filename) {
+			return null;
+		}
+		return new File(this.filename);
+	}
+
+	public long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return the hex encoded SHA-256 digest of the document data, or
+	 *         <code>null</code> if it was not computed while writing.
+	 */
+	public String getDigest() {
+		return this.digest;
+	}
+
+	public InputStream getInputStream() throws IOException {
+		if (null != this.data) {
+			return new ByteArrayInputStream(this.data);
+		}
+		return new FileInputStream(getSpillFile());
+	}
+
+	/**
+	 * Materializes the document data. Use {@link #getInputStream()} whenever
+	 * possible.
+	 */
+	public byte[] getData() throws IOException {
+		if (null != this.data) {
+			return this.data;
+		}
+		return FileUtils.readFileToByteArray(getSpillFile());
+	}
+
+	private File getSpillFile() throws IOException {
+		File file = new File(this.filename);
+		if (!file.exists()) {
+			throw new IOException("session document spill file not "
+					+ "available on this node: " + this.filename);
+		}
+		return file;
+	}
+
+	/**
+	 * Removes the spill file, if any.
+	 */
+	public void delete() {
+		if (null != this.filename) {
+			new File(this.filename).delete();
+		}
+	}
+
+	/**
+	 * Input stream that stops reading after a given number of bytes, without
+	 * closing the underlying input stream.
+	 */
+	private static class BoundedInputStream extends InputStream {
+
+		private final InputStream inputStream;
+
+		private long remaining;
+
+		public BoundedInputStream(InputStream inputStream, long limit) {
+			this.inputStream = inputStream;
+			this.remaining = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (this.remaining <= 0) {
+				return -1;
+			}
+			int result = this.inputStream.read();
+			if (-1 != result) {
+				this.remaining--;
+			}
+			return result;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (this.remaining <= 0) {
+				return -1;
+			}
+			int result = this.inputStream.read(b, off,
+					(int) Math.min(len, this.remaining));
+			if (-1 != result) {
+				this.remaining -= result;
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.activation.DataSource;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A single document of a batch signature verification. The document data
+ * can be given as a data source, so it only gets materialized once the
+ * document is about to be verified.
+ */
+public class SignatureVerificationRequest {
+
+	private final byte[] data;
+
+	private final DataSource dataSource;
+
+	private final String mimeType;
+
+	private final byte[] originalData;
+
+	public SignatureVerificationRequest(byte[] data, String mimeType,
+			byte[] originalData) {
+		this.data = data;
+		this.dataSource = null;
+		this.mimeType = mimeType;
+		this.originalData = originalData;
+	}
+
+	public SignatureVerificationRequest(DataSource dataSource,
+			String mimeType, byte[] originalData) {
+		this.data = null;
+		this.dataSource = dataSource;
+		this.mimeType = mimeType;
+		this.originalData = originalData;
+	}
+
+	/**
+	 * Reads the document data from the data source, if any, on every call.
+	 */
+	public byte[] getData() {
+		if (null == this.dataSource) {
+			return this.data;
+		}
+		try {
+			InputStream inputStream = this.dataSource.getInputStream();
+			try {
+				return IOUtils.toByteArray(inputStream);
+			} finally {
+				inputStream.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("could not read document: "
+					+ e.getMessage(), e);
+		}
+	}
+
+	public String getMimeType() {
+		return this.mimeType;
+	}
+
+	public byte[] getOriginalData() {
+		return this.originalData;
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model;
+
+import java.util.List;
+
+import be.fedict.eid.dss.model.exception.DocumentFormatException;
+import be.fedict.eid.dss.model.exception.InvalidSignatureException;
+import be.fedict.eid.dss.spi.SignatureInfo;
+
+/**
+ * Verification outcome of a single document of a batch signature
+ * verification. Either holds the signing parties, or the reason why the
+ * document could not be verified.
+ */
+public class SignatureVerificationResult {
+
+	private final List<SignatureInfo> signatureInfos;
+
+	private final Exception exception;
+
+	public SignatureVerificationResult(List<SignatureInfo> signatureInfos) {
+		this.signatureInfos = signatureInfos;
+		this.exception = null;
+	}
+
+	public SignatureVerificationResult(Exception exception) {
+		this.signatureInfos = null;
+		this.exception = exception;
+	}
+
+	/**
+	 * @return the list of all signing parties, or <code>null</code> in case
+	 *         the document could not be verified.
+	 */
+	public List<SignatureInfo> getSignatureInfos() {
+		return this.signatureInfos;
+	}
+
+	/**
+	 * @return the {@link DocumentFormatException} or
+	 *         {@link InvalidSignatureException} raised while verifying the
+	 *         document, or <code>null</code>.
+	 */
+	public Exception getException() {
+		return this.exception;
+	}
+
+	public boolean isDocumentFormatError() {
+		return this.exception instanceof DocumentFormatException;
+	}
+}
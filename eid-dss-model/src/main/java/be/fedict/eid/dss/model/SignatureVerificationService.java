@@ -19,6 +19,7 @@
 package be.fedict.eid.dss.model;
 
 import java.util.List;
+import java.util.concurrent.Future;
 
 import javax.ejb.Local;
 
@@ -51,4 +52,36 @@ public interface SignatureVerificationService {
 	 */
 	List<SignatureInfo> verify(byte[] data, String mimeType, byte[] originalData)
 			throws DocumentFormatException, InvalidSignatureException;
+
+	/**
+	 * Asynchronous variant of {@link #verify(byte[], String, byte[])}. Any
+	 * {@link DocumentFormatException} or {@link InvalidSignatureException} is
+	 * reported as cause of the {@link java.util.concurrent.ExecutionException}
+	 * of the returned future.
+	 * 
+	 * @param data
+	 *            the given data.
+	 * @param mimeType
+	 *            the mime type of the given data.
+	 * @param originalData
+	 *            the optional original data.
+	 * @return the future list of all signing parties.
+	 * @throws DocumentFormatException
+	 * @throws InvalidSignatureException
+	 */
+	Future<List<SignatureInfo>> verifyAsync(byte[] data, String mimeType,
+			byte[] originalData) throws DocumentFormatException,
+			InvalidSignatureException;
+
+	/**
+	 * Verifies the given documents concurrently. At most
+	 * {@link ConfigProperty#VERIFY_BATCH_PARALLELISM} documents are being
+	 * verified, and held in memory, at the same time.
+	 * 
+	 * @param requests
+	 *            the documents to verify.
+	 * @return the verification results, in the order of the given documents.
+	 */
+	List<SignatureVerificationResult> verify(
+			List<SignatureVerificationRequest> requests);
 }
@@ -27,6 +27,8 @@ import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import javax.ejb.Local;
 
@@ -34,7 +36,6 @@ import org.bouncycastle.cms.CMSException;
 import org.bouncycastle.ocsp.OCSPResp;
 import org.bouncycastle.tsp.TimeStampToken;
 
-import be.fedict.trust.client.XKMS2Client;
 import be.fedict.trust.client.exception.RevocationDataNotFoundException;
 import be.fedict.trust.client.exception.TrustDomainNotFoundException;
 import be.fedict.trust.client.exception.ValidationFailedException;
@@ -57,7 +58,72 @@ public interface TrustValidationService {
 			throws CertificateEncodingException, ValidationFailedException,
 			TrustDomainNotFoundException, RevocationDataNotFoundException;
 
-	XKMS2Client getXkms2Client();
+	/**
+	 * Runs the given trust validation asynchronously, on a dedicated bounded
+	 * thread pool. A saturated pool runs the trust validation on the calling
+	 * thread. Cancelling the returned future interrupts the trust validation.
+	 * 
+	 * @param trustValidation
+	 *            the trust validation, calling one of the
+	 *            <code>validate</code> methods.
+	 * @return the future outcome of the trust validation. Any validation error
+	 *         is reported as cause of the
+	 *         {@link java.util.concurrent.ExecutionException}.
+	 * @throws Exception
+	 */
+	Future<Void> validateAsync(Callable<Void> trustValidation)
+			throws Exception;
+
+	/**
+	 * Invokes the eID Trust Service via a pooled client. Like the trust
+	 * validations, the call is guarded by the circuit breakers of the XKMS2
+	 * locations, and fails over to the next available location if the trust
+	 * service cannot be reached.
+	 * 
+	 * @param invocation
+	 *            the trust service call.
+	 * @return the result of the call.
+	 * @throws Exception
+	 *             the checked exception of the call, or the runtime exception
+	 *             of the last XKMS2 location that failed.
+	 */
+	<T> T invokeXkms2(XKMS2Invocation<T> invocation) throws Exception;
+
+	/**
+	 * Rebuilds the trust service client pool if the XKMS2 location or the HTTP
+	 * proxy configuration changed.
+	 */
+	void resetXkms2ClientPool();
+
+	/**
+	 * @return a human readable summary of the trust service client pool
+	 *         connection and latency statistics.
+	 */
+	String getXkms2ClientPoolStatistics();
+
+	/**
+	 * Drops all cached trust validations if the trust domain or trust service
+	 * configuration changed.
+	 */
+	void resetTrustValidationCache();
+
+	/**
+	 * @return a human readable summary of the trust validation cache,
+	 *         in-flight validation coalescing, TSA certificate chain cache,
+	 *         revocation data cache and parsed CRL cache statistics.
+	 */
+	String getTrustValidationCacheStatistics();
+
+	/**
+	 * Reloads the trust anchors used for local trust validation.
+	 */
+	void reloadTrustAnchors();
+
+	/**
+	 * @return a human readable summary of the local trust validation
+	 *         statistics.
+	 */
+	String getLocalTrustValidationStatistics();
 
 	/**
 	 * Performs a historical trust validation on the given timestamp token.
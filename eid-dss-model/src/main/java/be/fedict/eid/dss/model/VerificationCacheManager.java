@@ -0,0 +1,61 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model;
+
+import java.util.List;
+
+import javax.ejb.Local;
+
+import be.fedict.eid.dss.spi.SignatureInfo;
+
+/**
+ * Manager of the node-local signature verification result cache.
+ */
+@Local
+public interface VerificationCacheManager {
+
+	/**
+	 * @param key
+	 *            the cache key, covering the document, the original document,
+	 *            the content type and the verification configuration.
+	 * @return the cached verification result, or <code>null</code> if not
+	 *         cached or if caching is disabled.
+	 */
+	List<SignatureInfo> get(String key);
+
+	/**
+	 * Caches the given verification result. Does nothing if caching is
+	 * disabled.
+	 * 
+	 * @param key
+	 * @param signatureInfos
+	 */
+	void put(String key, List<SignatureInfo> signatureInfos);
+
+	/**
+	 * Drops all cached verification results and re-reads the cache
+	 * configuration.
+	 */
+	void reset();
+
+	/**
+	 * @return a human readable summary of the cache statistics.
+	 */
+	String getStatistics();
+}
@@ -0,0 +1,41 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model;
+
+import be.fedict.trust.client.XKMS2Client;
+
+/**
+ * One call to the eID Trust Service, see
+ * {@link TrustValidationService#invokeXkms2(XKMS2Invocation)}.
+ * 
+ * @param <T>
+ *            the result type of the call.
+ */
+public interface XKMS2Invocation<T> {
+
+	/**
+	 * @param xkms2Client
+	 *            the trust service client, only to be used during this call.
+	 * @throws Exception
+	 *             a runtime exception when the trust service could not be
+	 *             reached or gave an unexpected error, a checked exception
+	 *             for a negative validation outcome.
+	 */
+	T invoke(XKMS2Client xkms2Client) throws Exception;
+}
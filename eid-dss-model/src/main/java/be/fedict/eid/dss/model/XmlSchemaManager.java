@@ -22,6 +22,9 @@ import java.io.InputStream;
 import java.util.List;
 
 import javax.ejb.Local;
+import javax.xml.validation.Schema;
+
+import org.xml.sax.SAXException;
 
 import be.fedict.eid.dss.entity.XmlSchemaEntity;
 import be.fedict.eid.dss.model.exception.ExistingXmlSchemaException;
@@ -39,5 +42,12 @@ public interface XmlSchemaManager {
 
 	byte[] getXmlSchema(String namespace);
 
+	/**
+	 * @return the compiled XML schema for the given namespace, or
+	 *         <code>null</code> if there is none. Compiled XML schemas are kept
+	 *         in memory until the stored XML schemas change.
+	 */
+	Schema getCompiledXmlSchema(String namespace) throws SAXException;
+
 	List<String> getXmlSchemaNamespaces();
 }
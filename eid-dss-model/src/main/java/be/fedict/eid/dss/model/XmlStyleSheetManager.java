@@ -22,6 +22,8 @@ import java.io.InputStream;
 import java.util.List;
 
 import javax.ejb.Local;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
 
 import be.fedict.eid.dss.entity.XmlStyleSheetEntity;
 import be.fedict.eid.dss.model.exception.ExistingXmlStyleSheetException;
@@ -38,5 +40,13 @@ public interface XmlStyleSheetManager {
 
 	byte[] getXmlStyleSheet(String namespace);
 
+	/**
+	 * @return the compiled XML style sheet for the given namespace, or
+	 *         <code>null</code> if there is none. Compiled XML style sheets
+	 *         are kept in memory until the stored XML style sheets change.
+	 */
+	Templates getCompiledXmlStyleSheet(String namespace)
+			throws TransformerConfigurationException;
+
 	List<String> getXmlStyleSheetNamespaces();
 }
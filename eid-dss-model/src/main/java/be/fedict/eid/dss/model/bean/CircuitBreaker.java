@@ -0,0 +1,246 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import be.fedict.eid.dss.spi.utils.Clock;
+
+/**
+ * Circuit breaker guarding one remote endpoint, like an eID Trust Service or
+ * a TSP service. After a number of consecutive failed calls the breaker
+ * opens, and the endpoint is skipped for the open duration. After that, the
+ * breaker is half-open: a single probe call is let through. A successful
+ * probe closes the breaker, a failed one opens it again.
+ * <p>
+ * Calls taking longer than the call deadline count as failures as well, so a
+ * slow endpoint gets skipped before it stalls all container threads. Clients
+ * should use the call deadline as read timeout, as the breaker only learns
+ * about a call once it returns. The breaker also keeps a moving average of
+ * the call latency, used to prefer the fastest of several endpoints.
+ */
+public class CircuitBreaker {
+
+	/**
+	 * Weight of the last call in the moving average latency, in percent.
+	 */
+	private static final int LATENCY_WEIGHT = 20;
+
+	private final String endpoint;
+
+	private final Clock clock;
+
+	private volatile int failureThreshold;
+
+	private volatile long openDuration;
+
+	private volatile long callDeadline;
+
+	private int consecutiveFailures;
+
+	private long openUntil;
+
+	private long probeStarted;
+
+	private long averageLatency;
+
+	private long calls;
+
+	private long failures;
+
+	private long trips;
+
+	/**
+	 * @param endpoint
+	 *            the guarded endpoint, for logging purposes.
+	 * @param failureThreshold
+	 *            the number of consecutive failures opening the breaker.
+	 * @param openDuration
+	 *            how long the breaker stays open, in milliseconds.
+	 * @param callDeadline
+	 *            calls taking longer count as failures, in milliseconds.
+	 */
+	public CircuitBreaker(String endpoint, int failureThreshold,
+			long openDuration, long callDeadline) {
+		this(endpoint, failureThreshold, openDuration, callDeadline,
+				Clock.SYSTEM);
+	}
+
+	/**
+	 * @param endpoint
+	 *            the guarded endpoint, for logging purposes.
+	 * @param failureThreshold
+	 *            the number of consecutive failures opening the breaker.
+	 * @param openDuration
+	 *            how long the breaker stays open, in milliseconds.
+	 * @param callDeadline
+	 *            calls taking longer count as failures, in milliseconds.
+	 * @param clock
+	 *            gives the current time to time the open state and probes.
+	 */
+	public CircuitBreaker(String endpoint, int failureThreshold,
+			long openDuration, long callDeadline, Clock clock) {
+		this.endpoint = endpoint;
+		this.clock = clock;
+		configure(failureThreshold, openDuration, callDeadline);
+	}
+
+	/**
+	 * @param endpoints
+	 *            one or more endpoint URLs, separated by white space or
+	 *            commas.
+	 * @return the endpoint URLs, in configuration order.
+	 */
+	public static List<String> getEndpoints(String endpoints) {
+		List<String> endpointList = new LinkedList<String>();
+		if (null != endpoints) {
+			for (String endpoint : endpoints.trim().split("[\\s,]+")) {
+				if (!endpoint.isEmpty()) {
+					endpointList.add(endpoint);
+				}
+			}
+		}
+		return endpointList;
+	}
+
+	public void configure(int failureThreshold, long openDuration,
+			long callDeadline) {
+		this.failureThreshold = failureThreshold;
+		this.openDuration = openDuration;
+		this.callDeadline = callDeadline;
+	}
+
+	public String getEndpoint() {
+		return this.endpoint;
+	}
+
+	/**
+	 * @return the call deadline, in milliseconds.
+	 */
+	public long getCallDeadline() {
+		return this.callDeadline;
+	}
+
+	/**
+	 * @return <code>true</code> if the breaker is closed, or half-open without
+	 *         a probe call in progress.
+	 */
+	public synchronized boolean isAvailable() {
+		if (this.consecutiveFailures < this.failureThreshold) {
+			return true;
+		}
+		long now = this.clock.currentTimeMillis();
+		if (now < this.openUntil) {
+			return false;
+		}
+		// a probe not reported within the call deadline is given up
+		return 0 == this.probeStarted
+				|| now - this.probeStarted >= this.callDeadline;
+	}
+
+	/**
+	 * Asks permission for one call to the endpoint. When half-open, only the
+	 * first caller gets permission, until the outcome of its probe call is
+	 * recorded via {@link #recordCall(long, boolean)}.
+	 * 
+	 * @return <code>true</code> if the call may go ahead.
+	 */
+	public synchronized boolean acquire() {
+		if (!isAvailable()) {
+			return false;
+		}
+		if (this.consecutiveFailures >= this.failureThreshold) {
+			this.probeStarted = this.clock.currentTimeMillis();
+		}
+		return true;
+	}
+
+	/**
+	 * Records the outcome of one call to the endpoint.
+	 * 
+	 * @param latency
+	 *            the duration of the call, in milliseconds.
+	 * @param failure
+	 *            <code>true</code> if the endpoint could not be reached or
+	 *            gave an unexpected error.
+	 */
+	public synchronized void recordCall(long latency, boolean failure) {
+
+		this.probeStarted = 0;
+		this.calls++;
+		if (1 == this.calls) {
+			this.averageLatency = latency;
+		} else {
+			this.averageLatency += (latency - this.averageLatency)
+					* LATENCY_WEIGHT / 100;
+		}
+		if (!failure && latency <= this.callDeadline) {
+			this.consecutiveFailures = 0;
+			return;
+		}
+		this.failures++;
+		this.consecutiveFailures++;
+		if (this.consecutiveFailures >= this.failureThreshold) {
+			long now = this.clock.currentTimeMillis();
+			if (now >= this.openUntil) {
+				this.trips++;
+			}
+			this.openUntil = now + this.openDuration;
+		}
+	}
+
+	/**
+	 * @return the moving average latency of the calls, in milliseconds.
+	 */
+	public synchronized long getAverageLatency() {
+		return this.averageLatency;
+	}
+
+	public synchronized long getCalls() {
+		return this.calls;
+	}
+
+	public synchronized long getFailures() {
+		return this.failures;
+	}
+
+	/**
+	 * @return how many times the breaker opened.
+	 */
+	public synchronized long getTrips() {
+		return this.trips;
+	}
+
+	private String getState() {
+		if (this.consecutiveFailures < this.failureThreshold) {
+			return "closed";
+		}
+		return this.clock.currentTimeMillis() < this.openUntil ? "open"
+				: "half-open";
+	}
+
+	@Override
+	public synchronized String toString() {
+		return this.endpoint + ": " + getState()
+				+ ", calls=" + this.calls + ", failures=" + this.failures
+				+ ", trips=" + this.trips + ", average latency="
+				+ this.averageLatency + " ms";
+	}
+}
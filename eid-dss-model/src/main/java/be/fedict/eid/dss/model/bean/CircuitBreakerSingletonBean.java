@@ -0,0 +1,116 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.dss.model.ConfigProperty;
+import be.fedict.eid.dss.model.Configuration;
+
+/**
+ * EJB 3.1 singleton holding one circuit breaker per remote endpoint, so the
+ * health of the eID Trust Service and TSP endpoints is tracked across
+ * requests.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class CircuitBreakerSingletonBean {
+
+	private static final Log LOG = LogFactory
+			.getLog(CircuitBreakerSingletonBean.class);
+
+	@EJB
+	private Configuration configuration;
+
+	private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+	private volatile int failureThreshold;
+
+	private volatile long openDuration;
+
+	private volatile long callDeadline;
+
+	/**
+	 * Re-reads the circuit breaker configuration, and applies it to all
+	 * existing circuit breakers.
+	 */
+	@PostConstruct
+	public void reset() {
+
+		Integer failureThreshold = this.configuration.getValue(
+				ConfigProperty.CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+				Integer.class);
+		Integer openDuration = this.configuration.getValue(
+				ConfigProperty.CIRCUIT_BREAKER_OPEN_DURATION, Integer.class);
+		Integer callDeadline = this.configuration.getValue(
+				ConfigProperty.SERVICE_CALL_DEADLINE, Integer.class);
+		if (null == failureThreshold || failureThreshold <= 0) {
+			// never open
+			failureThreshold = Integer.MAX_VALUE;
+		}
+		if (null == openDuration || openDuration < 0) {
+			openDuration = 0;
+		}
+		if (null == callDeadline || callDeadline <= 0) {
+			callDeadline = Integer.MAX_VALUE / 1000;
+		}
+		LOG.debug("circuit breaker failure threshold: " + failureThreshold
+				+ ", open duration: " + openDuration
+				+ " seconds, call deadline: " + callDeadline + " seconds");
+		this.failureThreshold = failureThreshold;
+		this.openDuration = openDuration * 1000L;
+		this.callDeadline = callDeadline * 1000L;
+		for (CircuitBreaker circuitBreaker : this.circuitBreakers.values()) {
+			circuitBreaker.configure(this.failureThreshold,
+					this.openDuration, this.callDeadline);
+		}
+	}
+
+	/**
+	 * @return the circuit breaker of the given endpoint, created on first use.
+	 */
+	public CircuitBreaker getCircuitBreaker(String endpoint) {
+
+		endpoint = String.valueOf(endpoint);
+		CircuitBreaker circuitBreaker = this.circuitBreakers.get(endpoint);
+		if (null != circuitBreaker) {
+			return circuitBreaker;
+		}
+		circuitBreaker = new CircuitBreaker(endpoint, this.failureThreshold,
+				this.openDuration, this.callDeadline);
+		CircuitBreaker existingCircuitBreaker = this.circuitBreakers
+				.putIfAbsent(endpoint, circuitBreaker);
+		if (null != existingCircuitBreaker) {
+			return existingCircuitBreaker;
+		}
+		return circuitBreaker;
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import be.fedict.eid.dss.spi.utils.BoundedCache;
+
+/**
+ * Node-local, entry count bounded registry of compiled XML artifacts (XML
+ * schemas, XSLT style sheets), keyed by namespace. Only namespaces with a
+ * stored artifact get registered, so unknown namespaces cannot fill up the
+ * registry.
+ * <p/>
+ * Each change to the stored artifacts clears the whole registry, as an XML
+ * schema might get imported by others. The registry generation makes sure an
+ * artifact compiled before the clear does not get registered after it.
+ * 
+ * @param <T>
+ *            the compiled artifact type.
+ */
+public class CompiledXmlRegistry<T> extends BoundedCache<String, T> {
+
+	private long generation;
+
+	/**
+	 * @param maxEntries
+	 *            the maximum number of compiled artifacts.
+	 */
+	public CompiledXmlRegistry(int maxEntries) {
+		super(maxEntries);
+	}
+
+	/**
+	 * @return the current generation, to be passed to
+	 *         {@link #register(String, Object, long)} once compiled.
+	 */
+	public synchronized long getGeneration() {
+		return this.generation;
+	}
+
+	/**
+	 * @param generation
+	 *            the registry generation at the time the stored artifact was
+	 *            read.
+	 */
+	public synchronized void register(String namespace, T compiled,
+			long generation) {
+		if (generation != this.generation) {
+			return;
+		}
+		put(namespace, compiled, NO_EXPIRATION);
+	}
+
+	@Override
+	public synchronized void clear() {
+		this.generation++;
+		super.clear();
+	}
+
+	/**
+	 * Clears the registry right away, and again once the current transaction
+	 * has completed. Else an artifact compiled from the database state before
+	 * the commit could stick.
+	 */
+	public void clear(
+			TransactionSynchronizationRegistry transactionSynchronizationRegistry) {
+
+		clear();
+		if (null == transactionSynchronizationRegistry
+				|| null == transactionSynchronizationRegistry
+						.getTransactionKey()) {
+			// not running within a container managed transaction
+			return;
+		}
+		if (null != transactionSynchronizationRegistry.getResource(this)) {
+			return;
+		}
+		transactionSynchronizationRegistry.putResource(this, Boolean.TRUE);
+		transactionSynchronizationRegistry
+				.registerInterposedSynchronization(new Synchronization() {
+
+					public void beforeCompletion() {
+					}
+
+					public void afterCompletion(int status) {
+						clear();
+					}
+				});
+	}
+}
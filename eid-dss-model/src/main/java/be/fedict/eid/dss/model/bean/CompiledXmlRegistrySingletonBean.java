@@ -0,0 +1,57 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.xml.transform.Templates;
+import javax.xml.validation.Schema;
+
+/**
+ * EJB 3.1 singleton holding the registries of compiled XML schemas and XSLT
+ * style sheets. The {@link CompiledXmlRegistry} takes care of its own
+ * locking.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class CompiledXmlRegistrySingletonBean {
+
+	/**
+	 * Maximum number of compiled artifacts per registry. Way more than the
+	 * number of document namespaces in use.
+	 */
+	private static final int MAX_ENTRIES = 256;
+
+	private final CompiledXmlRegistry<Schema> xmlSchemaRegistry = new CompiledXmlRegistry<Schema>(
+			MAX_ENTRIES);
+
+	private final CompiledXmlRegistry<Templates> xmlStyleSheetRegistry = new CompiledXmlRegistry<Templates>(
+			MAX_ENTRIES);
+
+	public CompiledXmlRegistry<Schema> getXmlSchemaRegistry() {
+		return this.xmlSchemaRegistry;
+	}
+
+	public CompiledXmlRegistry<Templates> getXmlStyleSheetRegistry() {
+		return this.xmlStyleSheetRegistry;
+	}
+}
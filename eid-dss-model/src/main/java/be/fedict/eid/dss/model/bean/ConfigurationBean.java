@@ -23,24 +23,61 @@ import be.fedict.eid.dss.model.ConfigProperty;
 import be.fedict.eid.dss.model.Configuration;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.jboss.ejb3.annotation.Depends;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
 import javax.ejb.Startup;
 import javax.ejb.Stateless;
+import javax.jms.Topic;
+import javax.jms.TopicConnectionFactory;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-
+import java.util.Map;
+
+/**
+ * Configuration reads are served from an in-memory
+ * {@link ConfigurationSnapshot}. Changes are written to the database and
+ * collected in a private snapshot of the transaction, which serves the reads
+ * within that transaction. Other transactions only see the changes once they
+ * are published to the shared snapshot, after commit. A rolled back change is
+ * never published.
+ * <p/>
+ * Committed changes are announced to the other cluster nodes over the
+ * configuration topic, which makes them reload their snapshot as well.
+ */
 @Startup
 @Stateless
+@Depends("org.hornetq:module=JMS,name=\"DSSConfigTopic\",type=Topic")
 public class ConfigurationBean implements Configuration {
 
 	private static final Log LOG = LogFactory.getLog(ConfigurationBean.class);
 
+	private static final String CHANGES_KEY = ConfigurationBean.class
+			.getName() + ".changes";
+
 	@PersistenceContext
 	private EntityManager entityManager;
 
+	@EJB
+	private ConfigurationSnapshotSingletonBean configurationSnapshotSingleton;
+
+	@Resource
+	private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+	@Resource(mappedName = "java:JmsXA")
+	private TopicConnectionFactory topicConnectionFactory;
+
+	@Resource(mappedName = ConfigurationChangeMDB.TOPIC_NAME)
+	private Topic topic;
+
 	@PostConstruct
 	public void init() {
 
@@ -99,6 +136,7 @@ public class ConfigurationBean implements Configuration {
 		}
 
 		String propertyName = getPropertyName(configProperty, index);
+		ConfigurationChanges changes = getChanges();
 		ConfigPropertyEntity configPropertyEntity = this.entityManager.find(
 				ConfigPropertyEntity.class, propertyName);
 		if (null == configPropertyEntity) {
@@ -108,6 +146,8 @@ public class ConfigurationBean implements Configuration {
 		} else {
 			configPropertyEntity.setValue(propertyValue);
 		}
+		changes.setValue(propertyName, propertyValue);
+		publishWithoutTransaction(changes);
 	}
 
 	/**
@@ -124,11 +164,14 @@ public class ConfigurationBean implements Configuration {
 	public void removeValue(ConfigProperty configProperty, String index) {
 
 		String propertyName = getPropertyName(configProperty, index);
+		ConfigurationChanges changes = getChanges();
 		ConfigPropertyEntity configPropertyEntity = this.entityManager.find(
 				ConfigPropertyEntity.class, propertyName);
 		if (null != configPropertyEntity) {
 			this.entityManager.remove(configPropertyEntity);
 		}
+		changes.removeValue(propertyName);
+		publishWithoutTransaction(changes);
 	}
 
 	/**
@@ -152,16 +195,12 @@ public class ConfigurationBean implements Configuration {
 
 		String propertyName = getPropertyName(configProperty, index);
 
-		ConfigPropertyEntity configPropertyEntity = this.entityManager.find(
-				ConfigPropertyEntity.class, propertyName);
-		if (null == configPropertyEntity) {
-            if (Boolean.class == configProperty.getType()) {
-                return (T) Boolean.FALSE;
-            } else {
-                return null;
-            }
+		ConfigurationSnapshot snapshot = getSnapshot();
+		Object typedValue = snapshot.getTypedValue(propertyName);
+		if (null != typedValue) {
+			return (T) typedValue;
 		}
-		String value = configPropertyEntity.getValue();
+		String value = snapshot.getValue(propertyName);
 		if (null == value || value.trim().length() == 0) {
             if (Boolean.class == configProperty.getType()) {
                 return (T) Boolean.FALSE;
@@ -170,24 +209,28 @@ public class ConfigurationBean implements Configuration {
             }
         }
 
+		typedValue = convert(configProperty, value);
+		snapshot.setTypedValue(propertyName, typedValue);
+		return (T) typedValue;
+	}
+
+	private Object convert(ConfigProperty configProperty, String value) {
+
 		if (String.class == configProperty.getType()) {
-			return (T) value;
+			return value;
 		}
 		if (Boolean.class == configProperty.getType()) {
-			Boolean booleanValue = Boolean.parseBoolean(value);
-			return (T) booleanValue;
+			return Boolean.parseBoolean(value);
 		}
 		if (Integer.class == configProperty.getType()) {
-			Integer integerValue = Integer.parseInt(value);
-			return (T) integerValue;
+			return Integer.parseInt(value);
 		}
 		if (Long.class == configProperty.getType()) {
-			Long longValue = Long.parseLong(value);
-			return (T) longValue;
+			return Long.parseLong(value);
 		}
 		if (configProperty.getType().isEnum()) {
 			Enum<?> e = (Enum<?>) configProperty.getType().getEnumConstants()[0];
-			return (T) Enum.valueOf(e.getClass(), value);
+			return Enum.valueOf(e.getClass(), value);
 		}
 		throw new RuntimeException("unsupported type: "
 				+ configProperty.getType().getName());
@@ -198,21 +241,127 @@ public class ConfigurationBean implements Configuration {
 	 */
 	public List<String> getIndexes(ConfigProperty configProperty) {
 
-		List<ConfigPropertyEntity> configs = ConfigPropertyEntity
-				.listConfigsWhereNameLike(this.entityManager,
-						configProperty.getName());
 		List<String> indexes = new LinkedList<String>();
 
 		String prefix = configProperty.getName() + '-';
-		for (ConfigPropertyEntity config : configs) {
-			if (config.getName().contains(prefix)) {
-				indexes.add(config.getName().substring(
-						config.getName().indexOf(prefix) + prefix.length()));
+		for (String propertyName : getSnapshot().getPropertyNames()) {
+			if (propertyName.contains(prefix)) {
+				indexes.add(propertyName.substring(propertyName
+						.indexOf(prefix) + prefix.length()));
 			}
 		}
 		return indexes;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getVersion() {
+
+		return getSnapshot().getVersion();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void announceChange() {
+
+		publishChange();
+	}
+
+	private ConfigurationSnapshot getSnapshot() {
+
+		if (isTransactionActive()) {
+			ConfigurationChanges changes = (ConfigurationChanges) this.transactionSynchronizationRegistry
+					.getResource(CHANGES_KEY);
+			if (null != changes) {
+				return changes.getSnapshot();
+			}
+		}
+		return getSharedSnapshot();
+	}
+
+	private ConfigurationSnapshot getSharedSnapshot() {
+
+		ConfigurationSnapshot snapshot = this.configurationSnapshotSingleton
+				.getSnapshot();
+		if (null != snapshot) {
+			return snapshot;
+		}
+		long version = this.configurationSnapshotSingleton.getVersion();
+		Map<String, String> values = new HashMap<String, String>();
+		for (ConfigPropertyEntity configPropertyEntity : ConfigPropertyEntity
+				.listAll(this.entityManager)) {
+			values.put(configPropertyEntity.getName(),
+					configPropertyEntity.getValue());
+		}
+		return this.configurationSnapshotSingleton
+				.install(new ConfigurationSnapshot(version, values));
+	}
+
+	private boolean isTransactionActive() {
+
+		return null != this.transactionSynchronizationRegistry
+				&& null != this.transactionSynchronizationRegistry
+						.getTransactionKey();
+	}
+
+	/**
+	 * Gives back the changes of the current transaction. On the first change
+	 * the changes get registered for publication after commit. The change
+	 * announcement is part of the transaction, so it only reaches the other
+	 * cluster nodes on commit as well.
+	 * <p/>
+	 * Must be called before touching the configuration entities, as the
+	 * shared snapshot might still have to be loaded from the database.
+	 */
+	private ConfigurationChanges getChanges() {
+
+		if (!isTransactionActive()) {
+			// not running within a container managed transaction
+			return new ConfigurationChanges(getSharedSnapshot());
+		}
+		ConfigurationChanges changes = (ConfigurationChanges) this.transactionSynchronizationRegistry
+				.getResource(CHANGES_KEY);
+		if (null != changes) {
+			return changes;
+		}
+		final ConfigurationChanges transactionChanges = new ConfigurationChanges(
+				getSharedSnapshot());
+		this.transactionSynchronizationRegistry.putResource(CHANGES_KEY,
+				transactionChanges);
+		final ConfigurationSnapshotSingletonBean snapshotSingleton = this.configurationSnapshotSingleton;
+		this.transactionSynchronizationRegistry
+				.registerInterposedSynchronization(new Synchronization() {
+
+					public void beforeCompletion() {
+					}
+
+					public void afterCompletion(int status) {
+						if (Status.STATUS_COMMITTED == status) {
+							snapshotSingleton.publish(transactionChanges);
+						}
+					}
+				});
+		publishChange();
+		return transactionChanges;
+	}
+
+	private void publishWithoutTransaction(ConfigurationChanges changes) {
+
+		if (!isTransactionActive()) {
+			this.configurationSnapshotSingleton.publish(changes);
+		}
+	}
+
+	private void publishChange() {
+
+		ConfigurationChangeMessage changeMessage = new ConfigurationChangeMessage(
+				this.configurationSnapshotSingleton.getNodeId(),
+				this.configurationSnapshotSingleton.getVersion());
+		changeMessage.publish(this.topicConnectionFactory, this.topic);
+	}
+
 	private String getPropertyName(ConfigProperty configProperty, String index) {
 
 		String propertyName = configProperty.getName();
@@ -0,0 +1,86 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import static be.fedict.eid.dss.model.bean.ConfigurationChangeMDB.TOPIC_NAME;
+
+import javax.ejb.ActivationConfigProperty;
+import javax.ejb.EJB;
+import javax.ejb.MessageDriven;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.dss.model.TrustValidationService;
+import be.fedict.eid.dss.model.VerificationCacheManager;
+
+/**
+ * Applies configuration changes made on other cluster nodes. Every node
+ * subscribes to the configuration topic, so each one reloads its
+ * configuration snapshot and resets whatever got derived from it, just like
+ * the admin portal does on the node where the change was made. This includes
+ * the compiled XML schemas and XSLT style sheets, which are announced on the
+ * same topic.
+ */
+@MessageDriven(activationConfig = {
+		@ActivationConfigProperty(propertyName = "destinationType", propertyValue = "javax.jms.Topic"),
+		@ActivationConfigProperty(propertyName = "destination", propertyValue = TOPIC_NAME) })
+public class ConfigurationChangeMDB implements MessageListener {
+
+	private static final Log LOG = LogFactory
+			.getLog(ConfigurationChangeMDB.class);
+
+	public static final String TOPIC_NAME = "topic/dss/config-topic";
+
+	@EJB
+	private ConfigurationSnapshotSingletonBean configurationSnapshotSingleton;
+
+	@EJB
+	private VerificationCacheManager verificationCacheManager;
+
+	@EJB
+	private TrustValidationService trustValidationService;
+
+	@EJB
+	private CompiledXmlRegistrySingletonBean compiledXmlRegistrySingleton;
+
+	public void onMessage(Message message) {
+		ConfigurationChangeMessage changeMessage = new ConfigurationChangeMessage(
+				message);
+		String nodeId = changeMessage.getNodeId();
+		long version = changeMessage.getVersion();
+		if (false == this.configurationSnapshotSingleton.acceptChange(nodeId,
+				version)) {
+			LOG.debug("ignoring configuration change " + version
+					+ " of node " + nodeId);
+			return;
+		}
+		LOG.debug("configuration change " + version + " of node " + nodeId);
+
+		this.configurationSnapshotSingleton.invalidate();
+		this.verificationCacheManager.reset();
+		this.trustValidationService.resetXkms2ClientPool();
+		this.trustValidationService.resetTrustValidationCache();
+		this.trustValidationService.reloadTrustAnchors();
+		this.compiledXmlRegistrySingleton.getXmlSchemaRegistry().clear();
+		this.compiledXmlRegistrySingleton.getXmlStyleSheetRegistry().clear();
+	}
+}
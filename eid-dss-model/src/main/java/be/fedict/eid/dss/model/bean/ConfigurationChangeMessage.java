@@ -0,0 +1,104 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import javax.jms.Topic;
+import javax.jms.TopicConnection;
+import javax.jms.TopicConnectionFactory;
+import javax.jms.TopicPublisher;
+import javax.jms.TopicSession;
+
+/**
+ * JMS message announcing a configuration change to the other cluster nodes.
+ * The message carries no configuration values, receiving nodes reload them
+ * from the database. Changes to the stored XML schemas and XSLT style sheets
+ * are announced the same way.
+ */
+class ConfigurationChangeMessage {
+
+	private final String nodeId;
+
+	private final long version;
+
+	public ConfigurationChangeMessage(String nodeId, long version) {
+		this.nodeId = nodeId;
+		this.version = version;
+	}
+
+	public ConfigurationChangeMessage(Message message) {
+		try {
+			this.nodeId = message.getStringProperty("nodeId");
+			this.version = message.getLongProperty("version");
+		} catch (JMSException e) {
+			throw new RuntimeException("JMS error: " + e.getMessage(), e);
+		}
+	}
+
+	public Message getMessage(TopicSession topicSession) throws JMSException {
+		Message message = topicSession.createMessage();
+		message.setStringProperty("nodeId", this.nodeId);
+		message.setLongProperty("version", this.version);
+		return message;
+	}
+
+	/**
+	 * Publishes this message on the given topic. With an XA connection
+	 * factory the message only reaches the other cluster nodes once the
+	 * current transaction commits.
+	 */
+	public void publish(TopicConnectionFactory topicConnectionFactory,
+			Topic topic) {
+		try {
+			TopicConnection topicConnection = topicConnectionFactory
+					.createTopicConnection();
+			try {
+				TopicSession topicSession = topicConnection.createTopicSession(
+						true, Session.AUTO_ACKNOWLEDGE);
+				try {
+					TopicPublisher topicPublisher = topicSession
+							.createPublisher(topic);
+					try {
+						topicPublisher.publish(getMessage(topicSession));
+					} finally {
+						topicPublisher.close();
+					}
+				} finally {
+					topicSession.close();
+				}
+			} finally {
+				topicConnection.close();
+			}
+		} catch (JMSException e) {
+			throw new RuntimeException(
+					"could not publish configuration change: "
+							+ e.getMessage(), e);
+		}
+	}
+
+	public String getNodeId() {
+		return this.nodeId;
+	}
+
+	public long getVersion() {
+		return this.version;
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The configuration changes made within one transaction. They are applied to
+ * a private copy of the snapshot, so reads within the same transaction see
+ * them, and get published to the shared snapshot only once the transaction
+ * has committed.
+ */
+public class ConfigurationChanges {
+
+	private final Map<String, String> values;
+
+	private final Set<String> removals;
+
+	private ConfigurationSnapshot snapshot;
+
+	/**
+	 * @param snapshot
+	 *            the shared snapshot at the time of the first change.
+	 */
+	public ConfigurationChanges(ConfigurationSnapshot snapshot) {
+		this.values = new HashMap<String, String>();
+		this.removals = new HashSet<String>();
+		this.snapshot = snapshot;
+	}
+
+	public void setValue(String propertyName, String value) {
+		this.removals.remove(propertyName);
+		this.values.put(propertyName, value);
+		this.snapshot = this.snapshot.withValue(this.snapshot.getVersion(),
+				propertyName, value);
+	}
+
+	public void removeValue(String propertyName) {
+		this.values.remove(propertyName);
+		this.removals.add(propertyName);
+		this.snapshot = this.snapshot.withoutValue(this.snapshot.getVersion(),
+				propertyName);
+	}
+
+	/**
+	 * @return the private snapshot, including all changes made so far.
+	 */
+	public ConfigurationSnapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	/**
+	 * @return a copy of the given snapshot with these changes applied. Changes
+	 *         committed meanwhile by other transactions are retained.
+	 */
+	public ConfigurationSnapshot applyTo(ConfigurationSnapshot sharedSnapshot,
+			long newVersion) {
+		ConfigurationSnapshot newSnapshot = sharedSnapshot;
+		for (String propertyName : this.removals) {
+			newSnapshot = newSnapshot.withoutValue(newVersion, propertyName);
+		}
+		for (Map.Entry<String, String> value : this.values.entrySet()) {
+			newSnapshot = newSnapshot.withValue(newVersion, value.getKey(),
+					value.getValue());
+		}
+		return newSnapshot;
+	}
+}
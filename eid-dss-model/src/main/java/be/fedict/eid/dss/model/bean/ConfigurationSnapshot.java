@@ -0,0 +1,117 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable in-memory copy of all configuration properties. Changes never
+ * modify a snapshot, they produce a new one carrying a higher version.
+ * Converted values are memoized per snapshot, so a property string gets
+ * parsed at most once per version.
+ */
+public class ConfigurationSnapshot {
+
+	private final long version;
+
+	private final Map<String, String> values;
+
+	private final ConcurrentMap<String, Object> typedValues;
+
+	/**
+	 * @param version
+	 *            the configuration version this snapshot reflects.
+	 * @param values
+	 *            the property values, keyed by property name.
+	 */
+	public ConfigurationSnapshot(long version, Map<String, String> values) {
+		this.version = version;
+		this.values = Collections.unmodifiableMap(new HashMap<String, String>(
+				values));
+		this.typedValues = new ConcurrentHashMap<String, Object>();
+	}
+
+	public long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * @return <code>true</code> if a property with the given name exists,
+	 *         even if its value is <code>null</code>.
+	 */
+	public boolean contains(String propertyName) {
+		return this.values.containsKey(propertyName);
+	}
+
+	/**
+	 * @return the raw property value, or <code>null</code> if absent.
+	 */
+	public String getValue(String propertyName) {
+		return this.values.get(propertyName);
+	}
+
+	public Set<String> getPropertyNames() {
+		return this.values.keySet();
+	}
+
+	/**
+	 * @return the memoized converted property value, or <code>null</code> if
+	 *         not yet converted.
+	 */
+	public Object getTypedValue(String propertyName) {
+		return this.typedValues.get(propertyName);
+	}
+
+	public void setTypedValue(String propertyName, Object typedValue) {
+		this.typedValues.put(propertyName, typedValue);
+	}
+
+	/**
+	 * @return a copy of this snapshot with the given property set.
+	 */
+	public ConfigurationSnapshot withValue(long newVersion,
+			String propertyName, String value) {
+		Map<String, String> newValues = new HashMap<String, String>(
+				this.values);
+		newValues.put(propertyName, value);
+		return new ConfigurationSnapshot(newVersion, newValues);
+	}
+
+	/**
+	 * @return a copy of this snapshot with the given property removed.
+	 */
+	public ConfigurationSnapshot withoutValue(long newVersion,
+			String propertyName) {
+		Map<String, String> newValues = new HashMap<String, String>(
+				this.values);
+		newValues.remove(propertyName);
+		return new ConfigurationSnapshot(newVersion, newValues);
+	}
+
+	@Override
+	public String toString() {
+		return "version: " + this.version + ", properties: "
+				+ this.values.size();
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.util.UUID;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * EJB 3.1 singleton holding the current {@link ConfigurationSnapshot}. Reads
+ * only dereference a volatile field, committed changes swap in a new
+ * snapshot.
+ * <p/>
+ * The snapshot is loaded lazily by the {@link ConfigurationBean}, as only
+ * that one has a persistence context. Invalidation drops the snapshot so the
+ * next read reloads it from the database.
+ * <p/>
+ * Within a cluster every node has its own snapshot. Configuration changes
+ * are announced to the other nodes via the {@link ConfigurationChangeMDB}
+ * topic, tagged with the node identifier and version of the originating
+ * node.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ConfigurationSnapshotSingletonBean {
+
+	private static final Log LOG = LogFactory
+			.getLog(ConfigurationSnapshotSingletonBean.class);
+
+	private volatile ConfigurationSnapshot snapshot;
+
+	private long version;
+
+	private final String nodeId = UUID.randomUUID().toString();
+
+	/**
+	 * @return the identifier of this cluster node, unique per JVM run.
+	 */
+	public String getNodeId() {
+		return this.nodeId;
+	}
+
+	/**
+	 * @return the current snapshot, or <code>null</code> if it still has to
+	 *         be loaded.
+	 */
+	public ConfigurationSnapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	/**
+	 * @return the version to use for a snapshot that is about to be loaded.
+	 */
+	public synchronized long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Installs a freshly loaded snapshot, unless the configuration changed
+	 * while it was being loaded.
+	 * 
+	 * @return the snapshot that should be used by the caller.
+	 */
+	public synchronized ConfigurationSnapshot install(
+			ConfigurationSnapshot loadedSnapshot) {
+		if (null != this.snapshot) {
+			return this.snapshot;
+		}
+		if (loadedSnapshot.getVersion() == this.version) {
+			LOG.debug("configuration snapshot loaded: " + loadedSnapshot);
+			this.snapshot = loadedSnapshot;
+		}
+		return loadedSnapshot;
+	}
+
+	/**
+	 * Publishes committed configuration changes. Snapshots that are being
+	 * loaded meanwhile don't get installed, as they might miss the changes.
+	 */
+	public synchronized void publish(ConfigurationChanges changes) {
+		this.version++;
+		if (null != this.snapshot) {
+			this.snapshot = changes.applyTo(this.snapshot, this.version);
+		}
+	}
+
+	/**
+	 * Checks whether a configuration change announced by a cluster node still
+	 * needs to be applied. Changes of this node itself are already applied.
+	 * Concurrent transactions of the same node can announce the same version
+	 * and commit in any order, so every announcement of another node is
+	 * applied.
+	 */
+	public boolean acceptChange(String changeNodeId, long changeVersion) {
+		return false == this.nodeId.equals(changeNodeId);
+	}
+
+	/**
+	 * Drops the current snapshot, forcing a reload from the database.
+	 */
+	public synchronized void invalidate() {
+		this.version++;
+		this.snapshot = null;
+	}
+}
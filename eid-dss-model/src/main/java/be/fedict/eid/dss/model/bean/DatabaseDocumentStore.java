@@ -0,0 +1,83 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.SQLException;
+
+import javax.persistence.EntityManager;
+
+import org.apache.commons.io.IOUtils;
+
+import be.fedict.eid.dss.entity.DocumentEntity;
+import be.fedict.eid.dss.model.DocumentStore;
+
+/**
+ * Document store that keeps the document data as BLOB within the document
+ * entity itself. The BLOB needs its length upfront, so the document data size
+ * must be known. The BLOB streams its data only when the document entity gets
+ * flushed.
+ */
+public class DatabaseDocumentStore implements DocumentStore {
+
+	private final EntityManager entityManager;
+
+	public DatabaseDocumentStore(EntityManager entityManager) {
+		this.entityManager = entityManager;
+	}
+
+	public void store(DocumentEntity document, InputStream dataInputStream,
+			long size) {
+
+		if (size < 0) {
+			throw new IllegalArgumentException(
+					"document data size required for database storage");
+		}
+		document.setData(DocumentEntity.createBlob(this.entityManager,
+				dataInputStream, size));
+		document.setDataSize(size);
+		document.setDataDigest(null);
+	}
+
+	public void write(DocumentEntity document, OutputStream outputStream) {
+
+		InputStream dataInputStream;
+		try {
+			dataInputStream = document.getData().getBinaryStream();
+		} catch (SQLException e) {
+			throw new RuntimeException("could not read document data: "
+					+ e.getMessage(), e);
+		}
+		try {
+			IOUtils.copyLarge(dataInputStream, outputStream);
+		} catch (IOException e) {
+			throw new RuntimeException("could not stream document data: "
+					+ e.getMessage(), e);
+		} finally {
+			IOUtils.closeQuietly(dataInputStream);
+		}
+	}
+
+	public void remove(DocumentEntity document) {
+
+		document.setData(null);
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.util.Date;
+
+import be.fedict.eid.dss.spi.utils.BoundedCache;
+
+/**
+ * Node-local, size bounded LRU cache of document data. The cache is bounded
+ * on the total number of cached bytes, not on the number of entries. Entries
+ * are keyed on the document identifier and the version of the document entity
+ * they were taken from, so a stale copy is never served after an update on
+ * another node.
+ */
+public class DocumentCache extends BoundedCache<String, byte[]> {
+
+	private final long maxEntrySize;
+
+	/**
+	 * @param maxSize
+	 *            the maximum number of bytes to cache. Documents larger than
+	 *            1/8 of this size are not cached at all.
+	 */
+	public DocumentCache(long maxSize) {
+		super(maxSize);
+		this.maxEntrySize = maxSize / 8;
+	}
+
+	/**
+	 * @return <code>true</code> if a document of the given size fits into this
+	 *         cache.
+	 */
+	public boolean isCacheable(long dataSize) {
+		return dataSize <= this.maxEntrySize;
+	}
+
+	/**
+	 * Caches the given version of the document data.
+	 */
+	public void put(String documentId, int version, byte[] data,
+			Date expiration) {
+
+		String key = getKey(documentId, version);
+		if (!isCacheable(data.length)) {
+			remove(key);
+			return;
+		}
+		put(key, data, data.length, expiration.getTime());
+	}
+
+	/**
+	 * @return the cached document data, or <code>null</code> if this version
+	 *         of the document is not cached or expired.
+	 */
+	public byte[] get(String documentId, int version) {
+		return get(getKey(documentId, version));
+	}
+
+	public void remove(String documentId, int version) {
+		remove(getKey(documentId, version));
+	}
+
+	private static String getKey(String documentId, int version) {
+		return documentId + "|" + version;
+	}
+
+	@Override
+	public String toString() {
+		return "entries=" + getEntryCount() + ", size=" + getWeight() + "/"
+				+ getMaxWeight() + " bytes, hits=" + getHits() + ", misses="
+				+ getMisses() + ", evictions=" + getEvictions();
+	}
+}
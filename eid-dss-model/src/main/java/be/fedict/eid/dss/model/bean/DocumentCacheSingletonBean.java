@@ -0,0 +1,72 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.dss.model.ConfigProperty;
+import be.fedict.eid.dss.model.Configuration;
+
+/**
+ * EJB 3.1 singleton holding the in-memory document cache tier in front of the
+ * document store. The {@link DocumentCache} takes care of its own locking.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class DocumentCacheSingletonBean {
+
+	private static final Log LOG = LogFactory
+			.getLog(DocumentCacheSingletonBean.class);
+
+	@EJB
+	private Configuration configuration;
+
+	private DocumentCache documentCache;
+
+	@PostConstruct
+	public void postConstruct() {
+
+		Integer documentCacheSize = this.configuration.getValue(
+				ConfigProperty.DOCUMENT_CACHE_SIZE, Integer.class);
+		if (null == documentCacheSize || documentCacheSize <= 0) {
+			LOG.debug("document cache disabled");
+			return;
+		}
+		LOG.debug("document cache size: " + documentCacheSize + " MB");
+		this.documentCache = new DocumentCache(
+				documentCacheSize * 1024L * 1024L);
+	}
+
+	/**
+	 * @return the document cache, or <code>null</code> if document caching is
+	 *         disabled.
+	 */
+	public DocumentCache getDocumentCache() {
+		return this.documentCache;
+	}
+}
@@ -18,34 +18,158 @@
 
 package be.fedict.eid.dss.model.bean;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import javax.servlet.http.HttpSession;
 
-import be.fedict.eid.applet.service.signer.HttpSessionTemporaryDataStorage;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import be.fedict.eid.dss.model.DocumentRepository;
+import be.fedict.eid.dss.model.SessionDocument;
 import be.fedict.eid.dss.spi.SignatureStatus;
 
 /**
  * An output stream that will eventually write back to the current document
  * repository.
+ * <p>
+ * The signed document is only buffered in memory up to
+ * {@link SessionDocument#MEMORY_THRESHOLD} bytes, after which it is streamed
+ * to a session spill file. The spill file gets removed when writing fails,
+ * and is registered for removal with the HTTP session in case this output
+ * stream never gets closed. The SHA-256 digest of the signed document is
+ * computed while writing and is available via
+ * {@link SessionDocument#getDigest()}.
  * 
  * @author Frank Cornelis
  * 
  */
-public class DocumentRepositoryOutputStream extends ByteArrayOutputStream {
+public class DocumentRepositoryOutputStream extends OutputStream {
+
+	private static final Log LOG = LogFactory
+			.getLog(DocumentRepositoryOutputStream.class);
+
+	private final DocumentRepository documentRepository;
+
+	private final MessageDigest messageDigest;
+
+	private ByteArrayOutputStream buffer;
+
+	private File tmpFile;
+
+	private OutputStream fileOutputStream;
+
+	private boolean closed;
+
+	public DocumentRepositoryOutputStream(HttpSession httpSession) {
+		this.documentRepository = new DocumentRepository(httpSession);
+		try {
+			this.messageDigest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256 not available: "
+					+ e.getMessage(), e);
+		}
+		this.buffer = new ByteArrayOutputStream();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (this.closed) {
+			throw new IOException("stream closed");
+		}
+		this.messageDigest.update(b, off, len);
+		if (null != this.buffer) {
+			if (this.buffer.size() + len < SessionDocument.MEMORY_THRESHOLD) {
+				this.buffer.write(b, off, len);
+				return;
+			}
+			spill();
+		}
+		try {
+			this.fileOutputStream.write(b, off, len);
+		} catch (IOException e) {
+			abort();
+			throw e;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (null != this.fileOutputStream) {
+			this.fileOutputStream.flush();
+		}
+	}
 
 	@Override
 	public void close() throws IOException {
-		super.close();
-
-		byte[] data = super.toByteArray();
-		HttpSession httpSession = HttpSessionTemporaryDataStorage
-				.getHttpSession();
-		DocumentRepository documentRepository = new DocumentRepository(
-				httpSession);
-		documentRepository.setSignedDocument(data);
-		documentRepository.setSignatureStatus(SignatureStatus.OK);
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+
+		String digest = new String(Hex.encodeHex(this.messageDigest.digest()));
+		try {
+			SessionDocument signedDocument;
+			if (null != this.buffer) {
+				signedDocument = SessionDocument.create(
+						this.buffer.toByteArray(), digest);
+				this.buffer = null;
+			} else {
+				this.fileOutputStream.close();
+				signedDocument = SessionDocument.create(this.tmpFile, digest);
+			}
+			LOG.debug("signed document size: " + signedDocument.getSize()
+					+ " bytes, digest: " + digest);
+
+			this.documentRepository.setSignedDocument(signedDocument);
+			// the spill file is owned by the document repository from now on
+			this.tmpFile = null;
+			this.documentRepository.setSignatureStatus(SignatureStatus.OK);
+		} catch (IOException e) {
+			abort();
+			throw e;
+		} catch (RuntimeException e) {
+			abort();
+			throw e;
+		}
+	}
+
+	private void spill() throws IOException {
+		this.tmpFile = SessionDocument.createTempFile();
+		this.documentRepository.deleteWhenSessionDestroyed(this.tmpFile);
+		try {
+			this.fileOutputStream = new BufferedOutputStream(
+					new FileOutputStream(this.tmpFile));
+			this.buffer.writeTo(this.fileOutputStream);
+		} catch (IOException e) {
+			abort();
+			throw e;
+		}
+		this.buffer = null;
+	}
+
+	private void abort() {
+		this.closed = true;
+		this.buffer = null;
+		IOUtils.closeQuietly(this.fileOutputStream);
+		if (null != this.tmpFile) {
+			LOG.debug("removing spill file: " + this.tmpFile);
+			this.tmpFile.delete();
+			this.tmpFile = null;
+		}
 	}
 }
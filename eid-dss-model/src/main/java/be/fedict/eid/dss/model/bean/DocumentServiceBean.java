@@ -18,19 +18,36 @@
 
 package be.fedict.eid.dss.model.bean;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
 
+import javax.activation.DataSource;
 import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.ScheduleExpression;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
 import javax.ejb.Timeout;
 import javax.ejb.Timer;
 import javax.ejb.TimerConfig;
 import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.joda.time.DateTime;
@@ -39,7 +56,11 @@ import org.joda.time.chrono.ISOChronology;
 import be.fedict.eid.dss.entity.DocumentEntity;
 import be.fedict.eid.dss.model.ConfigProperty;
 import be.fedict.eid.dss.model.Configuration;
+import be.fedict.eid.dss.model.DocumentCleanupResult;
 import be.fedict.eid.dss.model.DocumentService;
+import be.fedict.eid.dss.model.DocumentStore;
+import be.fedict.eid.dss.model.DocumentStoreType;
+import be.fedict.eid.dss.model.SessionDocument;
 import be.fedict.eid.dss.model.exception.DocumentNotFoundException;
 import be.fedict.eid.dss.model.exception.InvalidCronExpressionException;
 
@@ -51,27 +72,86 @@ public class DocumentServiceBean implements DocumentService {
 	private static final String TIMER_ID = DocumentServiceBean.class.getName()
 			+ ".Timer";
 
+	/**
+	 * Document data files stored within the last hour are never swept, as
+	 * their transaction might still be running.
+	 */
+	private static final long DATA_FILE_GRACE_PERIOD = 60 * 60 * 1000L;
+
 	@EJB
 	private Configuration configuration;
 
 	@Resource
 	private TimerService timerService;
 
+	@Resource
+	private SessionContext sessionContext;
+
 	@PersistenceContext
 	private EntityManager entityManager;
 
+	@Resource
+	private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+	@EJB
+	private DocumentCacheSingletonBean documentCacheSingletonBean;
+
 	/**
 	 * {@inheritDoc}
 	 */
 	public DateTime store(String documentId, byte[] data, String contentType) {
 
-		LOG.debug("store document: " + documentId);
+		DocumentEntity document = storeDocument(documentId,
+				new ByteArrayInputStream(data), data.length, contentType);
+		cache(document, data);
+		return new DateTime(document.getExpiration(),
+				ISOChronology.getInstanceUTC());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public DateTime store(String documentId, InputStream documentInputStream,
+			long size, String contentType) {
+
+		DocumentEntity document = storeDocument(documentId,
+				documentInputStream, size, contentType);
+		return new DateTime(document.getExpiration(),
+				ISOChronology.getInstanceUTC());
+	}
+
+	private DocumentEntity storeDocument(String documentId,
+			InputStream documentInputStream, long size, String contentType) {
+
+		if (size < 0 && DocumentStoreType.DATABASE == getDocumentStoreType()) {
+			// the BLOB needs its length upfront
+			SessionDocument spoolDocument = spool(documentInputStream);
+			try {
+				InputStream spoolInputStream = getInputStream(spoolDocument);
+				try {
+					return storeDocument(documentId, spoolInputStream,
+							spoolDocument.getSize(), contentType);
+				} finally {
+					IOUtils.closeQuietly(spoolInputStream);
+				}
+			} finally {
+				spoolDocument.delete();
+			}
+		}
+
+		LOG.debug("store document: " + documentId + " (" + size + " bytes)");
 
 		DateTime expiration = getExpiration();
 		DocumentEntity document = new DocumentEntity(documentId, contentType,
-				data, expiration.toDate());
+				null, size, expiration.toDate());
+		getDocumentStore().store(document, documentInputStream, size);
 		this.entityManager.persist(document);
-		return expiration;
+		/*
+		 * Flush while the caller's input stream is still guaranteed to be
+		 * open.
+		 */
+		this.entityManager.flush();
+		return document;
 	}
 
 	/**
@@ -98,11 +178,25 @@ public class DocumentServiceBean implements DocumentService {
 	/**
 	 * {@inheritDoc}
 	 */
-	public DocumentEntity retrieve(String documentId) {
+	public DocumentEntity find(String documentId, OutputStream outputStream) {
+
+		DocumentEntity document = find(documentId);
+		if (null == document) {
+			return null;
+		}
+
+		writeData(document, outputStream);
+		return document;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public DocumentEntity retrieve(String documentId, OutputStream outputStream) {
 
 		LOG.debug("retrieve document: " + documentId);
 
-		DocumentEntity document = find(documentId);
+		DocumentEntity document = find(documentId, outputStream);
 		if (null == document) {
 			return null;
 		}
@@ -112,19 +206,96 @@ public class DocumentServiceBean implements DocumentService {
 		return document;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public DataSource retrieve(String documentId) {
+
+		LOG.debug("retrieve document: " + documentId);
+
+		DocumentEntity document = find(documentId);
+		if (null == document) {
+			return null;
+		}
+
+		DataSource dataSource;
+		if (DocumentStoreType.FILESYSTEM == getDocumentStoreType(document)) {
+			// the data file outlives the document entity until the next sweep
+			dataSource = new DocumentDataSource(document.getContentType(),
+					getFileSystemDocumentStore().getDataFile(document));
+		} else {
+			ByteArrayOutputStream dataOutputStream = new ByteArrayOutputStream();
+			writeData(document, dataOutputStream);
+			dataSource = new DocumentDataSource(document.getContentType(),
+					dataOutputStream.toByteArray());
+		}
+
+		// remove from storage
+		remove(document);
+		return dataSource;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	public DocumentEntity update(String documentId, byte[] data)
 			throws DocumentNotFoundException {
 
-		LOG.debug("update document: " + documentId);
+		DocumentEntity document = updateDocument(documentId,
+				new ByteArrayInputStream(data), data.length);
+		cache(document, data);
+		return document;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public DocumentEntity update(String documentId,
+			InputStream documentInputStream, long size)
+			throws DocumentNotFoundException {
+
+		DocumentEntity document = updateDocument(documentId,
+				documentInputStream, size);
+		evict(document.getId(), document.getVersion());
+		return document;
+	}
+
+	private DocumentEntity updateDocument(String documentId,
+			InputStream documentInputStream, long size)
+			throws DocumentNotFoundException {
+
+		if (size < 0 && DocumentStoreType.DATABASE == getDocumentStoreType()) {
+			// the BLOB needs its length upfront
+			SessionDocument spoolDocument = spool(documentInputStream);
+			try {
+				InputStream spoolInputStream = getInputStream(spoolDocument);
+				try {
+					return updateDocument(documentId, spoolInputStream,
+							spoolDocument.getSize());
+				} finally {
+					IOUtils.closeQuietly(spoolInputStream);
+				}
+			} finally {
+				spoolDocument.delete();
+			}
+		}
+
+		LOG.debug("update document: " + documentId + " (" + size + " bytes)");
 
 		DocumentEntity document = find(documentId);
 		if (null == document) {
 			throw new DocumentNotFoundException();
 		}
-		document.setData(data);
+		int previousVersion = document.getVersion();
+		DocumentStoreType documentStoreType = getDocumentStoreType();
+		if (documentStoreType != getDocumentStoreType(document)) {
+			// document store has been reconfigured meanwhile
+			getDocumentStore(document).remove(document);
+		}
+		getDocumentStore(documentStoreType).store(document,
+				documentInputStream, size);
+		this.entityManager.flush();
+		evict(documentId, previousVersion);
 		return document;
 	}
 
@@ -144,7 +315,183 @@ public class DocumentServiceBean implements DocumentService {
 		LOG.debug("remove document: " + document.getId());
 		DocumentEntity attachedDocument = this.entityManager.find(
 				DocumentEntity.class, document.getId());
+		getDocumentStore(attachedDocument).remove(attachedDocument);
 		this.entityManager.remove(attachedDocument);
+		evict(document.getId(), document.getVersion());
+	}
+
+	/**
+	 * Spools document data of unknown size. Only small documents are kept in
+	 * memory, larger documents go to a temporary file that has to be deleted
+	 * once the document entity got flushed.
+	 */
+	private SessionDocument spool(InputStream documentInputStream) {
+
+		try {
+			return SessionDocument.create(documentInputStream);
+		} catch (IOException e) {
+			throw new RuntimeException("could not read document data: "
+					+ e.getMessage(), e);
+		}
+	}
+
+	private InputStream getInputStream(SessionDocument spoolDocument) {
+
+		try {
+			return spoolDocument.getInputStream();
+		} catch (IOException e) {
+			throw new RuntimeException("could not read document data: "
+					+ e.getMessage(), e);
+		}
+	}
+
+	private void writeData(DocumentEntity document, OutputStream outputStream) {
+
+		DocumentCache documentCache = this.documentCacheSingletonBean
+				.getDocumentCache();
+		if (null == documentCache
+				|| !documentCache.isCacheable(document.getDataSize())) {
+			getDocumentStore(document).write(document, outputStream);
+			return;
+		}
+
+		byte[] data = documentCache.get(document.getId(),
+				document.getVersion());
+		if (null == data) {
+			ByteArrayOutputStream dataOutputStream = new ByteArrayOutputStream();
+			getDocumentStore(document).write(document, dataOutputStream);
+			data = dataOutputStream.toByteArray();
+			cache(document, data);
+		} else {
+			LOG.debug("document cache hit: " + document.getId());
+		}
+		try {
+			outputStream.write(data);
+		} catch (IOException e) {
+			throw new RuntimeException("could not stream document data: "
+					+ e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Caches the document data once the current transaction commits, so data
+	 * of a rolled back transaction never ends up in the cache.
+	 */
+	private void cache(DocumentEntity document, final byte[] data) {
+
+		final DocumentCache documentCache = this.documentCacheSingletonBean
+				.getDocumentCache();
+		if (null == documentCache) {
+			return;
+		}
+		final String documentId = document.getId();
+		final int version = document.getVersion();
+		final Date expiration = document.getExpiration();
+		if (!isTransactionActive()) {
+			// not running within a container managed transaction
+			documentCache.put(documentId, version, data, expiration);
+			return;
+		}
+		this.transactionSynchronizationRegistry
+				.registerInterposedSynchronization(new Synchronization() {
+
+					public void beforeCompletion() {
+					}
+
+					public void afterCompletion(int status) {
+						if (Status.STATUS_COMMITTED == status) {
+							documentCache.put(documentId, version, data,
+									expiration);
+						}
+					}
+				});
+	}
+
+	/**
+	 * Evicts the given version of the document data from the cache once the
+	 * current transaction commits. Up to then it still is the committed
+	 * version.
+	 */
+	private void evict(final String documentId, final int version) {
+
+		final DocumentCache documentCache = this.documentCacheSingletonBean
+				.getDocumentCache();
+		if (null == documentCache) {
+			return;
+		}
+		if (!isTransactionActive()) {
+			// not running within a container managed transaction
+			documentCache.remove(documentId, version);
+			return;
+		}
+		this.transactionSynchronizationRegistry
+				.registerInterposedSynchronization(new Synchronization() {
+
+					public void beforeCompletion() {
+					}
+
+					public void afterCompletion(int status) {
+						if (Status.STATUS_COMMITTED == status) {
+							documentCache.remove(documentId, version);
+						}
+					}
+				});
+	}
+
+	private boolean isTransactionActive() {
+
+		return null != this.transactionSynchronizationRegistry
+				&& null != this.transactionSynchronizationRegistry
+						.getTransactionKey();
+	}
+
+	private DocumentStoreType getDocumentStoreType() {
+
+		DocumentStoreType documentStoreType = this.configuration.getValue(
+				ConfigProperty.DOCUMENT_STORE_TYPE, DocumentStoreType.class);
+		if (null == documentStoreType) {
+			return DocumentStoreType.DATABASE;
+		}
+		return documentStoreType;
+	}
+
+	private DocumentStoreType getDocumentStoreType(DocumentEntity document) {
+
+		if (null != document.getDataDigest()) {
+			return DocumentStoreType.FILESYSTEM;
+		}
+		return DocumentStoreType.DATABASE;
+	}
+
+	private DocumentStore getDocumentStore() {
+
+		return getDocumentStore(getDocumentStoreType());
+	}
+
+	private DocumentStore getDocumentStore(DocumentEntity document) {
+
+		return getDocumentStore(getDocumentStoreType(document));
+	}
+
+	private DocumentStore getDocumentStore(DocumentStoreType documentStoreType) {
+
+		switch (documentStoreType) {
+		case FILESYSTEM:
+			return getFileSystemDocumentStore();
+		default:
+			return new DatabaseDocumentStore(this.entityManager);
+		}
+	}
+
+	private FileSystemDocumentStore getFileSystemDocumentStore() {
+
+		String documentStorePath = this.configuration.getValue(
+				ConfigProperty.DOCUMENT_STORE_PATH, String.class);
+		if (null == documentStorePath) {
+			throw new RuntimeException("Missing document store path");
+		}
+		return new FileSystemDocumentStore(new File(documentStorePath),
+				this.entityManager);
 	}
 
 	private boolean isExpired(DocumentEntity document) {
@@ -172,6 +519,7 @@ public class DocumentServiceBean implements DocumentService {
 	 * {@inheritDoc}
 	 */
 	@Timeout
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
 	public void timeOut(Timer timer) {
 
 		String timerInfo = (String) timer.getInfo();
@@ -284,11 +632,100 @@ public class DocumentServiceBean implements DocumentService {
 	/**
 	 * {@inheritDoc}
 	 */
-	public int cleanup() {
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public DocumentCleanupResult cleanup() {
 
 		LOG.debug("document cleanup");
-		int removals = DocumentEntity.removeExpired(this.entityManager);
+		long startTime = System.currentTimeMillis();
+
+		Integer batchSize = this.configuration.getValue(
+				ConfigProperty.DOCUMENT_CLEANUP_BATCH_SIZE, Integer.class);
+		if (null == batchSize || batchSize <= 0) {
+			batchSize = 100;
+		}
+		Long batchDelay = this.configuration.getValue(
+				ConfigProperty.DOCUMENT_CLEANUP_BATCH_DELAY, Long.class);
+
+		/*
+		 * Go through our business interface so each batch runs within its own
+		 * transaction.
+		 */
+		DocumentService documentService = this.sessionContext
+				.getBusinessObject(DocumentService.class);
+		Date now = new Date();
+		DocumentCleanupResult result = new DocumentCleanupResult();
+		while (true) {
+			DocumentCleanupResult batchResult = documentService.cleanupBatch(
+					now, batchSize);
+			result.add(batchResult);
+			if (batchResult.getRemovals() < batchSize) {
+				break;
+			}
+			if (null != batchDelay && batchDelay > 0) {
+				try {
+					Thread.sleep(batchDelay);
+				} catch (InterruptedException e) {
+					LOG.warn("document cleanup interrupted");
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+
+		if (null != this.configuration.getValue(
+				ConfigProperty.DOCUMENT_STORE_PATH, String.class)) {
+			int dataFileRemovals = getFileSystemDocumentStore().sweep(
+					DATA_FILE_GRACE_PERIOD);
+			LOG.debug("# of document data file removals: "
+					+ dataFileRemovals);
+		}
+
+		DocumentCache documentCache = this.documentCacheSingletonBean
+				.getDocumentCache();
+		if (null != documentCache) {
+			documentCache.removeExpired();
+			LOG.debug("document cache: " + documentCache);
+		}
+
+		result.setDuration(System.currentTimeMillis() - startTime);
+		LOG.info("document cleanup: " + result);
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public DocumentCleanupResult cleanupBatch(Date now, int batchSize) {
+
+		List<Object[]> expiredDocuments = DocumentEntity.getExpired(
+				this.entityManager, now, batchSize);
+		if (expiredDocuments.isEmpty()) {
+			return new DocumentCleanupResult();
+		}
+
+		List<String> ids = new LinkedList<String>();
+		long freedBytes = 0;
+		for (Object[] expiredDocument : expiredDocuments) {
+			ids.add((String) expiredDocument[0]);
+			freedBytes += (Long) expiredDocument[1];
+		}
+
+		int removals = DocumentEntity.remove(this.entityManager, ids);
 		LOG.debug("# of removals: " + removals);
-		return removals;
+		return new DocumentCleanupResult(removals, freedBytes);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getDocumentCacheStatistics() {
+
+		DocumentCache documentCache = this.documentCacheSingletonBean
+				.getDocumentCache();
+		if (null == documentCache) {
+			return "disabled";
+		}
+		return documentCache.toString();
 	}
 }
@@ -0,0 +1,134 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.applet.service.signer.facets.RevocationData;
+import be.fedict.eid.applet.service.signer.time.TimeStampService;
+import be.fedict.eid.dss.model.exception.TrustServiceClientException;
+
+/**
+ * Time stamp service failing over between several TSP services. Services
+ * with an open circuit breaker are skipped, the others are tried fastest
+ * first. A half-open service only gets a single probe call.
+ * <p>
+ * A TSA certificate chain that fails to validate via the eID Trust Service is
+ * not held against the TSP endpoint by its circuit breaker.
+ */
+public class FailoverTimeStampService implements TimeStampService {
+
+	private static final Log LOG = LogFactory
+			.getLog(FailoverTimeStampService.class);
+
+	private final List<GuardedTimeStampService> timeStampServices;
+
+	public FailoverTimeStampService() {
+		this.timeStampServices = new LinkedList<GuardedTimeStampService>();
+	}
+
+	public void addTimeStampService(TimeStampService timeStampService,
+			CircuitBreaker circuitBreaker) {
+		this.timeStampServices.add(new GuardedTimeStampService(
+				timeStampService, circuitBreaker));
+	}
+
+	public byte[] timeStamp(byte[] data, RevocationData revocationData)
+			throws Exception {
+
+		List<GuardedTimeStampService> availableTimeStampServices = new LinkedList<GuardedTimeStampService>();
+		for (GuardedTimeStampService timeStampService : this.timeStampServices) {
+			if (timeStampService.circuitBreaker.isAvailable()) {
+				availableTimeStampServices.add(timeStampService);
+			}
+		}
+		if (availableTimeStampServices.isEmpty()) {
+			throw new IllegalStateException("no TSP service available");
+		}
+		Collections.sort(availableTimeStampServices,
+				new Comparator<GuardedTimeStampService>() {
+
+					public int compare(GuardedTimeStampService o1,
+							GuardedTimeStampService o2) {
+						long latency1 = o1.circuitBreaker.getAverageLatency();
+						long latency2 = o2.circuitBreaker.getAverageLatency();
+						return latency1 < latency2 ? -1
+								: (latency1 == latency2 ? 0 : 1);
+					}
+				});
+
+		Exception lastException = null;
+		for (GuardedTimeStampService timeStampService : availableTimeStampServices) {
+			CircuitBreaker circuitBreaker = timeStampService.circuitBreaker;
+			if (!circuitBreaker.acquire()) {
+				// probe of a half-open service in progress
+				continue;
+			}
+			long begin = System.currentTimeMillis();
+			boolean failure = true;
+			try {
+				byte[] timeStamp = timeStampService.timeStampService
+						.timeStamp(data, revocationData);
+				failure = false;
+				return timeStamp;
+			} catch (Exception e) {
+				LOG.warn("TSP service " + circuitBreaker.getEndpoint()
+						+ " failed: " + e.getMessage());
+				failure = !isTrustServiceFailure(e);
+				lastException = e;
+			} finally {
+				circuitBreaker.recordCall(System.currentTimeMillis() - begin,
+						failure);
+			}
+		}
+		if (null == lastException) {
+			throw new IllegalStateException("no TSP service available");
+		}
+		throw lastException;
+	}
+
+	private static boolean isTrustServiceFailure(Throwable exception) {
+		while (null != exception) {
+			if (exception instanceof TrustServiceClientException) {
+				return true;
+			}
+			exception = exception.getCause();
+		}
+		return false;
+	}
+
+	private static class GuardedTimeStampService {
+
+		private final TimeStampService timeStampService;
+
+		private final CircuitBreaker circuitBreaker;
+
+		public GuardedTimeStampService(TimeStampService timeStampService,
+				CircuitBreaker circuitBreaker) {
+			this.timeStampService = timeStampService;
+			this.circuitBreaker = circuitBreaker;
+		}
+	}
+}
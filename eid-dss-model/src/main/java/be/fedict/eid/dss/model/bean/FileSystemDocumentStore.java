@@ -0,0 +1,246 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.dss.entity.DocumentEntity;
+import be.fedict.eid.dss.model.DocumentStore;
+
+/**
+ * Content-addressed document store on the local file system. The document
+ * data is kept in a file named after its SHA-256 digest, so identical
+ * documents share the same file.
+ * <p/>
+ * Data files are never removed within the transaction that drops a reference,
+ * as that transaction might still roll back, and a concurrent transaction,
+ * possibly on another cluster node, might be about to refer to the same file.
+ * Instead, {@link #sweep(long)} removes the data files that no committed
+ * document refers to, once they have not been stored for a grace period.
+ * Storing a document touches its data file, so the grace period should exceed
+ * the transaction timeout.
+ */
+public class FileSystemDocumentStore implements DocumentStore {
+
+	private static final Log LOG = LogFactory
+			.getLog(FileSystemDocumentStore.class);
+
+	/**
+	 * Serializes storing and sweeping of the data files within this JVM.
+	 */
+	private static final Object LOCK = new Object();
+
+	private static final String TMP_FILE_PREFIX = "document-";
+
+	private final File rootDirectory;
+
+	private final EntityManager entityManager;
+
+	public FileSystemDocumentStore(File rootDirectory,
+			EntityManager entityManager) {
+		this.rootDirectory = rootDirectory;
+		this.entityManager = entityManager;
+	}
+
+	public void store(DocumentEntity document, InputStream dataInputStream,
+			long size) {
+
+		File tmpFile;
+		String dataDigest;
+		long dataSize;
+		try {
+			if (!this.rootDirectory.exists()) {
+				this.rootDirectory.mkdirs();
+			}
+			tmpFile = File.createTempFile(TMP_FILE_PREFIX, ".tmp",
+					this.rootDirectory);
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+			OutputStream outputStream = new DigestOutputStream(
+					new FileOutputStream(tmpFile), messageDigest);
+			try {
+				dataSize = IOUtils.copyLarge(dataInputStream, outputStream);
+			} finally {
+				outputStream.close();
+			}
+			dataDigest = new String(Hex.encodeHex(messageDigest.digest()));
+		} catch (IOException e) {
+			throw new RuntimeException("could not store document data: "
+					+ e.getMessage(), e);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256 not available: "
+					+ e.getMessage(), e);
+		}
+
+		synchronized (LOCK) {
+			File file = getFile(dataDigest);
+			// touching the data file protects it against a concurrent sweep
+			if (file.setLastModified(System.currentTimeMillis())
+					&& file.exists()) {
+				LOG.debug("document data already stored: " + dataDigest);
+				tmpFile.delete();
+			} else {
+				file.getParentFile().mkdirs();
+				if (!tmpFile.renameTo(file)) {
+					tmpFile.delete();
+					throw new RuntimeException(
+							"could not store document data file: " + file);
+				}
+			}
+		}
+		document.setData(null);
+		document.setDataSize(dataSize);
+		document.setDataDigest(dataDigest);
+	}
+
+	/**
+	 * Gives back the data file of the given document. The data file gets
+	 * touched, so it remains readable for the sweep grace period, even after
+	 * the document entity got removed.
+	 */
+	public File getDataFile(DocumentEntity document) {
+
+		synchronized (LOCK) {
+			File file = getFile(document.getDataDigest());
+			if (!file.setLastModified(System.currentTimeMillis())) {
+				throw new RuntimeException("document data file not found: "
+						+ file);
+			}
+			return file;
+		}
+	}
+
+	public void write(DocumentEntity document, OutputStream outputStream) {
+
+		File file = getFile(document.getDataDigest());
+		FileInputStream fileInputStream;
+		try {
+			fileInputStream = new FileInputStream(file);
+		} catch (IOException e) {
+			throw new RuntimeException("document data file not found: "
+					+ file, e);
+		}
+		try {
+			/*
+			 * The target is a plain output stream, so a channel transfer would
+			 * not avoid the user-space copy anyway.
+			 */
+			IOUtils.copyLarge(fileInputStream, outputStream);
+		} catch (IOException e) {
+			throw new RuntimeException("could not stream document data: "
+					+ e.getMessage(), e);
+		} finally {
+			IOUtils.closeQuietly(fileInputStream);
+		}
+	}
+
+	/**
+	 * Only drops the reference to the data file, see {@link #sweep(long)}.
+	 */
+	public void remove(DocumentEntity document) {
+
+		document.setDataDigest(null);
+	}
+
+	/**
+	 * Removes the data files no committed document entity refers to anymore,
+	 * and the leftovers of interrupted stores. Should run outside of a
+	 * transaction that changes document entities.
+	 * 
+	 * @param gracePeriod
+	 *            files stored within this period (in ms) are kept, as they
+	 *            might belong to a transaction that did not commit yet.
+	 * @return the number of removed data files.
+	 */
+	public int sweep(long gracePeriod) {
+
+		File[] directories = this.rootDirectory.listFiles();
+		if (null == directories) {
+			return 0;
+		}
+		long storedBefore = System.currentTimeMillis() - gracePeriod;
+		int removals = 0;
+		for (File directory : directories) {
+			if (!directory.isDirectory()) {
+				if (directory.getName().startsWith(TMP_FILE_PREFIX)
+						&& directory.lastModified() < storedBefore) {
+					LOG.debug("removing temporary file: " + directory);
+					directory.delete();
+				}
+				continue;
+			}
+			File[] files = directory.listFiles();
+			if (null == files) {
+				continue;
+			}
+			Set<String> referencedDataDigests = null;
+			for (File file : files) {
+				if (file.lastModified() >= storedBefore) {
+					continue;
+				}
+				if (null == referencedDataDigests) {
+					// one query per directory, only when it holds candidates
+					referencedDataDigests = new HashSet<String>(
+							DocumentEntity.getDataDigests(this.entityManager,
+									directory.getName()));
+				}
+				if (referencedDataDigests.contains(file.getName())) {
+					continue;
+				}
+				synchronized (LOCK) {
+					// re-check, the data file might just have been stored
+					if (file.lastModified() >= storedBefore) {
+						continue;
+					}
+					LOG.debug("removing document data file: " + file);
+					if (file.delete()) {
+						removals++;
+					} else {
+						LOG.warn("could not remove document data file: "
+								+ file);
+					}
+				}
+			}
+		}
+		return removals;
+	}
+
+	private File getFile(String dataDigest) {
+
+		File directory = new File(this.rootDirectory,
+				dataDigest.substring(0, 2));
+		return new File(directory, dataDigest);
+	}
+}
@@ -34,6 +34,7 @@ import be.fedict.eid.dss.model.ConfigProperty;
 import be.fedict.eid.dss.model.Configuration;
 import be.fedict.eid.dss.model.Constants;
 import be.fedict.eid.dss.model.TrustValidationService;
+import be.fedict.eid.dss.model.XKMS2Invocation;
 import be.fedict.trust.client.XKMS2Client;
 import be.fedict.trust.client.exception.ValidationFailedException;
 
@@ -63,8 +64,6 @@ public class IdentityIntegrityServiceBean implements IdentityIntegrityService {
 		LOG.debug("validate national registry certificate: "
 				+ certificateChain.get(0).getSubjectX500Principal());
 
-		XKMS2Client xkms2Client = this.trustValidationService.getXkms2Client();
-
 		String xkmsUrl = this.configuration.getValue(ConfigProperty.XKMS_URL,
 				String.class);
 		if (null == xkmsUrl || xkmsUrl.trim().isEmpty()) {
@@ -79,13 +78,24 @@ public class IdentityIntegrityServiceBean implements IdentityIntegrityService {
 		}
 		LOG.debug("Trust domain=" + xkmsTrustDomain);
 
+		final String trustDomain = xkmsTrustDomain;
+		final List<X509Certificate> identityCertificateChain = certificateChain;
 		try {
 			LOG.debug("validating certificate chain");
-			if (null != xkmsTrustDomain) {
-				xkms2Client.validate(xkmsTrustDomain, certificateChain);
-			} else {
-				xkms2Client.validate(certificateChain);
-			}
+			this.trustValidationService
+					.invokeXkms2(new XKMS2Invocation<Void>() {
+
+						public Void invoke(XKMS2Client xkms2Client)
+								throws Exception {
+							if (null != trustDomain) {
+								xkms2Client.validate(trustDomain,
+										identityCertificateChain);
+							} else {
+								xkms2Client.validate(identityCertificateChain);
+							}
+							return null;
+						}
+					});
 		} catch (ValidationFailedException e) {
 			LOG.warn("invalid certificate");
 			throw new SecurityException("invalid certificate");
@@ -0,0 +1,349 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.security.PublicKey;
+import java.security.cert.CertPath;
+import java.security.cert.CertPathValidator;
+import java.security.cert.CertificateFactory;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bouncycastle.asn1.x509.X509Extensions;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.ocsp.BasicOCSPResp;
+import org.bouncycastle.ocsp.CertificateID;
+import org.bouncycastle.ocsp.CertificateStatus;
+import org.bouncycastle.ocsp.OCSPResp;
+import org.bouncycastle.ocsp.SingleResp;
+
+/**
+ * Local historical PKIX validation of a certificate chain against a set of
+ * trust anchors, using the revocation data that comes with the signature
+ * (XAdES-X-L). Only a positive outcome is decisive. When the given data does
+ * not suffice to prove the validity of the chain, the caller should fall back
+ * to the eID Trust Service, which also gives the definitive reason of an
+ * invalid chain.
+ */
+public class LocalTrustValidator {
+
+	private static final Log LOG = LogFactory.getLog(LocalTrustValidator.class);
+
+	private static final String OCSP_SIGNING_OID = "1.3.6.1.5.5.7.3.9";
+
+	private final Set<TrustAnchor> trustAnchors;
+
+	private final Set<X509Certificate> trustAnchorCertificates;
+
+	private final AtomicLong validations;
+
+	private final AtomicLong fallbacks;
+
+	public LocalTrustValidator(List<X509Certificate> trustAnchorCertificates) {
+		this.trustAnchors = new HashSet<TrustAnchor>();
+		this.trustAnchorCertificates = new HashSet<X509Certificate>(
+				trustAnchorCertificates);
+		for (X509Certificate trustAnchorCertificate : trustAnchorCertificates) {
+			this.trustAnchors.add(new TrustAnchor(trustAnchorCertificate, null));
+		}
+		this.validations = new AtomicLong();
+		this.fallbacks = new AtomicLong();
+	}
+
+	/**
+	 * Validates the given certificate chain at the given validation date.
+	 * 
+	 * @param certificateChain
+	 *            the certificate chain, starting with the end entity
+	 *            certificate.
+	 * @param validationDate
+	 *            the validation date.
+	 * @param ocspResponses
+	 *            the OCSP responses collected after the validation date.
+	 * @param crls
+	 *            the CRLs collected after the validation date.
+	 * @param maxGracePeriod
+	 *            the maximum time (in ms) between the validation date and the
+	 *            issuing of the revocation data.
+	 * @return <code>true</code> if the certificate chain is valid,
+	 *         <code>false</code> if the validity of the chain could not be
+	 *         proven locally.
+	 */
+	public boolean validate(List<X509Certificate> certificateChain,
+			Date validationDate, List<OCSPResp> ocspResponses,
+			List<X509CRL> crls, long maxGracePeriod) {
+
+		boolean valid;
+		try {
+			valid = doValidate(certificateChain, validationDate,
+					ocspResponses, crls, maxGracePeriod);
+		} catch (Exception e) {
+			LOG.debug("local validation error: " + e.getMessage(), e);
+			valid = false;
+		}
+		if (valid) {
+			this.validations.incrementAndGet();
+		} else {
+			this.fallbacks.incrementAndGet();
+		}
+		return valid;
+	}
+
+	private boolean doValidate(List<X509Certificate> certificateChain,
+			Date validationDate, List<OCSPResp> ocspResponses,
+			List<X509CRL> crls, long maxGracePeriod) throws Exception {
+
+		/*
+		 * The certification path excludes the trust anchor.
+		 */
+		List<X509Certificate> certificatePath = new LinkedList<X509Certificate>();
+		for (X509Certificate certificate : certificateChain) {
+			if (this.trustAnchorCertificates.contains(certificate)) {
+				break;
+			}
+			certificatePath.add(certificate);
+		}
+		if (certificatePath.isEmpty()) {
+			return false;
+		}
+
+		CertificateFactory certificateFactory = CertificateFactory
+				.getInstance("X.509");
+		CertPath certPath = certificateFactory
+				.generateCertPath(certificatePath);
+		PKIXParameters pkixParameters = new PKIXParameters(this.trustAnchors);
+		pkixParameters.setDate(validationDate);
+		// revocation is checked against the given revocation data below
+		pkixParameters.setRevocationEnabled(false);
+		CertPathValidator certPathValidator = CertPathValidator
+				.getInstance("PKIX");
+		certPathValidator.validate(certPath, pkixParameters);
+
+		for (int idx = 0; idx < certificatePath.size(); idx++) {
+			X509Certificate certificate = certificatePath.get(idx);
+			X509Certificate issuerCertificate;
+			if (idx + 1 < certificatePath.size()) {
+				issuerCertificate = certificatePath.get(idx + 1);
+			} else {
+				issuerCertificate = findTrustAnchor(certificate);
+			}
+			if (null == issuerCertificate) {
+				return false;
+			}
+			if (!isNotRevoked(certificate, issuerCertificate, validationDate,
+					ocspResponses, crls, maxGracePeriod)) {
+				LOG.debug("no local revocation proof for: "
+						+ certificate.getSubjectX500Principal());
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private X509Certificate findTrustAnchor(X509Certificate certificate) {
+		for (X509Certificate trustAnchorCertificate : this.trustAnchorCertificates) {
+			if (!trustAnchorCertificate.getSubjectX500Principal().equals(
+					certificate.getIssuerX500Principal())) {
+				continue;
+			}
+			try {
+				certificate.verify(trustAnchorCertificate.getPublicKey());
+				return trustAnchorCertificate;
+			} catch (Exception e) {
+				// try next trust anchor with same subject
+			}
+		}
+		return null;
+	}
+
+	private boolean isNotRevoked(X509Certificate certificate,
+			X509Certificate issuerCertificate, Date validationDate,
+			List<OCSPResp> ocspResponses, List<X509CRL> crls,
+			long maxGracePeriod) throws Exception {
+
+		if (null != ocspResponses) {
+			for (OCSPResp ocspResponse : ocspResponses) {
+				if (isGoodOcspResponse(ocspResponse, certificate,
+						issuerCertificate, validationDate, maxGracePeriod)) {
+					return true;
+				}
+			}
+		}
+		if (null != crls) {
+			for (X509CRL crl : crls) {
+				if (isNotRevokedByCrl(crl, certificate, issuerCertificate,
+						validationDate, maxGracePeriod)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private boolean isGoodOcspResponse(OCSPResp ocspResponse,
+			X509Certificate certificate, X509Certificate issuerCertificate,
+			Date validationDate, long maxGracePeriod) throws Exception {
+
+		if (OCSPResp.SUCCESSFUL != ocspResponse.getStatus()) {
+			return false;
+		}
+		BasicOCSPResp basicOCSPResp = (BasicOCSPResp) ocspResponse
+				.getResponseObject();
+		for (SingleResp singleResp : basicOCSPResp.getResponses()) {
+			CertificateID responseCertificateId = singleResp.getCertID();
+			CertificateID certificateId = new CertificateID(
+					responseCertificateId.getHashAlgOID(), issuerCertificate,
+					certificate.getSerialNumber());
+			if (!certificateId.equals(responseCertificateId)) {
+				continue;
+			}
+			if (CertificateStatus.GOOD != singleResp.getCertStatus()) {
+				return false;
+			}
+			if (!isFresh(singleResp.getThisUpdate(), validationDate,
+					maxGracePeriod)) {
+				return false;
+			}
+			PublicKey responderPublicKey = getOcspResponderPublicKey(
+					basicOCSPResp, issuerCertificate);
+			if (null == responderPublicKey) {
+				return false;
+			}
+			return basicOCSPResp.verify(responderPublicKey,
+					BouncyCastleProvider.PROVIDER_NAME);
+		}
+		return false;
+	}
+
+	/**
+	 * The OCSP response is signed either by the issuer itself, or by a
+	 * delegated OCSP responder certified by the issuer.
+	 */
+	private PublicKey getOcspResponderPublicKey(BasicOCSPResp basicOCSPResp,
+			X509Certificate issuerCertificate) throws Exception {
+
+		X509Certificate[] certificates = basicOCSPResp
+				.getCerts(BouncyCastleProvider.PROVIDER_NAME);
+		if (null == certificates || 0 == certificates.length
+				|| certificates[0].equals(issuerCertificate)) {
+			return issuerCertificate.getPublicKey();
+		}
+		X509Certificate responderCertificate = certificates[0];
+		List<String> extendedKeyUsage = responderCertificate
+				.getExtendedKeyUsage();
+		if (null == extendedKeyUsage
+				|| !extendedKeyUsage.contains(OCSP_SIGNING_OID)) {
+			return null;
+		}
+		if (!responderCertificate.getIssuerX500Principal().equals(
+				issuerCertificate.getSubjectX500Principal())) {
+			return null;
+		}
+		responderCertificate.verify(issuerCertificate.getPublicKey());
+		responderCertificate.checkValidity(basicOCSPResp.getProducedAt());
+		return responderCertificate.getPublicKey();
+	}
+
+	/**
+	 * Only a complete base CRL, issued while the certificate had not yet
+	 * expired, proves that the certificate is not revoked. Expired
+	 * certificates may be dropped from a CRL.
+	 */
+	private boolean isNotRevokedByCrl(X509CRL crl,
+			X509Certificate certificate, X509Certificate issuerCertificate,
+			Date validationDate, long maxGracePeriod) throws Exception {
+
+		if (!crl.getIssuerX500Principal().equals(
+				issuerCertificate.getSubjectX500Principal())) {
+			return false;
+		}
+		if (!isCompleteCrl(crl)) {
+			LOG.debug("not a complete base CRL");
+			return false;
+		}
+		if (!isFresh(crl.getThisUpdate(), validationDate, maxGracePeriod)) {
+			return false;
+		}
+		Date nextUpdate = crl.getNextUpdate();
+		if (null != nextUpdate && nextUpdate.before(validationDate)) {
+			return false;
+		}
+		if (crl.getThisUpdate().after(certificate.getNotAfter())) {
+			return false;
+		}
+		crl.verify(issuerCertificate.getPublicKey());
+		return null == crl.getRevokedCertificate(certificate
+				.getSerialNumber());
+	}
+
+	/**
+	 * Delta CRLs and CRLs scoped by an issuing distribution point only list
+	 * part of the revoked certificates. CRLs with other critical extensions
+	 * cannot be interpreted.
+	 */
+	private boolean isCompleteCrl(X509CRL crl) {
+		if (null != crl.getExtensionValue(X509Extensions.DeltaCRLIndicator
+				.getId())) {
+			return false;
+		}
+		if (null != crl
+				.getExtensionValue(X509Extensions.IssuingDistributionPoint
+						.getId())) {
+			return false;
+		}
+		Set<String> criticalExtensions = crl.getCriticalExtensionOIDs();
+		return null == criticalExtensions || criticalExtensions.isEmpty();
+	}
+
+	/**
+	 * Revocation data is only conclusive if issued after the validation date,
+	 * within the grace period.
+	 */
+	private boolean isFresh(Date thisUpdate, Date validationDate,
+			long maxGracePeriod) {
+		return !thisUpdate.before(validationDate)
+				&& thisUpdate.getTime() <= validationDate.getTime()
+						+ maxGracePeriod;
+	}
+
+	public long getValidations() {
+		return this.validations.get();
+	}
+
+	public long getFallbacks() {
+		return this.fallbacks.get();
+	}
+
+	@Override
+	public String toString() {
+		return "trust anchors=" + this.trustAnchors.size()
+				+ ", local validations=" + getValidations() + ", fallbacks="
+				+ getFallbacks();
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.dss.model.ConfigProperty;
+import be.fedict.eid.dss.model.Configuration;
+
+/**
+ * EJB 3.1 singleton holding the local trust validators. The trust anchors are
+ * loaded from the configured trust anchors directory, which holds one
+ * sub-directory per trust domain with the (PEM or DER encoded) trust anchor
+ * certificates of that trust domain.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class LocalTrustValidatorSingletonBean {
+
+	private static final Log LOG = LogFactory
+			.getLog(LocalTrustValidatorSingletonBean.class);
+
+	@EJB
+	private Configuration configuration;
+
+	private volatile Map<String, LocalTrustValidator> localTrustValidators = Collections
+			.emptyMap();
+
+	/**
+	 * (Re)loads the trust anchors.
+	 */
+	@PostConstruct
+	public void reset() {
+
+		String trustAnchorsPath = this.configuration.getValue(
+				ConfigProperty.TRUST_ANCHORS_PATH, String.class);
+		if (null == trustAnchorsPath || trustAnchorsPath.trim().isEmpty()) {
+			LOG.debug("local trust validation disabled");
+			this.localTrustValidators = Collections.emptyMap();
+			return;
+		}
+		File trustAnchorsDir = new File(trustAnchorsPath.trim());
+		File[] trustDomainDirs = trustAnchorsDir.listFiles();
+		if (null == trustDomainDirs) {
+			LOG.error("trust anchors directory not found: " + trustAnchorsDir);
+			this.localTrustValidators = Collections.emptyMap();
+			return;
+		}
+
+		Map<String, LocalTrustValidator> localTrustValidators = new HashMap<String, LocalTrustValidator>();
+		for (File trustDomainDir : trustDomainDirs) {
+			if (!trustDomainDir.isDirectory()) {
+				continue;
+			}
+			List<X509Certificate> trustAnchors = loadCertificates(trustDomainDir);
+			if (trustAnchors.isEmpty()) {
+				continue;
+			}
+			LOG.debug("trust domain " + trustDomainDir.getName() + ": "
+					+ trustAnchors.size() + " trust anchors");
+			localTrustValidators.put(trustDomainDir.getName(),
+					new LocalTrustValidator(trustAnchors));
+		}
+		this.localTrustValidators = localTrustValidators;
+	}
+
+	private List<X509Certificate> loadCertificates(File dir) {
+
+		List<X509Certificate> certificates = new LinkedList<X509Certificate>();
+		File[] files = dir.listFiles();
+		if (null == files) {
+			return certificates;
+		}
+		CertificateFactory certificateFactory;
+		try {
+			certificateFactory = CertificateFactory.getInstance("X.509");
+		} catch (Exception e) {
+			throw new RuntimeException("X.509 factory error: "
+					+ e.getMessage(), e);
+		}
+		for (File file : files) {
+			if (!file.isFile()) {
+				continue;
+			}
+			InputStream inputStream = null;
+			try {
+				inputStream = new FileInputStream(file);
+				for (Certificate certificate : certificateFactory
+						.generateCertificates(inputStream)) {
+					certificates.add((X509Certificate) certificate);
+				}
+			} catch (Exception e) {
+				LOG.error("could not load trust anchor " + file + ": "
+						+ e.getMessage(), e);
+			} finally {
+				IOUtils.closeQuietly(inputStream);
+			}
+		}
+		return certificates;
+	}
+
+	/**
+	 * @return the local trust validator for the given trust domain, or
+	 *         <code>null</code> if no trust anchors are configured for it.
+	 */
+	public LocalTrustValidator getLocalTrustValidator(String trustDomain) {
+		return this.localTrustValidators.get(trustDomain);
+	}
+
+	/**
+	 * @return a human readable summary of the local trust validation
+	 *         statistics per trust domain.
+	 */
+	public String getStatistics() {
+		Map<String, LocalTrustValidator> localTrustValidators = this.localTrustValidators;
+		if (localTrustValidators.isEmpty()) {
+			return "disabled";
+		}
+		return localTrustValidators.toString();
+	}
+}
@@ -22,36 +22,46 @@ import java.io.File;
 import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.security.jacc.PolicyContext;
 import javax.security.jacc.PolicyContextException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.validation.Schema;
 
 import org.bouncycastle.ocsp.OCSPResp;
 import org.bouncycastle.tsp.TimeStampToken;
+import org.xml.sax.SAXException;
 
 import be.fedict.eid.dss.model.ConfigProperty;
 import be.fedict.eid.dss.model.Configuration;
+import be.fedict.eid.dss.model.DocumentRepository;
 import be.fedict.eid.dss.model.TrustValidationService;
 import be.fedict.eid.dss.model.XmlSchemaManager;
 import be.fedict.eid.dss.model.XmlStyleSheetManager;
-import be.fedict.eid.dss.spi.DSSDocumentContext;
+import be.fedict.eid.dss.spi.DSSConcurrentDocumentContext;
+import be.fedict.eid.dss.spi.DSSXmlSchemaDocumentContext;
+import be.fedict.eid.dss.spi.DSSXmlStyleSheetDocumentContext;
 
 /**
  * Implementation of DSS document context.
  * 
  * @author Frank Cornelis
  */
-public class ModelDSSDocumentContext implements DSSDocumentContext {
+public class ModelDSSDocumentContext implements DSSConcurrentDocumentContext,
+		DSSXmlSchemaDocumentContext, DSSXmlStyleSheetDocumentContext {
 
 	private static final long serialVersionUID = 1L;
 
-	public static final String TMP_FILE_SET_SESSION_ATTRIBUTE = "eid-dss-temp-file-set";
-
 	private final XmlSchemaManager xmlSchemaManager;
 
 	private final XmlStyleSheetManager xmlStyleSheetManager;
@@ -82,6 +92,14 @@ public class ModelDSSDocumentContext implements DSSDocumentContext {
 		return this.xmlSchemaManager.getXmlSchema(namespace);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public Schema getCompiledXmlSchema(String namespace) throws SAXException {
+
+		return this.xmlSchemaManager.getCompiledXmlSchema(namespace);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -90,6 +108,15 @@ public class ModelDSSDocumentContext implements DSSDocumentContext {
 		return this.xmlStyleSheetManager.getXmlStyleSheet(namespace);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public Templates getCompiledXmlStyleSheet(String namespace)
+			throws TransformerConfigurationException {
+
+		return this.xmlStyleSheetManager.getCompiledXmlStyleSheet(namespace);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -109,6 +136,69 @@ public class ModelDSSDocumentContext implements DSSDocumentContext {
 		this.trustValidationService.validate(timeStampToken);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public void validateConcurrently(List<Callable<Void>> trustValidations)
+			throws Exception {
+
+		if (trustValidations.size() < 2) {
+			for (Callable<Void> trustValidation : trustValidations) {
+				trustValidation.call();
+			}
+			return;
+		}
+
+		Integer timeout = this.configuration.getValue(
+				ConfigProperty.TRUST_VALIDATION_TIMEOUT, Integer.class);
+		if (null == timeout) {
+			timeout = (Integer) ConfigProperty.TRUST_VALIDATION_TIMEOUT
+					.getDefaultValue();
+		}
+		long deadline = System.currentTimeMillis() + timeout * 1000L;
+
+		List<Future<Void>> futures = new LinkedList<Future<Void>>();
+		try {
+			for (Callable<Void> trustValidation : trustValidations) {
+				futures.add(this.trustValidationService
+						.validateAsync(trustValidation));
+			}
+			for (Future<Void> future : futures) {
+				long remaining = Math.max(0,
+						deadline - System.currentTimeMillis());
+				if (!getResult(future, remaining)) {
+					throw new TimeoutException("trust validations timed out");
+				}
+			}
+		} finally {
+			// drop the validations that are still pending
+			for (Future<Void> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * @return <code>false</code> if the trust validation did not finish within
+	 *         the given time.
+	 */
+	private boolean getResult(Future<Void> future, long timeout)
+			throws Exception {
+		try {
+			future.get(timeout, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (TimeoutException e) {
+			return false;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw new RuntimeException("trust validation error: "
+					+ cause.getMessage(), cause);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -150,13 +240,7 @@ public class ModelDSSDocumentContext implements DSSDocumentContext {
 			throw new RuntimeException("JACC error: " + e.getMessage(), e);
 		}
 		HttpSession httpSession = httpServletRequest.getSession();
-		Set<String> tmpFileSet = (Set<String>) httpSession
-				.getAttribute(TMP_FILE_SET_SESSION_ATTRIBUTE);
-		if (null == tmpFileSet) {
-			tmpFileSet = new HashSet<String>();
-			httpSession
-					.setAttribute(TMP_FILE_SET_SESSION_ATTRIBUTE, tmpFileSet);
-		}
-		tmpFileSet.add(tmpFile.getAbsolutePath());
+		new DocumentRepository(httpSession)
+				.deleteWhenSessionDestroyed(tmpFile);
 	}
 }
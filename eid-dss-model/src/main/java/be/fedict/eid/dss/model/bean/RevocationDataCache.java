@@ -0,0 +1,345 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.io.ByteArrayInputStream;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bouncycastle.ocsp.BasicOCSPResp;
+import org.bouncycastle.ocsp.OCSPResp;
+import org.bouncycastle.ocsp.SingleResp;
+
+import be.fedict.eid.applet.service.signer.facets.RevocationData;
+import be.fedict.eid.dss.spi.utils.BoundedCache;
+import be.fedict.eid.dss.spi.utils.Clock;
+
+/**
+ * Node-local, entry count bounded LRU cache of the revocation data embedded in
+ * XAdES-X-L signatures. An entry expires at the earliest next update of its
+ * OCSP responses and CRLs, and never later than the maximum age after it was
+ * fetched. Revocation data without next update expires after the maximum age,
+ * counted from its this update.
+ * <p>
+ * Concurrent misses on the same key share a single fetch. Entries past the
+ * refresh point (80% of their lifetime) are still served, while a background
+ * fetch replaces them.
+ */
+public class RevocationDataCache {
+
+	private static final Log LOG = LogFactory.getLog(RevocationDataCache.class);
+
+	private static final int REFRESH_PERCENTAGE = 80;
+
+	private final long maxAge;
+
+	private final Executor refreshExecutor;
+
+	private final Clock clock;
+
+	private final BoundedCache<String, CachedRevocationData> cachedRevocationData;
+
+	private final ConcurrentMap<String, FutureTask<RevocationData>> fetches;
+
+	private long refreshes;
+
+	/**
+	 * @param maxEntries
+	 *            the maximum number of cached certificate chains.
+	 * @param maxAge
+	 *            the maximum age of revocation data without next update, in
+	 *            milliseconds.
+	 * @param refreshExecutor
+	 *            runs the background refreshes.
+	 */
+	public RevocationDataCache(int maxEntries, long maxAge,
+			Executor refreshExecutor) {
+		this(maxEntries, maxAge, refreshExecutor, Clock.SYSTEM);
+	}
+
+	/**
+	 * @param maxEntries
+	 *            the maximum number of cached certificate chains.
+	 * @param maxAge
+	 *            the maximum age of revocation data without next update, in
+	 *            milliseconds.
+	 * @param refreshExecutor
+	 *            runs the background refreshes.
+	 * @param clock
+	 *            gives the current time to compute the expiration and refresh
+	 *            points against.
+	 */
+	public RevocationDataCache(int maxEntries, long maxAge,
+			Executor refreshExecutor, Clock clock) {
+		this.maxAge = maxAge;
+		this.refreshExecutor = refreshExecutor;
+		this.clock = clock;
+		this.cachedRevocationData = new BoundedCache<String, CachedRevocationData>(
+				maxEntries, clock);
+		this.fetches = new ConcurrentHashMap<String, FutureTask<RevocationData>>();
+	}
+
+	/**
+	 * @return the cache key of the revocation data of the certificate chain
+	 *         with the given end entity certificate.
+	 */
+	public static String getKey(String trustDomain,
+			X509Certificate certificate) {
+		return trustDomain + "|"
+				+ certificate.getIssuerX500Principal().getName() + "|"
+				+ certificate.getSerialNumber();
+	}
+
+	/**
+	 * @param key
+	 *            identifies the certificate chain.
+	 * @param fetcher
+	 *            fetches the revocation data on a cache miss or refresh.
+	 * @return the cached or freshly fetched revocation data.
+	 */
+	public RevocationData get(String key, Callable<RevocationData> fetcher)
+			throws Exception {
+
+		CachedRevocationData cached = this.cachedRevocationData.get(key);
+		if (null == cached) {
+			return fetch(key, fetcher);
+		}
+		if (cached.refresh <= this.clock.currentTimeMillis()) {
+			refresh(key, fetcher);
+		}
+		return copy(cached.revocationData);
+	}
+
+	/**
+	 * Fetches the revocation data, or waits for a fetch of the same key that
+	 * is already in progress.
+	 */
+	private RevocationData fetch(String key, Callable<RevocationData> fetcher)
+			throws Exception {
+
+		FutureTask<RevocationData> fetch = new FutureTask<RevocationData>(
+				new CachingFetcher(key, fetcher));
+		FutureTask<RevocationData> runningFetch = this.fetches.putIfAbsent(
+				key, fetch);
+		if (null == runningFetch) {
+			runningFetch = fetch;
+			try {
+				fetch.run();
+			} finally {
+				this.fetches.remove(key, fetch);
+			}
+		}
+		try {
+			return copy(runningFetch.get());
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Schedules a background fetch, unless one is already in progress.
+	 */
+	private void refresh(final String key, Callable<RevocationData> fetcher) {
+
+		final FutureTask<RevocationData> fetch = new FutureTask<RevocationData>(
+				new CachingFetcher(key, fetcher));
+		if (null != this.fetches.putIfAbsent(key, fetch)) {
+			return;
+		}
+		synchronized (this) {
+			this.refreshes++;
+		}
+		try {
+			this.refreshExecutor.execute(new Runnable() {
+
+				public void run() {
+					try {
+						fetch.run();
+					} finally {
+						RevocationDataCache.this.fetches.remove(key, fetch);
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			LOG.error("could not schedule revocation data refresh: "
+					+ e.getMessage(), e);
+			this.fetches.remove(key, fetch);
+		}
+	}
+
+	private class CachingFetcher implements Callable<RevocationData> {
+
+		private final String key;
+
+		private final Callable<RevocationData> fetcher;
+
+		public CachingFetcher(String key, Callable<RevocationData> fetcher) {
+			this.key = key;
+			this.fetcher = fetcher;
+		}
+
+		public RevocationData call() throws Exception {
+			RevocationData revocationData = this.fetcher.call();
+			put(this.key, revocationData);
+			return revocationData;
+		}
+	}
+
+	private void put(String key, RevocationData revocationData) {
+
+		long now = this.clock.currentTimeMillis();
+		long expiration = getExpiration(revocationData, now);
+		if (expiration <= now) {
+			LOG.debug("not caching stale revocation data: " + key);
+			return;
+		}
+		long refresh = now + (expiration - now) * REFRESH_PERCENTAGE / 100;
+
+		this.cachedRevocationData.put(key, new CachedRevocationData(
+				copy(revocationData), refresh), expiration);
+	}
+
+	/**
+	 * @return the earliest next update of the given revocation data, or
+	 *         <code>now</code> if the revocation data cannot be parsed.
+	 */
+	private long getExpiration(RevocationData revocationData, long now) {
+
+		long expiration = now + this.maxAge;
+		try {
+			CertificateFactory certificateFactory = CertificateFactory
+					.getInstance("X.509");
+			for (byte[] encodedCrl : revocationData.getCrls()) {
+				X509CRL crl = (X509CRL) certificateFactory
+						.generateCRL(new ByteArrayInputStream(encodedCrl));
+				expiration = Math.min(expiration,
+						getExpiration(crl.getThisUpdate(), crl.getNextUpdate()));
+			}
+			for (byte[] encodedOcsp : revocationData.getOcsps()) {
+				BasicOCSPResp basicOCSPResp = (BasicOCSPResp) new OCSPResp(
+						encodedOcsp).getResponseObject();
+				for (SingleResp singleResp : basicOCSPResp.getResponses()) {
+					expiration = Math.min(
+							expiration,
+							getExpiration(singleResp.getThisUpdate(),
+									singleResp.getNextUpdate()));
+				}
+			}
+		} catch (Exception e) {
+			LOG.error("could not parse revocation data: " + e.getMessage(), e);
+			return now;
+		}
+		return expiration;
+	}
+
+	private long getExpiration(Date thisUpdate, Date nextUpdate) {
+
+		if (null != nextUpdate) {
+			return nextUpdate.getTime();
+		}
+		return thisUpdate.getTime() + this.maxAge;
+	}
+
+	/**
+	 * Callers get their own copy, so the cached lists can never be modified.
+	 */
+	private static RevocationData copy(RevocationData revocationData) {
+
+		RevocationData copy = new RevocationData();
+		for (byte[] crl : revocationData.getCrls()) {
+			copy.addCRL(crl);
+		}
+		for (byte[] ocsp : revocationData.getOcsps()) {
+			copy.addOCSP(ocsp);
+		}
+		return copy;
+	}
+
+	/**
+	 * Removes the revocation data of the given key, for example because its
+	 * certificate chain no longer validates.
+	 */
+	public void remove(String key) {
+		this.cachedRevocationData.remove(key);
+	}
+
+	/**
+	 * Removes all expired entries.
+	 * 
+	 * @return the number of removed entries.
+	 */
+	public int removeExpired() {
+		return this.cachedRevocationData.removeExpired();
+	}
+
+	public int getEntryCount() {
+		return this.cachedRevocationData.getEntryCount();
+	}
+
+	public long getHits() {
+		return this.cachedRevocationData.getHits();
+	}
+
+	public long getMisses() {
+		return this.cachedRevocationData.getMisses();
+	}
+
+	public synchronized long getRefreshes() {
+		return this.refreshes;
+	}
+
+	public long getEvictions() {
+		return this.cachedRevocationData.getEvictions();
+	}
+
+	@Override
+	public String toString() {
+		return "entries=" + getEntryCount() + "/"
+				+ this.cachedRevocationData.getMaxWeight() + ", hits="
+				+ getHits() + ", misses=" + getMisses() + ", refreshes="
+				+ getRefreshes() + ", evictions=" + getEvictions();
+	}
+
+	private static class CachedRevocationData {
+
+		private final RevocationData revocationData;
+
+		private final long refresh;
+
+		public CachedRevocationData(RevocationData revocationData,
+				long refresh) {
+			this.revocationData = revocationData;
+			this.refresh = refresh;
+		}
+	}
+}
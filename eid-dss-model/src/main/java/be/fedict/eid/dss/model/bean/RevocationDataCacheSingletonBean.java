@@ -0,0 +1,115 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.util.concurrent.Executor;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.Asynchronous;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.SessionContext;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.dss.model.ConfigProperty;
+import be.fedict.eid.dss.model.Configuration;
+
+/**
+ * EJB 3.1 singleton holding the revocation data cache used during signature
+ * creation. The {@link RevocationDataCache} takes care of its own locking,
+ * background refreshes run on the container thread pool.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class RevocationDataCacheSingletonBean {
+
+	private static final Log LOG = LogFactory
+			.getLog(RevocationDataCacheSingletonBean.class);
+
+	@EJB
+	private Configuration configuration;
+
+	@Resource
+	private SessionContext sessionContext;
+
+	private RevocationDataCache revocationDataCache;
+
+	@PostConstruct
+	public void postConstruct() {
+
+		Integer cacheSize = this.configuration.getValue(
+				ConfigProperty.REVOCATION_CACHE_SIZE, Integer.class);
+		Integer maxAge = this.configuration.getValue(
+				ConfigProperty.REVOCATION_CACHE_MAX_AGE, Integer.class);
+		if (null == cacheSize || cacheSize <= 0 || null == maxAge
+				|| maxAge <= 0) {
+			LOG.debug("revocation data cache disabled");
+			return;
+		}
+		LOG.debug("revocation data cache size: " + cacheSize + ", max age: "
+				+ maxAge + " seconds");
+
+		/*
+		 * Go through the business object, else the asynchronous invocation is
+		 * not intercepted by the container.
+		 */
+		final RevocationDataCacheSingletonBean businessObject = this.sessionContext
+				.getBusinessObject(RevocationDataCacheSingletonBean.class);
+		this.revocationDataCache = new RevocationDataCache(cacheSize,
+				maxAge * 1000L, new Executor() {
+
+					public void execute(Runnable command) {
+						businessObject.refresh(command);
+					}
+				});
+	}
+
+	/**
+	 * @return the revocation data cache, or <code>null</code> if revocation
+	 *         data caching is disabled.
+	 */
+	public RevocationDataCache getRevocationDataCache() {
+		return this.revocationDataCache;
+	}
+
+	@Asynchronous
+	public void refresh(Runnable refresh) {
+		refresh.run();
+	}
+
+	@Schedule(minute = "*/5", hour = "*", persistent = false)
+	public void removeExpired() {
+
+		RevocationDataCache cache = this.revocationDataCache;
+		if (null == cache) {
+			return;
+		}
+		int removals = cache.removeExpired();
+		LOG.debug("revocation data cache: removed " + removals
+				+ " expired entries, " + cache);
+	}
+}
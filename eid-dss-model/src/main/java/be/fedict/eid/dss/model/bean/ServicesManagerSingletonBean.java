@@ -26,8 +26,12 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.EJB;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
@@ -51,11 +55,16 @@ import be.fedict.eid.dss.spi.protocol.ObjectFactory;
 
 /**
  * EJB 3.1 singleton services manager bean.
+ * <p/>
+ * Document services are created and initialized once per content type, and
+ * shared by all requests. Hence the bean managed concurrency, after
+ * construction only the document service map gets modified.
  * 
  * @author Frank Cornelis
  */
 @Singleton
 @Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class ServicesManagerSingletonBean {
 
 	private static final Log LOG = LogFactory.getLog(ServicesManagerBean.class);
@@ -71,6 +80,8 @@ public class ServicesManagerSingletonBean {
 
 	private Map<String, String> documentServiceClassNames;
 
+	private final ConcurrentMap<String, DSSDocumentService> documentServices = new ConcurrentHashMap<String, DSSDocumentService>();
+
 	@EJB
 	private XmlSchemaManager xmlSchemaManager;
 
@@ -88,6 +99,19 @@ public class ServicesManagerSingletonBean {
 		LOG.debug("post construct");
 		this.protocolServiceClassNames = loadProtocolServiceClassNames();
 		this.documentServiceClassNames = loadDocumentServiceClassNames();
+		for (String contentType : this.documentServiceClassNames.keySet()) {
+			try {
+				this.documentServices.put(contentType,
+						createDocumentService(contentType));
+			} catch (RuntimeException e) {
+				/*
+				 * Retried on first use, a broken document service should not
+				 * prevent the other ones from being available.
+				 */
+				LOG.error("could not create document service for "
+						+ contentType + ": " + e.getMessage(), e);
+			}
+		}
 	}
 
 	public Map<String, String> getProtocolServiceClassNames() {
@@ -201,9 +225,25 @@ public class ServicesManagerSingletonBean {
 		return documentServiceClassNames;
 	}
 
-	@SuppressWarnings("unchecked")
 	public DSSDocumentService getDocumentService(String contentType) {
 		LOG.debug("getDocumentService");
+		DSSDocumentService documentService = this.documentServices
+				.get(contentType);
+		if (null != documentService) {
+			return documentService;
+		}
+		documentService = createDocumentService(contentType);
+		DSSDocumentService existingDocumentService = this.documentServices
+				.putIfAbsent(contentType, documentService);
+		if (null != existingDocumentService) {
+			return existingDocumentService;
+		}
+		return documentService;
+	}
+
+	@SuppressWarnings("unchecked")
+	private DSSDocumentService createDocumentService(String contentType) {
+		LOG.debug("create document service for " + contentType);
 		String documentServiceClassName = this.documentServiceClassNames
 				.get(contentType);
 		if (null == documentServiceClassName) {
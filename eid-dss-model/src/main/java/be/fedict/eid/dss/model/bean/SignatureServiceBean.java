@@ -51,7 +51,6 @@ import be.fedict.eid.dss.model.DocumentRepository;
 import be.fedict.eid.dss.model.ServicesManager;
 import be.fedict.eid.dss.model.TrustValidationService;
 import be.fedict.eid.dss.spi.DSSDocumentService;
-import be.fedict.trust.client.XKMS2Client;
 
 /**
  * XML Signature Service bean. Acts as a proxy towards the actual
@@ -77,6 +76,12 @@ public class SignatureServiceBean implements SignatureServiceEx {
 	@EJB
 	private TrustValidationService trustValidationService;
 
+	@EJB
+	private RevocationDataCacheSingletonBean revocationDataCacheSingletonBean;
+
+	@EJB
+	private CircuitBreakerSingletonBean circuitBreakerSingletonBean;
+
 	public String getFilesDigestAlgorithm() {
 		return null;
 	}
@@ -98,8 +103,6 @@ public class SignatureServiceBean implements SignatureServiceEx {
 	private SignatureServiceEx getSignatureService(IdentityDTO identity,
 			byte[] photo) {
 
-		XKMS2Client xkms2Client = this.trustValidationService.getXkms2Client();
-
 		String tspUrl = this.configuration.getValue(ConfigProperty.TSP_URL,
 				String.class);
 		String tspPolicyOid = this.configuration.getValue(
@@ -122,18 +125,28 @@ public class SignatureServiceBean implements SignatureServiceEx {
 
 		LOG.debug("signatureDigestAlgo: " + signatureDigestAlgo);
 
+		RevocationDataCache revocationDataCache = this.revocationDataCacheSingletonBean
+				.getRevocationDataCache();
 		RevocationDataService revocationDataService = new TrustServiceRevocationDataService(
-				xkms2Client, signTrustDomain);
+				this.trustValidationService, signTrustDomain,
+				revocationDataCache);
 		SignatureFacet signatureFacet = new SignerCertificateSignatureFacet();
 		TimeStampServiceValidator timeStampServiceValidator = new TrustServiceTimeStampServiceValidator(
-				xkms2Client, tsaTrustDomain);
-		TSPTimeStampService timeStampService = new TSPTimeStampService(tspUrl,
-				timeStampServiceValidator);
-		if (useHttpProxy) {
-			timeStampService.setProxy(httpProxyHost, httpProxyPort);
-		}
-		if (null != tspPolicyOid && !tspPolicyOid.isEmpty()) {
-			timeStampService.setRequestPolicy(tspPolicyOid);
+				this.trustValidationService, tsaTrustDomain,
+				revocationDataCache);
+		FailoverTimeStampService timeStampService = new FailoverTimeStampService();
+		for (String tspEndpoint : CircuitBreaker.getEndpoints(tspUrl)) {
+			TSPTimeStampService tspTimeStampService = new TSPTimeStampService(
+					tspEndpoint, timeStampServiceValidator);
+			if (useHttpProxy) {
+				tspTimeStampService.setProxy(httpProxyHost, httpProxyPort);
+			}
+			if (null != tspPolicyOid && !tspPolicyOid.isEmpty()) {
+				tspTimeStampService.setRequestPolicy(tspPolicyOid);
+			}
+			timeStampService.addTimeStampService(tspTimeStampService,
+					this.circuitBreakerSingletonBean
+							.getCircuitBreaker(tspEndpoint));
 		}
 
 		HttpSession httpSession = HttpSessionTemporaryDataStorage
@@ -148,7 +161,8 @@ public class SignatureServiceBean implements SignatureServiceEx {
 				document);
 		String role = documentRepository.getRole();
 
-		OutputStream documentOutputStream = new DocumentRepositoryOutputStream();
+		OutputStream documentOutputStream = new DocumentRepositoryOutputStream(
+				httpSession);
 
 		DSSDocumentService documentService = this.servicesManager
 				.getDocumentService();
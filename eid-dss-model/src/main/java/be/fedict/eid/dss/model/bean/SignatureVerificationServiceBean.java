@@ -18,16 +18,32 @@
 
 package be.fedict.eid.dss.model.bean;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import javax.annotation.Resource;
+import javax.ejb.AsyncResult;
+import javax.ejb.Asynchronous;
 import javax.ejb.EJB;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import be.fedict.eid.dss.model.ConfigProperty;
+import be.fedict.eid.dss.model.Configuration;
 import be.fedict.eid.dss.model.ServicesManager;
+import be.fedict.eid.dss.model.SignatureVerificationRequest;
+import be.fedict.eid.dss.model.SignatureVerificationResult;
 import be.fedict.eid.dss.model.SignatureVerificationService;
+import be.fedict.eid.dss.model.VerificationCacheManager;
 import be.fedict.eid.dss.model.exception.DocumentFormatException;
 import be.fedict.eid.dss.model.exception.InvalidSignatureException;
 import be.fedict.eid.dss.spi.DSSDocumentService;
@@ -43,10 +59,27 @@ public class SignatureVerificationServiceBean implements
 	@EJB
 	private ServicesManager servicesManager;
 
+	@EJB
+	private Configuration configuration;
+
+	@EJB
+	private VerificationCacheManager verificationCacheManager;
+
+	@Resource
+	private SessionContext sessionContext;
+
 	public List<SignatureInfo> verify(byte[] data, String mimeType,
 			byte[] originalData) throws DocumentFormatException,
 			InvalidSignatureException {
 		LOG.debug("content type: " + mimeType);
+		String cacheKey = getCacheKey(data, mimeType, originalData);
+		List<SignatureInfo> cachedSignatureInfos = this.verificationCacheManager
+				.get(cacheKey);
+		if (null != cachedSignatureInfos) {
+			LOG.debug("verification cache hit");
+			return cachedSignatureInfos;
+		}
+
 		DSSDocumentService documentService = this.servicesManager
 				.getDocumentService(mimeType);
 		if (null == documentService) {
@@ -69,6 +102,109 @@ public class SignatureVerificationServiceBean implements
 			LOG.error("error verifying signatures: " + e.getMessage(), e);
 			throw new InvalidSignatureException();
 		}
+		/*
+		 * Only successful verifications are cached, a failure might be caused
+		 * by a temporarily unreachable trust service.
+		 */
+		this.verificationCacheManager.put(cacheKey, signatureInfos);
 		return signatureInfos;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * The cache key covers everything the verification outcome depends on:
+	 * the document, the original document, the content type and the
+	 * configuration version, which changes whenever the configuration used
+	 * by the trust validation does.
+	 */
+	private String getCacheKey(byte[] data, String mimeType,
+			byte[] originalData) {
+		MessageDigest messageDigest;
+		try {
+			messageDigest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256 not supported: "
+					+ e.getMessage(), e);
+		}
+		String documentDigest = new String(Hex.encodeHex(messageDigest
+				.digest(data)));
+		String originalDocumentDigest = null;
+		if (null != originalData) {
+			originalDocumentDigest = new String(Hex.encodeHex(messageDigest
+					.digest(originalData)));
+		}
+		StringBuilder key = new StringBuilder();
+		key.append(documentDigest);
+		key.append('|').append(originalDocumentDigest);
+		key.append('|').append(mimeType);
+		key.append('|').append(this.configuration.getVersion());
+		return key.toString();
+	}
+
+	@Asynchronous
+	public Future<List<SignatureInfo>> verifyAsync(byte[] data,
+			String mimeType, byte[] originalData)
+			throws DocumentFormatException, InvalidSignatureException {
+		return new AsyncResult<List<SignatureInfo>>(verify(data, mimeType,
+				originalData));
+	}
+
+	public List<SignatureVerificationResult> verify(
+			List<SignatureVerificationRequest> requests) {
+		Integer parallelism = this.configuration.getValue(
+				ConfigProperty.VERIFY_BATCH_PARALLELISM, Integer.class);
+		if (null == parallelism || parallelism < 1) {
+			parallelism = 1;
+		}
+		LOG.debug("verifying " + requests.size() + " documents, parallelism: "
+				+ parallelism);
+
+		/*
+		 * Go through the business object, else the asynchronous invocation is
+		 * not intercepted by the container. The container thread pool runs
+		 * the verifications, we only bound the number of pending ones. The
+		 * document data only gets materialized once a document enters that
+		 * bounded window.
+		 */
+		SignatureVerificationService signatureVerificationService = this.sessionContext
+				.getBusinessObject(SignatureVerificationService.class);
+		List<SignatureVerificationResult> results = new ArrayList<SignatureVerificationResult>(
+				requests.size());
+		LinkedList<Future<List<SignatureInfo>>> pending = new LinkedList<Future<List<SignatureInfo>>>();
+		for (SignatureVerificationRequest request : requests) {
+			if (pending.size() >= parallelism) {
+				results.add(getResult(pending.removeFirst()));
+			}
+			try {
+				pending.add(signatureVerificationService.verifyAsync(
+						request.getData(), request.getMimeType(),
+						request.getOriginalData()));
+			} catch (DocumentFormatException e) {
+				throw new RuntimeException("unexpected synchronous error", e);
+			} catch (InvalidSignatureException e) {
+				throw new RuntimeException("unexpected synchronous error", e);
+			}
+		}
+		while (!pending.isEmpty()) {
+			results.add(getResult(pending.removeFirst()));
+		}
+		return results;
+	}
+
+	private SignatureVerificationResult getResult(
+			Future<List<SignatureInfo>> future) {
+		try {
+			return new SignatureVerificationResult(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted: " + e.getMessage(), e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof DocumentFormatException
+					|| cause instanceof InvalidSignatureException) {
+				return new SignatureVerificationResult((Exception) cause);
+			}
+			throw new RuntimeException("verification error: "
+					+ cause.getMessage(), cause);
+		}
+	}
+}
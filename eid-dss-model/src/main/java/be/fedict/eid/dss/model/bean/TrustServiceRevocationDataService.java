@@ -20,6 +20,7 @@ package be.fedict.eid.dss.model.bean;
 
 import java.security.cert.X509Certificate;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,6 +28,8 @@ import org.apache.commons.logging.LogFactory;
 import be.fedict.eid.applet.service.signer.facets.RevocationData;
 import be.fedict.eid.applet.service.signer.facets.RevocationDataService;
 import be.fedict.eid.applet.service.spi.TrustCertificateSecurityException;
+import be.fedict.eid.dss.model.TrustValidationService;
+import be.fedict.eid.dss.model.XKMS2Invocation;
 import be.fedict.trust.client.XKMS2Client;
 import be.fedict.trust.client.exception.ValidationFailedException;
 import be.fedict.trust.client.jaxb.xades132.CRLValuesType;
@@ -35,7 +38,15 @@ import be.fedict.trust.client.jaxb.xades132.OCSPValuesType;
 import be.fedict.trust.client.jaxb.xades132.RevocationValuesType;
 
 /**
- * Revocation data service implementation using the eID Trust Service.
+ * Revocation data service implementation using the eID Trust Service. The
+ * revocation data is shared between signatures of the same signer via the
+ * (optional) revocation data cache.
+ * <p/>
+ * A cache hit does not validate the signing certificate chain again. The
+ * chain was validated by the eID Trust Service when the revocation data was
+ * fetched, which is at most the configured revocation cache max age ago. A
+ * chain that no longer validates when the revocation data gets refreshed is
+ * evicted from the cache.
  * 
  * @author Frank Cornelis
  */
@@ -44,22 +55,74 @@ public class TrustServiceRevocationDataService implements RevocationDataService
 	private static final Log LOG = LogFactory
 			.getLog(TrustServiceRevocationDataService.class);
 
-	private final XKMS2Client xkms2Client;
+	private final TrustValidationService trustValidationService;
 
 	private final String trustDomain;
 
-	public TrustServiceRevocationDataService(XKMS2Client xkms2Client,
-			String trustDomain) {
-		this.xkms2Client = xkms2Client;
+	private final RevocationDataCache revocationDataCache;
+
+	/**
+	 * @param revocationDataCache
+	 *            the revocation data cache, or <code>null</code> to always
+	 *            contact the eID Trust Service.
+	 */
+	public TrustServiceRevocationDataService(
+			TrustValidationService trustValidationService, String trustDomain,
+			RevocationDataCache revocationDataCache) {
+		this.trustValidationService = trustValidationService;
 		this.trustDomain = trustDomain;
+		this.revocationDataCache = revocationDataCache;
 	}
 
 	public RevocationData getRevocationData(
-			List<X509Certificate> certificateChain) {
+			final List<X509Certificate> certificateChain) {
+		if (null == this.revocationDataCache) {
+			return fetchRevocationData(certificateChain);
+		}
+		final String cacheKey = RevocationDataCache.getKey(this.trustDomain,
+				certificateChain.get(0));
+		final RevocationDataCache revocationDataCache = this.revocationDataCache;
+		try {
+			return revocationDataCache.get(cacheKey,
+					new Callable<RevocationData>() {
+
+						public RevocationData call() throws Exception {
+							try {
+								return fetchRevocationData(certificateChain);
+							} catch (TrustCertificateSecurityException e) {
+								revocationDataCache.remove(cacheKey);
+								throw e;
+							}
+						}
+					});
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Invokes the trust service on its own, as background refreshes of the
+	 * revocation data cache outlive the signature creation.
+	 */
+	private RevocationData fetchRevocationData(
+			final List<X509Certificate> certificateChain) {
 		LOG.debug("retrieving revocation data for: "
 				+ certificateChain.get(0).getSubjectX500Principal());
+		RevocationValuesType revocationValues;
 		try {
-			this.xkms2Client.validate(this.trustDomain, certificateChain, true);
+			revocationValues = this.trustValidationService
+					.invokeXkms2(new XKMS2Invocation<RevocationValuesType>() {
+
+						public RevocationValuesType invoke(
+								XKMS2Client xkms2Client) throws Exception {
+							xkms2Client.validate(
+									TrustServiceRevocationDataService.this.trustDomain,
+									certificateChain, true);
+							return xkms2Client.getRevocationValues();
+						}
+					});
 		} catch (ValidationFailedException e) {
 			throw new TrustCertificateSecurityException();
 		} catch (Exception e) {
@@ -67,8 +130,6 @@ public class TrustServiceRevocationDataService implements RevocationDataService
 					"error validating signing certificate chain: "
 							+ e.getMessage(), e);
 		}
-		RevocationValuesType revocationValues = this.xkms2Client
-				.getRevocationValues();
 		RevocationData revocationData = new RevocationData();
 		CRLValuesType crlValues = revocationValues.getCRLValues();
 		if (null != crlValues) {
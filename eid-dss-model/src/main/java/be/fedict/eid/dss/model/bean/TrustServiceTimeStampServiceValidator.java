@@ -21,12 +21,15 @@ package be.fedict.eid.dss.model.bean;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import be.fedict.eid.applet.service.signer.facets.RevocationData;
 import be.fedict.eid.applet.service.signer.time.TimeStampServiceValidator;
+import be.fedict.eid.dss.model.TrustValidationService;
+import be.fedict.eid.dss.model.XKMS2Invocation;
 import be.fedict.eid.dss.model.exception.TrustServiceClientException;
 import be.fedict.trust.client.XKMS2Client;
 import be.fedict.trust.client.exception.RevocationDataNotFoundException;
@@ -37,29 +40,95 @@ import be.fedict.trust.client.jaxb.xades132.EncapsulatedPKIDataType;
 import be.fedict.trust.client.jaxb.xades132.OCSPValuesType;
 import be.fedict.trust.client.jaxb.xades132.RevocationValuesType;
 
+/**
+ * Validates the TSA certificate chain via the eID Trust Service. The TSA
+ * revocation data is shared between signatures via the (optional) revocation
+ * data cache, so concurrent signings share a single trust service call.
+ */
 public class TrustServiceTimeStampServiceValidator implements
 		TimeStampServiceValidator {
 
 	private static final Log LOG = LogFactory
 			.getLog(TrustServiceTimeStampServiceValidator.class);
 
-	private final XKMS2Client xkms2Client;
+	private final TrustValidationService trustValidationService;
 
 	private final String trustDomain;
 
-	public TrustServiceTimeStampServiceValidator(XKMS2Client xkms2Client,
-			String trustDomain) {
-		this.xkms2Client = xkms2Client;
+	private final RevocationDataCache revocationDataCache;
+
+	/**
+	 * @param revocationDataCache
+	 *            the revocation data cache, or <code>null</code> to always
+	 *            contact the eID Trust Service.
+	 */
+	public TrustServiceTimeStampServiceValidator(
+			TrustValidationService trustValidationService, String trustDomain,
+			RevocationDataCache revocationDataCache) {
+		this.trustValidationService = trustValidationService;
 		this.trustDomain = trustDomain;
+		this.revocationDataCache = revocationDataCache;
 	}
 
-	public void validate(List<X509Certificate> certificateChain,
+	public void validate(final List<X509Certificate> certificateChain,
 			RevocationData revocationData) throws Exception {
 		LOG.debug("validating TSA certificate: "
 				+ certificateChain.get(0).getSubjectX500Principal());
+		if (null == revocationData) {
+			validate(certificateChain, false);
+			return;
+		}
+		RevocationData tsaRevocationData;
+		if (null == this.revocationDataCache) {
+			tsaRevocationData = validate(certificateChain, true);
+		} else {
+			tsaRevocationData = this.revocationDataCache.get(
+					RevocationDataCache.getKey(this.trustDomain,
+							certificateChain.get(0)),
+					new Callable<RevocationData>() {
+
+						public RevocationData call() throws Exception {
+							return validate(certificateChain, true);
+						}
+					});
+		}
+		for (byte[] encodedCrl : tsaRevocationData.getCrls()) {
+			revocationData.addCRL(encodedCrl);
+		}
+		for (byte[] encodedOcsp : tsaRevocationData.getOcsps()) {
+			revocationData.addOCSP(encodedOcsp);
+		}
+	}
+
+	/**
+	 * Invokes the trust service on its own, as background refreshes of the
+	 * revocation data cache outlive the signature creation.
+	 * 
+	 * @return the revocation data, or <code>null</code> if not requested.
+	 */
+	private RevocationData validate(
+			final List<X509Certificate> certificateChain,
+			final boolean returnRevocationData)
+			throws TrustServiceClientException {
+		RevocationValuesType revocationValues;
 		try {
-			this.xkms2Client.validate(this.trustDomain, certificateChain,
-					revocationData != null);
+			revocationValues = this.trustValidationService
+					.invokeXkms2(new XKMS2Invocation<RevocationValuesType>() {
+
+						public RevocationValuesType invoke(
+								XKMS2Client xkms2Client) throws Exception {
+							xkms2Client.validate(
+									TrustServiceTimeStampServiceValidator.this.trustDomain,
+									certificateChain, returnRevocationData);
+							if (!returnRevocationData) {
+								return null;
+							}
+							return xkms2Client.getRevocationValues();
+						}
+					});
+			if (!returnRevocationData) {
+				return null;
+			}
 		} catch (CertificateEncodingException e) {
 			throw new TrustServiceClientException("certificate encoding error",
 					e);
@@ -74,11 +143,7 @@ public class TrustServiceTimeStampServiceValidator implements
 			throw new TrustServiceClientException(
 					"unknown trust service error", e);
 		}
-		if (null == revocationData) {
-			return;
-		}
-		RevocationValuesType revocationValues = this.xkms2Client
-				.getRevocationValues();
+		RevocationData revocationData = new RevocationData();
 		CRLValuesType crlValues = revocationValues.getCRLValues();
 		if (null != crlValues) {
 			List<EncapsulatedPKIDataType> encapsulatedCrls = crlValues
@@ -97,5 +162,6 @@ public class TrustServiceTimeStampServiceValidator implements
 				revocationData.addOCSP(encodedOcsp);
 			}
 		}
+		return revocationData;
 	}
 }
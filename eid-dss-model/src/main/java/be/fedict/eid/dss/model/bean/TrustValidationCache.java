@@ -0,0 +1,166 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import be.fedict.eid.dss.spi.utils.BoundedCache;
+import be.fedict.trust.client.exception.RevocationDataNotFoundException;
+import be.fedict.trust.client.exception.TrustDomainNotFoundException;
+import be.fedict.trust.client.exception.ValidationFailedException;
+
+/**
+ * Node-local, entry count bounded LRU cache of eID Trust Service validation
+ * outcomes. Failed validations are cached as well (negative caching), but
+ * expire sooner than successful ones. Only the outcome gets cached, never the
+ * exception instance itself.
+ */
+public class TrustValidationCache extends
+		BoundedCache<String, TrustValidationCache.CachedValidation> {
+
+	private final long timeToLive;
+
+	private final long negativeTimeToLive;
+
+	private long negativeHits;
+
+	/**
+	 * @param maxEntries
+	 *            the maximum number of cached validation outcomes.
+	 * @param timeToLive
+	 *            the time to live of a successful validation, in milliseconds.
+	 * @param negativeTimeToLive
+	 *            the time to live of a failed validation, in milliseconds.
+	 */
+	public TrustValidationCache(int maxEntries, long timeToLive,
+			long negativeTimeToLive) {
+		super(maxEntries);
+		this.timeToLive = timeToLive;
+		this.negativeTimeToLive = negativeTimeToLive;
+	}
+
+	public void put(String key, CachedValidation cachedValidation) {
+		long timeToLive = cachedValidation.isValid() ? this.timeToLive
+				: this.negativeTimeToLive;
+		put(key, cachedValidation, System.currentTimeMillis() + timeToLive);
+	}
+
+	/**
+	 * @return the cached validation outcome, or <code>null</code> if not
+	 *         cached or expired.
+	 */
+	@Override
+	public synchronized CachedValidation get(String key) {
+
+		CachedValidation cachedValidation = super.get(key);
+		if (null != cachedValidation && false == cachedValidation.isValid()) {
+			this.negativeHits++;
+		}
+		return cachedValidation;
+	}
+
+	/**
+	 * @return the number of cache hits on failed validations, included in
+	 *         {@link #getHits()}.
+	 */
+	public synchronized long getNegativeHits() {
+		return this.negativeHits;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "entries=" + getEntryCount() + "/" + getMaxWeight() + ", hits="
+				+ getHits() + ", negative hits=" + this.negativeHits
+				+ ", misses=" + getMisses() + ", evictions=" + getEvictions();
+	}
+
+	public enum Result {
+		VALID, VALIDATION_FAILED, TRUST_DOMAIN_NOT_FOUND, REVOCATION_DATA_NOT_FOUND
+	}
+
+	public static class CachedValidation {
+
+		private final Result result;
+
+		private final List<String> reasons;
+
+		private CachedValidation(Result result, List<String> reasons) {
+			this.result = result;
+			this.reasons = reasons;
+		}
+
+		public static CachedValidation valid() {
+			return new CachedValidation(Result.VALID, null);
+		}
+
+		/**
+		 * @param exception
+		 *            the exception reported by the trust service.
+		 */
+		public static CachedValidation invalid(Exception exception) {
+			if (exception instanceof ValidationFailedException) {
+				List<String> reasons = ((ValidationFailedException) exception)
+						.getReasons();
+				return new CachedValidation(Result.VALIDATION_FAILED,
+						Collections.unmodifiableList(new ArrayList<String>(
+								null == reasons ? Collections
+										.<String> emptyList() : reasons)));
+			}
+			if (exception instanceof TrustDomainNotFoundException) {
+				return new CachedValidation(Result.TRUST_DOMAIN_NOT_FOUND,
+						null);
+			}
+			if (exception instanceof RevocationDataNotFoundException) {
+				return new CachedValidation(Result.REVOCATION_DATA_NOT_FOUND,
+						null);
+			}
+			throw new IllegalArgumentException("not a validation outcome: "
+					+ exception);
+		}
+
+		public Result getResult() {
+			return this.result;
+		}
+
+		public boolean isValid() {
+			return Result.VALID == this.result;
+		}
+
+		/**
+		 * Throws a new exception for a failed validation, so concurrent
+		 * callers never share an exception instance.
+		 */
+		public void rethrow() throws ValidationFailedException,
+				TrustDomainNotFoundException, RevocationDataNotFoundException {
+			switch (this.result) {
+			case VALIDATION_FAILED:
+				throw new ValidationFailedException(new ArrayList<String>(
+						this.reasons));
+			case TRUST_DOMAIN_NOT_FOUND:
+				throw new TrustDomainNotFoundException();
+			case REVOCATION_DATA_NOT_FOUND:
+				throw new RevocationDataNotFoundException();
+			default:
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.dss.model.ConfigProperty;
+import be.fedict.eid.dss.model.Configuration;
+
+/**
+ * EJB 3.1 singleton holding the trust validation cache, the coalescer of
+ * in-flight trust validations and the TSA certificate chain cache. All of
+ * them take care of their own locking.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class TrustValidationCacheSingletonBean {
+
+	private static final Log LOG = LogFactory
+			.getLog(TrustValidationCacheSingletonBean.class);
+
+	private static final int TSA_CERTIFICATE_CHAIN_CACHE_SIZE = 64;
+
+	@EJB
+	private Configuration configuration;
+
+	private volatile TrustValidationCache trustValidationCache;
+
+	private final TrustValidationCoalescer trustValidationCoalescer = new TrustValidationCoalescer();
+
+	private final TsaCertificateChainCache tsaCertificateChainCache = new TsaCertificateChainCache(
+			TSA_CERTIFICATE_CHAIN_CACHE_SIZE);
+
+	private String cacheConfiguration;
+
+	/**
+	 * Re-reads the cache and trust service configuration. All cached
+	 * validations are dropped if any of these changed, as the trust domains
+	 * might have been redefined.
+	 */
+	@PostConstruct
+	public synchronized void reset() {
+
+		Integer cacheSize = this.configuration.getValue(
+				ConfigProperty.TRUST_CACHE_SIZE, Integer.class);
+		Integer cacheTtl = this.configuration.getValue(
+				ConfigProperty.TRUST_CACHE_TTL, Integer.class);
+		Integer cacheNegativeTtl = this.configuration.getValue(
+				ConfigProperty.TRUST_CACHE_NEGATIVE_TTL, Integer.class);
+
+		StringBuilder cacheConfiguration = new StringBuilder();
+		cacheConfiguration.append(cacheSize).append('|').append(cacheTtl)
+				.append('|').append(cacheNegativeTtl);
+		for (ConfigProperty configProperty : new ConfigProperty[] {
+				ConfigProperty.XKMS_URL, ConfigProperty.SIGN_TRUST_DOMAIN,
+				ConfigProperty.VERIFY_TRUST_DOMAIN,
+				ConfigProperty.IDENTITY_TRUST_DOMAIN,
+				ConfigProperty.TSA_TRUST_DOMAIN }) {
+			cacheConfiguration.append('|').append(
+					this.configuration.getValue(configProperty, String.class));
+		}
+		if (cacheConfiguration.toString().equals(this.cacheConfiguration)) {
+			return;
+		}
+		this.cacheConfiguration = cacheConfiguration.toString();
+
+		if (null == cacheSize || cacheSize <= 0 || null == cacheTtl
+				|| cacheTtl <= 0) {
+			LOG.debug("trust validation cache disabled");
+			this.trustValidationCache = null;
+			return;
+		}
+		if (null == cacheNegativeTtl || cacheNegativeTtl < 0) {
+			cacheNegativeTtl = 0;
+		}
+		LOG.debug("trust validation cache size: " + cacheSize + ", ttl: "
+				+ cacheTtl + " minutes, negative ttl: " + cacheNegativeTtl
+				+ " minutes");
+		this.trustValidationCache = new TrustValidationCache(cacheSize,
+				cacheTtl * 60 * 1000L, cacheNegativeTtl * 60 * 1000L);
+	}
+
+	/**
+	 * @return the trust validation cache, or <code>null</code> if trust
+	 *         validation caching is disabled.
+	 */
+	public TrustValidationCache getTrustValidationCache() {
+		return this.trustValidationCache;
+	}
+
+	/**
+	 * In-flight trust validations are coalesced, even if trust validation
+	 * caching is disabled.
+	 */
+	public TrustValidationCoalescer getTrustValidationCoalescer() {
+		return this.trustValidationCoalescer;
+	}
+
+	/**
+	 * TSA certificate chains are kept across configuration changes, the
+	 * chains get validated anyway.
+	 */
+	public TsaCertificateChainCache getTsaCertificateChainCache() {
+		return this.tsaCertificateChainCache;
+	}
+
+	@Schedule(minute = "*/5", hour = "*", persistent = false)
+	public void removeExpired() {
+
+		TrustValidationCache cache = this.trustValidationCache;
+		if (null == cache) {
+			return;
+		}
+		int removals = cache.removeExpired();
+		LOG.debug("trust validation cache: removed " + removals
+				+ " expired entries, " + cache);
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import be.fedict.eid.dss.model.bean.TrustValidationCache.CachedValidation;
+
+/**
+ * Coalesces concurrent identical trust validations. The first caller for a
+ * given key performs the eID Trust Service call, all callers arriving while
+ * that call is in flight share its outcome.
+ */
+public class TrustValidationCoalescer {
+
+	private final ConcurrentMap<String, FutureTask<CachedValidation>> inFlight;
+
+	private final AtomicLong invocations;
+
+	private final AtomicLong coalesced;
+
+	public TrustValidationCoalescer() {
+		this.inFlight = new ConcurrentHashMap<String, FutureTask<CachedValidation>>();
+		this.invocations = new AtomicLong();
+		this.coalesced = new AtomicLong();
+	}
+
+	/**
+	 * @param key
+	 *            identifies the trust validation.
+	 * @param validation
+	 *            performs the trust validation, unless an identical one is
+	 *            already in flight.
+	 * @return the outcome of the (shared) trust validation.
+	 * @throws Exception
+	 *             the exception thrown by the (shared) trust validation.
+	 */
+	public CachedValidation invoke(String key,
+			Callable<CachedValidation> validation) throws Exception {
+
+		FutureTask<CachedValidation> task = new FutureTask<CachedValidation>(validation);
+		FutureTask<CachedValidation> runningTask = this.inFlight.putIfAbsent(key, task);
+		if (null == runningTask) {
+			this.invocations.incrementAndGet();
+			runningTask = task;
+			try {
+				task.run();
+			} finally {
+				this.inFlight.remove(key, task);
+			}
+		} else {
+			this.coalesced.incrementAndGet();
+		}
+		try {
+			return runningTask.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw e;
+		}
+	}
+
+	public int getInFlight() {
+		return this.inFlight.size();
+	}
+
+	public long getInvocations() {
+		return this.invocations.get();
+	}
+
+	public long getCoalesced() {
+		return this.coalesced.get();
+	}
+
+	@Override
+	public String toString() {
+		return "in flight=" + getInFlight() + ", invocations="
+				+ getInvocations() + ", coalesced=" + getCoalesced();
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+
+package be.fedict.eid.dss.model.bean;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * EJB 3.1 singleton owning the bounded thread pool that runs the trust
+ * validations of a signature concurrently. The signature verifications
+ * themselves run on the container's asynchronous invocation pool, so the
+ * trust validations must not wait for a thread of that same pool. When the
+ * pool is saturated, the trust validation runs on the calling thread.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class TrustValidationExecutorSingletonBean {
+
+	private static final Log LOG = LogFactory
+			.getLog(TrustValidationExecutorSingletonBean.class);
+
+	private static final int THREADS = 16;
+
+	private static final int QUEUE_SIZE = 64;
+
+	private static final long KEEP_ALIVE = 60;
+
+	private ThreadPoolExecutor executor;
+
+	@PostConstruct
+	public void postConstruct() {
+
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(THREADS, THREADS, KEEP_ALIVE,
+				TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+				new ThreadFactory() {
+
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								"eid-dss-trust-validation-"
+										+ threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	@PreDestroy
+	public void preDestroy() {
+
+		LOG.debug("shutting down trust validation executor");
+		this.executor.shutdownNow();
+	}
+
+	/**
+	 * Cancelling the returned future interrupts the running trust validation.
+	 */
+	public Future<Void> submit(Callable<Void> trustValidation) {
+
+		return this.executor.submit(trustValidation);
+	}
+}
@@ -22,6 +22,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.cert.CertStore;
@@ -37,6 +38,8 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
@@ -62,6 +65,9 @@ import org.bouncycastle.tsp.TimeStampToken;
 import be.fedict.eid.dss.model.ConfigProperty;
 import be.fedict.eid.dss.model.Configuration;
 import be.fedict.eid.dss.model.TrustValidationService;
+import be.fedict.eid.dss.model.XKMS2Invocation;
+import be.fedict.eid.dss.model.bean.TrustValidationCache.CachedValidation;
+import be.fedict.eid.dss.spi.utils.XAdESUtils;
 import be.fedict.trust.TrustValidator;
 import be.fedict.trust.client.XKMS2Client;
 import be.fedict.trust.client.exception.RevocationDataNotFoundException;
@@ -77,6 +83,27 @@ public class TrustValidationServiceBean implements TrustValidationService {
 	@EJB
 	private Configuration configuration;
 
+	/**
+	 * Validation dates within the same 5 minutes share their cached trust
+	 * validation outcome.
+	 */
+	private static final long VALIDATION_DATE_BUCKET = 5 * 60 * 1000L;
+
+	@EJB
+	private XKMS2ClientPoolSingletonBean xkms2ClientPoolSingletonBean;
+
+	@EJB
+	private TrustValidationCacheSingletonBean trustValidationCacheSingletonBean;
+
+	@EJB
+	private LocalTrustValidatorSingletonBean localTrustValidatorSingletonBean;
+
+	@EJB
+	private RevocationDataCacheSingletonBean revocationDataCacheSingletonBean;
+
+	@EJB
+	private TrustValidationExecutorSingletonBean trustValidationExecutorSingletonBean;
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -92,47 +119,353 @@ public class TrustValidationServiceBean implements TrustValidationService {
 		LOG.debug("validating certificate chain");
 		LOG.debug("number of CRLs: " + crls.size());
 		LOG.debug("number of OCSPs: " + ocspResponses.size());
-		getXkms2Client().validate(verifyTrustDomain, certificateChain,
-				validationDate, ocspResponses, crls);
+		validate(verifyTrustDomain, certificateChain, validationDate,
+				ocspResponses, crls);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
-	public void validate(TimeStampToken timeStampToken)
+	public void validate(final TimeStampToken timeStampToken)
 			throws CertificateEncodingException, ValidationFailedException,
 			TrustDomainNotFoundException, RevocationDataNotFoundException {
 
-		String tsaTrustDomain = this.configuration.getValue(
+		final String tsaTrustDomain = this.configuration.getValue(
 				ConfigProperty.TSA_TRUST_DOMAIN, String.class);
 
 		LOG.debug("validating timestamp token");
-		getXkms2Client().validate(tsaTrustDomain, timeStampToken);
+		Collection<? extends Certificate> certificates;
+		try {
+			certificates = timeStampToken.getCertificatesAndCRLs("Collection",
+					BouncyCastleProvider.PROVIDER_NAME).getCertificates(null);
+		} catch (Exception e) {
+			throw new RuntimeException("timestamp token certificates error: "
+					+ e.getMessage(), e);
+		}
+		String cacheKey = getCacheKey(tsaTrustDomain,
+				timeStampToken.getSID(), certificates);
+		invoke(cacheKey, new XKMS2Invocation<Void>() {
+
+			public Void invoke(XKMS2Client xkms2Client) throws Exception {
+				xkms2Client.validate(tsaTrustDomain, timeStampToken);
+				return null;
+			}
+		});
+	}
+
+	private void validate(final String trustDomain,
+			final List<X509Certificate> certificateChain,
+			final Date validationDate, final List<OCSPResp> ocspResponses,
+			final List<X509CRL> crls) throws CertificateEncodingException,
+			TrustDomainNotFoundException, RevocationDataNotFoundException,
+			ValidationFailedException {
+
+		LocalTrustValidator localTrustValidator = this.localTrustValidatorSingletonBean
+				.getLocalTrustValidator(trustDomain);
+		if (null != localTrustValidator) {
+			Long maxGracePeriod = this.configuration.getValue(
+					ConfigProperty.MAX_GRACE_PERIOD, Long.class);
+			if (null == maxGracePeriod) {
+				maxGracePeriod = (Long) ConfigProperty.MAX_GRACE_PERIOD
+						.getDefaultValue();
+			}
+			if (localTrustValidator.validate(certificateChain,
+					validationDate, ocspResponses, crls,
+					maxGracePeriod * 60 * 60 * 1000)) {
+				LOG.debug("certificate chain validated locally");
+				return;
+			}
+			LOG.debug("falling back to eID Trust Service");
+		}
+
+		String cacheKey = getCacheKey(trustDomain, certificateChain,
+				validationDate, ocspResponses, crls);
+		invoke(cacheKey, new XKMS2Invocation<Void>() {
+
+			public Void invoke(XKMS2Client xkms2Client) throws Exception {
+				xkms2Client.validate(trustDomain, certificateChain,
+						validationDate, ocspResponses, crls);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Invokes the eID Trust Service via a pooled client, unless the outcome of
+	 * the same validation is still in the trust validation cache. Both
+	 * successful and failed validations get cached. Errors reaching the trust
+	 * service are never cached. Concurrent identical validations share a
+	 * single trust service call. Each caller gets its own exception instance.
+	 * 
+	 * @param cacheKey
+	 *            the cache key, or <code>null</code> if the outcome cannot be
+	 *            cached.
+	 */
+	private void invoke(final String cacheKey,
+			final XKMS2Invocation<Void> invocation)
+			throws CertificateEncodingException, TrustDomainNotFoundException,
+			RevocationDataNotFoundException, ValidationFailedException {
+
+		if (null == cacheKey) {
+			invokeTrustService(null, null, invocation).rethrow();
+			return;
+		}
+		final TrustValidationCache trustValidationCache = this.trustValidationCacheSingletonBean
+				.getTrustValidationCache();
+		if (null != trustValidationCache) {
+			CachedValidation cachedValidation = trustValidationCache
+					.get(cacheKey);
+			if (null != cachedValidation) {
+				LOG.debug("trust validation cache hit");
+				cachedValidation.rethrow();
+				return;
+			}
+		}
+
+		CachedValidation validation;
+		try {
+			validation = this.trustValidationCacheSingletonBean
+					.getTrustValidationCoalescer().invoke(cacheKey,
+							new Callable<CachedValidation>() {
+
+								public CachedValidation call()
+										throws Exception {
+									return invokeTrustService(
+											trustValidationCache, cacheKey,
+											invocation);
+								}
+							});
+		} catch (CertificateEncodingException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		validation.rethrow();
+	}
+
+	/**
+	 * @return the outcome of the trust validation.
+	 */
+	private CachedValidation invokeTrustService(
+			TrustValidationCache trustValidationCache, String cacheKey,
+			XKMS2Invocation<Void> invocation)
+			throws CertificateEncodingException {
+
+		try {
+			invokeXkms2(invocation);
+		} catch (ValidationFailedException e) {
+			return putInvalid(trustValidationCache, cacheKey, e);
+		} catch (TrustDomainNotFoundException e) {
+			return putInvalid(trustValidationCache, cacheKey, e);
+		} catch (RevocationDataNotFoundException e) {
+			return putInvalid(trustValidationCache, cacheKey, e);
+		} catch (CertificateEncodingException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		CachedValidation validation = CachedValidation.valid();
+		if (null != trustValidationCache) {
+			trustValidationCache.put(cacheKey, validation);
+		}
+		return validation;
 	}
 
 	/**
 	 * {@inheritDoc}
+	 * <p/>
+	 * XKMS2 locations with an open circuit breaker are skipped. A half-open
+	 * location only gets a single probe call.
 	 */
-	public XKMS2Client getXkms2Client() {
+	public <T> T invokeXkms2(XKMS2Invocation<T> invocation) throws Exception {
 
-		String xkmsUrl = this.configuration.getValue(ConfigProperty.XKMS_URL,
-				String.class);
-		XKMS2Client xkms2Client = new XKMS2Client(xkmsUrl);
+		RuntimeException lastFailure = null;
+		for (XKMS2ClientPool xkms2ClientPool : this.xkms2ClientPoolSingletonBean
+				.getAvailableXkms2ClientPools()) {
+			if (!xkms2ClientPool.getCircuitBreaker().acquire()) {
+				// probe of a half-open location in progress
+				continue;
+			}
+			XKMS2Client xkms2Client = xkms2ClientPool.borrow();
+			long begin = System.currentTimeMillis();
+			boolean failure = false;
+			try {
+				return invocation.invoke(xkms2Client);
+			} catch (RuntimeException e) {
+				// trust service unreachable or SOAP fault
+				LOG.warn("eID Trust Service "
+						+ xkms2ClientPool.getCircuitBreaker().getEndpoint()
+						+ " failed: " + e.getMessage());
+				failure = true;
+				lastFailure = e;
+			} finally {
+				xkms2ClientPool.recordInvocation(System.currentTimeMillis()
+						- begin, failure);
+				xkms2ClientPool.release(xkms2Client);
+			}
+		}
+		if (null == lastFailure) {
+			throw new IllegalStateException("no eID Trust Service available");
+		}
+		throw lastFailure;
+	}
 
-		Boolean useHttpProxy = this.configuration.getValue(
-				ConfigProperty.HTTP_PROXY_ENABLED, Boolean.class);
-		if (null != useHttpProxy && useHttpProxy) {
-			String httpProxyHost = this.configuration.getValue(
-					ConfigProperty.HTTP_PROXY_HOST, String.class);
-			int httpProxyPort = this.configuration.getValue(
-					ConfigProperty.HTTP_PROXY_PORT, Integer.class);
-			xkms2Client.setProxy(httpProxyHost, httpProxyPort);
-		} else {
-			// disable previously set proxy
-			xkms2Client.setProxy(null, 0);
+	private CachedValidation putInvalid(
+			TrustValidationCache trustValidationCache, String cacheKey,
+			Exception exception) {
+		CachedValidation validation = CachedValidation.invalid(exception);
+		if (null != trustValidationCache) {
+			trustValidationCache.put(cacheKey, validation);
 		}
+		return validation;
+	}
+
+	/**
+	 * The cache key of a timestamp token trust validation consists of the
+	 * trust domain, the issuer and serial number of the TSA signer and a
+	 * fingerprint of the embedded certificates. The validation date is the
+	 * current time, rounded down to {@link #VALIDATION_DATE_BUCKET}.
+	 * 
+	 * @return the cache key, or <code>null</code> if the token does not
+	 *         identify its signer by issuer and serial number, or has no
+	 *         embedded certificates.
+	 */
+	private String getCacheKey(String tsaTrustDomain, SignerId signerId,
+			Collection<? extends Certificate> certificates) {
 
-		return xkms2Client;
+		if (certificates.isEmpty() || null == signerId.getIssuer()
+				|| null == signerId.getSerialNumber()) {
+			return null;
+		}
+		return getCacheKey(tsaTrustDomain + "|"
+				+ signerId.getIssuer().getName() + "|"
+				+ signerId.getSerialNumber(), certificates, new Date(), null,
+				null);
+	}
+
+	/**
+	 * The cache key consists of the trust domain, a fingerprint of the
+	 * certificate chain, the validation date rounded down to
+	 * {@link #VALIDATION_DATE_BUCKET} and a digest of the given revocation
+	 * data.
+	 */
+	private String getCacheKey(String trustDomain,
+			Collection<? extends Certificate> certificates,
+			Date validationDate, List<OCSPResp> ocspResponses,
+			List<X509CRL> crls) {
+
+		MessageDigest chainDigest = getSha256Digest();
+		MessageDigest revocationDataDigest = getSha256Digest();
+		try {
+			for (Certificate certificate : certificates) {
+				chainDigest.update(certificate.getEncoded());
+			}
+			if (null != ocspResponses) {
+				for (OCSPResp ocspResponse : ocspResponses) {
+					revocationDataDigest.update(ocspResponse.getEncoded());
+				}
+			}
+			if (null != crls) {
+				for (X509CRL crl : crls) {
+					revocationDataDigest.update(crl.getEncoded());
+				}
+			}
+		} catch (Exception e) {
+			throw new RuntimeException("encoding error: " + e.getMessage(), e);
+		}
+		long validationDateBucket = validationDate.getTime()
+				/ VALIDATION_DATE_BUCKET;
+		return trustDomain + "|"
+				+ Hex.encodeHexString(chainDigest.digest()) + "|"
+				+ validationDateBucket + "|"
+				+ Hex.encodeHexString(revocationDataDigest.digest());
+	}
+
+	private MessageDigest getSha256Digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256 not supported: "
+					+ e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Future<Void> validateAsync(Callable<Void> trustValidation)
+			throws Exception {
+		return this.trustValidationExecutorSingletonBean
+				.submit(trustValidation);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void resetXkms2ClientPool() {
+		this.xkms2ClientPoolSingletonBean.reset();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getXkms2ClientPoolStatistics() {
+		StringBuilder statistics = new StringBuilder();
+		for (XKMS2ClientPool xkms2ClientPool : this.xkms2ClientPoolSingletonBean
+				.getXkms2ClientPools()) {
+			if (statistics.length() > 0) {
+				statistics.append("; ");
+			}
+			statistics.append(xkms2ClientPool);
+		}
+		return statistics.toString();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void resetTrustValidationCache() {
+		this.trustValidationCacheSingletonBean.reset();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void reloadTrustAnchors() {
+		this.localTrustValidatorSingletonBean.reset();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getLocalTrustValidationStatistics() {
+		return this.localTrustValidatorSingletonBean.getStatistics();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getTrustValidationCacheStatistics() {
+		TrustValidationCache trustValidationCache = this.trustValidationCacheSingletonBean
+				.getTrustValidationCache();
+		TrustValidationCoalescer trustValidationCoalescer = this.trustValidationCacheSingletonBean
+				.getTrustValidationCoalescer();
+		RevocationDataCache revocationDataCache = this.revocationDataCacheSingletonBean
+				.getRevocationDataCache();
+		return (null == trustValidationCache ? "disabled" : trustValidationCache)
+				+ ", "
+				+ trustValidationCoalescer
+				+ "; TSA certificate chains: "
+				+ this.trustValidationCacheSingletonBean
+						.getTsaCertificateChainCache()
+				+ "; revocation data: "
+				+ (null == revocationDataCache ? "disabled"
+						: revocationDataCache) + "; parsed CRLs: "
+				+ XAdESUtils.getCrlCache();
 	}
 
 	public void validate(TimeStampToken timeStampToken,
@@ -151,58 +484,50 @@ public class TrustValidationServiceBean implements TrustValidationService {
 		LOG.debug("# TSA ocsp responses: " + ocspResponses.size());
 		LOG.debug("# TSA CRLs: " + crls.size());
 
-		/*
-		 *Building TSA chain. (Code from eID-applet)
-		 * 
-		 */
+		SignerId signerId = timeStampToken.getSID();
+		BigInteger signerCertSerialNumber = signerId.getSerialNumber();
+		X500Principal signerCertIssuer = signerId.getIssuer();
+		LOG.debug("signer cert serial number: " + signerCertSerialNumber);
+		LOG.debug("signer cert issuer: " + signerCertIssuer);
 
-        SignerId signerId = timeStampToken.getSID();
-        BigInteger signerCertSerialNumber = signerId.getSerialNumber();
-        X500Principal signerCertIssuer = signerId.getIssuer();
-        LOG.debug("signer cert serial number: " + signerCertSerialNumber);
-        LOG.debug("signer cert issuer: " + signerCertIssuer);
-
-        // TSP signer certificates retrieval
-        CertStore certStore = timeStampToken.getCertificatesAndCRLs(
-                        "Collection", BouncyCastleProvider.PROVIDER_NAME);
-        Collection<? extends Certificate> certificates = certStore
-                        .getCertificates(null);
-        X509Certificate signerCert = null;
-        Map<String, X509Certificate> certificateMap = new HashMap<String, X509Certificate>();
-        for (Certificate certificate : certificates) {
-                X509Certificate x509Certificate = (X509Certificate) certificate;
-                if (signerCertIssuer.equals(x509Certificate
-                                .getIssuerX500Principal())
-                                && signerCertSerialNumber.equals(x509Certificate
-                                                .getSerialNumber())) {
-                        signerCert = x509Certificate;
-                }
-                String ski = Hex.encodeHexString(getSubjectKeyId(x509Certificate));
-                certificateMap.put(ski, x509Certificate);
-                LOG.debug("embedded certificate: "
-                                + x509Certificate.getSubjectX500Principal() + "; SKI="
-                                + ski);
-        }
+		// TSP signer certificates retrieval
+		CertStore certStore = timeStampToken.getCertificatesAndCRLs(
+				"Collection", BouncyCastleProvider.PROVIDER_NAME);
+		Collection<? extends Certificate> certificates = certStore
+				.getCertificates(null);
+		X509Certificate signerCert = null;
+		for (Certificate certificate : certificates) {
+			X509Certificate x509Certificate = (X509Certificate) certificate;
+			if (signerCertIssuer.equals(x509Certificate
+					.getIssuerX500Principal())
+					&& signerCertSerialNumber.equals(x509Certificate
+							.getSerialNumber())) {
+				signerCert = x509Certificate;
+				break;
+			}
+		}
+		if (null == signerCert) {
+			throw new RuntimeException(
+					"TSP response token has no signer certificate");
+		}
 
-        // TSP signer cert path building
-        if (null == signerCert) {
-                throw new RuntimeException(
-                                "TSP response token has no signer certificate");
-        }
-        List<X509Certificate> tspCertificateChain = new LinkedList<X509Certificate>();
-        X509Certificate certificate = signerCert;
-        do {
-                LOG.debug("adding to certificate chain: "
-                                + certificate.getSubjectX500Principal());
-                tspCertificateChain.add(certificate);
-                if (certificate.getSubjectX500Principal().equals(
-                                certificate.getIssuerX500Principal())) {
-                        break;
-                }
-                String aki = Hex.encodeHexString(getAuthorityKeyId(certificate));
-                certificate = certificateMap.get(aki);
-        } while (null != certificate);
-		     
+		TsaCertificateChainCache tsaCertificateChainCache = this.trustValidationCacheSingletonBean
+				.getTsaCertificateChainCache();
+		List<X509Certificate> tspCertificateChain = tsaCertificateChainCache
+				.get(signerCert);
+		if (null == tspCertificateChain) {
+			tspCertificateChain = getTspCertificateChain(signerCert,
+					certificates);
+			X509Certificate rootCertificate = tspCertificateChain
+					.get(tspCertificateChain.size() - 1);
+			if (rootCertificate.getSubjectX500Principal().equals(
+					rootCertificate.getIssuerX500Principal())) {
+				// only complete chains, a next token might embed more
+				tsaCertificateChainCache.put(tspCertificateChain);
+			}
+		} else {
+			LOG.debug("TSA certificate chain cache hit");
+		}
 		if (false == signerCert.equals(tspCertificateChain.get(0))) {
 			throw new SecurityException("TST signing certificate mismatch");
 		}
@@ -210,10 +535,44 @@ public class TrustValidationServiceBean implements TrustValidationService {
 		/*
 		 * Perform PKI validation via eID Trust Service.
 		 */
-		getXkms2Client().validate(tsaTrustDomain, tspCertificateChain,
-				validationDate, ocspResponses, crls);
+		validate(tsaTrustDomain, tspCertificateChain, validationDate,
+				ocspResponses, crls);
+	}
+
+	/**
+	 * Builds the TSA certificate chain from the certificates embedded in the
+	 * timestamp token. (Code from eID-applet)
+	 */
+	private List<X509Certificate> getTspCertificateChain(
+			X509Certificate signerCert,
+			Collection<? extends Certificate> certificates) throws IOException {
+
+		Map<String, X509Certificate> certificateMap = new HashMap<String, X509Certificate>();
+		for (Certificate certificate : certificates) {
+			X509Certificate x509Certificate = (X509Certificate) certificate;
+			String ski = Hex.encodeHexString(getSubjectKeyId(x509Certificate));
+			certificateMap.put(ski, x509Certificate);
+			LOG.debug("embedded certificate: "
+					+ x509Certificate.getSubjectX500Principal() + "; SKI="
+					+ ski);
+		}
+
+		// TSP signer cert path building
+		List<X509Certificate> tspCertificateChain = new LinkedList<X509Certificate>();
+		X509Certificate certificate = signerCert;
+		do {
+			LOG.debug("adding to certificate chain: "
+					+ certificate.getSubjectX500Principal());
+			tspCertificateChain.add(certificate);
+			if (certificate.getSubjectX500Principal().equals(
+					certificate.getIssuerX500Principal())) {
+				break;
+			}
+			String aki = Hex.encodeHexString(getAuthorityKeyId(certificate));
+			certificate = certificateMap.get(aki);
+		} while (null != certificate);
+		return tspCertificateChain;
 	}
-        
 
 	private byte[] getSubjectKeyId(X509Certificate cert) throws IOException {
         byte[] extvalue = cert
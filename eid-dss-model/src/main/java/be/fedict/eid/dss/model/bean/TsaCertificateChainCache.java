@@ -0,0 +1,87 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Hex;
+
+import be.fedict.eid.dss.spi.utils.BoundedCache;
+
+/**
+ * Entry count bounded LRU cache of TSA certificate chains, keyed by the
+ * SHA-256 fingerprint of the TSA signing certificate. Only a handful of TSA
+ * certificates are in use at any time, so historical timestamp validation
+ * hardly ever has to build a chain.
+ */
+public class TsaCertificateChainCache extends
+		BoundedCache<String, List<X509Certificate>> {
+
+	/**
+	 * @param maxEntries
+	 *            the maximum number of cached TSA certificate chains.
+	 */
+	public TsaCertificateChainCache(int maxEntries) {
+		super(maxEntries);
+	}
+
+	/**
+	 * @return the cached certificate chain of the given TSA certificate, or
+	 *         <code>null</code> if not cached.
+	 */
+	public List<X509Certificate> get(X509Certificate tsaCertificate)
+			throws CertificateEncodingException {
+		return get(getKey(tsaCertificate));
+	}
+
+	/**
+	 * @param chain
+	 *            the certificate chain, starting with the TSA certificate.
+	 */
+	public void put(List<X509Certificate> chain)
+			throws CertificateEncodingException {
+		put(getKey(chain.get(0)), Collections.unmodifiableList(chain),
+				NO_EXPIRATION);
+	}
+
+	private static String getKey(X509Certificate certificate)
+			throws CertificateEncodingException {
+		MessageDigest messageDigest;
+		try {
+			messageDigest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256 not supported: "
+					+ e.getMessage(), e);
+		}
+		return Hex.encodeHexString(messageDigest.digest(certificate
+				.getEncoded()));
+	}
+
+	@Override
+	public String toString() {
+		return "entries=" + getEntryCount() + "/" + getMaxWeight() + ", hits="
+				+ getHits() + ", misses=" + getMisses() + ", evictions="
+				+ getEvictions();
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.dss.model.ConfigProperty;
+import be.fedict.eid.dss.model.Configuration;
+import be.fedict.eid.dss.model.VerificationCacheManager;
+import be.fedict.eid.dss.spi.SignatureInfo;
+
+/**
+ * EJB 3.1 singleton holding the verification result cache. The
+ * {@link VerificationResultCache} takes care of its own locking.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class VerificationCacheManagerBean implements VerificationCacheManager {
+
+	private static final Log LOG = LogFactory
+			.getLog(VerificationCacheManagerBean.class);
+
+	@EJB
+	private Configuration configuration;
+
+	private volatile VerificationResultCache verificationResultCache;
+
+	@PostConstruct
+	public void reset() {
+
+		Integer cacheSize = this.configuration.getValue(
+				ConfigProperty.VERIFICATION_CACHE_SIZE, Integer.class);
+		Integer cacheTtl = this.configuration.getValue(
+				ConfigProperty.VERIFICATION_CACHE_TTL, Integer.class);
+		if (null == cacheSize || cacheSize <= 0 || null == cacheTtl
+				|| cacheTtl <= 0) {
+			LOG.debug("verification cache disabled");
+			this.verificationResultCache = null;
+			return;
+		}
+		LOG.debug("verification cache size: " + cacheSize + ", ttl: "
+				+ cacheTtl + " minutes");
+		this.verificationResultCache = new VerificationResultCache(cacheSize,
+				cacheTtl * 60 * 1000L);
+	}
+
+	public List<SignatureInfo> get(String key) {
+
+		VerificationResultCache cache = this.verificationResultCache;
+		if (null == cache) {
+			return null;
+		}
+		return cache.get(key);
+	}
+
+	public void put(String key, List<SignatureInfo> signatureInfos) {
+
+		VerificationResultCache cache = this.verificationResultCache;
+		if (null == cache) {
+			return;
+		}
+		cache.put(key, signatureInfos);
+	}
+
+	public String getStatistics() {
+
+		VerificationResultCache cache = this.verificationResultCache;
+		if (null == cache) {
+			return "disabled";
+		}
+		return cache.toString();
+	}
+
+	@Schedule(minute = "*/5", hour = "*", persistent = false)
+	public void removeExpired() {
+
+		VerificationResultCache cache = this.verificationResultCache;
+		if (null == cache) {
+			return;
+		}
+		int removals = cache.removeExpired();
+		LOG.debug("verification cache: removed " + removals
+				+ " expired entries, " + cache);
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.util.Collections;
+import java.util.List;
+
+import be.fedict.eid.dss.spi.SignatureInfo;
+import be.fedict.eid.dss.spi.utils.BoundedCache;
+
+/**
+ * Node-local, entry count bounded LRU cache of signature verification
+ * results. Entries expire after a fixed time to live, so the revocation status
+ * of the signers is never trusted longer than that.
+ */
+public class VerificationResultCache extends
+		BoundedCache<String, List<SignatureInfo>> {
+
+	private final long timeToLive;
+
+	/**
+	 * @param maxEntries
+	 *            the maximum number of cached verification results.
+	 * @param timeToLive
+	 *            the time to live of a cached result, in milliseconds.
+	 */
+	public VerificationResultCache(int maxEntries, long timeToLive) {
+		super(maxEntries);
+		this.timeToLive = timeToLive;
+	}
+
+	public void put(String key, List<SignatureInfo> signatureInfos) {
+		put(key, Collections.unmodifiableList(signatureInfos),
+				System.currentTimeMillis() + this.timeToLive);
+	}
+
+	@Override
+	public String toString() {
+		return "entries=" + getEntryCount() + "/" + getMaxWeight() + ", ttl="
+				+ this.timeToLive + " ms, hits=" + getHits() + ", misses="
+				+ getMisses() + ", evictions=" + getEvictions();
+	}
+}
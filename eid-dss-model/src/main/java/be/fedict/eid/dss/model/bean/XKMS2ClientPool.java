@@ -0,0 +1,306 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.ws.BindingProvider;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.trust.client.XKMS2Client;
+
+/**
+ * Pool of eID Trust Service clients for one XKMS2 location and HTTP proxy
+ * setting. An {@link XKMS2Client} keeps the outcome of its last call, so a
+ * client is used by one thread at a time. Reusing the clients avoids the
+ * creation of a new JAX-WS proxy per validation, and lets the JDK HTTP
+ * keep-alive cache reuse the connections to the trust service.
+ * <p>
+ * The connect and read timeouts of the clients are set to the call deadline
+ * of the circuit breaker, so a hanging trust service cannot block a container
+ * thread for longer.
+ */
+public class XKMS2ClientPool {
+
+	private static final Log LOG = LogFactory.getLog(XKMS2ClientPool.class);
+
+	/**
+	 * Connect timeout properties of the JAX-WS RI, the JDK internal JAX-WS RI
+	 * and JBossWS/Apache CXF.
+	 */
+	private static final String[] CONNECT_TIMEOUT_PROPERTIES = {
+			"com.sun.xml.ws.connect.timeout",
+			"com.sun.xml.internal.ws.connect.timeout",
+			"javax.xml.ws.client.connectionTimeout" };
+
+	/**
+	 * Read timeout properties of the JAX-WS RI, the JDK internal JAX-WS RI and
+	 * JBossWS/Apache CXF.
+	 */
+	private static final String[] READ_TIMEOUT_PROPERTIES = {
+			"com.sun.xml.ws.request.timeout",
+			"com.sun.xml.internal.ws.request.timeout",
+			"javax.xml.ws.client.receiveTimeout" };
+
+	/**
+	 * Maximum number of idle clients kept around after a load peak.
+	 */
+	private static final int MAX_IDLE = 32;
+
+	private final String xkmsUrl;
+
+	private final String httpProxyHost;
+
+	private final int httpProxyPort;
+
+	private final CircuitBreaker circuitBreaker;
+
+	private final Queue<XKMS2Client> idleClients;
+
+	private final Set<XKMS2Client> borrowedClients;
+
+	private final AtomicLong created;
+
+	private final AtomicLong borrows;
+
+	private final AtomicLong invocations;
+
+	private final AtomicLong failures;
+
+	private final AtomicLong totalLatency;
+
+	private volatile boolean closed;
+
+	private volatile boolean timeoutsUnsupported;
+
+	/**
+	 * @param xkmsUrl
+	 *            the XKMS2 location of the eID Trust Service.
+	 * @param httpProxyHost
+	 *            the optional HTTP proxy host.
+	 * @param httpProxyPort
+	 *            the HTTP proxy port, ignored when no proxy host is given.
+	 * @param circuitBreaker
+	 *            the circuit breaker of the XKMS2 location.
+	 */
+	public XKMS2ClientPool(String xkmsUrl, String httpProxyHost,
+			int httpProxyPort, CircuitBreaker circuitBreaker) {
+		this.xkmsUrl = xkmsUrl;
+		this.httpProxyHost = httpProxyHost;
+		this.httpProxyPort = httpProxyPort;
+		this.circuitBreaker = circuitBreaker;
+		this.idleClients = new ConcurrentLinkedQueue<XKMS2Client>();
+		this.borrowedClients = Collections
+				.newSetFromMap(new ConcurrentHashMap<XKMS2Client, Boolean>());
+		this.created = new AtomicLong();
+		this.borrows = new AtomicLong();
+		this.invocations = new AtomicLong();
+		this.failures = new AtomicLong();
+		this.totalLatency = new AtomicLong();
+	}
+
+	/**
+	 * @return <code>true</code> if this pool has been created for the given
+	 *         configuration.
+	 */
+	public boolean isConfiguredFor(String xkmsUrl, String httpProxyHost,
+			int httpProxyPort) {
+		return equals(this.xkmsUrl, xkmsUrl)
+				&& equals(this.httpProxyHost, httpProxyHost)
+				&& (null == httpProxyHost || this.httpProxyPort == httpProxyPort);
+	}
+
+	/**
+	 * Gives an idle client, or a new one if none is available. The pool never
+	 * blocks.
+	 */
+	public XKMS2Client borrow() {
+
+		this.borrows.incrementAndGet();
+		XKMS2Client xkms2Client = this.idleClients.poll();
+		if (null == xkms2Client) {
+			xkms2Client = new XKMS2Client(this.xkmsUrl);
+			if (null != this.httpProxyHost) {
+				xkms2Client.setProxy(this.httpProxyHost, this.httpProxyPort);
+			} else {
+				// disable previously set proxy
+				xkms2Client.setProxy(null, 0);
+			}
+			this.created.incrementAndGet();
+		}
+		setTimeouts(xkms2Client);
+		this.borrowedClients.add(xkms2Client);
+		return xkms2Client;
+	}
+
+	/**
+	 * The XKMS2 client does not expose its JAX-WS port, so it is looked up
+	 * via reflection. The call deadline is applied on each borrow, as it can
+	 * be reconfigured while the pool is kept.
+	 */
+	private void setTimeouts(XKMS2Client xkms2Client) {
+
+		BindingProvider bindingProvider = getBindingProvider(xkms2Client);
+		if (null == bindingProvider) {
+			if (!this.timeoutsUnsupported) {
+				LOG.warn("cannot set the eID Trust Service client timeouts");
+				this.timeoutsUnsupported = true;
+			}
+			return;
+		}
+		Integer timeout = (int) Math.min(Integer.MAX_VALUE,
+				this.circuitBreaker.getCallDeadline());
+		Map<String, Object> requestContext = bindingProvider
+				.getRequestContext();
+		for (String connectTimeoutProperty : CONNECT_TIMEOUT_PROPERTIES) {
+			requestContext.put(connectTimeoutProperty, timeout);
+		}
+		for (String readTimeoutProperty : READ_TIMEOUT_PROPERTIES) {
+			requestContext.put(readTimeoutProperty, timeout);
+		}
+	}
+
+	private static BindingProvider getBindingProvider(XKMS2Client xkms2Client) {
+
+		for (Field field : XKMS2Client.class.getDeclaredFields()) {
+			if (Modifier.isStatic(field.getModifiers())
+					|| field.getType().isPrimitive()) {
+				continue;
+			}
+			try {
+				field.setAccessible(true);
+				Object value = field.get(xkms2Client);
+				if (value instanceof BindingProvider) {
+					return (BindingProvider) value;
+				}
+			} catch (Exception e) {
+				LOG.debug("cannot access field " + field.getName() + ": "
+						+ e.getMessage());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gives back a client. Clients not borrowed from this pool, and clients
+	 * given back after the pool has been closed, are dropped.
+	 */
+	public void release(XKMS2Client xkms2Client) {
+
+		if (!this.borrowedClients.remove(xkms2Client)) {
+			return;
+		}
+		if (this.closed || this.idleClients.size() >= MAX_IDLE) {
+			return;
+		}
+		this.idleClients.offer(xkms2Client);
+	}
+
+	/**
+	 * Drops all idle clients. Clients still in use are dropped on release.
+	 */
+	public void close() {
+		this.closed = true;
+		this.idleClients.clear();
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return this.circuitBreaker;
+	}
+
+	/**
+	 * Records the outcome of one call to the trust service, also on the
+	 * circuit breaker.
+	 * 
+	 * @param latency
+	 *            the duration of the call, in milliseconds.
+	 * @param failure
+	 *            <code>true</code> if the trust service could not be reached
+	 *            or gave an unexpected error.
+	 */
+	public void recordInvocation(long latency, boolean failure) {
+		this.invocations.incrementAndGet();
+		this.totalLatency.addAndGet(latency);
+		if (failure) {
+			this.failures.incrementAndGet();
+		}
+		this.circuitBreaker.recordCall(latency, failure);
+	}
+
+	public long getCreated() {
+		return this.created.get();
+	}
+
+	public long getBorrows() {
+		return this.borrows.get();
+	}
+
+	public int getActive() {
+		return this.borrowedClients.size();
+	}
+
+	public int getIdle() {
+		return this.idleClients.size();
+	}
+
+	public long getInvocations() {
+		return this.invocations.get();
+	}
+
+	public long getFailures() {
+		return this.failures.get();
+	}
+
+	/**
+	 * @return the average latency of a trust service call, in milliseconds.
+	 */
+	public long getAverageLatency() {
+		long invocations = this.invocations.get();
+		if (0 == invocations) {
+			return 0;
+		}
+		return this.totalLatency.get() / invocations;
+	}
+
+	@Override
+	public String toString() {
+		return this.circuitBreaker + ", active=" + getActive() + ", idle=" + getIdle() + ", created="
+				+ getCreated() + ", borrows=" + getBorrows()
+				+ ", invocations=" + getInvocations() + ", failures="
+				+ getFailures() + ", average latency=" + getAverageLatency()
+				+ " ms";
+	}
+
+	private static boolean equals(String a, String b) {
+		if (null == a) {
+			return null == b;
+		}
+		return a.equals(b);
+	}
+}
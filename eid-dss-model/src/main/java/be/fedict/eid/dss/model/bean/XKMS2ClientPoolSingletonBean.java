@@ -0,0 +1,163 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.model.bean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import be.fedict.eid.dss.model.ConfigProperty;
+import be.fedict.eid.dss.model.Configuration;
+
+/**
+ * EJB 3.1 singleton holding one pool of eID Trust Service clients per
+ * configured XKMS2 location. The pools are only rebuilt when the XKMS2
+ * locations or the HTTP proxy configuration change. Locations with an open
+ * circuit breaker are skipped, the others are preferred fastest first.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class XKMS2ClientPoolSingletonBean {
+
+	private static final Log LOG = LogFactory
+			.getLog(XKMS2ClientPoolSingletonBean.class);
+
+	@EJB
+	private Configuration configuration;
+
+	@EJB
+	private CircuitBreakerSingletonBean circuitBreakerSingletonBean;
+
+	private volatile List<XKMS2ClientPool> xkms2ClientPools;
+
+	/**
+	 * Re-reads the trust service and circuit breaker configuration. The
+	 * current pools are kept if the trust service configuration did not
+	 * change.
+	 */
+	@PostConstruct
+	public void reset() {
+
+		this.circuitBreakerSingletonBean.reset();
+
+		List<String> xkmsUrls = CircuitBreaker.getEndpoints(this.configuration
+				.getValue(ConfigProperty.XKMS_URL, String.class));
+		if (xkmsUrls.isEmpty()) {
+			// fail on use, like a single client without location would
+			xkmsUrls.add(null);
+		}
+		String httpProxyHost = null;
+		int httpProxyPort = 0;
+		Boolean useHttpProxy = this.configuration.getValue(
+				ConfigProperty.HTTP_PROXY_ENABLED, Boolean.class);
+		if (null != useHttpProxy && useHttpProxy) {
+			httpProxyHost = this.configuration.getValue(
+					ConfigProperty.HTTP_PROXY_HOST, String.class);
+			httpProxyPort = this.configuration.getValue(
+					ConfigProperty.HTTP_PROXY_PORT, Integer.class);
+		}
+
+		synchronized (this) {
+			List<XKMS2ClientPool> currentPools = this.xkms2ClientPools;
+			if (null != currentPools
+					&& isConfiguredFor(currentPools, xkmsUrls, httpProxyHost,
+							httpProxyPort)) {
+				return;
+			}
+			List<XKMS2ClientPool> pools = new ArrayList<XKMS2ClientPool>();
+			for (String xkmsUrl : xkmsUrls) {
+				LOG.debug("new XKMS2 client pool for: " + xkmsUrl);
+				pools.add(new XKMS2ClientPool(xkmsUrl, httpProxyHost,
+						httpProxyPort, this.circuitBreakerSingletonBean
+								.getCircuitBreaker(xkmsUrl)));
+			}
+			this.xkms2ClientPools = Collections.unmodifiableList(pools);
+			if (null != currentPools) {
+				for (XKMS2ClientPool currentPool : currentPools) {
+					currentPool.close();
+				}
+			}
+		}
+	}
+
+	private boolean isConfiguredFor(List<XKMS2ClientPool> pools,
+			List<String> xkmsUrls, String httpProxyHost, int httpProxyPort) {
+		if (pools.size() != xkmsUrls.size()) {
+			return false;
+		}
+		for (int idx = 0; idx < pools.size(); idx++) {
+			if (!pools.get(idx).isConfiguredFor(xkmsUrls.get(idx),
+					httpProxyHost, httpProxyPort)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@PreDestroy
+	public void preDestroy() {
+		for (XKMS2ClientPool xkms2ClientPool : this.xkms2ClientPools) {
+			xkms2ClientPool.close();
+		}
+	}
+
+	/**
+	 * @return the pools of all configured XKMS2 locations, in configuration
+	 *         order.
+	 */
+	public List<XKMS2ClientPool> getXkms2ClientPools() {
+		return this.xkms2ClientPools;
+	}
+
+	/**
+	 * @return the pools of the XKMS2 locations with a closed circuit breaker,
+	 *         fastest first. Empty if all locations are unavailable.
+	 */
+	public List<XKMS2ClientPool> getAvailableXkms2ClientPools() {
+		List<XKMS2ClientPool> availablePools = new ArrayList<XKMS2ClientPool>();
+		for (XKMS2ClientPool xkms2ClientPool : this.xkms2ClientPools) {
+			if (xkms2ClientPool.getCircuitBreaker().isAvailable()) {
+				availablePools.add(xkms2ClientPool);
+			}
+		}
+		Collections.sort(availablePools, new Comparator<XKMS2ClientPool>() {
+
+			public int compare(XKMS2ClientPool o1, XKMS2ClientPool o2) {
+				long latency1 = o1.getCircuitBreaker().getAverageLatency();
+				long latency2 = o2.getCircuitBreaker().getAverageLatency();
+				return latency1 < latency2 ? -1 : (latency1 == latency2 ? 0
+						: 1);
+			}
+		});
+		return availablePools;
+	}
+}
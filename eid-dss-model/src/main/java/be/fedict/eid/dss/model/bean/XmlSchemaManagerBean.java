@@ -24,13 +24,17 @@ import java.io.InputStream;
 import java.util.LinkedList;
 import java.util.List;
 
+import javax.annotation.Resource;
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.transaction.TransactionSynchronizationRegistry;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 
 import org.apache.commons.io.IOUtils;
@@ -40,6 +44,7 @@ import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
 import be.fedict.eid.dss.entity.XmlSchemaEntity;
+import be.fedict.eid.dss.model.Configuration;
 import be.fedict.eid.dss.model.XmlSchemaManager;
 import be.fedict.eid.dss.model.exception.ExistingXmlSchemaException;
 import be.fedict.eid.dss.model.exception.InvalidXmlSchemaException;
@@ -53,6 +58,15 @@ public class XmlSchemaManagerBean implements XmlSchemaManager {
 	@PersistenceContext
 	private EntityManager entityManager;
 
+	@EJB
+	private CompiledXmlRegistrySingletonBean compiledXmlRegistrySingleton;
+
+	@EJB
+	private Configuration configuration;
+
+	@Resource
+	private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
 	public List<XmlSchemaEntity> getXmlSchemas() {
 		return XmlSchemaEntity.getAll(this.entityManager);
 	}
@@ -112,12 +126,46 @@ public class XmlSchemaManagerBean implements XmlSchemaManager {
 		XmlSchemaEntity xmlSchemaEntity = new XmlSchemaEntity(namespace,
 				revision, xsd);
 		this.entityManager.persist(xmlSchemaEntity);
+		this.compiledXmlRegistrySingleton.getXmlSchemaRegistry().clear(
+				this.transactionSynchronizationRegistry);
+		this.configuration.announceChange();
 	}
 
 	public void delete(String namespace) {
 		XmlSchemaEntity xmlSchemaEntity = this.entityManager.find(
 				XmlSchemaEntity.class, namespace);
 		this.entityManager.remove(xmlSchemaEntity);
+		this.compiledXmlRegistrySingleton.getXmlSchemaRegistry().clear(
+				this.transactionSynchronizationRegistry);
+		this.configuration.announceChange();
+	}
+
+	public Schema getCompiledXmlSchema(String namespace) throws SAXException {
+		CompiledXmlRegistry<Schema> xmlSchemaRegistry = this.compiledXmlRegistrySingleton
+				.getXmlSchemaRegistry();
+		Schema schema = xmlSchemaRegistry.get(namespace);
+		if (null != schema) {
+			return schema;
+		}
+		long generation = xmlSchemaRegistry.getGeneration();
+		XmlSchemaEntity xmlSchemaEntity = this.entityManager.find(
+				XmlSchemaEntity.class, namespace);
+		if (null == xmlSchemaEntity) {
+			return null;
+		}
+		LOG.debug("compiling XML schema: " + namespace + ", revision: "
+				+ xmlSchemaEntity.getRevision());
+		SchemaFactory schemaFactory = SchemaFactory
+				.newInstance("http://www.w3.org/2001/XMLSchema");
+		schemaFactory
+				.setResourceResolver(new SignatureServiceLSResourceResolver(
+						this.entityManager));
+		StreamSource schemaSource = new StreamSource(new ByteArrayInputStream(
+				xmlSchemaEntity.getXsd()));
+		schema = schemaFactory.newSchema(schemaSource);
+		xmlSchemaRegistry.register(namespace, schema, generation);
+		LOG.debug("XML schema registry: " + xmlSchemaRegistry);
+		return schema;
 	}
 
 	public byte[] getXmlSchema(String namespace) {
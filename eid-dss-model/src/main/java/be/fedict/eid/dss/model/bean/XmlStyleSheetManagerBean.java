@@ -18,27 +18,58 @@
 
 package be.fedict.eid.dss.model.bean;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.LinkedList;
 import java.util.List;
 
+import javax.annotation.Resource;
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.transaction.TransactionSynchronizationRegistry;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import be.fedict.eid.dss.entity.XmlStyleSheetEntity;
+import be.fedict.eid.dss.model.Configuration;
 import be.fedict.eid.dss.model.XmlStyleSheetManager;
 import be.fedict.eid.dss.model.exception.ExistingXmlStyleSheetException;
 
 @Stateless
 public class XmlStyleSheetManagerBean implements XmlStyleSheetManager {
 
+	private static final Log LOG = LogFactory
+			.getLog(XmlStyleSheetManagerBean.class);
+
+	/**
+	 * Creating a transformer factory means a service lookup, so all
+	 * compilations share this one. Guarded by itself, as transformer
+	 * factories are not thread-safe.
+	 */
+	private static final TransformerFactory transformerFactory = TransformerFactory
+			.newInstance();
+
 	@PersistenceContext
 	private EntityManager entityManager;
 
+	@EJB
+	private CompiledXmlRegistrySingletonBean compiledXmlRegistrySingleton;
+
+	@EJB
+	private Configuration configuration;
+
+	@Resource
+	private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
 	public List<XmlStyleSheetEntity> getXmlStyleSheets() {
 		return XmlStyleSheetEntity.getAll(this.entityManager);
 	}
@@ -59,12 +90,43 @@ public class XmlStyleSheetManagerBean implements XmlStyleSheetManager {
 		XmlStyleSheetEntity xmlStyleSheetEntity = new XmlStyleSheetEntity(
 				namespace, revision, xsl);
 		this.entityManager.persist(xmlStyleSheetEntity);
+		this.compiledXmlRegistrySingleton.getXmlStyleSheetRegistry().clear(
+				this.transactionSynchronizationRegistry);
+		this.configuration.announceChange();
 	}
 
 	public void delete(String namespace) {
 		XmlStyleSheetEntity xmlStyleSheetEntity = this.entityManager.find(
 				XmlStyleSheetEntity.class, namespace);
 		this.entityManager.remove(xmlStyleSheetEntity);
+		this.compiledXmlRegistrySingleton.getXmlStyleSheetRegistry().clear(
+				this.transactionSynchronizationRegistry);
+		this.configuration.announceChange();
+	}
+
+	public Templates getCompiledXmlStyleSheet(String namespace)
+			throws TransformerConfigurationException {
+		CompiledXmlRegistry<Templates> xmlStyleSheetRegistry = this.compiledXmlRegistrySingleton
+				.getXmlStyleSheetRegistry();
+		Templates templates = xmlStyleSheetRegistry.get(namespace);
+		if (null != templates) {
+			return templates;
+		}
+		long generation = xmlStyleSheetRegistry.getGeneration();
+		XmlStyleSheetEntity xmlStyleSheetEntity = this.entityManager.find(
+				XmlStyleSheetEntity.class, namespace);
+		if (null == xmlStyleSheetEntity) {
+			return null;
+		}
+		LOG.debug("compiling XML style sheet: " + namespace + ", revision: "
+				+ xmlStyleSheetEntity.getRevision());
+		synchronized (transformerFactory) {
+			templates = transformerFactory.newTemplates(new StreamSource(
+					new ByteArrayInputStream(xmlStyleSheetEntity.getXsl())));
+		}
+		xmlStyleSheetRegistry.register(namespace, templates, generation);
+		LOG.debug("XML style sheet registry: " + xmlStyleSheetRegistry);
+		return templates;
 	}
 
 	public byte[] getXmlStyleSheet(String namespace) {
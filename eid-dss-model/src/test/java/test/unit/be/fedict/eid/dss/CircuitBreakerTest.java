@@ -0,0 +1,142 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import be.fedict.eid.dss.model.bean.CircuitBreaker;
+import be.fedict.eid.dss.spi.utils.Clock;
+
+public class CircuitBreakerTest {
+
+	@Test
+	public void testOpenAfterConsecutiveFailures() throws Exception {
+		// setup
+		CircuitBreaker testedInstance = new CircuitBreaker("test", 2,
+				60 * 1000L, 10 * 1000L);
+
+		// operate & verify
+		testedInstance.recordCall(10, true);
+		assertTrue(testedInstance.isAvailable());
+		testedInstance.recordCall(10, false);
+		testedInstance.recordCall(10, true);
+		assertTrue(testedInstance.isAvailable());
+		testedInstance.recordCall(10, true);
+		assertFalse(testedInstance.isAvailable());
+		assertEquals(1, testedInstance.getTrips());
+		assertEquals(3, testedInstance.getFailures());
+	}
+
+	@Test
+	public void testSlowCallsCountAsFailures() throws Exception {
+		// setup
+		CircuitBreaker testedInstance = new CircuitBreaker("test", 1,
+				60 * 1000L, 100);
+
+		// operate
+		testedInstance.recordCall(200, false);
+
+		// verify
+		assertFalse(testedInstance.isAvailable());
+	}
+
+	@Test
+	public void testCloseAfterOpenDuration() throws Exception {
+		// setup
+		TestClock clock = new TestClock();
+		CircuitBreaker testedInstance = new CircuitBreaker("test", 1, 100,
+				10 * 1000L, clock);
+		testedInstance.recordCall(10, true);
+		assertFalse(testedInstance.isAvailable());
+
+		// operate
+		clock.advance(150);
+
+		// verify
+		assertTrue(testedInstance.isAvailable());
+		testedInstance.recordCall(10, false);
+		assertTrue(testedInstance.isAvailable());
+	}
+
+	@Test
+	public void testHalfOpenSingleProbe() throws Exception {
+		// setup
+		TestClock clock = new TestClock();
+		CircuitBreaker testedInstance = new CircuitBreaker("test", 1, 100,
+				10 * 1000L, clock);
+		testedInstance.recordCall(10, true);
+		assertFalse(testedInstance.acquire());
+		clock.advance(150);
+
+		// operate & verify
+		assertTrue(testedInstance.acquire());
+		assertFalse(testedInstance.isAvailable());
+		assertFalse(testedInstance.acquire());
+		testedInstance.recordCall(10, true);
+		assertFalse(testedInstance.acquire());
+		assertEquals(2, testedInstance.getTrips());
+
+		clock.advance(150);
+		assertTrue(testedInstance.acquire());
+		assertFalse(testedInstance.acquire());
+		testedInstance.recordCall(10, false);
+		assertTrue(testedInstance.acquire());
+		assertTrue(testedInstance.acquire());
+	}
+
+	@Test
+	public void testAverageLatency() throws Exception {
+		// setup
+		CircuitBreaker testedInstance = new CircuitBreaker("test", 5,
+				60 * 1000L, 10 * 1000L);
+
+		// operate
+		testedInstance.recordCall(100, false);
+		testedInstance.recordCall(200, false);
+
+		// verify
+		assertEquals(120, testedInstance.getAverageLatency());
+	}
+
+	@Test
+	public void testGetEndpoints() throws Exception {
+		assertEquals(Arrays.asList("http://a", "http://b", "http://c"),
+				CircuitBreaker.getEndpoints(" http://a, http://b\nhttp://c "));
+		assertTrue(CircuitBreaker.getEndpoints(null).isEmpty());
+	}
+
+	private static class TestClock implements Clock {
+
+		private long now = System.currentTimeMillis();
+
+		public synchronized long currentTimeMillis() {
+			return this.now;
+		}
+
+		public synchronized void advance(long millis) {
+			this.now += millis;
+		}
+	}
+}
@@ -20,16 +20,32 @@ package test.unit.be.fedict.eid.dss;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
+import javax.ejb.EJB;
+import javax.jms.Message;
+import javax.jms.Topic;
+import javax.jms.TopicConnection;
+import javax.jms.TopicConnectionFactory;
+import javax.jms.TopicPublisher;
+import javax.jms.TopicSession;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.PersistenceContext;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.easymock.EasyMock;
 import org.hibernate.ejb.Ejb3Configuration;
 import org.junit.After;
 import org.junit.Before;
@@ -39,6 +55,7 @@ import be.fedict.eid.dss.entity.ConfigPropertyEntity;
 import be.fedict.eid.dss.model.ConfigProperty;
 import be.fedict.eid.dss.model.TSPDigestAlgo;
 import be.fedict.eid.dss.model.bean.ConfigurationBean;
+import be.fedict.eid.dss.model.bean.ConfigurationSnapshotSingletonBean;
 
 public class ConfigurationBeanTest {
 
@@ -49,6 +66,8 @@ public class ConfigurationBeanTest {
 
 	private ConfigurationBean testedInstance;
 
+	private ConfigurationSnapshotSingletonBean configurationSnapshotSingleton;
+
 	@Before
 	public void setUp() throws Exception {
 		Class.forName("org.hsqldb.jdbcDriver");
@@ -70,13 +89,18 @@ public class ConfigurationBeanTest {
 		this.entityManager.getTransaction().begin();
 
 		this.testedInstance = new ConfigurationBean();
+		this.configurationSnapshotSingleton = new ConfigurationSnapshotSingletonBean();
 		Field[] beanFields = ConfigurationBean.class.getDeclaredFields();
 		for (Field beanField : beanFields) {
-			if (null == beanField.getAnnotation(PersistenceContext.class)) {
-				continue;
+			if (null != beanField.getAnnotation(PersistenceContext.class)) {
+				beanField.setAccessible(true);
+				beanField.set(this.testedInstance, this.entityManager);
+			}
+			if (null != beanField.getAnnotation(EJB.class)) {
+				beanField.setAccessible(true);
+				beanField.set(this.testedInstance,
+						this.configurationSnapshotSingleton);
 			}
-			beanField.setAccessible(true);
-			beanField.set(this.testedInstance, this.entityManager);
 		}
 	}
 
@@ -118,4 +142,188 @@ public class ConfigurationBeanTest {
 		assertEquals("foobar", this.testedInstance.getValue(
 				ConfigProperty.TSP_URL, String.class));
 	}
+
+	@Test
+	public void testChangesUpdateSnapshot() throws Exception {
+		// setup
+		this.testedInstance.setValue(ConfigProperty.TSP_URL, "foobar");
+		long version = this.testedInstance.getVersion();
+
+		// operate
+		this.testedInstance.setValue(ConfigProperty.TSP_URL, "foobar2");
+
+		// verify
+		assertEquals("foobar2", this.testedInstance.getValue(
+				ConfigProperty.TSP_URL, String.class));
+		assertTrue(this.testedInstance.getVersion() > version);
+		version = this.testedInstance.getVersion();
+
+		// operate
+		this.testedInstance.removeValue(ConfigProperty.TSP_URL);
+
+		// verify
+		assertNull(this.testedInstance.getValue(ConfigProperty.TSP_URL,
+				String.class));
+		assertTrue(this.testedInstance.getVersion() > version);
+	}
+
+	@Test
+	public void testDatabaseChangeNotSeenUntilInvalidation() throws Exception {
+		// setup
+		this.testedInstance.setValue(ConfigProperty.TSP_URL, "foobar");
+		this.testedInstance.getValue(ConfigProperty.TSP_URL, String.class);
+		ConfigPropertyEntity configPropertyEntity = this.entityManager.find(
+				ConfigPropertyEntity.class, ConfigProperty.TSP_URL.getName());
+
+		// operate
+		configPropertyEntity.setValue("foobar2");
+
+		// verify
+		assertEquals("foobar", this.testedInstance.getValue(
+				ConfigProperty.TSP_URL, String.class));
+	}
+
+	@Test
+	public void testChangesPublishedOnCommit() throws Exception {
+		// setup
+		this.testedInstance.setValue(ConfigProperty.TSP_URL, "foobar");
+		TestTransactionSynchronizationRegistry transactionSynchronizationRegistry = new TestTransactionSynchronizationRegistry();
+		injectTransactionResources(transactionSynchronizationRegistry);
+
+		// operate
+		this.testedInstance.setValue(ConfigProperty.TSP_URL, "foobar2");
+
+		// verify
+		assertEquals("foobar2", this.testedInstance.getValue(
+				ConfigProperty.TSP_URL, String.class));
+		assertEquals("foobar", getSharedValue(ConfigProperty.TSP_URL));
+		assertEquals(1, transactionSynchronizationRegistry.synchronizations
+				.size());
+
+		// operate
+		transactionSynchronizationRegistry
+				.complete(Status.STATUS_COMMITTED);
+
+		// verify
+		assertEquals("foobar2", getSharedValue(ConfigProperty.TSP_URL));
+	}
+
+	@Test
+	public void testChangesDiscardedOnRollback() throws Exception {
+		// setup
+		this.testedInstance.setValue(ConfigProperty.TSP_URL, "foobar");
+		TestTransactionSynchronizationRegistry transactionSynchronizationRegistry = new TestTransactionSynchronizationRegistry();
+		injectTransactionResources(transactionSynchronizationRegistry);
+
+		// operate
+		this.testedInstance.setValue(ConfigProperty.TSP_URL, "foobar2");
+		this.testedInstance.removeValue(ConfigProperty.TSP_URL, "foo");
+		transactionSynchronizationRegistry
+				.complete(Status.STATUS_ROLLEDBACK);
+
+		// verify
+		assertEquals("foobar", getSharedValue(ConfigProperty.TSP_URL));
+	}
+
+	@Test
+	public void testIndexes() throws Exception {
+		// operate
+		this.testedInstance.setValue(ConfigProperty.TSP_URL, "foo", "bar");
+		this.testedInstance.setValue(ConfigProperty.TSP_URL, "foo2", "bar2");
+		this.testedInstance.removeValue(ConfigProperty.TSP_URL, "foo2");
+
+		// verify
+		List<String> indexes = this.testedInstance
+				.getIndexes(ConfigProperty.TSP_URL);
+		assertEquals(1, indexes.size());
+		assertEquals("foo", indexes.get(0));
+		assertEquals("bar", this.testedInstance.getValue(
+				ConfigProperty.TSP_URL, "foo", String.class));
+	}
+
+	private String getSharedValue(ConfigProperty configProperty) {
+		return this.configurationSnapshotSingleton.getSnapshot().getValue(
+				configProperty.getName());
+	}
+
+	private void injectTransactionResources(
+			TransactionSynchronizationRegistry transactionSynchronizationRegistry)
+			throws Exception {
+		TopicConnectionFactory mockTopicConnectionFactory = EasyMock
+				.createNiceMock(TopicConnectionFactory.class);
+		TopicConnection mockTopicConnection = EasyMock
+				.createNiceMock(TopicConnection.class);
+		TopicSession mockTopicSession = EasyMock
+				.createNiceMock(TopicSession.class);
+		EasyMock.expect(mockTopicConnectionFactory.createTopicConnection())
+				.andStubReturn(mockTopicConnection);
+		EasyMock.expect(
+				mockTopicConnection.createTopicSession(EasyMock.anyBoolean(),
+						EasyMock.anyInt())).andStubReturn(mockTopicSession);
+		EasyMock.expect(
+				mockTopicSession.createPublisher((Topic) EasyMock.anyObject()))
+				.andStubReturn(EasyMock.createNiceMock(TopicPublisher.class));
+		EasyMock.expect(mockTopicSession.createMessage()).andStubReturn(
+				EasyMock.createNiceMock(Message.class));
+		EasyMock.replay(mockTopicConnectionFactory, mockTopicConnection,
+				mockTopicSession);
+
+		Field[] beanFields = ConfigurationBean.class.getDeclaredFields();
+		for (Field beanField : beanFields) {
+			Object value;
+			if (TransactionSynchronizationRegistry.class.equals(beanField
+					.getType())) {
+				value = transactionSynchronizationRegistry;
+			} else if (TopicConnectionFactory.class.equals(beanField
+					.getType())) {
+				value = mockTopicConnectionFactory;
+			} else {
+				continue;
+			}
+			beanField.setAccessible(true);
+			beanField.set(this.testedInstance, value);
+		}
+	}
+
+	private static class TestTransactionSynchronizationRegistry implements
+			TransactionSynchronizationRegistry {
+
+		private final Map<Object, Object> resources = new HashMap<Object, Object>();
+
+		private final List<Synchronization> synchronizations = new LinkedList<Synchronization>();
+
+		public Object getTransactionKey() {
+			return this;
+		}
+
+		public void putResource(Object key, Object value) {
+			this.resources.put(key, value);
+		}
+
+		public Object getResource(Object key) {
+			return this.resources.get(key);
+		}
+
+		public void registerInterposedSynchronization(
+				Synchronization synchronization) {
+			this.synchronizations.add(synchronization);
+		}
+
+		public int getTransactionStatus() {
+			return Status.STATUS_ACTIVE;
+		}
+
+		public void setRollbackOnly() {
+		}
+
+		public boolean getRollbackOnly() {
+			return false;
+		}
+
+		public void complete(int status) {
+			for (Synchronization synchronization : this.synchronizations) {
+				synchronization.afterCompletion(status);
+			}
+		}
+	}
 }
@@ -0,0 +1,163 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import be.fedict.eid.dss.model.bean.ConfigurationChanges;
+import be.fedict.eid.dss.model.bean.ConfigurationSnapshot;
+import be.fedict.eid.dss.model.bean.ConfigurationSnapshotSingletonBean;
+
+public class ConfigurationSnapshotSingletonBeanTest {
+
+	private ConfigurationSnapshotSingletonBean testedInstance;
+
+	@Before
+	public void setUp() throws Exception {
+		this.testedInstance = new ConfigurationSnapshotSingletonBean();
+	}
+
+	@Test
+	public void testInstall() throws Exception {
+		// setup
+		ConfigurationSnapshot snapshot = new ConfigurationSnapshot(
+				this.testedInstance.getVersion(), getValues());
+
+		// operate
+		ConfigurationSnapshot result = this.testedInstance.install(snapshot);
+
+		// verify
+		assertSame(snapshot, result);
+		assertSame(snapshot, this.testedInstance.getSnapshot());
+	}
+
+	@Test
+	public void testCopyOnWrite() throws Exception {
+		// setup
+		ConfigurationSnapshot snapshot = new ConfigurationSnapshot(
+				this.testedInstance.getVersion(), getValues());
+		this.testedInstance.install(snapshot);
+
+		// operate
+		ConfigurationChanges changes = new ConfigurationChanges(snapshot);
+		changes.setValue("name", "value2");
+
+		// verify
+		assertSame(snapshot, this.testedInstance.getSnapshot());
+		assertEquals("value2", changes.getSnapshot().getValue("name"));
+
+		// operate
+		this.testedInstance.publish(changes);
+
+		// verify
+		assertEquals("value", snapshot.getValue("name"));
+		ConfigurationSnapshot newSnapshot = this.testedInstance.getSnapshot();
+		assertEquals("value2", newSnapshot.getValue("name"));
+		assertEquals(snapshot.getVersion() + 1, newSnapshot.getVersion());
+
+		// operate
+		changes = new ConfigurationChanges(newSnapshot);
+		changes.removeValue("name");
+		this.testedInstance.publish(changes);
+
+		// verify
+		assertNull(this.testedInstance.getSnapshot().getValue("name"));
+	}
+
+	@Test
+	public void testStaleLoadNotInstalled() throws Exception {
+		// setup
+		ConfigurationSnapshot snapshot = new ConfigurationSnapshot(
+				this.testedInstance.getVersion(), getValues());
+
+		// operate
+		ConfigurationChanges changes = new ConfigurationChanges(snapshot);
+		changes.setValue("name", "value2");
+		this.testedInstance.publish(changes);
+		ConfigurationSnapshot result = this.testedInstance.install(snapshot);
+
+		// verify
+		assertSame(snapshot, result);
+		assertNull(this.testedInstance.getSnapshot());
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		// setup
+		this.testedInstance.install(new ConfigurationSnapshot(
+				this.testedInstance.getVersion(), getValues()));
+		long version = this.testedInstance.getVersion();
+
+		// operate
+		this.testedInstance.invalidate();
+
+		// verify
+		assertNull(this.testedInstance.getSnapshot());
+		assertEquals(version + 1, this.testedInstance.getVersion());
+	}
+
+	@Test
+	public void testAcceptChange() throws Exception {
+		// operate & verify
+		assertFalse(this.testedInstance.acceptChange(
+				this.testedInstance.getNodeId(), 1));
+		assertTrue(this.testedInstance.acceptChange("other-node", 2));
+		assertTrue(this.testedInstance.acceptChange("other-node", 2));
+		assertTrue(this.testedInstance.acceptChange("other-node", 1));
+		assertTrue(this.testedInstance.acceptChange("third-node", 1));
+	}
+
+	@Test
+	public void testPublishRetainsConcurrentChanges() throws Exception {
+		// setup
+		ConfigurationSnapshot snapshot = new ConfigurationSnapshot(
+				this.testedInstance.getVersion(), getValues());
+		this.testedInstance.install(snapshot);
+		ConfigurationChanges changes1 = new ConfigurationChanges(snapshot);
+		changes1.setValue("name1", "value1");
+		ConfigurationChanges changes2 = new ConfigurationChanges(snapshot);
+		changes2.setValue("name2", "value2");
+
+		// operate
+		this.testedInstance.publish(changes2);
+		this.testedInstance.publish(changes1);
+
+		// verify
+		ConfigurationSnapshot result = this.testedInstance.getSnapshot();
+		assertEquals("value", result.getValue("name"));
+		assertEquals("value1", result.getValue("name1"));
+		assertEquals("value2", result.getValue("name2"));
+	}
+
+	private Map<String, String> getValues() {
+		Map<String, String> values = new HashMap<String, String>();
+		values.put("name", "value");
+		return values;
+	}
+}
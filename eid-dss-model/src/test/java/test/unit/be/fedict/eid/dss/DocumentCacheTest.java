@@ -0,0 +1,81 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+import be.fedict.eid.dss.model.bean.DocumentCache;
+
+public class DocumentCacheTest {
+
+	private static final Date FUTURE = new Date(System.currentTimeMillis()
+			+ 60 * 1000);
+
+	@Test
+	public void testHitAndMiss() throws Exception {
+		// setup
+		DocumentCache testedInstance = new DocumentCache(1024);
+		byte[] data = new byte[10];
+
+		// operate
+		testedInstance.put("id", 0, data, FUTURE);
+
+		// verify
+		assertArrayEquals(data, testedInstance.get("id", 0));
+		assertNull(testedInstance.get("other-id", 0));
+		assertEquals(1, testedInstance.getHits());
+		assertEquals(1, testedInstance.getMisses());
+		assertEquals(10, testedInstance.getWeight());
+	}
+
+	@Test
+	public void testStaleVersion() throws Exception {
+		// setup
+		DocumentCache testedInstance = new DocumentCache(1024);
+		testedInstance.put("id", 0, new byte[10], FUTURE);
+
+		// operate & verify
+		assertNull(testedInstance.get("id", 1));
+		testedInstance.remove("id", 0);
+		assertEquals(0, testedInstance.getEntryCount());
+		assertEquals(0, testedInstance.getWeight());
+	}
+
+	@Test
+	public void testTooLarge() throws Exception {
+		// setup
+		DocumentCache testedInstance = new DocumentCache(800);
+		testedInstance.put("id", 0, new byte[100], FUTURE);
+
+		// operate
+		testedInstance.put("id", 0, new byte[101], FUTURE);
+
+		// verify
+		assertFalse(testedInstance.isCacheable(101));
+		assertNull(testedInstance.get("id", 0));
+		assertEquals(0, testedInstance.getWeight());
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+
+package test.unit.be.fedict.eid.dss;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpSession;
+
+import org.apache.commons.codec.binary.Hex;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.fedict.eid.dss.model.DocumentRepository;
+import be.fedict.eid.dss.model.SessionDocument;
+import be.fedict.eid.dss.model.bean.DocumentRepositoryOutputStream;
+import be.fedict.eid.dss.spi.SignatureStatus;
+
+public class DocumentRepositoryOutputStreamTest {
+
+	private Map<String, Object> attributes;
+
+	private boolean sessionInvalidated;
+
+	private HttpSession mockHttpSession;
+
+	@Before
+	public void setUp() throws Exception {
+		this.attributes = new HashMap<String, Object>();
+		this.sessionInvalidated = false;
+		this.mockHttpSession = EasyMock.createMock(HttpSession.class);
+		EasyMock.expect(
+				this.mockHttpSession.getAttribute((String) EasyMock
+						.anyObject())).andStubAnswer(new IAnswer<Object>() {
+
+			public Object answer() throws Throwable {
+				return attributes.get(EasyMock.getCurrentArguments()[0]);
+			}
+		});
+		this.mockHttpSession.setAttribute((String) EasyMock.anyObject(),
+				EasyMock.anyObject());
+		EasyMock.expectLastCall().andStubAnswer(new IAnswer<Object>() {
+
+			public Object answer() throws Throwable {
+				Object[] arguments = EasyMock.getCurrentArguments();
+				if (sessionInvalidated
+						&& DocumentRepository.SIGNED_DOCUMENT_SESSION_ATTRIBUTE
+								.equals(arguments[0])) {
+					throw new IllegalStateException("session invalidated");
+				}
+				attributes.put((String) arguments[0], arguments[1]);
+				return null;
+			}
+		});
+		EasyMock.replay(this.mockHttpSession);
+	}
+
+	@Test
+	public void testLargeDocumentSpilled() throws Exception {
+		// setup
+		byte[] data = new byte[SessionDocument.MEMORY_THRESHOLD * 2];
+		data[data.length - 1] = 0x12;
+		DocumentRepositoryOutputStream testedInstance = new DocumentRepositoryOutputStream(
+				this.mockHttpSession);
+
+		// operate
+		testedInstance.write(data);
+
+		// verify
+		File tmpFile = getRegisteredTmpFile();
+		assertTrue(tmpFile.exists());
+
+		// operate
+		testedInstance.close();
+
+		// verify
+		DocumentRepository documentRepository = new DocumentRepository(
+				this.mockHttpSession);
+		SessionDocument signedDocument = documentRepository
+				.getSignedSessionDocument();
+		assertEquals(tmpFile.getAbsoluteFile(), signedDocument.getFile()
+				.getAbsoluteFile());
+		assertArrayEquals(data, signedDocument.getData());
+		String expectedDigest = new String(Hex.encodeHex(MessageDigest
+				.getInstance("SHA-256").digest(data)));
+		assertEquals(expectedDigest, signedDocument.getDigest());
+		assertEquals(SignatureStatus.OK,
+				documentRepository.getSignatureStatus());
+		signedDocument.delete();
+	}
+
+	@Test
+	public void testSpillFileRemovedOnFailure() throws Exception {
+		// setup
+		byte[] data = new byte[SessionDocument.MEMORY_THRESHOLD * 2];
+		DocumentRepositoryOutputStream testedInstance = new DocumentRepositoryOutputStream(
+				this.mockHttpSession);
+		testedInstance.write(data);
+		File tmpFile = getRegisteredTmpFile();
+		this.sessionInvalidated = true;
+
+		// operate
+		try {
+			testedInstance.close();
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		// verify
+		assertFalse(tmpFile.exists());
+	}
+
+	@SuppressWarnings("unchecked")
+	private File getRegisteredTmpFile() {
+		Set<String> tmpFileSet = (Set<String>) this.attributes
+				.get(DocumentRepository.TMP_FILE_SET_SESSION_ATTRIBUTE);
+		assertEquals(1, tmpFileSet.size());
+		return new File(tmpFileSet.iterator().next());
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+
+package test.unit.be.fedict.eid.dss;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.activation.DataSource;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.hibernate.ejb.Ejb3Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.fedict.eid.dss.entity.DocumentEntity;
+import be.fedict.eid.dss.model.ConfigProperty;
+import be.fedict.eid.dss.model.Configuration;
+import be.fedict.eid.dss.model.DocumentStoreType;
+import be.fedict.eid.dss.model.SessionDocument;
+import be.fedict.eid.dss.model.bean.DocumentCache;
+import be.fedict.eid.dss.model.bean.DocumentCacheSingletonBean;
+import be.fedict.eid.dss.model.bean.DocumentServiceBean;
+
+public class DocumentServiceBeanTest {
+
+	private EntityManager entityManager;
+
+	private File rootDirectory;
+
+	private DocumentCache documentCache;
+
+	private DocumentStoreType documentStoreType;
+
+	private TestTransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+	private DocumentServiceBean testedInstance;
+
+	@Before
+	public void setUp() throws Exception {
+		Class.forName("org.hsqldb.jdbcDriver");
+		Ejb3Configuration configuration = new Ejb3Configuration();
+		configuration.setProperty("hibernate.dialect",
+				"org.hibernate.dialect.HSQLDialect");
+		configuration.setProperty("hibernate.connection.driver_class",
+				"org.hsqldb.jdbcDriver");
+		configuration.setProperty("hibernate.connection.url",
+				"jdbc:hsqldb:mem:beta");
+		configuration.setProperty("hibernate.hbm2ddl.auto", "create");
+
+		configuration.addAnnotatedClass(DocumentEntity.class);
+
+		EntityManagerFactory entityManagerFactory = configuration
+				.buildEntityManagerFactory();
+
+		this.entityManager = entityManagerFactory.createEntityManager();
+		this.entityManager.getTransaction().begin();
+
+		this.rootDirectory = File.createTempFile("eid-dss-documents-", "");
+		this.rootDirectory.delete();
+
+		Configuration mockConfiguration = EasyMock
+				.createMock(Configuration.class);
+		this.documentStoreType = DocumentStoreType.FILESYSTEM;
+		EasyMock.expect(
+				mockConfiguration.getValue(ConfigProperty.DOCUMENT_STORE_TYPE,
+						DocumentStoreType.class)).andStubAnswer(
+				new IAnswer<DocumentStoreType>() {
+
+					public DocumentStoreType answer() throws Throwable {
+						return DocumentServiceBeanTest.this.documentStoreType;
+					}
+				});
+		EasyMock.expect(
+				mockConfiguration.getValue(ConfigProperty.DOCUMENT_STORE_PATH,
+						String.class)).andStubReturn(
+				this.rootDirectory.getAbsolutePath());
+		EasyMock.expect(
+				mockConfiguration.getValue(
+						ConfigProperty.DOCUMENT_STORAGE_EXPIRATION,
+						Integer.class)).andStubReturn(5);
+		EasyMock.expect(
+				mockConfiguration.getValue(ConfigProperty.DOCUMENT_CACHE_SIZE,
+						Integer.class)).andStubReturn(1);
+		EasyMock.replay(mockConfiguration);
+
+		DocumentCacheSingletonBean documentCacheSingletonBean = new DocumentCacheSingletonBean();
+		inject(documentCacheSingletonBean, mockConfiguration);
+		documentCacheSingletonBean.postConstruct();
+		this.documentCache = documentCacheSingletonBean.getDocumentCache();
+
+		this.transactionSynchronizationRegistry = new TestTransactionSynchronizationRegistry();
+		this.testedInstance = new DocumentServiceBean();
+		inject(this.testedInstance, mockConfiguration);
+		inject(this.testedInstance, documentCacheSingletonBean);
+		inject(this.testedInstance, this.entityManager);
+		inject(this.testedInstance, this.transactionSynchronizationRegistry);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.entityManager.getTransaction().rollback();
+		this.entityManager.close();
+		FileUtils.deleteDirectory(this.rootDirectory);
+	}
+
+	@Test
+	public void testCacheFilledOnCommit() throws Exception {
+		// setup
+		byte[] data = "hello world".getBytes();
+
+		// operate
+		this.testedInstance.store("id", data, "text/plain");
+		DocumentEntity document = this.testedInstance.find("id");
+
+		// verify
+		assertNull(this.documentCache.get("id", document.getVersion()));
+
+		// operate
+		this.transactionSynchronizationRegistry
+				.complete(Status.STATUS_COMMITTED);
+
+		// verify
+		assertArrayEquals(data,
+				this.documentCache.get("id", document.getVersion()));
+	}
+
+	@Test
+	public void testCacheNotFilledOnRollback() throws Exception {
+		// setup
+		byte[] data = "hello world".getBytes();
+		this.testedInstance.store("id", data, "text/plain");
+		this.transactionSynchronizationRegistry
+				.complete(Status.STATUS_COMMITTED);
+		DocumentEntity document = this.testedInstance.find("id");
+		int version = document.getVersion();
+		this.transactionSynchronizationRegistry = newTransaction();
+
+		// operate
+		this.testedInstance.update("id", "updated".getBytes());
+		this.transactionSynchronizationRegistry
+				.complete(Status.STATUS_ROLLEDBACK);
+
+		// verify
+		assertArrayEquals(data, this.documentCache.get("id", version));
+		assertNull(this.documentCache.get("id", document.getVersion()));
+	}
+
+	@Test
+	public void testStreamingUpdateEvicts() throws Exception {
+		// setup
+		byte[] data = "hello world".getBytes();
+		byte[] updatedData = "updated".getBytes();
+		this.testedInstance.store("id", data, "text/plain");
+		this.transactionSynchronizationRegistry
+				.complete(Status.STATUS_COMMITTED);
+		DocumentEntity document = this.testedInstance.find("id");
+		int version = document.getVersion();
+		this.transactionSynchronizationRegistry = newTransaction();
+
+		// operate
+		this.testedInstance.update("id",
+				new ByteArrayInputStream(updatedData), updatedData.length);
+
+		// verify
+		assertArrayEquals(data, this.documentCache.get("id", version));
+
+		// operate
+		this.transactionSynchronizationRegistry
+				.complete(Status.STATUS_COMMITTED);
+
+		// verify
+		assertNull(this.documentCache.get("id", version));
+		assertNull(this.documentCache.get("id", document.getVersion()));
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		this.testedInstance.find("id", outputStream);
+		assertArrayEquals(updatedData, outputStream.toByteArray());
+	}
+
+	@Test
+	public void testRetrieveStreamsDataFile() throws Exception {
+		// setup
+		byte[] data = "hello world".getBytes();
+		this.testedInstance.store("id", new ByteArrayInputStream(data), -1,
+				"application/pdf");
+		this.transactionSynchronizationRegistry
+				.complete(Status.STATUS_COMMITTED);
+		this.transactionSynchronizationRegistry = newTransaction();
+
+		// operate
+		DataSource dataSource = this.testedInstance.retrieve("id");
+		this.transactionSynchronizationRegistry
+				.complete(Status.STATUS_COMMITTED);
+
+		// verify
+		assertNull(this.testedInstance.find("id"));
+		assertEquals("application/pdf", dataSource.getContentType());
+		InputStream inputStream = dataSource.getInputStream();
+		try {
+			assertArrayEquals(data, IOUtils.toByteArray(inputStream));
+		} finally {
+			inputStream.close();
+		}
+		assertNull(this.testedInstance.retrieve("id"));
+	}
+
+	@Test
+	public void testStoreLargeStreamInDatabase() throws Exception {
+		// setup
+		this.documentStoreType = DocumentStoreType.DATABASE;
+		byte[] data = new byte[SessionDocument.MEMORY_THRESHOLD * 3 + 7];
+		new Random().nextBytes(data);
+
+		// operate
+		this.testedInstance.store("id", new ByteArrayInputStream(data), -1,
+				"application/pdf");
+		this.entityManager.clear();
+
+		// verify
+		DocumentEntity document = this.testedInstance.find("id");
+		assertEquals(data.length, document.getDataSize());
+		assertNull(document.getDataDigest());
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		this.testedInstance.find("id", outputStream);
+		assertArrayEquals(data, outputStream.toByteArray());
+	}
+
+	private TestTransactionSynchronizationRegistry newTransaction()
+			throws Exception {
+		TestTransactionSynchronizationRegistry transactionSynchronizationRegistry = new TestTransactionSynchronizationRegistry();
+		inject(this.testedInstance, transactionSynchronizationRegistry);
+		return transactionSynchronizationRegistry;
+	}
+
+	private static void inject(Object bean, Object value) throws Exception {
+		for (Field field : bean.getClass().getDeclaredFields()) {
+			if (field.getType().isInstance(value)) {
+				field.setAccessible(true);
+				field.set(bean, value);
+			}
+		}
+	}
+
+	private static class TestTransactionSynchronizationRegistry implements
+			TransactionSynchronizationRegistry {
+
+		private final Map<Object, Object> resources = new HashMap<Object, Object>();
+
+		private final List<Synchronization> synchronizations = new LinkedList<Synchronization>();
+
+		public Object getTransactionKey() {
+			return this;
+		}
+
+		public void putResource(Object key, Object value) {
+			this.resources.put(key, value);
+		}
+
+		public Object getResource(Object key) {
+			return this.resources.get(key);
+		}
+
+		public void registerInterposedSynchronization(
+				Synchronization synchronization) {
+			this.synchronizations.add(synchronization);
+		}
+
+		public int getTransactionStatus() {
+			return Status.STATUS_ACTIVE;
+		}
+
+		public void setRollbackOnly() {
+		}
+
+		public boolean getRollbackOnly() {
+			return false;
+		}
+
+		public void complete(int status) {
+			for (Synchronization synchronization : this.synchronizations) {
+				synchronization.afterCompletion(status);
+			}
+			this.synchronizations.clear();
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import be.fedict.eid.applet.service.signer.facets.RevocationData;
+import be.fedict.eid.applet.service.signer.time.TimeStampService;
+import be.fedict.eid.dss.model.bean.CircuitBreaker;
+import be.fedict.eid.dss.model.bean.FailoverTimeStampService;
+import be.fedict.eid.dss.model.exception.TrustServiceClientException;
+
+public class FailoverTimeStampServiceTest {
+
+	@Test
+	public void testFailover() throws Exception {
+		// setup
+		byte[] data = "hello world".getBytes();
+		byte[] timeStamp = "time-stamp".getBytes();
+		RevocationData revocationData = new RevocationData();
+		TimeStampService mockFailingService = EasyMock
+				.createMock(TimeStampService.class);
+		TimeStampService mockService = EasyMock
+				.createMock(TimeStampService.class);
+		CircuitBreaker failingCircuitBreaker = newCircuitBreaker("tsp1");
+		CircuitBreaker circuitBreaker = newCircuitBreaker("tsp2");
+		FailoverTimeStampService testedInstance = new FailoverTimeStampService();
+		testedInstance.addTimeStampService(mockFailingService,
+				failingCircuitBreaker);
+		testedInstance.addTimeStampService(mockService, circuitBreaker);
+
+		// expectations
+		EasyMock.expect(mockFailingService.timeStamp(data, revocationData))
+				.andThrow(new IOException("connection refused"));
+		EasyMock.expect(mockService.timeStamp(data, revocationData))
+				.andReturn(timeStamp).times(2);
+
+		// prepare
+		EasyMock.replay(mockFailingService, mockService);
+
+		// operate
+		byte[] result1 = testedInstance.timeStamp(data, revocationData);
+		byte[] result2 = testedInstance.timeStamp(data, revocationData);
+
+		// verify
+		EasyMock.verify(mockFailingService, mockService);
+		assertArrayEquals(timeStamp, result1);
+		assertArrayEquals(timeStamp, result2);
+		assertFalse(failingCircuitBreaker.isAvailable());
+		assertEquals(2, circuitBreaker.getCalls());
+	}
+
+	@Test
+	public void testAllFailing() throws Exception {
+		// setup
+		byte[] data = "hello world".getBytes();
+		IOException exception = new IOException("connection refused");
+		TimeStampService mockService = EasyMock
+				.createMock(TimeStampService.class);
+		FailoverTimeStampService testedInstance = new FailoverTimeStampService();
+		testedInstance.addTimeStampService(mockService,
+				newCircuitBreaker("tsp"));
+
+		// expectations
+		EasyMock.expect(mockService.timeStamp(data, null)).andThrow(
+				exception);
+
+		// prepare
+		EasyMock.replay(mockService);
+
+		// operate & verify
+		try {
+			testedInstance.timeStamp(data, null);
+			fail();
+		} catch (IOException e) {
+			assertSame(exception, e);
+		}
+		try {
+			testedInstance.timeStamp(data, null);
+			fail();
+		} catch (IllegalStateException e) {
+			// expected: circuit breaker open
+		}
+		EasyMock.verify(mockService);
+	}
+
+	@Test
+	public void testTsaTrustFailureNotCounted() throws Exception {
+		// setup
+		byte[] data = "hello world".getBytes();
+		TrustServiceClientException exception = new TrustServiceClientException(
+				"validation failed", new Exception());
+		TimeStampService mockService = EasyMock
+				.createMock(TimeStampService.class);
+		CircuitBreaker circuitBreaker = newCircuitBreaker("tsp");
+		FailoverTimeStampService testedInstance = new FailoverTimeStampService();
+		testedInstance.addTimeStampService(mockService, circuitBreaker);
+
+		// expectations
+		EasyMock.expect(mockService.timeStamp(data, null)).andThrow(
+				exception);
+
+		// prepare
+		EasyMock.replay(mockService);
+
+		// operate
+		try {
+			testedInstance.timeStamp(data, null);
+			fail();
+		} catch (TrustServiceClientException e) {
+			assertSame(exception, e);
+		}
+
+		// verify
+		EasyMock.verify(mockService);
+		assertTrue(circuitBreaker.isAvailable());
+		assertEquals(0, circuitBreaker.getFailures());
+	}
+
+	private CircuitBreaker newCircuitBreaker(String endpoint) {
+		return new CircuitBreaker(endpoint, 1, 60 * 1000L, 10 * 1000L);
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.Date;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+import org.hibernate.ejb.Ejb3Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.fedict.eid.dss.entity.DocumentEntity;
+import be.fedict.eid.dss.model.bean.FileSystemDocumentStore;
+
+public class FileSystemDocumentStoreTest {
+
+	private static final long HOUR = 60 * 60 * 1000L;
+
+	private EntityManager entityManager;
+
+	private File rootDirectory;
+
+	private FileSystemDocumentStore testedInstance;
+
+	@Before
+	public void setUp() throws Exception {
+		Class.forName("org.hsqldb.jdbcDriver");
+		Ejb3Configuration configuration = new Ejb3Configuration();
+		configuration.setProperty("hibernate.dialect",
+				"org.hibernate.dialect.HSQLDialect");
+		configuration.setProperty("hibernate.connection.driver_class",
+				"org.hsqldb.jdbcDriver");
+		configuration.setProperty("hibernate.connection.url",
+				"jdbc:hsqldb:mem:beta");
+		configuration.setProperty("hibernate.hbm2ddl.auto", "create");
+
+		configuration.addAnnotatedClass(DocumentEntity.class);
+
+		EntityManagerFactory entityManagerFactory = configuration
+				.buildEntityManagerFactory();
+
+		this.entityManager = entityManagerFactory.createEntityManager();
+		this.entityManager.getTransaction().begin();
+
+		this.rootDirectory = File.createTempFile("eid-dss-documents-", "");
+		this.rootDirectory.delete();
+		this.testedInstance = new FileSystemDocumentStore(this.rootDirectory,
+				this.entityManager);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.entityManager.getTransaction().rollback();
+		this.entityManager.close();
+		FileUtils.deleteDirectory(this.rootDirectory);
+	}
+
+	@Test
+	public void testStoreWriteRemove() throws Exception {
+		// setup
+		byte[] data = "hello world".getBytes();
+		String dataDigest = new String(Hex.encodeHex(MessageDigest
+				.getInstance("SHA-256").digest(data)));
+		DocumentEntity document = new DocumentEntity("id", "text/plain",
+				null, 0, new Date());
+
+		// operate
+		this.testedInstance.store(document, new ByteArrayInputStream(data),
+				data.length);
+		this.entityManager.persist(document);
+		this.entityManager.flush();
+
+		// verify
+		assertEquals(dataDigest, document.getDataDigest());
+		assertEquals(data.length, document.getDataSize());
+		assertNull(document.getData());
+		File dataFile = new File(new File(this.rootDirectory,
+				dataDigest.substring(0, 2)), dataDigest);
+		assertTrue(dataFile.exists());
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		this.testedInstance.write(document, outputStream);
+		assertArrayEquals(data, outputStream.toByteArray());
+
+		// operate
+		this.testedInstance.remove(document);
+		this.entityManager.flush();
+
+		// verify
+		assertTrue(dataFile.exists());
+		dataFile.setLastModified(System.currentTimeMillis() - HOUR);
+		assertEquals(1, this.testedInstance.sweep(0));
+		assertFalse(dataFile.exists());
+	}
+
+	@Test
+	public void testSharedData() throws Exception {
+		// setup
+		byte[] data = "hello world".getBytes();
+		DocumentEntity document1 = new DocumentEntity("id-1", "text/plain",
+				null, 0, new Date());
+		DocumentEntity document2 = new DocumentEntity("id-2", "text/plain",
+				null, 0, new Date());
+
+		// operate
+		this.testedInstance.store(document1, new ByteArrayInputStream(data),
+				data.length);
+		this.entityManager.persist(document1);
+		this.testedInstance.store(document2, new ByteArrayInputStream(data),
+				data.length);
+		this.entityManager.persist(document2);
+		this.entityManager.flush();
+
+		// verify
+		String dataDigest = document1.getDataDigest();
+		assertEquals(dataDigest, document2.getDataDigest());
+		File dataFile = new File(new File(this.rootDirectory,
+				dataDigest.substring(0, 2)), dataDigest);
+
+		dataFile.setLastModified(System.currentTimeMillis() - HOUR);
+		this.testedInstance.remove(document1);
+		this.entityManager.remove(document1);
+		this.entityManager.flush();
+		assertEquals(0, this.testedInstance.sweep(0));
+		assertTrue(dataFile.exists());
+
+		this.testedInstance.remove(document2);
+		this.entityManager.remove(document2);
+		this.entityManager.flush();
+		assertEquals(1, this.testedInstance.sweep(0));
+		assertFalse(dataFile.exists());
+	}
+
+	@Test
+	public void testConcurrentSameDigest() throws Exception {
+		// setup
+		byte[] data = "hello world".getBytes();
+		DocumentEntity document1 = new DocumentEntity("id-1", "text/plain",
+				null, 0, new Date());
+		this.testedInstance.store(document1, new ByteArrayInputStream(data),
+				data.length);
+		this.entityManager.persist(document1);
+		this.entityManager.flush();
+		String dataDigest = document1.getDataDigest();
+		File dataFile = new File(new File(this.rootDirectory,
+				dataDigest.substring(0, 2)), dataDigest);
+		dataFile.setLastModified(System.currentTimeMillis() - 2 * HOUR);
+
+		// operate: a transaction stores the same data but did not commit yet
+		DocumentEntity document2 = new DocumentEntity("id-2", "text/plain",
+				null, 0, new Date());
+		this.testedInstance.store(document2, new ByteArrayInputStream(data),
+				data.length);
+
+		// operate: the last committed reference goes away
+		this.testedInstance.remove(document1);
+		this.entityManager.remove(document1);
+		this.entityManager.flush();
+		int removals = this.testedInstance.sweep(HOUR);
+
+		// verify
+		assertEquals(0, removals);
+		assertTrue(dataFile.exists());
+		assertEquals(dataDigest, document2.getDataDigest());
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		this.testedInstance.write(document2, outputStream);
+		assertArrayEquals(data, outputStream.toByteArray());
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.X509Extensions;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.ocsp.BasicOCSPResp;
+import org.bouncycastle.ocsp.BasicOCSPRespGenerator;
+import org.bouncycastle.ocsp.CertificateID;
+import org.bouncycastle.ocsp.CertificateStatus;
+import org.bouncycastle.ocsp.OCSPResp;
+import org.bouncycastle.ocsp.OCSPRespGenerator;
+import org.bouncycastle.ocsp.RevokedStatus;
+import org.bouncycastle.x509.X509V2CRLGenerator;
+import org.bouncycastle.x509.X509V3CertificateGenerator;
+import org.joda.time.DateTime;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.fedict.eid.dss.model.bean.LocalTrustValidator;
+
+public class LocalTrustValidatorTest {
+
+	private static final long GRACE_PERIOD = 60 * 60 * 1000L;
+
+	private static KeyPair rootKeyPair;
+
+	private static X509Certificate rootCertificate;
+
+	private static X509Certificate certificate;
+
+	private static Date validationDate;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		if (null == Security.getProvider(BouncyCastleProvider.PROVIDER_NAME)) {
+			Security.addProvider(new BouncyCastleProvider());
+		}
+		rootKeyPair = generateKeyPair();
+		rootCertificate = generateCertificate(rootKeyPair, "CN=Root",
+				rootKeyPair.getPrivate(), "CN=Root", true);
+		certificate = generateCertificate(generateKeyPair(), "CN=Signer",
+				rootKeyPair.getPrivate(), "CN=Root", false);
+		validationDate = new DateTime().minusMinutes(5).toDate();
+	}
+
+	@Test
+	public void testValidWithCrl() throws Exception {
+		// setup
+		LocalTrustValidator testedInstance = new LocalTrustValidator(
+				Collections.singletonList(rootCertificate));
+		X509CRL crl = generateCrl(new Date(), null);
+
+		// operate
+		boolean result = testedInstance.validate(getChain(), validationDate,
+				new LinkedList<OCSPResp>(), Collections.singletonList(crl),
+				GRACE_PERIOD);
+
+		// verify
+		assertTrue(result);
+		assertEquals(1, testedInstance.getValidations());
+	}
+
+	@Test
+	public void testRevokedByCrl() throws Exception {
+		// setup
+		LocalTrustValidator testedInstance = new LocalTrustValidator(
+				Collections.singletonList(rootCertificate));
+		X509CRL crl = generateCrl(new Date(), certificate.getSerialNumber());
+
+		// operate & verify
+		assertFalse(testedInstance.validate(getChain(), validationDate,
+				new LinkedList<OCSPResp>(), Collections.singletonList(crl),
+				GRACE_PERIOD));
+		assertEquals(1, testedInstance.getFallbacks());
+	}
+
+	@Test
+	public void testCrlBeforeValidationDate() throws Exception {
+		// setup
+		LocalTrustValidator testedInstance = new LocalTrustValidator(
+				Collections.singletonList(rootCertificate));
+		X509CRL crl = generateCrl(new DateTime(validationDate).minusMinutes(1)
+				.toDate(), null);
+
+		// operate & verify
+		assertFalse(testedInstance.validate(getChain(), validationDate,
+				new LinkedList<OCSPResp>(), Collections.singletonList(crl),
+				GRACE_PERIOD));
+	}
+
+	@Test
+	public void testDeltaCrl() throws Exception {
+		// setup
+		LocalTrustValidator testedInstance = new LocalTrustValidator(
+				Collections.singletonList(rootCertificate));
+		X509CRL deltaCrl = generateCrl(new Date(), null, true);
+
+		// operate & verify
+		assertFalse(testedInstance.validate(getChain(), validationDate,
+				new LinkedList<OCSPResp>(), Collections.singletonList(deltaCrl),
+				GRACE_PERIOD));
+		assertEquals(1, testedInstance.getFallbacks());
+	}
+
+	@Test
+	public void testValidWithOcsp() throws Exception {
+		// setup
+		LocalTrustValidator testedInstance = new LocalTrustValidator(
+				Collections.singletonList(rootCertificate));
+		OCSPResp ocspResp = generateOcspResp(false);
+
+		// operate & verify
+		assertTrue(testedInstance.validate(getChain(), validationDate,
+				Collections.singletonList(ocspResp), new LinkedList<X509CRL>(),
+				GRACE_PERIOD));
+	}
+
+	@Test
+	public void testRevokedByOcsp() throws Exception {
+		// setup
+		LocalTrustValidator testedInstance = new LocalTrustValidator(
+				Collections.singletonList(rootCertificate));
+		OCSPResp ocspResp = generateOcspResp(true);
+
+		// operate & verify
+		assertFalse(testedInstance.validate(getChain(), validationDate,
+				Collections.singletonList(ocspResp), new LinkedList<X509CRL>(),
+				GRACE_PERIOD));
+	}
+
+	@Test
+	public void testNoRevocationData() throws Exception {
+		// setup
+		LocalTrustValidator testedInstance = new LocalTrustValidator(
+				Collections.singletonList(rootCertificate));
+
+		// operate & verify
+		assertFalse(testedInstance.validate(getChain(), validationDate,
+				new LinkedList<OCSPResp>(), new LinkedList<X509CRL>(),
+				GRACE_PERIOD));
+	}
+
+	@Test
+	public void testUnknownTrustAnchor() throws Exception {
+		// setup
+		KeyPair otherKeyPair = generateKeyPair();
+		X509Certificate otherRootCertificate = generateCertificate(
+				otherKeyPair, "CN=Root", otherKeyPair.getPrivate(), "CN=Root",
+				true);
+		LocalTrustValidator testedInstance = new LocalTrustValidator(
+				Collections.singletonList(otherRootCertificate));
+		X509CRL crl = generateCrl(new Date(), null);
+
+		// operate & verify
+		assertFalse(testedInstance.validate(getChain(), validationDate,
+				new LinkedList<OCSPResp>(), Collections.singletonList(crl),
+				GRACE_PERIOD));
+	}
+
+	private static List<X509Certificate> getChain() {
+		List<X509Certificate> chain = new LinkedList<X509Certificate>();
+		chain.add(certificate);
+		chain.add(rootCertificate);
+		return chain;
+	}
+
+	private static KeyPair generateKeyPair() throws Exception {
+		KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+		keyPairGenerator.initialize(1024);
+		return keyPairGenerator.generateKeyPair();
+	}
+
+	private static X509Certificate generateCertificate(KeyPair keyPair,
+			String subjectDn, PrivateKey issuerPrivateKey, String issuerDn,
+			boolean ca) throws Exception {
+		DateTime notBefore = new DateTime().minusDays(1);
+		X509V3CertificateGenerator certificateGenerator = new X509V3CertificateGenerator();
+		certificateGenerator.setPublicKey(keyPair.getPublic());
+		certificateGenerator.setSignatureAlgorithm("SHA1withRSA");
+		certificateGenerator.setNotBefore(notBefore.toDate());
+		certificateGenerator.setNotAfter(notBefore.plusYears(1).toDate());
+		certificateGenerator.setIssuerDN(new X500Principal(issuerDn));
+		certificateGenerator.setSubjectDN(new X500Principal(subjectDn));
+		certificateGenerator.setSerialNumber(new BigInteger(128,
+				new SecureRandom()));
+		if (ca) {
+			certificateGenerator.addExtension(X509Extensions.BasicConstraints,
+					true, new BasicConstraints(true));
+		}
+		X509Certificate certificate = certificateGenerator
+				.generate(issuerPrivateKey);
+		// make sure we get a certificate of the default security provider
+		CertificateFactory certificateFactory = CertificateFactory
+				.getInstance("X.509");
+		return (X509Certificate) certificateFactory
+				.generateCertificate(new ByteArrayInputStream(certificate
+						.getEncoded()));
+	}
+
+	private static X509CRL generateCrl(Date thisUpdate,
+			BigInteger revokedSerialNumber) throws Exception {
+		return generateCrl(thisUpdate, revokedSerialNumber, false);
+	}
+
+	private static X509CRL generateCrl(Date thisUpdate,
+			BigInteger revokedSerialNumber, boolean deltaCrl) throws Exception {
+		X509V2CRLGenerator crlGenerator = new X509V2CRLGenerator();
+		if (deltaCrl) {
+			crlGenerator.addExtension(X509Extensions.DeltaCRLIndicator, true,
+					new CRLNumber(BigInteger.ONE));
+		}
+		crlGenerator.setIssuerDN(rootCertificate.getSubjectX500Principal());
+		crlGenerator.setThisUpdate(thisUpdate);
+		crlGenerator.setNextUpdate(new DateTime(thisUpdate).plusDays(1)
+				.toDate());
+		crlGenerator.setSignatureAlgorithm("SHA1withRSA");
+		if (null != revokedSerialNumber) {
+			crlGenerator.addCRLEntry(revokedSerialNumber, validationDate,
+					CRLReason.unspecified);
+		}
+		return crlGenerator.generate(rootKeyPair.getPrivate());
+	}
+
+	private static OCSPResp generateOcspResp(boolean revoked)
+			throws Exception {
+		BasicOCSPRespGenerator basicOCSPRespGenerator = new BasicOCSPRespGenerator(
+				rootCertificate.getPublicKey());
+		CertificateID certificateId = new CertificateID(
+				CertificateID.HASH_SHA1, rootCertificate,
+				certificate.getSerialNumber());
+		CertificateStatus certificateStatus;
+		if (revoked) {
+			certificateStatus = new RevokedStatus(validationDate,
+					CRLReason.unspecified);
+		} else {
+			certificateStatus = CertificateStatus.GOOD;
+		}
+		basicOCSPRespGenerator.addResponse(certificateId, certificateStatus);
+		BasicOCSPResp basicOCSPResp = basicOCSPRespGenerator.generate(
+				"SHA1withRSA", rootKeyPair.getPrivate(), null, new Date(),
+				BouncyCastleProvider.PROVIDER_NAME);
+		return new OCSPRespGenerator().generate(OCSPRespGenerator.SUCCESSFUL,
+				basicOCSPResp);
+	}
+}
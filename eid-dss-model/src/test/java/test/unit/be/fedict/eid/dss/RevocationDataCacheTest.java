@@ -0,0 +1,284 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.x509.X509V2CRLGenerator;
+import org.joda.time.DateTime;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.fedict.eid.applet.service.signer.facets.RevocationData;
+import be.fedict.eid.dss.model.bean.RevocationDataCache;
+import be.fedict.eid.dss.spi.utils.Clock;
+
+public class RevocationDataCacheTest {
+
+	private static final Executor SYNCHRONOUS_EXECUTOR = new Executor() {
+
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	private static KeyPair keyPair;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		if (null == Security.getProvider(BouncyCastleProvider.PROVIDER_NAME)) {
+			Security.addProvider(new BouncyCastleProvider());
+		}
+		KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+		keyPairGenerator.initialize(1024);
+		keyPair = keyPairGenerator.generateKeyPair();
+	}
+
+	@Test
+	public void testHit() throws Exception {
+		// setup
+		RevocationDataCache testedInstance = new RevocationDataCache(10,
+				60 * 1000L, SYNCHRONOUS_EXECUTOR);
+		CountingFetcher fetcher = new CountingFetcher(new DateTime()
+				.plusHours(1).toDate());
+
+		// operate
+		RevocationData result1 = testedInstance.get("key", fetcher);
+		RevocationData result2 = testedInstance.get("key", fetcher);
+
+		// verify
+		assertEquals(1, fetcher.getFetches());
+		assertEquals(1, result2.getCrls().size());
+		assertSame(result1.getCrls().get(0), result2.getCrls().get(0));
+		assertEquals(1, testedInstance.getHits());
+		assertEquals(1, testedInstance.getMisses());
+	}
+
+	@Test
+	public void testExpiredNextUpdate() throws Exception {
+		// setup
+		RevocationDataCache testedInstance = new RevocationDataCache(10,
+				60 * 1000L, SYNCHRONOUS_EXECUTOR);
+		CountingFetcher fetcher = new CountingFetcher(new DateTime()
+				.minusMinutes(1).toDate());
+
+		// operate
+		testedInstance.get("key", fetcher);
+		testedInstance.get("key", fetcher);
+
+		// verify
+		assertEquals(2, fetcher.getFetches());
+		assertEquals(0, testedInstance.getEntryCount());
+	}
+
+	@Test
+	public void testBackgroundRefresh() throws Exception {
+		// setup
+		TestClock clock = new TestClock();
+		RevocationDataCache testedInstance = new RevocationDataCache(10, 1000,
+				SYNCHRONOUS_EXECUTOR, clock);
+		CountingFetcher fetcher = new CountingFetcher(null);
+		testedInstance.get("key", fetcher);
+		clock.advance(850);
+
+		// operate
+		testedInstance.get("key", fetcher);
+
+		// verify
+		assertEquals(2, fetcher.getFetches());
+		assertEquals(1, testedInstance.getHits());
+		assertEquals(1, testedInstance.getRefreshes());
+	}
+
+	@Test
+	public void testMaxAgeSinceFetch() throws Exception {
+		// setup
+		TestClock clock = new TestClock();
+		RevocationDataCache testedInstance = new RevocationDataCache(10, 500,
+				new Executor() {
+
+					public void execute(Runnable command) {
+						// no background refresh
+					}
+				}, clock);
+		CountingFetcher fetcher = new CountingFetcher(new DateTime()
+				.plusHours(1).toDate());
+		testedInstance.get("key", fetcher);
+		clock.advance(600);
+
+		// operate
+		testedInstance.get("key", fetcher);
+
+		// verify
+		assertEquals(2, fetcher.getFetches());
+		assertEquals(0, testedInstance.getHits());
+	}
+
+	@Test
+	public void testRemove() throws Exception {
+		// setup
+		RevocationDataCache testedInstance = new RevocationDataCache(10,
+				60 * 1000L, SYNCHRONOUS_EXECUTOR);
+		CountingFetcher fetcher = new CountingFetcher(new DateTime()
+				.plusHours(1).toDate());
+		testedInstance.get("key", fetcher);
+
+		// operate
+		testedInstance.remove("key");
+		testedInstance.get("key", fetcher);
+
+		// verify
+		assertEquals(2, fetcher.getFetches());
+		assertEquals(1, testedInstance.getEntryCount());
+	}
+
+	@Test
+	public void testSharedFetch() throws Exception {
+		// setup
+		final RevocationDataCache testedInstance = new RevocationDataCache(10,
+				60 * 1000L, SYNCHRONOUS_EXECUTOR);
+		final CountDownLatch fetchStarted = new CountDownLatch(1);
+		final CountDownLatch fetchDone = new CountDownLatch(1);
+		final AtomicInteger fetches = new AtomicInteger();
+		final Callable<RevocationData> fetcher = new Callable<RevocationData>() {
+
+			public RevocationData call() throws Exception {
+				fetches.incrementAndGet();
+				fetchStarted.countDown();
+				fetchDone.await(10, TimeUnit.SECONDS);
+				return new RevocationData();
+			}
+		};
+		Callable<RevocationData> caller = new Callable<RevocationData>() {
+
+			public RevocationData call() throws Exception {
+				return testedInstance.get("key", fetcher);
+			}
+		};
+		ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+		// operate
+		Future<RevocationData> result1 = executorService.submit(caller);
+		assertTrue(fetchStarted.await(10, TimeUnit.SECONDS));
+		Future<RevocationData> result2 = executorService.submit(caller);
+		Thread.sleep(100);
+		fetchDone.countDown();
+
+		// verify
+		result1.get();
+		result2.get();
+		executorService.shutdown();
+		assertEquals(1, fetches.get());
+	}
+
+	@Test
+	public void testFetchFailureNotCached() throws Exception {
+		// setup
+		RevocationDataCache testedInstance = new RevocationDataCache(10,
+				60 * 1000L, SYNCHRONOUS_EXECUTOR);
+		final AtomicInteger fetches = new AtomicInteger();
+		Callable<RevocationData> fetcher = new Callable<RevocationData>() {
+
+			public RevocationData call() throws Exception {
+				fetches.incrementAndGet();
+				throw new IllegalStateException("trust service down");
+			}
+		};
+
+		// operate & verify
+		for (int idx = 0; idx < 2; idx++) {
+			try {
+				testedInstance.get("key", fetcher);
+				fail();
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		}
+		assertEquals(2, fetches.get());
+		assertEquals(0, testedInstance.getEntryCount());
+	}
+
+	private static class TestClock implements Clock {
+
+		private long now = System.currentTimeMillis();
+
+		public synchronized long currentTimeMillis() {
+			return this.now;
+		}
+
+		public synchronized void advance(long millis) {
+			this.now += millis;
+		}
+	}
+
+	private static class CountingFetcher implements Callable<RevocationData> {
+
+		private final Date nextUpdate;
+
+		private final AtomicInteger fetches = new AtomicInteger();
+
+		/**
+		 * @param nextUpdate
+		 *            next update of the returned CRL, or <code>null</code> to
+		 *            return empty revocation data.
+		 */
+		public CountingFetcher(Date nextUpdate) {
+			this.nextUpdate = nextUpdate;
+		}
+
+		public RevocationData call() throws Exception {
+			this.fetches.incrementAndGet();
+			RevocationData revocationData = new RevocationData();
+			if (null != this.nextUpdate) {
+				X509V2CRLGenerator crlGenerator = new X509V2CRLGenerator();
+				crlGenerator.setIssuerDN(new X500Principal("CN=Test CA"));
+				crlGenerator.setThisUpdate(new DateTime(this.nextUpdate)
+						.minusDays(1).toDate());
+				crlGenerator.setNextUpdate(this.nextUpdate);
+				crlGenerator.setSignatureAlgorithm("SHA1withRSA");
+				revocationData.addCRL(crlGenerator.generate(
+						keyPair.getPrivate()).getEncoded());
+			}
+			return revocationData;
+		}
+
+		public int getFetches() {
+			return this.fetches.get();
+		}
+	}
+}
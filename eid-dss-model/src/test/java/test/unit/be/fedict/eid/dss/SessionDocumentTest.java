@@ -0,0 +1,123 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import be.fedict.eid.dss.model.SessionDocument;
+
+public class SessionDocumentTest {
+
+	@Test
+	public void testSmallDocumentInMemory() throws Exception {
+		// setup
+		byte[] data = "hello world".getBytes();
+
+		// operate
+		SessionDocument sessionDocument = SessionDocument.create(data);
+
+		// verify
+		assertNull(sessionDocument.getFile());
+		assertEquals(data.length, sessionDocument.getSize());
+		assertArrayEquals(data, sessionDocument.getData());
+	}
+
+	@Test
+	public void testLargeDocumentSpilled() throws Exception {
+		// setup
+		byte[] data = new byte[SessionDocument.MEMORY_THRESHOLD + 1];
+		data[data.length - 1] = 0x12;
+
+		// operate
+		SessionDocument sessionDocument = SessionDocument.create(data);
+
+		// verify
+		File file = sessionDocument.getFile();
+		assertNotNull(file);
+		assertTrue(file.exists());
+		assertEquals(data.length, file.length());
+		assertArrayEquals(data,
+				IOUtils.toByteArray(sessionDocument.getInputStream()));
+
+		sessionDocument.delete();
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void testLargeStreamSpilled() throws Exception {
+		// setup
+		byte[] data = new byte[SessionDocument.MEMORY_THRESHOLD * 3 + 7];
+		for (int idx = 0; idx < data.length; idx++) {
+			data[idx] = (byte) idx;
+		}
+
+		// operate
+		SessionDocument sessionDocument = SessionDocument
+				.create(new ByteArrayInputStream(data));
+
+		// verify
+		assertNotNull(sessionDocument.getFile());
+		assertEquals(data.length, sessionDocument.getSize());
+		assertArrayEquals(data, sessionDocument.getData());
+		sessionDocument.delete();
+	}
+
+	@Test
+	public void testSpillFileMissing() throws Exception {
+		// setup
+		byte[] data = new byte[SessionDocument.MEMORY_THRESHOLD];
+		SessionDocument sessionDocument = SessionDocument.create(data);
+		sessionDocument.delete();
+
+		// operate & verify
+		try {
+			sessionDocument.getInputStream();
+			fail();
+		} catch (IOException e) {
+			// expected: spill file lives on another node
+		}
+	}
+
+	@Test
+	public void testSmallStreamInMemory() throws Exception {
+		// setup
+		byte[] data = "hello world".getBytes();
+
+		// operate
+		SessionDocument sessionDocument = SessionDocument
+				.create(new ByteArrayInputStream(data));
+
+		// verify
+		assertNull(sessionDocument.getFile());
+		assertArrayEquals(data, sessionDocument.getData());
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import be.fedict.eid.dss.model.bean.TrustValidationCache;
+import be.fedict.eid.dss.model.bean.TrustValidationCache.CachedValidation;
+import be.fedict.eid.dss.model.bean.TrustValidationCache.Result;
+import be.fedict.trust.client.exception.RevocationDataNotFoundException;
+import be.fedict.trust.client.exception.ValidationFailedException;
+
+public class TrustValidationCacheTest {
+
+	@Test
+	public void testValid() throws Exception {
+		// setup
+		TrustValidationCache testedInstance = new TrustValidationCache(10,
+				60 * 1000, 60 * 1000);
+
+		// operate
+		testedInstance.put("key", CachedValidation.valid());
+
+		// verify
+		CachedValidation cachedValidation = testedInstance.get("key");
+		assertNotNull(cachedValidation);
+		assertTrue(cachedValidation.isValid());
+		cachedValidation.rethrow();
+		assertNull(testedInstance.get("other-key"));
+		assertEquals(1, testedInstance.getHits());
+		assertEquals(1, testedInstance.getMisses());
+	}
+
+	@Test
+	public void testInvalid() throws Exception {
+		// setup
+		TrustValidationCache testedInstance = new TrustValidationCache(10,
+				60 * 1000, 60 * 1000);
+		List<String> reasons = Collections.singletonList("revoked");
+
+		// operate
+		testedInstance.put("key", CachedValidation
+				.invalid(new ValidationFailedException(reasons)));
+
+		// verify
+		CachedValidation cachedValidation = testedInstance.get("key");
+		assertFalse(cachedValidation.isValid());
+		assertEquals(Result.VALIDATION_FAILED, cachedValidation.getResult());
+		assertEquals(1, testedInstance.getNegativeHits());
+		assertEquals(1, testedInstance.getHits());
+		ValidationFailedException exception1 = getException(cachedValidation);
+		ValidationFailedException exception2 = getException(cachedValidation);
+		assertNotSame(exception1, exception2);
+		assertEquals(reasons, exception1.getReasons());
+		assertEquals(reasons, exception2.getReasons());
+	}
+
+	private ValidationFailedException getException(
+			CachedValidation cachedValidation) throws Exception {
+		try {
+			cachedValidation.rethrow();
+			fail();
+			return null;
+		} catch (ValidationFailedException e) {
+			return e;
+		}
+	}
+
+	@Test
+	public void testNegativeTimeToLive() throws Exception {
+		// setup
+		TrustValidationCache testedInstance = new TrustValidationCache(10,
+				60 * 1000, -1);
+
+		// operate
+		testedInstance.put("valid-key", CachedValidation.valid());
+		testedInstance.put("invalid-key", CachedValidation
+				.invalid(new RevocationDataNotFoundException()));
+
+		// verify
+		assertNull(testedInstance.get("invalid-key"));
+		assertNotNull(testedInstance.get("valid-key"));
+		assertEquals(1, testedInstance.getEntryCount());
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import be.fedict.eid.dss.model.bean.TrustValidationCache.CachedValidation;
+import be.fedict.eid.dss.model.bean.TrustValidationCoalescer;
+
+public class TrustValidationCoalescerTest {
+
+	@Test
+	public void testCoalesce() throws Exception {
+		// setup
+		final TrustValidationCoalescer testedInstance = new TrustValidationCoalescer();
+		final CountDownLatch validationStarted = new CountDownLatch(1);
+		final CountDownLatch validationDone = new CountDownLatch(1);
+		final AtomicInteger validations = new AtomicInteger();
+		final IllegalStateException exception = new IllegalStateException(
+				"validation failed");
+		final Callable<CachedValidation> validation = new Callable<CachedValidation>() {
+
+			public CachedValidation call() throws Exception {
+				validations.incrementAndGet();
+				validationStarted.countDown();
+				validationDone.await(10, TimeUnit.SECONDS);
+				throw exception;
+			}
+		};
+		Callable<Void> caller = new Callable<Void>() {
+
+			public Void call() throws Exception {
+				testedInstance.invoke("key", validation);
+				return null;
+			}
+		};
+		ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+		// operate
+		Future<Void> result1 = executorService.submit(caller);
+		assertTrue(validationStarted.await(10, TimeUnit.SECONDS));
+		Future<Void> result2 = executorService.submit(caller);
+		while (0 == testedInstance.getCoalesced()) {
+			Thread.sleep(10);
+		}
+		validationDone.countDown();
+
+		// verify
+		assertFailure(exception, result1);
+		assertFailure(exception, result2);
+		executorService.shutdown();
+		assertEquals(1, validations.get());
+		assertEquals(1, testedInstance.getInvocations());
+		assertEquals(0, testedInstance.getInFlight());
+	}
+
+	private void assertFailure(Exception expectedException, Future<Void> result)
+			throws InterruptedException {
+		try {
+			result.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertSame(expectedException, e.getCause());
+		}
+	}
+
+	@Test
+	public void testSequentialInvocations() throws Exception {
+		// setup
+		TrustValidationCoalescer testedInstance = new TrustValidationCoalescer();
+		final AtomicInteger validations = new AtomicInteger();
+		Callable<CachedValidation> validation = new Callable<CachedValidation>() {
+
+			public CachedValidation call() throws Exception {
+				validations.incrementAndGet();
+				return CachedValidation.valid();
+			}
+		};
+
+		// operate
+		testedInstance.invoke("key", validation);
+		testedInstance.invoke("key", validation);
+
+		// verify
+		assertEquals(2, validations.get());
+		assertEquals(0, testedInstance.getCoalesced());
+	}
+}
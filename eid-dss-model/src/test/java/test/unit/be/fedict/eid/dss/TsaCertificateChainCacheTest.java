@@ -0,0 +1,107 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.List;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.x509.X509V3CertificateGenerator;
+import org.joda.time.DateTime;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.fedict.eid.dss.model.bean.TsaCertificateChainCache;
+
+public class TsaCertificateChainCacheTest {
+
+	private static KeyPair keyPair;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		if (null == Security.getProvider(BouncyCastleProvider.PROVIDER_NAME)) {
+			Security.addProvider(new BouncyCastleProvider());
+		}
+		KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+		keyPairGenerator.initialize(1024);
+		keyPair = keyPairGenerator.generateKeyPair();
+	}
+
+	@Test
+	public void testCacheHit() throws Exception {
+		// setup
+		TsaCertificateChainCache testedInstance = new TsaCertificateChainCache(
+				10);
+		X509Certificate tsaCertificate = generateCertificate("CN=TSA", 1);
+		List<X509Certificate> chain = Collections
+				.singletonList(tsaCertificate);
+
+		// operate
+		List<X509Certificate> result1 = testedInstance.get(tsaCertificate);
+		testedInstance.put(chain);
+		List<X509Certificate> result2 = testedInstance.get(tsaCertificate);
+
+		// verify
+		assertNull(result1);
+		assertEquals(chain, result2);
+		assertEquals(1, testedInstance.getHits());
+		assertEquals(1, testedInstance.getMisses());
+	}
+
+	@Test
+	public void testSameIssuerAndSerialOtherCertificate() throws Exception {
+		// setup
+		TsaCertificateChainCache testedInstance = new TsaCertificateChainCache(
+				10);
+		X509Certificate tsaCertificate = generateCertificate("CN=TSA", 1);
+		X509Certificate otherTsaCertificate = generateCertificate(
+				"CN=Other TSA", 1);
+		testedInstance.put(Collections.singletonList(tsaCertificate));
+
+		// operate
+		List<X509Certificate> result = testedInstance.get(otherTsaCertificate);
+
+		// verify
+		assertNull(result);
+	}
+
+	private static X509Certificate generateCertificate(String subjectDn,
+			int serialNumber) throws Exception {
+		DateTime notBefore = new DateTime().minusDays(1);
+		X509V3CertificateGenerator certificateGenerator = new X509V3CertificateGenerator();
+		certificateGenerator.setPublicKey(keyPair.getPublic());
+		certificateGenerator.setSignatureAlgorithm("SHA1withRSA");
+		certificateGenerator.setNotBefore(notBefore.toDate());
+		certificateGenerator.setNotAfter(notBefore.plusYears(1).toDate());
+		certificateGenerator.setIssuerDN(new X500Principal("CN=Root"));
+		certificateGenerator.setSubjectDN(new X500Principal(subjectDn));
+		certificateGenerator.setSerialNumber(BigInteger.valueOf(serialNumber));
+		return certificateGenerator.generate(keyPair.getPrivate());
+	}
+}
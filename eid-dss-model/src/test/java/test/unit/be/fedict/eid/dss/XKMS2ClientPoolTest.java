@@ -0,0 +1,122 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import be.fedict.eid.dss.model.bean.CircuitBreaker;
+import be.fedict.eid.dss.model.bean.XKMS2ClientPool;
+import be.fedict.trust.client.XKMS2Client;
+
+public class XKMS2ClientPoolTest {
+
+	private static final String XKMS_URL = "https://localhost/eid-trust-service-ws/xkms2";
+
+	@Test
+	public void testReuse() throws Exception {
+		// setup
+		XKMS2ClientPool testedInstance = new XKMS2ClientPool(XKMS_URL, null,
+				0, newCircuitBreaker());
+
+		// operate
+		XKMS2Client xkms2Client = testedInstance.borrow();
+		XKMS2Client otherXkms2Client = testedInstance.borrow();
+		testedInstance.release(xkms2Client);
+		XKMS2Client reusedXkms2Client = testedInstance.borrow();
+
+		// verify
+		assertNotSame(xkms2Client, otherXkms2Client);
+		assertSame(xkms2Client, reusedXkms2Client);
+		assertEquals(2, testedInstance.getCreated());
+		assertEquals(3, testedInstance.getBorrows());
+		assertEquals(2, testedInstance.getActive());
+		assertEquals(0, testedInstance.getIdle());
+	}
+
+	@Test
+	public void testReleaseAfterClose() throws Exception {
+		// setup
+		XKMS2ClientPool testedInstance = new XKMS2ClientPool(XKMS_URL, null,
+				0, newCircuitBreaker());
+		XKMS2Client xkms2Client = testedInstance.borrow();
+
+		// operate
+		testedInstance.close();
+		testedInstance.release(xkms2Client);
+
+		// verify
+		assertEquals(0, testedInstance.getActive());
+		assertEquals(0, testedInstance.getIdle());
+	}
+
+	@Test
+	public void testReleaseForeignClient() throws Exception {
+		// setup
+		XKMS2ClientPool testedInstance = new XKMS2ClientPool(XKMS_URL, null,
+				0, newCircuitBreaker());
+
+		// operate
+		testedInstance.release(new XKMS2Client(XKMS_URL));
+
+		// verify
+		assertEquals(0, testedInstance.getIdle());
+	}
+
+	@Test
+	public void testIsConfiguredFor() throws Exception {
+		// setup
+		XKMS2ClientPool testedInstance = new XKMS2ClientPool(XKMS_URL,
+				"proxy", 3128, newCircuitBreaker());
+
+		// operate & verify
+		assertTrue(testedInstance.isConfiguredFor(XKMS_URL, "proxy", 3128));
+		assertFalse(testedInstance.isConfiguredFor(XKMS_URL, "proxy", 8080));
+		assertFalse(testedInstance.isConfiguredFor(XKMS_URL, null, 0));
+		assertFalse(testedInstance.isConfiguredFor("https://other", "proxy",
+				3128));
+	}
+
+	@Test
+	public void testStatistics() throws Exception {
+		// setup
+		XKMS2ClientPool testedInstance = new XKMS2ClientPool(XKMS_URL, null,
+				0, newCircuitBreaker());
+
+		// operate
+		testedInstance.recordInvocation(10, false);
+		testedInstance.recordInvocation(30, true);
+
+		// verify
+		assertEquals(2, testedInstance.getInvocations());
+		assertEquals(1, testedInstance.getFailures());
+		assertEquals(20, testedInstance.getAverageLatency());
+		assertEquals(2, testedInstance.getCircuitBreaker().getCalls());
+		assertEquals(1, testedInstance.getCircuitBreaker().getFailures());
+	}
+
+	private CircuitBreaker newCircuitBreaker() {
+		return new CircuitBreaker(XKMS_URL, 5, 30 * 1000L, 10 * 1000L);
+	}
+}
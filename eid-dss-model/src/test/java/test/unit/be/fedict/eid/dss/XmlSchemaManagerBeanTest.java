@@ -19,32 +19,64 @@
 package test.unit.be.fedict.eid.dss;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.InputStream;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 
+import javax.annotation.Resource;
+import javax.ejb.EJB;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
 
 import org.apache.commons.io.IOUtils;
 import org.easymock.Capture;
 import org.easymock.EasyMock;
+import org.junit.Before;
 import org.junit.Test;
 
 import be.fedict.eid.dss.entity.XmlSchemaEntity;
+import be.fedict.eid.dss.model.Configuration;
+import be.fedict.eid.dss.model.bean.CompiledXmlRegistry;
+import be.fedict.eid.dss.model.bean.CompiledXmlRegistrySingletonBean;
 import be.fedict.eid.dss.model.bean.XmlSchemaManagerBean;
 
 public class XmlSchemaManagerBeanTest {
 
+	private XmlSchemaManagerBean testedInstance;
+
+	private CompiledXmlRegistrySingletonBean compiledXmlRegistrySingleton;
+
+	private Configuration mockConfiguration;
+
+	@Before
+	public void setUp() throws Exception {
+		this.testedInstance = new XmlSchemaManagerBean();
+		this.compiledXmlRegistrySingleton = new CompiledXmlRegistrySingletonBean();
+		inject(EJB.class, this.compiledXmlRegistrySingleton,
+				this.testedInstance);
+		this.mockConfiguration = EasyMock.createMock(Configuration.class);
+		inject(EJB.class, this.mockConfiguration, this.testedInstance);
+	}
+
 	@Test
 	public void testAdd() throws Exception {
 		// setup
-		XmlSchemaManagerBean testedInstance = new XmlSchemaManagerBean();
 		InputStream xsdInputStream = XmlSchemaManagerBeanTest.class
 				.getResourceAsStream("/example.xsd");
 		EntityManager mockEntityManager = EasyMock
 				.createMock(EntityManager.class);
-		injectPersistenceContext(mockEntityManager, testedInstance);
+		injectPersistenceContext(mockEntityManager, this.testedInstance);
+		inject(Resource.class, EasyMock
+				.createNiceMock(TransactionSynchronizationRegistry.class),
+				this.testedInstance);
 
 		// expectations
 		EasyMock.expect(
@@ -53,15 +85,16 @@ public class XmlSchemaManagerBeanTest {
 
 		Capture<XmlSchemaEntity> persistCapture = new Capture<XmlSchemaEntity>();
 		mockEntityManager.persist(EasyMock.capture(persistCapture));
+		this.mockConfiguration.announceChange();
 
 		// prepare
-		EasyMock.replay(mockEntityManager);
+		EasyMock.replay(mockEntityManager, this.mockConfiguration);
 
 		// operate
-		testedInstance.add("1.0", xsdInputStream);
+		this.testedInstance.add("1.0", xsdInputStream);
 
 		// verify
-		EasyMock.verify(mockEntityManager);
+		EasyMock.verify(mockEntityManager, this.mockConfiguration);
 		XmlSchemaEntity resultEntity = persistCapture.getValue();
 		assertEquals("urn:be:fedict:eid:dss:example",
 				resultEntity.getNamespace());
@@ -71,7 +104,6 @@ public class XmlSchemaManagerBeanTest {
 	@Test
 	public void testAdd2() throws Exception {
 		// setup
-		XmlSchemaManagerBean testedInstance = new XmlSchemaManagerBean();
 		InputStream xsdInputStream = XmlSchemaManagerBeanTest.class
 				.getResourceAsStream("/example.xsd");
 		byte[] xsd = IOUtils.toByteArray(xsdInputStream);
@@ -79,7 +111,10 @@ public class XmlSchemaManagerBeanTest {
 				.getResourceAsStream("/example2.xsd");
 		EntityManager mockEntityManager = EasyMock
 				.createMock(EntityManager.class);
-		injectPersistenceContext(mockEntityManager, testedInstance);
+		injectPersistenceContext(mockEntityManager, this.testedInstance);
+		inject(Resource.class, EasyMock
+				.createNiceMock(TransactionSynchronizationRegistry.class),
+				this.testedInstance);
 
 		XmlSchemaEntity exampleXmlSchemaEntity = new XmlSchemaEntity("", "1.0",
 				xsd);
@@ -95,34 +130,128 @@ public class XmlSchemaManagerBeanTest {
 
 		Capture<XmlSchemaEntity> persistCapture = new Capture<XmlSchemaEntity>();
 		mockEntityManager.persist(EasyMock.capture(persistCapture));
+		this.mockConfiguration.announceChange();
 
 		// prepare
-		EasyMock.replay(mockEntityManager);
+		EasyMock.replay(mockEntityManager, this.mockConfiguration);
 
 		// operate
-		testedInstance.add("1.0", xsd2InputStream);
+		this.testedInstance.add("1.0", xsd2InputStream);
 
 		// verify
-		EasyMock.verify(mockEntityManager);
+		EasyMock.verify(mockEntityManager, this.mockConfiguration);
 		XmlSchemaEntity resultEntity = persistCapture.getValue();
 		assertEquals("urn:be:fedict:eid:dss:example2",
 				resultEntity.getNamespace());
 		assertEquals("1.0", resultEntity.getRevision());
 	}
 
+	@Test
+	public void testDeleteClearsRegistry() throws Exception {
+		// setup
+		EntityManager mockEntityManager = EasyMock
+				.createMock(EntityManager.class);
+		injectPersistenceContext(mockEntityManager, this.testedInstance);
+		TransactionSynchronizationRegistry mockTransactionSynchronizationRegistry = EasyMock
+				.createMock(TransactionSynchronizationRegistry.class);
+		inject(Resource.class, mockTransactionSynchronizationRegistry,
+				this.testedInstance);
+		CompiledXmlRegistry<Schema> xmlSchemaRegistry = this.compiledXmlRegistrySingleton
+				.getXmlSchemaRegistry();
+		Schema schema = SchemaFactory.newInstance(
+				"http://www.w3.org/2001/XMLSchema").newSchema();
+		xmlSchemaRegistry.register("urn:test", schema,
+				xmlSchemaRegistry.getGeneration());
+		XmlSchemaEntity xmlSchemaEntity = new XmlSchemaEntity("urn:test",
+				"1.0", new byte[0]);
+
+		// expectations
+		EasyMock.expect(
+				mockEntityManager.find(XmlSchemaEntity.class, "urn:test"))
+				.andReturn(xmlSchemaEntity);
+		mockEntityManager.remove(xmlSchemaEntity);
+		EasyMock.expect(
+				mockTransactionSynchronizationRegistry.getTransactionKey())
+				.andStubReturn("tx");
+		EasyMock.expect(
+				mockTransactionSynchronizationRegistry
+						.getResource(xmlSchemaRegistry)).andReturn(null);
+		mockTransactionSynchronizationRegistry.putResource(xmlSchemaRegistry,
+				Boolean.TRUE);
+		Capture<Synchronization> synchronizationCapture = new Capture<Synchronization>();
+		mockTransactionSynchronizationRegistry
+				.registerInterposedSynchronization(EasyMock
+						.capture(synchronizationCapture));
+		this.mockConfiguration.announceChange();
+
+		// prepare
+		EasyMock.replay(mockEntityManager,
+				mockTransactionSynchronizationRegistry, this.mockConfiguration);
+
+		// operate
+		this.testedInstance.delete("urn:test");
+
+		// verify
+		EasyMock.verify(mockEntityManager,
+				mockTransactionSynchronizationRegistry, this.mockConfiguration);
+		assertNull(xmlSchemaRegistry.get("urn:test"));
+
+		// operate: concurrent compilation from the uncommitted state
+		xmlSchemaRegistry.register("urn:test", schema,
+				xmlSchemaRegistry.getGeneration());
+		assertSame(schema, xmlSchemaRegistry.get("urn:test"));
+		synchronizationCapture.getValue().afterCompletion(
+				Status.STATUS_COMMITTED);
+
+		// verify
+		assertNull(xmlSchemaRegistry.get("urn:test"));
+	}
+
+	@Test
+	public void testUnknownNamespaceNotRegistered() throws Exception {
+		// setup
+		EntityManager mockEntityManager = EasyMock
+				.createMock(EntityManager.class);
+		injectPersistenceContext(mockEntityManager, this.testedInstance);
+
+		// expectations
+		EasyMock.expect(
+				mockEntityManager.find(XmlSchemaEntity.class, "urn:unknown"))
+				.andReturn(null);
+
+		// prepare
+		EasyMock.replay(mockEntityManager);
+
+		// operate
+		Schema result = this.testedInstance.getCompiledXmlSchema("urn:unknown");
+
+		// verify
+		EasyMock.verify(mockEntityManager);
+		assertNull(result);
+		assertEquals(0, this.compiledXmlRegistrySingleton
+				.getXmlSchemaRegistry().getEntryCount());
+	}
+
 	private void injectPersistenceContext(EntityManager entityManager,
 			Object bean) throws IllegalArgumentException,
 			IllegalAccessException {
+		inject(PersistenceContext.class, entityManager, bean);
+	}
+
+	private void inject(Class<? extends Annotation> annotationClass,
+			Object value, Object bean) throws IllegalArgumentException,
+			IllegalAccessException {
 		Class<?> beanClass = bean.getClass();
 		Field[] fields = beanClass.getDeclaredFields();
 		for (Field field : fields) {
-			PersistenceContext persistenceContextAnnotation = field
-					.getAnnotation(PersistenceContext.class);
-			if (null == persistenceContextAnnotation) {
+			if (null == field.getAnnotation(annotationClass)) {
+				continue;
+			}
+			if (!field.getType().isInstance(value)) {
 				continue;
 			}
 			field.setAccessible(true);
-			field.set(bean, entityManager);
+			field.set(bean, value);
 		}
 	}
 }
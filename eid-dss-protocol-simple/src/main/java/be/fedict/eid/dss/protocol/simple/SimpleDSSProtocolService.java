@@ -43,8 +43,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import be.fedict.eid.dss.spi.BrowserPOSTResponse;
+import be.fedict.eid.dss.spi.DSSArtifactProtocolService;
 import be.fedict.eid.dss.spi.DSSProtocolContext;
-import be.fedict.eid.dss.spi.DSSProtocolService;
 import be.fedict.eid.dss.spi.DSSRequest;
 import be.fedict.eid.dss.spi.SignatureStatus;
 
@@ -53,7 +53,7 @@ import be.fedict.eid.dss.spi.SignatureStatus;
  * 
  * @author Frank Cornelis
  */
-public class SimpleDSSProtocolService implements DSSProtocolService {
+public class SimpleDSSProtocolService implements DSSArtifactProtocolService {
 
 	private static final long serialVersionUID = 1L;
 
@@ -240,6 +240,12 @@ public class SimpleDSSProtocolService implements DSSProtocolService {
 		}
 	}
 
+	public boolean isSignedDocumentRequired(HttpSession httpSession) {
+
+		// a signature request by document identifier is answered by artifact
+		return null != retrieveSignatureRequest(httpSession);
+	}
+
 	public BrowserPOSTResponse handleResponse(SignatureStatus signatureStatus,
 			byte[] signedDocument, String artifact,
 			X509Certificate signerCertificate, HttpSession httpSession,
@@ -265,11 +271,12 @@ public class SimpleDSSProtocolService implements DSSProtocolService {
 
 			String signatureRequest = retrieveSignatureRequest(httpSession);
 			String signatureRequestId = retrieveSignatureRequestId(httpSession);
-			String encodedSignedDocument = Base64
-					.encodeBase64String(signedDocument);
+			String encodedSignedDocument = null;
 
 			if (null != signatureRequest) {
 
+				encodedSignedDocument = Base64
+						.encodeBase64String(signedDocument);
 				browserPOSTResponse.addAttribute("SignatureResponse",
 						encodedSignedDocument);
 			} else {
@@ -0,0 +1,223 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.spi.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Node-local, weight bounded LRU cache. Each entry has a weight (1 for caches
+ * bounded on their number of entries, the size in bytes for caches bounded on
+ * memory) and an optional expiration time. Entries heavier than the maximum
+ * weight are never cached.
+ * <p>
+ * All methods are thread-safe. The hit, miss and eviction counters are kept
+ * for the cache statistics shown in the administration portal.
+ * 
+ * @param <K>
+ *            the key type.
+ * @param <V>
+ *            the value type.
+ */
+public class BoundedCache<K, V> {
+
+	/**
+	 * Expiration time of entries that never expire.
+	 */
+	public static final long NO_EXPIRATION = Long.MAX_VALUE;
+
+	private final long maxWeight;
+
+	private final Clock clock;
+
+	private final LinkedHashMap<K, Entry<V>> entries;
+
+	private long weight;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	/**
+	 * @param maxWeight
+	 *            the maximum total weight of all cached entries.
+	 */
+	public BoundedCache(long maxWeight) {
+		this(maxWeight, Clock.SYSTEM);
+	}
+
+	/**
+	 * @param maxWeight
+	 *            the maximum total weight of all cached entries.
+	 * @param clock
+	 *            gives the current time to check the expiration against.
+	 */
+	public BoundedCache(long maxWeight, Clock clock) {
+		this.maxWeight = maxWeight;
+		this.clock = clock;
+		this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+	}
+
+	/**
+	 * @return the cached value, or <code>null</code> if not cached or expired.
+	 */
+	public synchronized V get(K key) {
+
+		Entry<V> entry = this.entries.get(key);
+		if (null == entry) {
+			this.misses++;
+			return null;
+		}
+		if (entry.expiration <= this.clock.currentTimeMillis()) {
+			remove(key);
+			this.evictions++;
+			this.misses++;
+			return null;
+		}
+		this.hits++;
+		return entry.value;
+	}
+
+	/**
+	 * Caches an entry of weight 1.
+	 * 
+	 * @see #put(Object, Object, long, long)
+	 */
+	public boolean put(K key, V value, long expiration) {
+		return put(key, value, 1, expiration);
+	}
+
+	/**
+	 * Caches the given value, replacing any previous value of the same key.
+	 * The least recently used entries are evicted until the total weight fits
+	 * again.
+	 * 
+	 * @param expiration
+	 *            the expiration time in milliseconds since the epoch, or
+	 *            {@link #NO_EXPIRATION}.
+	 * @return <code>false</code> if the value is too heavy to be cached.
+	 */
+	public synchronized boolean put(K key, V value, long weight,
+			long expiration) {
+
+		remove(key);
+		if (weight > this.maxWeight) {
+			return false;
+		}
+		this.entries.put(key, new Entry<V>(value, weight, expiration));
+		this.weight += weight;
+
+		Iterator<Entry<V>> iterator = this.entries.values().iterator();
+		while (this.weight > this.maxWeight && iterator.hasNext()) {
+			this.weight -= iterator.next().weight;
+			iterator.remove();
+			this.evictions++;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the removed value, or <code>null</code> if not cached.
+	 */
+	public synchronized V remove(K key) {
+
+		Entry<V> entry = this.entries.remove(key);
+		if (null == entry) {
+			return null;
+		}
+		this.weight -= entry.weight;
+		return entry.value;
+	}
+
+	/**
+	 * Removes all expired entries.
+	 * 
+	 * @return the number of removed entries.
+	 */
+	public synchronized int removeExpired() {
+
+		long now = this.clock.currentTimeMillis();
+		int removals = 0;
+		Iterator<Entry<V>> iterator = this.entries.values().iterator();
+		while (iterator.hasNext()) {
+			Entry<V> entry = iterator.next();
+			if (entry.expiration <= now) {
+				iterator.remove();
+				this.weight -= entry.weight;
+				removals++;
+			}
+		}
+		this.evictions += removals;
+		return removals;
+	}
+
+	public synchronized void clear() {
+		this.evictions += this.entries.size();
+		this.entries.clear();
+		this.weight = 0;
+	}
+
+	public synchronized int getEntryCount() {
+		return this.entries.size();
+	}
+
+	public synchronized long getWeight() {
+		return this.weight;
+	}
+
+	public long getMaxWeight() {
+		return this.maxWeight;
+	}
+
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "entries=" + this.entries.size() + ", weight=" + this.weight
+				+ "/" + this.maxWeight + ", hits=" + this.hits + ", misses="
+				+ this.misses + ", evictions=" + this.evictions;
+	}
+
+	private static class Entry<V> {
+
+		private final V value;
+
+		private final long weight;
+
+		private final long expiration;
+
+		public Entry(V value, long weight, long expiration) {
+			this.value = value;
+			this.weight = weight;
+			this.expiration = expiration;
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+
+package be.fedict.eid.dss.spi.utils;
+
+/**
+ * Source of the current time of the time based caches and breakers, so unit
+ * tests can move time forward without sleeping.
+ */
+public interface Clock {
+
+	/**
+	 * The system clock.
+	 */
+	Clock SYSTEM = new Clock() {
+
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+	};
+
+	/**
+	 * @return the current time in milliseconds since the epoch.
+	 */
+	long currentTimeMillis();
+}
@@ -0,0 +1,114 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.spi.utils;
+
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CRLException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bouncycastle.util.encoders.Hex;
+
+/**
+ * Memory bounded LRU cache of parsed CRLs, keyed by the SHA-256 digest of
+ * their encoding. The same (multi-megabyte) CA CRL gets embedded in a lot of
+ * XAdES-X-L signatures, so it is parsed only once.
+ * <p>
+ * The parsed CRL keeps its revoked entries indexed per serial number, so
+ * revocation lookups on a cached CRL do not require another pass over the
+ * entries.
+ */
+public class CrlCache extends BoundedCache<String, X509CRL> {
+
+	private static final Log LOG = LogFactory.getLog(CrlCache.class);
+
+	/**
+	 * Rough estimate of the heap used by one parsed revoked entry.
+	 */
+	private static final int REVOKED_ENTRY_SIZE = 256;
+
+	private final CertificateFactory certificateFactory;
+
+	/**
+	 * @param maxSize
+	 *            the maximum estimated heap size of all cached CRLs, in bytes.
+	 */
+	public CrlCache(long maxSize) {
+		super(maxSize);
+		try {
+			this.certificateFactory = CertificateFactory.getInstance("X.509");
+		} catch (CertificateException e) {
+			throw new RuntimeException("certificate factory error: "
+					+ e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @return the parsed CRL, shared with all other callers of the same
+	 *         encoded CRL.
+	 */
+	public X509CRL getCrl(byte[] encodedCrl) throws CRLException {
+
+		String key = getKey(encodedCrl);
+		X509CRL crl = get(key);
+		if (null != crl) {
+			return crl;
+		}
+
+		/*
+		 * Parse outside of the lock. Concurrent misses on the same CRL might
+		 * parse it twice, which beats blocking the other CRLs.
+		 */
+		crl = (X509CRL) this.certificateFactory
+				.generateCRL(new ByteArrayInputStream(encodedCrl));
+		Set<? extends X509CRLEntry> revokedCertificates = crl
+				.getRevokedCertificates();
+		long crlSize = encodedCrl.length
+				+ (null == revokedCertificates ? 0 : (long) revokedCertificates
+						.size() * REVOKED_ENTRY_SIZE);
+		if (!put(key, crl, crlSize, NO_EXPIRATION)) {
+			LOG.debug("CRL too large to cache: " + crl.getIssuerX500Principal());
+		}
+		return crl;
+	}
+
+	private static String getKey(byte[] encodedCrl) {
+		MessageDigest messageDigest;
+		try {
+			messageDigest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256 not supported", e);
+		}
+		return new String(Hex.encode(messageDigest.digest(encodedCrl)));
+	}
+
+	@Override
+	public String toString() {
+		return "entries=" + getEntryCount() + ", size=" + getWeight() + "/"
+				+ getMaxWeight() + " bytes, hits=" + getHits() + ", misses="
+				+ getMisses() + ", evictions=" + getEvictions();
+	}
+}
@@ -108,7 +108,13 @@ public abstract class XAdESUtils {
 	public static final String XADES_132_NS_URI = "http://uri.etsi.org/01903/v1.3.2#";
 	public static final String XADES_141_NS_URI = "http://uri.etsi.org/01903/v1.4.1#";
 
+	/**
+	 * Maximum estimated heap size (in bytes) of the parsed CRL cache.
+	 */
+	private static final long CRL_CACHE_SIZE = 64 * 1024 * 1024L;
+
 	private static final CertificateFactory certificateFactory;
+	private static final CrlCache crlCache = new CrlCache(CRL_CACHE_SIZE);
 	private static final Unmarshaller xadesUnmarshaller;
 	private static final Unmarshaller identityUnmarshaller;
 
@@ -136,6 +142,14 @@ public abstract class XAdESUtils {
 		}
 	}
 
+	/**
+	 * @return the parsed CRL cache shared by all XAdES validations, for its
+	 *         statistics.
+	 */
+	public static CrlCache getCrlCache() {
+		return crlCache;
+	}
+
 	/**
 	 * Gives back all time-stamp tokens embedded within the given XAdES
 	 * time-stamp container.
@@ -292,8 +306,7 @@ public abstract class XAdESUtils {
 					.getEncapsulatedCRLValue();
 			for (EncapsulatedPKIDataType crlValue : crlValuesList) {
 				byte[] encodedCrl = crlValue.getValue();
-				X509CRL crl = (X509CRL) certificateFactory
-						.generateCRL(new ByteArrayInputStream(encodedCrl));
+				X509CRL crl = crlCache.getCrl(encodedCrl);
 				crls.add(crl);
 			}
 			return crls;
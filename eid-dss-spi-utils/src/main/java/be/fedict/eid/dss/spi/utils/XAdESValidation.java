@@ -22,8 +22,11 @@ import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import javax.xml.crypto.dsig.XMLSignature;
 import javax.xml.datatype.XMLGregorianCalendar;
@@ -52,6 +55,7 @@ import be.fedict.eid.applet.service.signer.jaxb.xades132.SignedSignatureProperti
 import be.fedict.eid.applet.service.signer.jaxb.xades132.SignerRoleType;
 import be.fedict.eid.applet.service.signer.jaxb.xades132.XAdESTimeStampType;
 import be.fedict.eid.applet.service.signer.jaxb.xades141.ValidationDataType;
+import be.fedict.eid.dss.spi.DSSConcurrentDocumentContext;
 import be.fedict.eid.dss.spi.DSSDocumentContext;
 import be.fedict.eid.dss.spi.SignatureInfo;
 import be.fedict.eid.dss.spi.utils.exception.XAdESValidationException;
@@ -195,50 +199,21 @@ public class XAdESValidation {
 			List<TimeStampToken> sigAndRefsTimeStampTokens = XAdESSigAndRefsTimeStampValidation
 					.verify(sigAndRefsTimeStamp, signatureElement);
 
+			/*
+			 * The trust validations of the timestamp tokens and of the signer
+			 * certificate chain are independent eID Trust Service calls. We
+			 * collect them here and run them together after all local checks.
+			 */
+			List<Callable<Void>> trustValidations = new LinkedList<Callable<Void>>();
+
 			// timestamp tokens trust validation
 			LOG.debug("validate SignatureTimeStamp's trust...");
-			ValidationDataType signatureTimeStampValidationData = XAdESUtils
-					.findNextSibling(signatureTimeStampElement,
-							XAdESUtils.XADES_141_NS_URI,
-							"TimeStampValidationData", ValidationDataType.class);
-			if (null != signatureTimeStampValidationData) {
-				LOG.debug("xadesv141:TimeStampValidationData present for xades:SignatureTimeStamp");
-				RevocationValuesType revocationValues = signatureTimeStampValidationData
-						.getRevocationValues();
-				List<X509CRL> crls = XAdESUtils.getCrls(revocationValues);
-				List<OCSPResp> ocspResponses = XAdESUtils
-						.getOCSPResponses(revocationValues);
-				for (TimeStampToken signatureTimeStampToken : signatureTimeStampTokens) {
-					this.documentContext.validate(signatureTimeStampToken,
-							ocspResponses, crls);
-				}
-			} else {
-				for (TimeStampToken signatureTimeStampToken : signatureTimeStampTokens) {
-					this.documentContext.validate(signatureTimeStampToken);
-				}
-			}
+			addTrustValidations(trustValidations, signatureTimeStampElement,
+					signatureTimeStampTokens);
 
 			LOG.debug("validate SigAndRefsTimeStamp's trust...");
-			ValidationDataType sigAndRefsTimeStampValidationData = XAdESUtils
-					.findNextSibling(sigAndRefsTimeStampElement,
-							XAdESUtils.XADES_141_NS_URI,
-							"TimeStampValidationData", ValidationDataType.class);
-			if (null != sigAndRefsTimeStampValidationData) {
-				LOG.debug("xadesv141:TimeStampValidationData present for xades:SigAndRefsTimeStamp");
-				RevocationValuesType revocationValues = sigAndRefsTimeStampValidationData
-						.getRevocationValues();
-				List<X509CRL> crls = XAdESUtils.getCrls(revocationValues);
-				List<OCSPResp> ocspResponses = XAdESUtils
-						.getOCSPResponses(revocationValues);
-				for (TimeStampToken sigAndRefsTimeStampToken : sigAndRefsTimeStampTokens) {
-					this.documentContext.validate(sigAndRefsTimeStampToken,
-							ocspResponses, crls);
-				}
-			} else {
-				for (TimeStampToken sigAndRefsTimeStampToken : sigAndRefsTimeStampTokens) {
-					this.documentContext.validate(sigAndRefsTimeStampToken);
-				}
-			}
+			addTrustValidations(trustValidations, sigAndRefsTimeStampElement,
+					sigAndRefsTimeStampTokens);
 
 			// timestamp tokens time coherence verification
 			long timestampMaxOffset = this.documentContext
@@ -290,8 +265,8 @@ public class XAdESValidation {
 			RevocationValuesType revocationValues = XAdESUtils
 					.findUnsignedSignatureProperty(qualifyingProperties,
 							RevocationValuesType.class, "RevocationValues");
-			List<X509CRL> crls = XAdESUtils.getCrls(revocationValues);
-			List<OCSPResp> ocspResponses = XAdESUtils
+			final List<X509CRL> crls = XAdESUtils.getCrls(revocationValues);
+			final List<OCSPResp> ocspResponses = XAdESUtils
 					.getOCSPResponses(revocationValues);
 
 			CertificateValuesType certificateValues = XAdESUtils
@@ -301,7 +276,7 @@ public class XAdESValidation {
 				throw new XAdESValidationException(
 						"no CertificateValues element found.");
 			}
-			List<X509Certificate> certificateChain = XAdESUtils
+			final List<X509Certificate> certificateChain = XAdESUtils
 					.getCertificates(certificateValues);
 			if (certificateChain.isEmpty()) {
 				throw new XAdESValidationException(
@@ -359,8 +334,16 @@ public class XAdESValidation {
 			/*
 			 * Perform trust validation via eID Trust Service
 			 */
-			this.documentContext.validate(certificateChain,
-					signingTime.toDate(), ocspResponses, crls);
+			final Date validationDate = signingTime.toDate();
+			trustValidations.add(new Callable<Void>() {
+				public Void call() throws Exception {
+					XAdESValidation.this.documentContext.validate(
+							certificateChain, validationDate, ocspResponses,
+							crls);
+					return null;
+				}
+			});
+			validate(trustValidations);
 
 			/*
 			 * Retrieve the possible eID identity signature extension data.
@@ -400,6 +383,65 @@ public class XAdESValidation {
 		}
 	}
 
+	/**
+	 * Adds the trust validations of the given timestamp tokens. Revocation
+	 * data in a following xadesv141:TimeStampValidationData element triggers
+	 * a historical validation.
+	 */
+	private void addTrustValidations(List<Callable<Void>> trustValidations,
+			Element timeStampElement, List<TimeStampToken> timeStampTokens)
+			throws XAdESValidationException {
+
+		ValidationDataType timeStampValidationData = XAdESUtils
+				.findNextSibling(timeStampElement, XAdESUtils.XADES_141_NS_URI,
+						"TimeStampValidationData", ValidationDataType.class);
+		if (null != timeStampValidationData) {
+			LOG.debug("xadesv141:TimeStampValidationData present for xades:"
+					+ timeStampElement.getLocalName());
+			RevocationValuesType revocationValues = timeStampValidationData
+					.getRevocationValues();
+			final List<X509CRL> crls = XAdESUtils.getCrls(revocationValues);
+			final List<OCSPResp> ocspResponses = XAdESUtils
+					.getOCSPResponses(revocationValues);
+			for (final TimeStampToken timeStampToken : timeStampTokens) {
+				trustValidations.add(new Callable<Void>() {
+					public Void call() throws Exception {
+						XAdESValidation.this.documentContext.validate(
+								timeStampToken, ocspResponses, crls);
+						return null;
+					}
+				});
+			}
+		} else {
+			for (final TimeStampToken timeStampToken : timeStampTokens) {
+				trustValidations.add(new Callable<Void>() {
+					public Void call() throws Exception {
+						XAdESValidation.this.documentContext
+								.validate(timeStampToken);
+						return null;
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Runs the given trust validations, concurrently if the document context
+	 * supports it.
+	 */
+	private void validate(List<Callable<Void>> trustValidations)
+			throws Exception {
+
+		if (this.documentContext instanceof DSSConcurrentDocumentContext) {
+			((DSSConcurrentDocumentContext) this.documentContext)
+					.validateConcurrently(trustValidations);
+			return;
+		}
+		for (Callable<Void> trustValidation : trustValidations) {
+			trustValidation.call();
+		}
+	}
+
 	private Element getNsElement(Document document) {
 
 		Element nsElement = document.createElement("nsElement");
@@ -0,0 +1,175 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss.spi.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import be.fedict.eid.dss.spi.utils.BoundedCache;
+import be.fedict.eid.dss.spi.utils.Clock;
+
+public class BoundedCacheTest {
+
+	@Test
+	public void testHitAndMiss() throws Exception {
+		// setup
+		BoundedCache<String, String> testedInstance = new BoundedCache<String, String>(
+				10);
+
+		// operate
+		testedInstance.put("key", "value", BoundedCache.NO_EXPIRATION);
+
+		// verify
+		assertEquals("value", testedInstance.get("key"));
+		assertNull(testedInstance.get("other-key"));
+		assertEquals(1, testedInstance.getHits());
+		assertEquals(1, testedInstance.getMisses());
+		assertEquals(1, testedInstance.getEntryCount());
+	}
+
+	@Test
+	public void testExpired() throws Exception {
+		// setup
+		BoundedCache<String, String> testedInstance = new BoundedCache<String, String>(
+				10);
+		testedInstance.put("key", "value", System.currentTimeMillis() - 1);
+
+		// operate & verify
+		assertNull(testedInstance.get("key"));
+		assertEquals(0, testedInstance.getEntryCount());
+		assertEquals(0, testedInstance.getWeight());
+		assertEquals(1, testedInstance.getEvictions());
+	}
+
+	@Test
+	public void testExpiredByClock() throws Exception {
+		// setup
+		final long[] now = { 1000 };
+		BoundedCache<String, String> testedInstance = new BoundedCache<String, String>(
+				10, new Clock() {
+
+					public long currentTimeMillis() {
+						return now[0];
+					}
+				});
+		testedInstance.put("key", "value", 2000);
+
+		// operate & verify
+		now[0] = 1999;
+		assertEquals("value", testedInstance.get("key"));
+		now[0] = 2000;
+		assertNull(testedInstance.get("key"));
+		assertEquals(0, testedInstance.getEntryCount());
+	}
+
+	@Test
+	public void testRemoveExpired() throws Exception {
+		// setup
+		BoundedCache<String, String> testedInstance = new BoundedCache<String, String>(
+				10);
+		testedInstance.put("key-1", "value", System.currentTimeMillis() - 1);
+		testedInstance.put("key-2", "value", BoundedCache.NO_EXPIRATION);
+		testedInstance.put("key-3", "value", System.currentTimeMillis() - 1);
+
+		// operate & verify
+		assertEquals(2, testedInstance.removeExpired());
+		assertEquals(1, testedInstance.getEntryCount());
+		assertEquals(1, testedInstance.getWeight());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() throws Exception {
+		// setup
+		BoundedCache<String, String> testedInstance = new BoundedCache<String, String>(
+				3);
+		testedInstance.put("key-1", "value-1", BoundedCache.NO_EXPIRATION);
+		testedInstance.put("key-2", "value-2", BoundedCache.NO_EXPIRATION);
+		testedInstance.put("key-3", "value-3", BoundedCache.NO_EXPIRATION);
+		testedInstance.get("key-1");
+
+		// operate
+		testedInstance.put("key-4", "value-4", BoundedCache.NO_EXPIRATION);
+
+		// verify
+		assertEquals(3, testedInstance.getEntryCount());
+		assertEquals(1, testedInstance.getEvictions());
+		assertNull(testedInstance.get("key-2"));
+		assertEquals("value-1", testedInstance.get("key-1"));
+	}
+
+	@Test
+	public void testWeightBound() throws Exception {
+		// setup
+		BoundedCache<String, String> testedInstance = new BoundedCache<String, String>(
+				100);
+		testedInstance.put("key-1", "value-1", 40, BoundedCache.NO_EXPIRATION);
+		testedInstance.put("key-2", "value-2", 40, BoundedCache.NO_EXPIRATION);
+
+		// operate
+		boolean result = testedInstance.put("key-3", "value-3", 60,
+				BoundedCache.NO_EXPIRATION);
+
+		// verify
+		assertTrue(result);
+		assertEquals(100, testedInstance.getWeight());
+		assertEquals(2, testedInstance.getEntryCount());
+		assertNull(testedInstance.get("key-1"));
+		assertEquals("value-2", testedInstance.get("key-2"));
+	}
+
+	@Test
+	public void testTooHeavy() throws Exception {
+		// setup
+		BoundedCache<String, String> testedInstance = new BoundedCache<String, String>(
+				100);
+		testedInstance.put("key", "value", 10, BoundedCache.NO_EXPIRATION);
+
+		// operate
+		boolean result = testedInstance.put("key", "large-value", 101,
+				BoundedCache.NO_EXPIRATION);
+
+		// verify
+		assertFalse(result);
+		assertNull(testedInstance.get("key"));
+		assertEquals(0, testedInstance.getWeight());
+	}
+
+	@Test
+	public void testRemoveAndClear() throws Exception {
+		// setup
+		BoundedCache<String, String> testedInstance = new BoundedCache<String, String>(
+				100);
+		testedInstance.put("key-1", "value-1", 10, BoundedCache.NO_EXPIRATION);
+		testedInstance.put("key-2", "value-2", 20, BoundedCache.NO_EXPIRATION);
+		testedInstance.put("key-3", "value-3", 30, BoundedCache.NO_EXPIRATION);
+
+		// operate & verify
+		assertEquals("value-1", testedInstance.remove("key-1"));
+		assertNull(testedInstance.remove("key-1"));
+		assertEquals(50, testedInstance.getWeight());
+		testedInstance.clear();
+		assertEquals(0, testedInstance.getEntryCount());
+		assertEquals(0, testedInstance.getWeight());
+		assertEquals(2, testedInstance.getEvictions());
+	}
+}
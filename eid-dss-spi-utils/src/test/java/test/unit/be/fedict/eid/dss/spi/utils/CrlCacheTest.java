@@ -0,0 +1,95 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss.spi.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.fedict.eid.dss.spi.utils.CrlCache;
+
+public class CrlCacheTest {
+
+	private byte[] encodedCrl;
+
+	@BeforeClass
+	public static void beforeClass() {
+		if (null == Security.getProvider(BouncyCastleProvider.PROVIDER_NAME)) {
+			Security.addProvider(new BouncyCastleProvider());
+		}
+	}
+
+	@Before
+	public void setup() throws Exception {
+
+		KeyPair keyPair = PkiTestUtils.generateKeyPair();
+		DateTime notBefore = new DateTime();
+		DateTime notAfter = notBefore.plusYears(1);
+		X509Certificate certificate = PkiTestUtils.generateCertificate(keyPair
+				.getPublic(), "CN=Test", notBefore, notAfter, null, keyPair
+				.getPrivate(), true, 0, null, null, new KeyUsage(
+				KeyUsage.cRLSign), false);
+		this.encodedCrl = PkiTestUtils.generateCrl(certificate,
+				keyPair.getPrivate()).getEncoded();
+	}
+
+	@Test
+	public void testHit() throws Exception {
+		// setup
+		CrlCache testedInstance = new CrlCache(1024 * 1024);
+
+		// operate
+		X509CRL crl1 = testedInstance.getCrl(this.encodedCrl);
+		X509CRL crl2 = testedInstance.getCrl(this.encodedCrl.clone());
+
+		// verify
+		assertSame(crl1, crl2);
+		assertEquals(1, testedInstance.getHits());
+		assertEquals(1, testedInstance.getMisses());
+		assertEquals(this.encodedCrl.length, testedInstance.getWeight());
+	}
+
+	@Test
+	public void testTooLarge() throws Exception {
+		// setup
+		CrlCache testedInstance = new CrlCache(this.encodedCrl.length - 1);
+
+		// operate
+		X509CRL crl1 = testedInstance.getCrl(this.encodedCrl);
+		X509CRL crl2 = testedInstance.getCrl(this.encodedCrl);
+
+		// verify
+		assertNotSame(crl1, crl2);
+		assertEquals(crl1, crl2);
+		assertEquals(0, testedInstance.getEntryCount());
+		assertEquals(2, testedInstance.getMisses());
+	}
+}
@@ -39,6 +39,7 @@ import java.security.cert.X509Certificate;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import javax.crypto.Cipher;
 import javax.xml.crypto.KeySelector;
@@ -57,6 +58,7 @@ import org.bouncycastle.asn1.x509.KeyUsage;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.ocsp.OCSPResp;
 import org.bouncycastle.tsp.TimeStampToken;
+import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.joda.time.DateTime;
 import org.joda.time.Duration;
@@ -80,6 +82,7 @@ import be.fedict.eid.applet.service.signer.facets.XAdESSignatureFacet;
 import be.fedict.eid.applet.service.signer.facets.XAdESXLSignatureFacet;
 import be.fedict.eid.applet.service.signer.time.TimeStampService;
 import be.fedict.eid.applet.service.spi.DigestInfo;
+import be.fedict.eid.dss.spi.DSSConcurrentDocumentContext;
 import be.fedict.eid.dss.spi.DSSDocumentContext;
 import be.fedict.eid.dss.spi.utils.XAdESUtils;
 import be.fedict.eid.dss.spi.utils.XAdESValidation;
@@ -149,6 +152,52 @@ public class XAdESValidationTest {
 		verify(mockDSSDocumentContext);
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testXAdESValidationConcurrentDocumentContext()
+			throws Exception {
+
+		// Setup: signed document
+		Document signedDocument = getSignedDocument(false);
+		Node signatureNode = getSignatureNode(signedDocument);
+		XMLSignature xmlSignature = getXmlSignature(signatureNode);
+
+		// Setup: XAdESValidation
+		DSSConcurrentDocumentContext mockDSSDocumentContext = createMock(DSSConcurrentDocumentContext.class);
+
+		// expectations
+		Capture<List<Callable<Void>>> trustValidationsCapture = new Capture<List<Callable<Void>>>();
+		mockDSSDocumentContext.validateConcurrently(EasyMock
+				.capture(trustValidationsCapture));
+		mockDSSDocumentContext.validate((TimeStampToken) EasyMock.anyObject());
+		mockDSSDocumentContext.validate((TimeStampToken) EasyMock.anyObject());
+		mockDSSDocumentContext.validate(
+				(List<X509Certificate>) EasyMock.anyObject(),
+				(Date) EasyMock.anyObject(),
+				(List<OCSPResp>) EasyMock.anyObject(),
+				(List<X509CRL>) EasyMock.anyObject());
+		expect(mockDSSDocumentContext.getTimestampMaxOffset()).andReturn(
+				20 * 1000L);
+		expect(mockDSSDocumentContext.getMaxGracePeriod()).andReturn(
+				1000L * 60 * 60 * 24 * 7);
+
+		// prepare
+		replay(mockDSSDocumentContext);
+
+		// Operate: XAdESValidation
+		new XAdESValidation(mockDSSDocumentContext).validate(signedDocument,
+				xmlSignature, (Element) signatureNode, this.certificate);
+		List<Callable<Void>> trustValidations = trustValidationsCapture
+				.getValue();
+		for (Callable<Void> trustValidation : trustValidations) {
+			trustValidation.call();
+		}
+
+		// verify
+		verify(mockDSSDocumentContext);
+		assertEquals(3, trustValidations.size());
+	}
+
 	@Test
 	@SuppressWarnings("unchecked")
 	public void testXAdESValidationWithTimeStampRevocationData()
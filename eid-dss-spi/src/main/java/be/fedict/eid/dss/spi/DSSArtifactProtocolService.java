@@ -0,0 +1,44 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.spi;
+
+import java.security.cert.X509Certificate;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Optional extension of the protocol service. A protocol service
+ * implementing this interface can answer by document artifact only, in which
+ * case the signed document does not have to be loaded into memory for
+ * {@link #handleResponse(SignatureStatus, byte[], String, X509Certificate, HttpSession, HttpServletRequest, HttpServletResponse)}
+ * .
+ */
+public interface DSSArtifactProtocolService extends DSSProtocolService {
+
+	/**
+	 * @param httpSession
+	 *            the HTTP session context.
+	 * @return <code>true</code> if the outgoing response carries the signed
+	 *         document itself. If not, <code>handleResponse</code> gets
+	 *         <code>null</code> as signed document.
+	 */
+	boolean isSignedDocumentRequired(HttpSession httpSession);
+}
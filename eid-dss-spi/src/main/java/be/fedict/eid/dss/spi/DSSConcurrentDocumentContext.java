@@ -0,0 +1,46 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.spi;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Optional extension of the document context. A document context
+ * implementing this interface can run independent trust validations
+ * concurrently.
+ */
+public interface DSSConcurrentDocumentContext extends DSSDocumentContext {
+
+	/**
+	 * Runs the given trust validations, possibly concurrently, and waits
+	 * until all of them have finished. The trust validations are independent
+	 * of each other. As soon as one of them fails, the remaining ones get
+	 * cancelled.
+	 * 
+	 * @param trustValidations
+	 *            the trust validations, each one calling one of the
+	 *            <code>validate</code> methods of this document context.
+	 * @throws Exception
+	 *             the error of the first failing trust validation, or an
+	 *             error when the trust validations did not finish in time.
+	 */
+	void validateConcurrently(List<Callable<Void>> trustValidations)
+			throws Exception;
+}
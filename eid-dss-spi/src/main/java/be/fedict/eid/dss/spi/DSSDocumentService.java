@@ -34,13 +34,21 @@ import java.util.List;
 /**
  * Document Service interface. A document service interface knows all about a
  * document format, and how to sign it.
+ * <p/>
+ * Concurrency contract: a single instance gets created and initialized per
+ * content type, and is then shared by all requests. Hence, once
+ * {@link #init(DSSDocumentContext, String)} has returned, all methods can be
+ * invoked concurrently. Implementations should not keep per request state in
+ * fields, and should not share non thread-safe objects like JAXP document
+ * builders or transformers between invocations.
  *
  * @author Frank Cornelis
  */
 public interface DSSDocumentService extends Serializable {
 
 	/**
-	 * Initializes this component.
+	 * Initializes this component. Invoked exactly once, before the instance
+	 * gets shared. This is the place for the expensive setup work.
 	 *
 	 * @param context
 	 *            DSS Document Context
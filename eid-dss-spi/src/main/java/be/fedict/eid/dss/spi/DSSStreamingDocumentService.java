@@ -0,0 +1,46 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.spi;
+
+import java.util.List;
+
+/**
+ * Optional extension of the document service. A document service
+ * implementing this interface can write the visualization of a document
+ * directly to the web browser, instead of handing it over as a byte array.
+ */
+public interface DSSStreamingDocumentService extends DSSDocumentService {
+
+	/**
+	 * Streaming variant of
+	 * {@link #visualizeDocument(byte[], String, List, String)}.
+	 * 
+	 * @param document
+	 *            document to visualize
+	 * @param language
+	 *            the optional language to be used for visualization.
+	 * @param output
+	 *            the destination of the visualization.
+	 * @throws Exception
+	 *             something went wrong
+	 */
+	void writeDocumentVisualization(byte[] document, String language,
+			List<MimeType> mimeTypes, String documentViewerServlet,
+			DocumentVisualizationOutput output) throws Exception;
+}
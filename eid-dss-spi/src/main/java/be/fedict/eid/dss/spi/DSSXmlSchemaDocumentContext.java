@@ -0,0 +1,43 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.spi;
+
+import javax.xml.validation.Schema;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Optional extension of the document context. A document context
+ * implementing this interface hands out compiled XML schemas, so document
+ * services don't have to compile the XSD for every document.
+ */
+public interface DSSXmlSchemaDocumentContext extends DSSDocumentContext {
+
+	/**
+	 * @param namespace
+	 *            XML namespace
+	 * @return the compiled XML schema for the given XML namespace, or
+	 *         <code>null</code> if there is none. The returned schema is
+	 *         immutable and thread-safe, only the validators created from it
+	 *         are not.
+	 * @throws SAXException
+	 *             the stored XML schema could not be compiled.
+	 */
+	Schema getCompiledXmlSchema(String namespace) throws SAXException;
+}
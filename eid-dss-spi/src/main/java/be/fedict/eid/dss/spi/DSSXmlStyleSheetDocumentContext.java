@@ -0,0 +1,42 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.spi;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+
+/**
+ * Optional extension of the document context. A document context
+ * implementing this interface hands out compiled XML style sheets, so
+ * document services don't have to compile the XSL for every visualization.
+ */
+public interface DSSXmlStyleSheetDocumentContext extends DSSDocumentContext {
+
+	/**
+	 * @param namespace
+	 *            XML namespace
+	 * @return the compiled XML style sheet for the given XML namespace, or
+	 *         <code>null</code> if there is none. The returned templates are
+	 *         thread-safe, the transformers created from them are not.
+	 * @throws TransformerConfigurationException
+	 *             the stored XML style sheet could not be compiled.
+	 */
+	Templates getCompiledXmlStyleSheet(String namespace)
+			throws TransformerConfigurationException;
+}
@@ -0,0 +1,42 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.spi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Destination of a streamed document visualization.
+ * 
+ * @see DSSStreamingDocumentService
+ */
+public interface DocumentVisualizationOutput {
+
+	/**
+	 * Gives access to the output stream. Can only be called once.
+	 * 
+	 * @param browserContentType
+	 *            the content-type that will be send to the web browser.
+	 * @return the output stream to write the visualization to.
+	 * @throws IOException
+	 *             something went wrong
+	 */
+	OutputStream getOutputStream(String browserContentType)
+			throws IOException;
+}
@@ -0,0 +1,19 @@
+-- eID Digital Signature Service PostgreSQL large object management.
+--
+-- On PostgreSQL the document data BLOB is an oid referring to a large object.
+-- Deleting a document row, or nulling or replacing its data, does not remove
+-- the large object itself. This trigger unlinks the large object of every
+-- updated or deleted document row, including rows removed by the bulk delete
+-- of the document cleanup task.
+--
+-- Requires the lo contrib module. Run after eid-dss-ddl-postgresql.sql. On
+-- PostgreSQL releases before 9.1, load the contrib lo.sql script instead of
+-- creating the extension.
+
+CREATE EXTENSION IF NOT EXISTS lo;
+
+DROP TRIGGER IF EXISTS dss_documents_data_lo ON dss_documents;
+
+CREATE TRIGGER dss_documents_data_lo
+	BEFORE UPDATE OR DELETE ON dss_documents
+	FOR EACH ROW EXECUTE PROCEDURE lo_manage(data);
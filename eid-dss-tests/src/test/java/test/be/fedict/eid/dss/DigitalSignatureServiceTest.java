@@ -21,6 +21,7 @@ package test.be.fedict.eid.dss;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -193,6 +194,36 @@ public class DigitalSignatureServiceTest {
 		assertTrue(result);
 	}
 
+	@Test
+	public void testVerifyBatch() throws Exception {
+		// setup
+		String documentStr = "<document><data id=\"id\">hello world</data></document>";
+		Document document = loadDocument(documentStr);
+		signDocument(document);
+		String signedDocument = toString(document);
+
+		List<byte[]> documents = new LinkedList<byte[]>();
+		documents.add(signedDocument.getBytes());
+		documents.add("<test/>".getBytes());
+		documents.add("foo-bar".getBytes());
+		List<String> mimeTypes = new LinkedList<String>();
+		mimeTypes.add("text/xml");
+		mimeTypes.add("text/xml");
+		mimeTypes.add("text/xml");
+
+		DigitalSignatureServiceClient client = new DigitalSignatureServiceClient();
+
+		// operate
+		List<List<SignatureInfo>> results = client.verifyBatch(documents,
+				mimeTypes);
+
+		// verify
+		assertEquals(3, results.size());
+		assertEquals(1, results.get(0).size());
+		assertTrue(results.get(1).isEmpty());
+		assertNull(results.get(2));
+	}
+
 	@Test
 	public void testVerifyWithSigners() throws Exception {
 		// setup
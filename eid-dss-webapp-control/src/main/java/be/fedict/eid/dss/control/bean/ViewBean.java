@@ -201,6 +201,6 @@ public class ViewBean implements View {
 				.getHttpSession();
 		DocumentRepository documentRepository = new DocumentRepository(
 				httpSession);
-		return null == documentRepository.getDocument();
+		return null == documentRepository.getSessionDocument();
 	}
 }
@@ -19,6 +19,7 @@
 package be.fedict.eid.dss.webapp;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.List;
 
@@ -34,7 +35,9 @@ import org.apache.commons.logging.LogFactory;
 import be.fedict.eid.dss.control.View;
 import be.fedict.eid.dss.model.DocumentRepository;
 import be.fedict.eid.dss.spi.DSSDocumentService;
+import be.fedict.eid.dss.spi.DSSStreamingDocumentService;
 import be.fedict.eid.dss.spi.DocumentVisualization;
+import be.fedict.eid.dss.spi.DocumentVisualizationOutput;
 import be.fedict.eid.dss.spi.MimeType;
 
 /**
@@ -144,10 +147,17 @@ public class DocumentViewerServlet extends AbstractProtocolServiceServlet {
 
 		DSSDocumentService documentService = super
 				.findDocumentService(contentType);
+		String language = (String) httpSession
+				.getAttribute(View.LANGUAGE_SESSION_ATTRIBUTE);
+		if (documentService instanceof DSSStreamingDocumentService) {
+			LOG.debug("streaming document visualization transformation");
+			writeDocumentVisualization(
+					(DSSStreamingDocumentService) documentService,
+					documentData, language, mimeTypes, request, response);
+			return;
+		}
 		if (null != documentService) {
 			LOG.debug("document visualization transformation");
-			String language = (String) httpSession
-					.getAttribute(View.LANGUAGE_SESSION_ATTRIBUTE);
 			DocumentVisualization documentVisualization;
 			try {
 				documentVisualization = documentService.visualizeDocument(
@@ -172,6 +182,37 @@ public class DocumentViewerServlet extends AbstractProtocolServiceServlet {
 		out.flush();
 	}
 
+	/**
+	 * Writes the visualization straight to the response, without buffering
+	 * it first. Hence no content length.
+	 */
+	private void writeDocumentVisualization(
+			DSSStreamingDocumentService documentService, byte[] documentData,
+			String language, List<MimeType> mimeTypes,
+			HttpServletRequest request, final HttpServletResponse response)
+			throws IOException, ServletException {
+
+		setResponseHeaders(request, response);
+		try {
+			documentService.writeDocumentVisualization(documentData, language,
+					mimeTypes, "./document?" + RESOURCE_PARAM + "=",
+					new DocumentVisualizationOutput() {
+
+						public OutputStream getOutputStream(
+								String browserContentType) throws IOException {
+							response.setContentType(browserContentType);
+							return response.getOutputStream();
+						}
+					});
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ServletException("error visualizing the document: "
+					+ e.getMessage(), e);
+		}
+		response.getOutputStream().flush();
+	}
+
 	private void setResponseHeaders(HttpServletRequest request,
 			HttpServletResponse response) {
 
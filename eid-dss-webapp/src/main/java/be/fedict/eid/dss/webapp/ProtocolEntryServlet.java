@@ -18,6 +18,7 @@
 
 package be.fedict.eid.dss.webapp;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
@@ -171,13 +172,14 @@ public class ProtocolEntryServlet extends AbstractProtocolServiceServlet {
 		String contentType;
 		if (null != dssRequest.getDocumentId()) {
 
-			DocumentEntity document = this.documentService.find(dssRequest
-					.getDocumentId());
+			ByteArrayOutputStream documentOutputStream = new ByteArrayOutputStream();
+			DocumentEntity document = this.documentService.find(
+					dssRequest.getDocumentId(), documentOutputStream);
 			if (null == document) {
 				error(request, response, "Document not found!", null);
 				return;
 			}
-			documentData = document.getData();
+			documentData = documentOutputStream.toByteArray();
 			contentType = document.getContentType();
 
 		} else {
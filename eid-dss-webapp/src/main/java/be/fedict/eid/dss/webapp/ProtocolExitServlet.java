@@ -19,6 +19,7 @@
 package be.fedict.eid.dss.webapp;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.cert.X509Certificate;
 
 import javax.ejb.EJB;
@@ -34,8 +35,10 @@ import org.apache.commons.logging.LogFactory;
 import be.fedict.eid.dss.model.DocumentRepository;
 import be.fedict.eid.dss.model.DocumentService;
 import be.fedict.eid.dss.model.MailManager;
+import be.fedict.eid.dss.model.SessionDocument;
 import be.fedict.eid.dss.model.exception.DocumentNotFoundException;
 import be.fedict.eid.dss.spi.BrowserPOSTResponse;
+import be.fedict.eid.dss.spi.DSSArtifactProtocolService;
 import be.fedict.eid.dss.spi.DSSProtocolService;
 import be.fedict.eid.dss.spi.SignatureStatus;
 
@@ -108,21 +111,41 @@ public class ProtocolExitServlet extends AbstractProtocolServiceServlet {
 		DocumentRepository documentRepository = new DocumentRepository(
 				httpSession);
 
-		byte[] signedDocument = documentRepository.getSignedDocument();
+		SessionDocument signedSessionDocument = documentRepository
+				.getSignedSessionDocument();
+		/*
+		 * Only materialize the signed document when the mail or the protocol
+		 * response really needs it, and then only once.
+		 */
+		byte[] signedDocument = null;
 
-		if (null != signedDocument) {
+		String email = documentRepository.getEmail();
+		if (null != signedSessionDocument && null != email
+				&& this.mailManager.sendSignedDocumentEnabled()) {
+			signedDocument = signedSessionDocument.getData();
 			String mimetype = documentRepository.getDocumentContentType();
-			String email = documentRepository.getEmail();
 			this.mailManager.sendSignedDocument(email, "en", mimetype,
 					signedDocument);
 		}
 
 		String documentId = documentRepository.getDocumentId();
-		if (null != documentId && null != signedDocument) {
+		if (null != documentId && null != signedSessionDocument) {
 
 			// update document entry
 			try {
-				this.documentService.update(documentId, signedDocument);
+				if (null != signedDocument) {
+					this.documentService.update(documentId, signedDocument);
+				} else {
+					InputStream signedDocumentInputStream = signedSessionDocument
+							.getInputStream();
+					try {
+						this.documentService.update(documentId,
+								signedDocumentInputStream,
+								signedSessionDocument.getSize());
+					} finally {
+						signedDocumentInputStream.close();
+					}
+				}
 			} catch (DocumentNotFoundException e) {
 				error(request, response, "Document not found!", null);
 				return;
@@ -133,6 +156,11 @@ public class ProtocolExitServlet extends AbstractProtocolServiceServlet {
 			this.documentService.remove(documentId);
 		}
 
+		if (null == signedDocument && null != signedSessionDocument
+				&& isSignedDocumentRequired(protocolService, httpSession)) {
+			signedDocument = signedSessionDocument.getData();
+		}
+
 		SignatureStatus signatureStatus = documentRepository
 				.getSignatureStatus();
 		X509Certificate signerCertificate = documentRepository
@@ -175,6 +203,16 @@ public class ProtocolExitServlet extends AbstractProtocolServiceServlet {
 		httpSession.invalidate();
 	}
 
+	private boolean isSignedDocumentRequired(
+			DSSProtocolService protocolService, HttpSession httpSession) {
+
+		if (protocolService instanceof DSSArtifactProtocolService) {
+			return ((DSSArtifactProtocolService) protocolService)
+					.isSignedDocumentRequired(httpSession);
+		}
+		return true;
+	}
+
 	private void error(HttpServletRequest request,
 			HttpServletResponse response, String errorMessage, Throwable t)
 			throws IOException {
@@ -28,7 +28,7 @@ import javax.servlet.http.HttpSessionListener;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import be.fedict.eid.dss.model.bean.ModelDSSDocumentContext;
+import be.fedict.eid.dss.model.DocumentRepository;
 
 /**
  * Handles the cleanup of temporary files used by the different document
@@ -52,7 +52,7 @@ public class TempFileCleanerHttpSessionListener implements HttpSessionListener {
 		LOG.debug("sessionDestroyed");
 		HttpSession httpSession = event.getSession();
 		Set<String> tmpFileSet = (Set<String>) httpSession
-				.getAttribute(ModelDSSDocumentContext.TMP_FILE_SET_SESSION_ATTRIBUTE);
+				.getAttribute(DocumentRepository.TMP_FILE_SET_SESSION_ATTRIBUTE);
 		if (null == tmpFileSet) {
 			LOG.debug("no temp file set in HTTP session present");
 			return;
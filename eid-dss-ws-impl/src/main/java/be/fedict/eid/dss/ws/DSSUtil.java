@@ -83,16 +83,21 @@ public abstract class DSSUtil {
 	private static final be.fedict.eid.dss.ws.profile.vr.jaxb.xmldsig.ObjectFactory vrXmldsigObjectFactory;
 	private static final be.fedict.eid.dss.ws.profile.vr.jaxb.xades.ObjectFactory vrXadesObjectFactory;
 
-	private static final Marshaller vrMarshaller;
-	private static final Marshaller artifactMarshaller;
-	private static final Unmarshaller artifactUnmarshaller;
-	private static final DocumentBuilder documentBuilder;
+	/*
+	 * JAXB contexts are thread-safe, JAXB marshallers and DOM document builders
+	 * are not. The latter are pooled, as the web service calls us
+	 * concurrently.
+	 */
+	private static final ObjectPool<Marshaller> vrMarshallerPool;
+	private static final ObjectPool<Marshaller> artifactMarshallerPool;
+	private static final ObjectPool<Unmarshaller> artifactUnmarshallerPool;
+	private static final ObjectPool<DocumentBuilder> documentBuilderPool;
 
 	private static final DatatypeFactory datatypeFactory;
 	private static final be.fedict.eid.dss.ws.jaxb.dss.ObjectFactory dssObjectFactory;
 	private static final be.fedict.eid.dss.ws.profile.artifact.jaxb.ObjectFactory artifactObjectFactory;
 
-	private static final Unmarshaller originalDocumentUnmarshaller;
+	private static final ObjectPool<Unmarshaller> originalDocumentUnmarshallerPool;
 
 	static {
 		vrObjectFactory = new be.fedict.eid.dss.ws.profile.vr.jaxb.ObjectFactory();
@@ -105,30 +110,36 @@ public abstract class DSSUtil {
 		try {
 			JAXBContext vrJAXBContext = JAXBContext
 					.newInstance(be.fedict.eid.dss.ws.profile.vr.jaxb.ObjectFactory.class);
-			vrMarshaller = vrJAXBContext.createMarshaller();
+			vrMarshallerPool = getMarshallerPool(vrJAXBContext);
 
 			JAXBContext artifactJAXBContext = JAXBContext
 					.newInstance(be.fedict.eid.dss.ws.profile.artifact.jaxb.ObjectFactory.class);
-			artifactMarshaller = artifactJAXBContext.createMarshaller();
-			artifactUnmarshaller = artifactJAXBContext.createUnmarshaller();
+			artifactMarshallerPool = getMarshallerPool(artifactJAXBContext);
+			artifactUnmarshallerPool = getUnmarshallerPool(artifactJAXBContext);
 
 			JAXBContext originalDocumentJAXBContext = JAXBContext
 					.newInstance(be.fedict.eid.dss.ws.profile.originaldocument.jaxb.ObjectFactory.class);
-			originalDocumentUnmarshaller = originalDocumentJAXBContext
-					.createUnmarshaller();
+			originalDocumentUnmarshallerPool = getUnmarshallerPool(originalDocumentJAXBContext);
 		} catch (JAXBException e) {
 			throw new RuntimeException("JAXB error: " + e.getMessage(), e);
 		}
 
-		DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory
+		final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory
 				.newInstance();
 		documentBuilderFactory.setNamespaceAware(true);
-		try {
-			documentBuilder = documentBuilderFactory.newDocumentBuilder();
-		} catch (ParserConfigurationException e) {
-			throw new RuntimeException("document builder error: "
-					+ e.getMessage(), e);
-		}
+		documentBuilderPool = new ObjectPool<DocumentBuilder>() {
+			@Override
+			protected DocumentBuilder create() {
+				synchronized (documentBuilderFactory) {
+					try {
+						return documentBuilderFactory.newDocumentBuilder();
+					} catch (ParserConfigurationException e) {
+						throw new RuntimeException("document builder error: "
+								+ e.getMessage(), e);
+					}
+				}
+			}
+		};
 
 		try {
 			datatypeFactory = DatatypeFactory.newInstance();
@@ -138,12 +149,79 @@ public abstract class DSSUtil {
 		}
 	}
 
+	private static ObjectPool<Marshaller> getMarshallerPool(
+			final JAXBContext jaxbContext) {
+		return new ObjectPool<Marshaller>() {
+			@Override
+			protected Marshaller create() {
+				try {
+					return jaxbContext.createMarshaller();
+				} catch (JAXBException e) {
+					throw new RuntimeException("JAXB error: " + e.getMessage(),
+							e);
+				}
+			}
+		};
+	}
+
+	private static ObjectPool<Unmarshaller> getUnmarshallerPool(
+			final JAXBContext jaxbContext) {
+		return new ObjectPool<Unmarshaller>() {
+			@Override
+			protected Unmarshaller create() {
+				try {
+					return jaxbContext.createUnmarshaller();
+				} catch (JAXBException e) {
+					throw new RuntimeException("JAXB error: " + e.getMessage(),
+							e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Marshals the given JAXB element into a new DOM element, using the given
+	 * marshaller pool.
+	 */
+	private static Element marshal(ObjectPool<Marshaller> marshallerPool,
+			Object jaxbElement) {
+
+		Document newDocument;
+		DocumentBuilder documentBuilder = documentBuilderPool.borrow();
+		try {
+			newDocument = documentBuilder.newDocument();
+		} finally {
+			documentBuilderPool.release(documentBuilder);
+		}
+		Element newElement = newDocument.createElement("newNode");
+		Marshaller marshaller = marshallerPool.borrow();
+		try {
+			marshaller.marshal(jaxbElement, newElement);
+		} catch (JAXBException e) {
+			throw new RuntimeException("JAXB error: " + e.getMessage(), e);
+		} finally {
+			marshallerPool.release(marshaller);
+		}
+		return (Element) newElement.getFirstChild();
+	}
+
+	private static Object unmarshal(ObjectPool<Unmarshaller> unmarshallerPool,
+			Element element) throws JAXBException {
+
+		Unmarshaller unmarshaller = unmarshallerPool.borrow();
+		try {
+			return unmarshaller.unmarshal(element);
+		} finally {
+			unmarshallerPool.release(unmarshaller);
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	public static ReturnStoredDocument getReturnStoredDocument(
 			Element returnStoredDocumentElement) throws JAXBException {
 
-		JAXBElement<ReturnStoredDocument> jaxbElement = (JAXBElement<ReturnStoredDocument>) artifactUnmarshaller
-				.unmarshal(returnStoredDocumentElement);
+		JAXBElement<ReturnStoredDocument> jaxbElement = (JAXBElement<ReturnStoredDocument>) unmarshal(
+				artifactUnmarshallerPool, returnStoredDocumentElement);
 		return jaxbElement.getValue();
 	}
 
@@ -315,31 +393,48 @@ public abstract class DSSUtil {
 					.setResultMajor(DSSConstants.VR_RESULT_MAJOR_VALID);
 		}
 
-		Document newDocument = documentBuilder.newDocument();
-		Element newElement = newDocument.createElement("newNode");
-		try {
-			vrMarshaller.marshal(vrObjectFactory
-					.createVerificationReport(verificationReport), newElement);
-		} catch (JAXBException e) {
-			throw new RuntimeException("JAXB error: " + e.getMessage(), e);
+		addVerificationReport(optionalOutput, verificationReport);
+	}
+
+	/**
+	 * Adds a verification report for a document that could not be verified.
+	 * Used for batch verification, where every document gets its own
+	 * verification report.
+	 */
+	public static void addErrorVerificationReport(AnyType optionalOutput,
+			String resultMinor) {
+
+		VerificationReportType verificationReport = vrObjectFactory
+				.createVerificationReportType();
+		IndividualReportType individualReport = vrObjectFactory
+				.createIndividualReportType();
+		verificationReport.getIndividualReport().add(individualReport);
+		individualReport.setSignedObjectIdentifier(vrObjectFactory
+				.createSignedObjectIdentifierType());
+		be.fedict.eid.dss.ws.profile.vr.jaxb.dss.Result individualResult = vrDssObjectFactory
+				.createResult();
+		individualReport.setResult(individualResult);
+		individualResult
+				.setResultMajor(DSSConstants.RESULT_MAJOR_REQUESTER_ERROR);
+		if (null != resultMinor) {
+			individualResult.setResultMinor(resultMinor);
 		}
-		Element verificationReportElement = (Element) newElement
-				.getFirstChild();
+
+		addVerificationReport(optionalOutput, verificationReport);
+	}
+
+	private static void addVerificationReport(AnyType optionalOutput,
+			VerificationReportType verificationReport) {
+
+		Element verificationReportElement = marshal(vrMarshallerPool,
+				vrObjectFactory.createVerificationReport(verificationReport));
 		optionalOutput.getAny().add(verificationReportElement);
 	}
 
 	public static Element getStorageInfoElement(StorageInfo storageInfo) {
 
-		Document newDocument = documentBuilder.newDocument();
-		Element newElement = newDocument.createElement("newNode");
-		try {
-			artifactMarshaller.marshal(
-					artifactObjectFactory.createStorageInfo(storageInfo),
-					newElement);
-		} catch (JAXBException e) {
-			throw new RuntimeException("JAXB error: " + e.getMessage(), e);
-		}
-		return (Element) newElement.getFirstChild();
+		return marshal(artifactMarshallerPool,
+				artifactObjectFactory.createStorageInfo(storageInfo));
 	}
 
 	public static SignResponse createRequestorSignErrorResponse(
@@ -406,8 +501,8 @@ public abstract class DSSUtil {
 
 	public static byte[] getOriginalDocument(Element element)
 			throws JAXBException {
-		JAXBElement<OriginalDocumentType> originalDocumentElement = (JAXBElement<OriginalDocumentType>) originalDocumentUnmarshaller
-				.unmarshal(element);
+		JAXBElement<OriginalDocumentType> originalDocumentElement = (JAXBElement<OriginalDocumentType>) unmarshal(
+				originalDocumentUnmarshallerPool, element);
 		OriginalDocumentType originalDocument = originalDocumentElement
 				.getValue();
 		InputDocuments inputDocuments = originalDocument.getInputDocuments();
@@ -18,21 +18,30 @@
 
 package be.fedict.eid.dss.ws;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
 
+import javax.activation.DataHandler;
+import javax.activation.DataSource;
 import javax.ejb.EJB;
 import javax.jws.WebService;
 import javax.xml.bind.JAXBException;
+import javax.xml.ws.soap.MTOM;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.joda.time.DateTime;
 import org.w3c.dom.Element;
 
-import be.fedict.eid.dss.entity.DocumentEntity;
+import be.fedict.eid.dss.model.ConfigProperty;
+import be.fedict.eid.dss.model.Configuration;
 import be.fedict.eid.dss.model.DocumentService;
+import be.fedict.eid.dss.model.SignatureVerificationRequest;
+import be.fedict.eid.dss.model.SignatureVerificationResult;
 import be.fedict.eid.dss.model.SignatureVerificationService;
 import be.fedict.eid.dss.model.exception.DocumentFormatException;
 import be.fedict.eid.dss.model.exception.InvalidSignatureException;
@@ -57,6 +66,9 @@ import com.sun.xml.ws.developer.UsesJAXBContext;
 /**
  * Implementation of the DSS verification web service JAX-WS endpoint.
  * <p/>
+ * MTOM is enabled so documents travel as binary attachments instead of inlined
+ * base64.
+ * <p/>
  * TODO: we can use this directly as servlet in web.xml. Before doing so we
  * should activate the Metro JBossWS.
  * 
@@ -64,6 +76,7 @@ import com.sun.xml.ws.developer.UsesJAXBContext;
  */
 @WebService(endpointInterface = "be.fedict.eid.dss.ws.DigitalSignatureServicePortType")
 @ServiceConsumer
+@MTOM
 @UsesJAXBContext(DSSJAXBContextFactory.class)
 public class DigitalSignatureServicePortImpl implements
 		DigitalSignatureServicePortType {
@@ -77,6 +90,9 @@ public class DigitalSignatureServicePortImpl implements
 	@EJB
 	private DocumentService documentService;
 
+	@EJB
+	private Configuration configuration;
+
 	@Override
 	public ResponseBaseType verify(VerifyRequest verifyRequest) {
 
@@ -94,13 +110,6 @@ public class DigitalSignatureServicePortImpl implements
 			return DSSUtil.createRequestorErrorResponse(requestId, null,
 					"No valid document found to validate.");
 		}
-		if (documents.size() != 1) {
-			return DSSUtil.createRequestorErrorResponse(requestId, null,
-					"Can validate only one document.");
-		}
-		byte[] data = documents.get(0).getDocumentData();
-		String mimeType = documents.get(0).getContentType();
-
 		byte[] originalData = null;
 		boolean returnVerificationReport = false;
 		AnyType optionalInput = verifyRequest.getOptionalInputs();
@@ -136,6 +145,29 @@ public class DigitalSignatureServicePortImpl implements
 			}
 		}
 
+		if (documents.size() > 1) {
+			if (null != originalData) {
+				return DSSUtil.createRequestorErrorResponse(requestId,
+						DSSConstants.RESULT_MINOR_NOT_SUPPORTED,
+						"Original document only supported for a single document.");
+			}
+			Integer maxBatchSize = this.configuration.getValue(
+					ConfigProperty.VERIFY_BATCH_MAX_SIZE, Integer.class);
+			if (null == maxBatchSize) {
+				maxBatchSize = (Integer) ConfigProperty.VERIFY_BATCH_MAX_SIZE
+						.getDefaultValue();
+			}
+			if (documents.size() > maxBatchSize) {
+				return DSSUtil.createRequestorErrorResponse(requestId,
+						DSSConstants.RESULT_MINOR_NOT_SUPPORTED,
+						"At most " + maxBatchSize
+								+ " documents supported per request.");
+			}
+			return verifyBatch(requestId, documents);
+		}
+		byte[] data = documents.get(0).getDocumentData();
+		String mimeType = documents.get(0).getContentType();
+
 		/*
 		 * Invoke the underlying DSS verification service.
 		 */
@@ -181,6 +213,73 @@ public class DigitalSignatureServicePortImpl implements
 		return responseBase;
 	}
 
+	/**
+	 * Verifies multiple documents at once. Every document gets its own
+	 * verification report, in the order of the input documents, even when not
+	 * requested. Else the requestor cannot tell which document failed.
+	 */
+	private ResponseBaseType verifyBatch(String requestId,
+			List<DocumentDO> documents) {
+
+		LOG.debug("batch verification of " + documents.size() + " documents");
+		List<SignatureVerificationRequest> requests = new LinkedList<SignatureVerificationRequest>();
+		for (DocumentDO document : documents) {
+			// materialized by the verification service, when due
+			requests.add(new SignatureVerificationRequest(document
+					.getDataSource(), document.getContentType(), null));
+		}
+		List<SignatureVerificationResult> results = this.signatureVerificationService
+				.verify(requests);
+
+		ObjectFactory dssObjectFactory = new ObjectFactory();
+		ResponseBaseType responseBase = dssObjectFactory
+				.createResponseBaseType();
+		responseBase.setRequestID(requestId);
+		Result result = dssObjectFactory.createResult();
+		result.setResultMajor(DSSConstants.RESULT_MAJOR_SUCCESS);
+		AnyType optionalOutput = dssObjectFactory.createAnyType();
+
+		boolean allSigned = true;
+		boolean documentFormatError = false;
+		int signatureCount = 0;
+		for (SignatureVerificationResult verificationResult : results) {
+			List<SignatureInfo> signatureInfos = verificationResult
+					.getSignatureInfos();
+			if (null == signatureInfos || signatureInfos.isEmpty()) {
+				allSigned = false;
+			} else {
+				signatureCount += signatureInfos.size();
+			}
+			if (null != signatureInfos) {
+				DSSUtil.addVerificationReport(optionalOutput, signatureInfos);
+			} else if (verificationResult.isDocumentFormatError()) {
+				documentFormatError = true;
+				DSSUtil.addErrorVerificationReport(optionalOutput,
+						DSSConstants.RESULT_MINOR_NOT_PARSEABLE_XML_DOCUMENT);
+			} else {
+				DSSUtil.addErrorVerificationReport(optionalOutput,
+						DSSConstants.RESULT_MINOR_INVALID_SIGNATURE);
+			}
+		}
+
+		if (documentFormatError) {
+			result.setResultMinor(DSSConstants.RESULT_MINOR_NOT_PARSEABLE_XML_DOCUMENT);
+		} else if (!allSigned) {
+			result.setResultMinor(DSSConstants.RESULT_MINOR_INVALID_SIGNATURE);
+		} else if (signatureCount > 1) {
+			result.setResultMinor(DSSConstants.RESULT_MINOR_VALID_MULTI_SIGNATURES);
+		} else {
+			result.setResultMinor(DSSConstants.RESULT_MINOR_VALID_SIGNATURE);
+		}
+
+		if (!optionalOutput.getAny().isEmpty()) {
+			responseBase.setOptionalOutputs(optionalOutput);
+		}
+
+		responseBase.setResult(result);
+		return responseBase;
+	}
+
 	@Override
 	public SignResponse sign(SignRequest signRequest) {
 
@@ -283,26 +382,26 @@ public class DigitalSignatureServicePortImpl implements
 		signResponse.setResult(result);
 		result.setResultMajor(DSSConstants.RESULT_MAJOR_SUCCESS);
 
-		// add signed document
-		DocumentEntity documentEntity = this.documentService
-				.retrieve(documentId);
-		if (null == documentEntity) {
+		// add signed document, streamed out as MTOM attachment
+		DataSource dataSource = this.documentService.retrieve(documentId);
+		if (null == dataSource) {
 			return DSSUtil.createRequestorSignErrorResponse(
 					signRequest.getRequestID(),
 					DSSConstants.RESULT_MINOR_NOT_SUPPORTED,
 					"Document not found or expired...");
 		}
-		String mimeType = documentEntity.getContentType();
+		String mimeType = dataSource.getContentType();
 
 		DocumentWithSignature documentWithSignature = dssObjectFactory
 				.createDocumentWithSignature();
 		DocumentType document = dssObjectFactory.createDocumentType();
 		documentWithSignature.setDocument(document);
+		DataHandler data = new DataHandler(dataSource);
 		if (null == mimeType || "text/xml".equals(mimeType)) {
-			document.setBase64XML(documentEntity.getData());
+			document.setBase64XML(data);
 		} else {
 			Base64Data base64Data = dssObjectFactory.createBase64Data();
-			base64Data.setValue(documentEntity.getData());
+			base64Data.setValue(data);
 			base64Data.setMimeType(mimeType);
 			document.setBase64Data(base64Data);
 		}
@@ -332,8 +431,22 @@ public class DigitalSignatureServicePortImpl implements
 		// store artifact
 		String documentId = UUID.randomUUID().toString();
 
-		DateTime expiration = this.documentService.store(documentId, documents
-				.get(0).getDocumentData(), documents.get(0).getContentType());
+		DateTime expiration;
+		try {
+			InputStream documentInputStream = documents.get(0)
+					.getInputStream();
+			try {
+				// size unknown, counted by the document store
+				expiration = this.documentService.store(documentId,
+						documentInputStream, -1, documents.get(0)
+								.getContentType());
+			} finally {
+				documentInputStream.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("could not store document: "
+					+ e.getMessage(), e);
+		}
 
 		// construct response
 		ObjectFactory dssObjectFactory = new ObjectFactory();
@@ -366,16 +479,42 @@ public class DigitalSignatureServicePortImpl implements
 
 	class DocumentDO {
 
-		private final byte[] documentData;
+		private final DataHandler documentData;
 		private final String contentType;
 
-		public DocumentDO(byte[] documentData, String contentType) {
+		public DocumentDO(DataHandler documentData, String contentType) {
 			this.documentData = documentData;
 			this.contentType = contentType;
 		}
 
+		public DataSource getDataSource() {
+			return this.documentData.getDataSource();
+		}
+
+		/**
+		 * Streams the document data. Large MTOM attachments are not kept in
+		 * memory by the JAX-WS runtime.
+		 */
+		public InputStream getInputStream() throws IOException {
+			return this.documentData.getInputStream();
+		}
+
+		/**
+		 * Materializes the document data, as required by the signature
+		 * verification SPI.
+		 */
 		public byte[] getDocumentData() {
-			return documentData;
+			try {
+				InputStream inputStream = getInputStream();
+				try {
+					return IOUtils.toByteArray(inputStream);
+				} finally {
+					inputStream.close();
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("could not read document: "
+						+ e.getMessage(), e);
+			}
 		}
 
 		public String getContentType() {
@@ -396,7 +535,7 @@ public class DigitalSignatureServicePortImpl implements
 			}
 			DocumentType document = (DocumentType) documentObject;
 			Base64Data base64Data = document.getBase64Data();
-			byte[] data;
+			DataHandler data;
 			String mimeType;
 			if (null != base64Data) {
 				data = base64Data.getValue();
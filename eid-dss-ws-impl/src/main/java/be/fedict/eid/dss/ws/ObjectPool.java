@@ -0,0 +1,55 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.ws;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pool for objects that are not thread-safe and relatively expensive to
+ * create, like JAXB marshallers and DOM document builders. Objects are created
+ * on demand, so the pool only grows up to the peak concurrency. The pool is not
+ * bound to any thread, so nothing lingers in the container thread pool after
+ * an undeploy.
+ * 
+ * @param <T>
+ *            the type of the pooled objects.
+ */
+public abstract class ObjectPool<T> {
+
+	private final Queue<T> idleObjects = new ConcurrentLinkedQueue<T>();
+
+	/**
+	 * Takes an object from the pool. The caller should hand it back via
+	 * {@link #release(Object)} once finished.
+	 */
+	public T borrow() {
+		T object = this.idleObjects.poll();
+		if (null == object) {
+			object = create();
+		}
+		return object;
+	}
+
+	public void release(T object) {
+		this.idleObjects.offer(object);
+	}
+
+	protected abstract T create();
+}
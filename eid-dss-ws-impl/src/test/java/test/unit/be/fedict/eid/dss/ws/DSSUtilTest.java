@@ -0,0 +1,227 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package test.unit.be.fedict.eid.dss.ws;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.bind.JAXBException;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.bouncycastle.jce.X509Principal;
+import org.bouncycastle.x509.X509V3CertificateGenerator;
+import org.joda.time.DateTime;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import be.fedict.eid.dss.spi.SignatureInfo;
+import be.fedict.eid.dss.ws.DSSConstants;
+import be.fedict.eid.dss.ws.DSSUtil;
+import be.fedict.eid.dss.ws.jaxb.dss.AnyType;
+import be.fedict.eid.dss.ws.profile.artifact.jaxb.ObjectFactory;
+import be.fedict.eid.dss.ws.profile.artifact.jaxb.ReturnStoredDocument;
+import be.fedict.eid.dss.ws.profile.artifact.jaxb.StorageInfo;
+import be.fedict.eid.dss.ws.profile.artifact.jaxb.ValidityType;
+
+public class DSSUtilTest {
+
+	private static final String DSS_NAMESPACE = "urn:oasis:names:tc:dss:1.0:core:schema";
+
+	private static final String XADES_NAMESPACE = "http://uri.etsi.org/01903/v1.3.2#";
+
+	private static X509Certificate certificate;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+		keyPairGenerator.initialize(1024);
+		KeyPair keyPair = keyPairGenerator.generateKeyPair();
+		DateTime notBefore = new DateTime();
+		X509V3CertificateGenerator certificateGenerator = new X509V3CertificateGenerator();
+		certificateGenerator.setPublicKey(keyPair.getPublic());
+		certificateGenerator.setSignatureAlgorithm("SHA1withRSA");
+		certificateGenerator.setNotBefore(notBefore.toDate());
+		certificateGenerator.setNotAfter(notBefore.plusMonths(1).toDate());
+		certificateGenerator.setIssuerDN(new X509Principal("CN=Test"));
+		certificateGenerator.setSubjectDN(new X509Principal("CN=Test"));
+		certificateGenerator.setSerialNumber(BigInteger.ONE);
+		certificate = certificateGenerator.generate(keyPair.getPrivate());
+	}
+
+	@Test
+	public void testConcurrentMarshalling() throws Exception {
+		// setup
+		int threads = 16;
+		int iterations = 200;
+
+		// operate & verify
+		int count = runConcurrently(threads, iterations, false);
+		assertEquals(threads * iterations, count);
+	}
+
+	@Test
+	public void testConcurrentMarshallingAfterFailures() throws Exception {
+		// setup
+		int threads = 8;
+		int iterations = 100;
+
+		// operate & verify: failed unmarshalling leaves the pools usable
+		int count = runConcurrently(threads, iterations, true);
+		assertEquals(threads * iterations, count);
+	}
+
+	private int runConcurrently(int threads, final int iterations,
+			final boolean withFailures) throws Exception {
+		ExecutorService executorService = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Integer>> futures = new LinkedList<Future<Integer>>();
+			for (int thread = 0; thread < threads; thread++) {
+				final String threadId = "thread-" + thread;
+				futures.add(executorService.submit(new Callable<Integer>() {
+					public Integer call() throws Exception {
+						DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory
+								.newInstance();
+						documentBuilderFactory.setNamespaceAware(true);
+						DocumentBuilder documentBuilder = documentBuilderFactory
+								.newDocumentBuilder();
+						for (int idx = 0; idx < iterations; idx++) {
+							if (withFailures) {
+								unmarshalUnknownElement(documentBuilder);
+							}
+							roundTrip(documentBuilder, threadId + "-" + idx,
+									idx % 3 + 1);
+						}
+						return iterations;
+					}
+				}));
+			}
+			int count = 0;
+			for (Future<Integer> future : futures) {
+				count += future.get();
+			}
+			return count;
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	private void unmarshalUnknownElement(DocumentBuilder documentBuilder) {
+
+		Document document = documentBuilder.newDocument();
+		Element element = document.createElementNS("urn:test", "Unknown");
+		try {
+			DSSUtil.getReturnStoredDocument(element);
+			fail();
+		} catch (JAXBException e) {
+			// expected
+		}
+	}
+
+	private void roundTrip(DocumentBuilder documentBuilder, String id,
+			int signatureCount) throws Exception {
+
+		// verification report
+		List<SignatureInfo> signatureInfos = new LinkedList<SignatureInfo>();
+		for (int idx = 0; idx < signatureCount; idx++) {
+			signatureInfos.add(new SignatureInfo(certificate, new Date(), id));
+		}
+		AnyType optionalOutput = new be.fedict.eid.dss.ws.jaxb.dss.ObjectFactory()
+				.createAnyType();
+		DSSUtil.addVerificationReport(optionalOutput, signatureInfos);
+		Element verificationReportElement = (Element) optionalOutput.getAny()
+				.get(0);
+		assertEquals(
+				signatureCount,
+				verificationReportElement.getElementsByTagNameNS(
+						DSSConstants.VR_NAMESPACE, "IndividualReport")
+						.getLength());
+		NodeList claimedRoles = verificationReportElement
+				.getElementsByTagNameNS(XADES_NAMESPACE, "ClaimedRole");
+		assertEquals(signatureCount, claimedRoles.getLength());
+		for (int idx = 0; idx < signatureCount; idx++) {
+			assertEquals(id, claimedRoles.item(idx).getTextContent());
+		}
+
+		// storage info
+		ObjectFactory artifactObjectFactory = new ObjectFactory();
+		StorageInfo storageInfo = artifactObjectFactory.createStorageInfo();
+		storageInfo.setIdentifier(id);
+		ValidityType validity = artifactObjectFactory.createValidityType();
+		validity.setNotBefore(DSSUtil.toXML(new DateTime()));
+		validity.setNotAfter(DSSUtil.toXML(new DateTime()));
+		storageInfo.setValidity(validity);
+		Element storageInfoElement = DSSUtil.getStorageInfoElement(storageInfo);
+		assertEquals(
+				id,
+				storageInfoElement
+						.getElementsByTagNameNS(
+								DSSConstants.ARTIFACT_NAMESPACE, "Identifier")
+						.item(0).getTextContent());
+
+		// return stored document
+		Document document = documentBuilder.newDocument();
+		Element returnStoredDocumentElement = document.createElementNS(
+				DSSConstants.ARTIFACT_NAMESPACE, "ReturnStoredDocument");
+		Element identifierElement = document.createElementNS(
+				DSSConstants.ARTIFACT_NAMESPACE, "Identifier");
+		identifierElement.setTextContent(id);
+		returnStoredDocumentElement.appendChild(identifierElement);
+		ReturnStoredDocument returnStoredDocument = DSSUtil
+				.getReturnStoredDocument(returnStoredDocumentElement);
+		assertEquals(id, returnStoredDocument.getIdentifier());
+
+		// original document
+		byte[] originalData = ("<test>" + id + "</test>").getBytes();
+		Element originalDocumentElement = document.createElementNS(
+				DSSConstants.ORIGINAL_DOCUMENT_NAMESPACE,
+				DSSConstants.ORIGINAL_DOCUMENT_ELEMENT);
+		Element inputDocumentsElement = document.createElementNS(
+				DSS_NAMESPACE, "InputDocuments");
+		originalDocumentElement.appendChild(inputDocumentsElement);
+		Element documentElement = document.createElementNS(DSS_NAMESPACE,
+				"Document");
+		inputDocumentsElement.appendChild(documentElement);
+		Element base64XMLElement = document.createElementNS(DSS_NAMESPACE,
+				"Base64XML");
+		base64XMLElement.setTextContent(DatatypeConverter
+				.printBase64Binary(originalData));
+		documentElement.appendChild(base64XMLElement);
+		byte[] resultOriginalData = DSSUtil
+				.getOriginalDocument(originalDocumentElement);
+		assertArrayEquals(originalData, resultOriginalData);
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * eID Digital Signature Service Project.
+ * Copyright (C) 2012 FedICT.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see
+ * http://www.gnu.org/licenses/.
+ */
+
+package be.fedict.eid.dss.ws;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.activation.DataSource;
+
+/**
+ * Read-only data source to hand over in-memory document data as MTOM
+ * attachment.
+ */
+public class ByteArrayDataSource implements DataSource {
+
+	private final byte[] data;
+
+	private final String contentType;
+
+	public ByteArrayDataSource(byte[] data, String contentType) {
+		this.data = data;
+		this.contentType = contentType;
+	}
+
+	public String getContentType() {
+		if (null == this.contentType) {
+			return "application/octet-stream";
+		}
+		return this.contentType;
+	}
+
+	public InputStream getInputStream() throws IOException {
+		return new ByteArrayInputStream(this.data);
+	}
+
+	public String getName() {
+		return null;
+	}
+
+	public OutputStream getOutputStream() throws IOException {
+		throw new IOException("read-only data source");
+	}
+}